@@ -0,0 +1,49 @@
+package org.example.userprofile.bench;
+
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.generator.ParallelLogGenerator;
+import org.example.userprofile.store.NetflowLogStore;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 基准数据集：固定种子生成，同一组参数每次运行得到相同数据
+ * 域名为 domainCount 个合成域名，用于覆盖不同的域名基数
+ */
+@State(Scope.Benchmark)
+public class BenchmarkData {
+
+    static final long SEED = 20251201L;
+    static final LocalDateTime START = LocalDate.of(2025, 12, 1).atStartOfDay();
+    static final LocalDateTime END = START.plusDays(7);
+
+    @Param({"100000", "1000000"})
+    public int rowCount;
+
+    @Param({"1000", "20000"})
+    public int userCount;
+
+    @Param({"100", "10000"})
+    public int domainCount;
+
+    List<NetflowLog> logs;
+    NetflowLogStore store;
+    Map<String, String> employees;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ParallelLogGenerator generator = new ParallelLogGenerator(SEED, START, END, userCount, domainCount);
+        logs = generator.generateLogs(rowCount, ForkJoinPool.commonPool());
+        employees = generator.getEmployees();
+        store = NetflowLogStore.of(logs);
+    }
+}
@@ -0,0 +1,66 @@
+package org.example.userprofile.bench;
+
+import org.example.userprofile.entity.UserProfile;
+import org.example.userprofile.io.JsonWriter;
+import org.example.userprofile.io.LogExporter;
+import org.example.userprofile.service.UserProfileService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 导出路径：按天采样导出 mock_data.json 格式、全量 NDJSON 序列化
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ExportBenchmark {
+
+    private Map<String, UserProfile> profiles;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkData data) throws IOException {
+        profiles = new UserProfileService().calculateBatchProfiles(data.store, data.employees,
+                ForkJoinPool.commonPool());
+        file = Files.createTempFile("export-bench", ".json");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int exportSample(BenchmarkData data) throws IOException {
+        return LogExporter.exportSample(file, data.store.asList(), profiles, 100);
+    }
+
+    @Benchmark
+    public long writeNdjson(BenchmarkData data) throws IOException {
+        // 只衡量序列化与转义，不含磁盘写入
+        try (JsonWriter out = new JsonWriter(Writer.nullWriter())) {
+            return LogExporter.writeNdjson(out, data.logs);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.userprofile.bench;
+
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.generator.MockDataGenerator;
+import org.example.userprofile.generator.ParallelLogGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模拟数据生成：原串行生成与按种子并行生成
+ * 两者参数不同：串行生成的员工数由行数决定、域名固定，只按行数参数化；
+ * 并行生成按行数、员工数与域名基数参数化
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class GeneratorBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class LegacyParams {
+        @Param({"100000", "1000000"})
+        public int rowCount;
+    }
+
+    @State(Scope.Benchmark)
+    public static class SeededParams {
+        @Param({"100000", "1000000"})
+        public int rowCount;
+
+        @Param({"1000", "20000"})
+        public int userCount;
+
+        @Param({"100", "10000"})
+        public int domainCount;
+
+        ParallelLogGenerator generator() {
+            return new ParallelLogGenerator(BenchmarkData.SEED, BenchmarkData.START, BenchmarkData.END,
+                    userCount, domainCount);
+        }
+    }
+
+    @Benchmark
+    public List<NetflowLog> generateLogs(LegacyParams params) {
+        // 串行生成使用共享的随机源，每次调用前重置种子，生成相同的数据
+        MockDataGenerator.reseed(BenchmarkData.SEED);
+        return MockDataGenerator.generateLogs(BenchmarkData.START, BenchmarkData.END, params.rowCount);
+    }
+
+    @Benchmark
+    public List<NetflowLog> generateLogsSeeded(SeededParams params) {
+        return params.generator().generateLogs(params.rowCount, ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public long generateStreaming(SeededParams params, Blackhole blackhole) {
+        return params.generator().generate(params.rowCount, ForkJoinPool.commonPool(), blackhole::consume);
+    }
+}
@@ -0,0 +1,33 @@
+package org.example.userprofile.bench;
+
+import org.example.userprofile.entity.UserProfile;
+import org.example.userprofile.service.UserProfileService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量用户画像计算
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ProfileBenchmark {
+
+    private final UserProfileService service = new UserProfileService();
+
+    @Benchmark
+    public Map<String, UserProfile> calculateBatchProfiles(BenchmarkData data) {
+        return service.calculateBatchProfiles(data.store, data.employees, ForkJoinPool.commonPool());
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.userprofile.bench;
+
+import org.example.userprofile.dto.AccessStatistics;
+import org.example.userprofile.service.AccessStatisticsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 访问统计热点：总体统计、部门统计、Top N 域名（行对象与列式存储两种输入）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class StatisticsBenchmark {
+
+    private final AccessStatisticsService service = new AccessStatisticsService();
+
+    @Benchmark
+    public AccessStatistics calculateStatistics(BenchmarkData data) {
+        return service.calculateStatistics(data.logs);
+    }
+
+    @Benchmark
+    public AccessStatistics calculateStatisticsStore(BenchmarkData data) {
+        return service.calculateStatistics(data.store);
+    }
+
+    @Benchmark
+    public Map<String, AccessStatistics> calculateByDepartment(BenchmarkData data) {
+        return service.calculateByDepartment(data.logs);
+    }
+
+    @Benchmark
+    public Map<String, AccessStatistics> calculateByDepartmentStore(BenchmarkData data) {
+        return service.calculateByDepartment(data.store);
+    }
+
+    @Benchmark
+    public List<Map.Entry<String, Long>> getTopNDomains(BenchmarkData data) {
+        return service.getTopNDomains(data.logs, 10);
+    }
+
+    @Benchmark
+    public List<Map.Entry<String, Long>> getTopNDomainsStore(BenchmarkData data) {
+        return service.getTopNDomains(data.store, 10);
+    }
+}
@@ -1,28 +1,45 @@
 package org.example.userprofile;
 
+import org.example.userprofile.aggregate.StatisticsAggregator;
+import org.example.userprofile.enrich.DomainCategoryEnricher;
 import org.example.userprofile.entity.NetflowLog;
 import org.example.userprofile.entity.UserProfile;
 import org.example.userprofile.generator.MockDataGenerator;
+import org.example.userprofile.io.JsonWriter;
+import org.example.userprofile.io.LogExporter;
+import org.example.userprofile.io.NetflowLogReader;
+import org.example.userprofile.io.NetflowLogSource;
+import org.example.userprofile.io.SegmentReader;
+import org.example.userprofile.metrics.PipelineMetrics;
+import org.example.userprofile.metrics.StageMetrics;
+import org.example.userprofile.profile.DailyPartialStore;
+import org.example.userprofile.profile.UserProfileAggregator;
 import org.example.userprofile.service.AccessStatisticsService;
 import org.example.userprofile.service.UserProfileService;
+import org.example.userprofile.sink.ClickHouseSink;
+import org.example.userprofile.sink.ClickHouseTable;
 import org.example.userprofile.dto.AccessStatistics;
+import org.example.userprofile.store.NetflowLogStore;
+import org.example.userprofile.store.ProfileStore;
+import org.example.userprofile.time.EventTimes;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * 用户画像系统主程序
  */
 public class UserProfileApplication {
 
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-
     public static void main(String[] args) {
         System.out.println("=== 企业员工网络访问用户画像系统 ===\n");
+        // 各阶段耗时/吞吐/分配，-Duserprofile.metrics=true 启用
+        PipelineMetrics metrics = PipelineMetrics.fromSystemProperties();
 
         // 1. 生成模拟数据
         System.out.println("1. 正在生成模拟数据...");
@@ -32,9 +49,34 @@ public class UserProfileApplication {
         LocalDateTime startTime = startDate.atStartOfDay(); // 当天0点开始
         LocalDateTime endTime = endDate.atTime(23, 59, 59); // 当天23:59:59结束
 
-        // 生成10000条日志
-        List<NetflowLog> allLogs = MockDataGenerator.generateLogs(startTime, endTime, 10000);
-        System.out.println("   已生成 " + allLogs.size() + " 条访问日志");
+        NetflowLogStore store;
+        PipelineMetrics.Timing timing = metrics.time("ingest");
+        if (args.length > 0) {
+            // 指定了日志文件（NDJSON/CSV，或 .seg 日志段文件）时流式读取到列式存储
+            // 第二个参数为 site_category_dim 导出文件时，按域名富化分类与 is_work_site
+            store = new NetflowLogStore();
+            Path logFile = Paths.get(args[0]);
+            try (NetflowLogSource reader = logFile.getFileName().toString().endsWith(".seg")
+                    ? SegmentReader.open(logFile) : NetflowLogReader.open(logFile);
+                 DomainCategoryEnricher enricher = args.length > 1
+                         ? DomainCategoryEnricher.fromFile(Paths.get(args[1])) : null) {
+                reader.forEach(log -> {
+                    if (enricher != null) {
+                        enricher.enrich(log);
+                    }
+                    store.add(log);
+                });
+            } catch (IOException e) {
+                System.err.println("读取日志失败: " + e.getMessage());
+                return;
+            }
+            System.out.println("   已读取 " + store.size() + " 条访问日志");
+        } else {
+            // 生成10000条日志，转为列式存储后不再持有行对象
+            store = NetflowLogStore.of(MockDataGenerator.generateLogs(startTime, endTime, 10000));
+            System.out.println("   已生成 " + store.size() + " 条访问日志");
+        }
+        timing.rows(store.size()).close();
 
         // 生成员工数据
         Map<String, String> employees = MockDataGenerator.generateEmployees(100);
@@ -43,7 +85,11 @@ public class UserProfileApplication {
         // 2. 基础访问统计
         System.out.println("=== 2. 基础访问统计 ===");
         AccessStatisticsService statsService = new AccessStatisticsService();
-        AccessStatistics stats = statsService.calculateStatistics(allLogs);
+        // 单遍聚合，同时得到总体统计与部门分组统计
+        timing = metrics.time("aggregate");
+        StatisticsAggregator aggregation = statsService.aggregate(store);
+        timing.rows(store.size()).close();
+        AccessStatistics stats = aggregation.total();
 
         System.out.println("总访问次数 (PV): " + stats.getPv());
         System.out.println("独立用户数 (UV): " + stats.getUv());
@@ -62,7 +108,9 @@ public class UserProfileApplication {
 
         // 3. Top N 分析
         System.out.println("\n=== 3. Top 10 用户 ===");
-        List<Map.Entry<String, Long>> topUsers = statsService.getTopNUsers(allLogs, 10);
+        timing = metrics.time("topUsers");
+        List<Map.Entry<String, Long>> topUsers = statsService.getTopNUsers(store, 10);
+        timing.rows(store.size()).close();
         for (int i = 1; i <= topUsers.size(); i++) {
             Map.Entry<String, Long> entry = topUsers.get(i - 1);
             String userName = employees.getOrDefault(entry.getKey(), "未知");
@@ -70,14 +118,18 @@ public class UserProfileApplication {
         }
 
         System.out.println("\n=== 4. Top 10 域名 ===");
-        List<Map.Entry<String, Long>> topDomains = statsService.getTopNDomains(allLogs, 10);
+        timing = metrics.time("topDomains");
+        List<Map.Entry<String, Long>> topDomains = statsService.getTopNDomains(store, 10);
+        timing.rows(store.size()).close();
         for (int i = 1; i <= topDomains.size(); i++) {
             System.out.printf("%d. %s: %d 次访问\n", i, topDomains.get(i - 1).getKey(), topDomains.get(i - 1).getValue());
         }
 
         // 5. 时间趋势分析
         System.out.println("\n=== 5. 24小时访问趋势 ===");
-        Map<Integer, Long> hourlyTrend = statsService.calculateHourlyTrend(allLogs);
+        timing = metrics.time("hourlyTrend");
+        Map<Integer, Long> hourlyTrend = statsService.calculateHourlyTrend(store);
+        timing.rows(store.size()).close();
         for (Map.Entry<Integer, Long> entry : hourlyTrend.entrySet()) {
             int hour = entry.getKey();
             long count = entry.getValue();
@@ -87,7 +139,7 @@ public class UserProfileApplication {
 
         // 6. 部门级统计
         System.out.println("\n=== 6. 部门级统计 ===");
-        Map<String, AccessStatistics> deptStats = statsService.calculateByDepartment(allLogs);
+        Map<String, AccessStatistics> deptStats = aggregation.byDepartment();
         deptStats.forEach((dept, deptStat) -> {
             System.out.println("\n" + dept + ":");
             System.out.printf("  访问次数: %d\n", deptStat.getPv());
@@ -99,12 +151,37 @@ public class UserProfileApplication {
         System.out.println("\n=== 7. 用户画像分析 ===");
         UserProfileService profileService = new UserProfileService();
 
-        // 按用户分组日志
-        Map<String, List<NetflowLog>> userLogs = allLogs.stream()
-                .collect(Collectors.groupingBy(NetflowLog::getUserId));
-
-        // 计算用户画像
-        Map<String, UserProfile> profiles = profileService.calculateBatchProfiles(userLogs, employees);
+        // 设置了 -Duserprofile.partials 时按天保存部分聚合，只聚合尚未完成的日期（缺少或当天结束前写入），
+        // 7天窗口画像由合并日分片得到；否则按用户编码分组行号，按日志量切分后并行计算
+        String partialsDir = System.getProperty("userprofile.partials");
+        Map<String, UserProfile> profiles = null;
+        if (partialsDir != null) {
+            timing = metrics.time("partials");
+            long aggregated = 0;
+            try {
+                DailyPartialStore partials = new DailyPartialStore(Paths.get(partialsDir));
+                List<java.time.LocalDate> pending = partials.pendingDays(startDate, endDate);
+                for (java.time.LocalDate day : pending) {
+                    // 按时间索引只取该天的行
+                    UserProfileAggregator partial = new UserProfileAggregator();
+                    store.timeIndex().forEachRow(EventTimes.toEpochSecond(day.atStartOfDay()),
+                            EventTimes.toEpochSecond(day.plusDays(1).atStartOfDay()) - 1,
+                            row -> partial.add(store.get(row)));
+                    partials.writeDay(day, partial);
+                    aggregated += partial.getLogCount();
+                }
+                profiles = profileService.calculateWindowProfiles(partials, startDate, endDate, employees);
+                System.out.println("已写入 " + pending.size() + " 天部分聚合（" + aggregated + " 条日志），由 7 天日分片合并画像");
+            } catch (IOException e) {
+                System.err.println("部分聚合读写失败，改为全量计算: " + e.getMessage());
+            }
+            timing.rows(aggregated).close();
+        }
+        if (profiles == null) {
+            timing = metrics.time("profiles");
+            profiles = profileService.calculateBatchProfiles(store, employees, ForkJoinPool.commonPool());
+            timing.rows(store.size()).close();
+        }
 
         System.out.println("已为 " + profiles.size() + " 名用户生成画像");
 
@@ -127,12 +204,88 @@ public class UserProfileApplication {
 
         // 8. 导出数据
         System.out.println("\n=== 8. 导出数据 ===");
-        exportDataToFile(allLogs, profiles, "mock_data.json");
-        System.out.println("数据已导出到 mock_data.json");
+        // 单遍按天蓄水池采样，流式写出
+        timing = metrics.time("export");
+        try {
+            int sampled = LogExporter.exportSample(Paths.get("mock_data.json"), store.asList(), profiles, 100);
+            System.out.println("导出完成，共 " + sampled + " 条采样日志（来自 " + store.size() + " 条），"
+                    + profiles.size() + " 个用户画像");
+            System.out.println("数据已导出到 mock_data.json");
+        } catch (IOException e) {
+            System.err.println("导出失败: " + e.getMessage());
+        }
+        timing.rows(store.size()).close();
+
+        // 设置了 -Duserprofile.profile.store 时画像写入本地画像存储（按 lastUpdateTime 取新）
+        String profileStoreDir = System.getProperty("userprofile.profile.store");
+        if (profileStoreDir != null) {
+            timing = metrics.time("profileStore");
+            try (ProfileStore profileStore = ProfileStore.open(Paths.get(profileStoreDir))) {
+                profileStore.upsertAll(profiles.values());
+                profileStore.sync();
+                System.out.println("画像已写入本地存储 " + profileStoreDir);
+            } catch (IOException e) {
+                System.err.println("写入画像存储失败: " + e.getMessage());
+            }
+            timing.rows(profiles.size()).close();
+        }
+
+        // 设置了 -Duserprofile.clickhouse.url 时批量写入 ClickHouse 明细表与画像宽表
+        String clickhouseUrl = System.getProperty("userprofile.clickhouse.url");
+        if (clickhouseUrl != null) {
+            timing = metrics.time("clickhouse");
+            writeToClickHouse(URI.create(clickhouseUrl), store, profiles);
+            timing.rows(store.size() + profiles.size()).close();
+        }
+
+        if (metrics.isEnabled()) {
+            printMetrics(metrics);
+        }
 
         System.out.println("\n=== 分析完成 ===");
     }
 
+    /**
+     * 日志与画像分别写入 ods_netflow_log、user_profile_wide
+     */
+    private static void writeToClickHouse(URI endpoint, NetflowLogStore store, Map<String, UserProfile> profiles) {
+        try (ClickHouseSink<NetflowLog> logSink = new ClickHouseSink<>(endpoint, ClickHouseTable.ODS_NETFLOW_LOG);
+             ClickHouseSink<UserProfile> profileSink = new ClickHouseSink<>(endpoint, ClickHouseTable.USER_PROFILE_WIDE)) {
+            logSink.addAll(store.asList());
+            profileSink.addAll(profiles.values());
+        } catch (IOException e) {
+            System.err.println("写入 ClickHouse 失败: " + e.getMessage());
+            for (Throwable suppressed : e.getSuppressed()) {
+                System.err.println("写入 ClickHouse 失败: " + suppressed.getMessage());
+            }
+            return;
+        }
+        System.out.println("已写入 ClickHouse: " + store.size() + " 条日志, " + profiles.size() + " 个用户画像");
+    }
+
+    /**
+     * 输出各阶段指标；设置了 -Duserprofile.metrics.file 时另将 JSON 汇总写入该文件
+     */
+    private static void printMetrics(PipelineMetrics metrics) {
+        System.out.println("\n=== 运行指标 ===");
+        System.out.printf("%-12s %10s %14s %14s\n", "阶段", "耗时(ms)", "行/秒", "全部线程分配(MB)");
+        for (StageMetrics stage : metrics.getStages()) {
+            System.out.printf("%-12s %10.1f %14.0f %14.2f\n", stage.getName(), stage.getTotalMillis(),
+                    stage.getRowsPerSecond(), stage.getAllocatedBytes() / 1024.0 / 1024.0);
+        }
+        String file = System.getProperty("userprofile.metrics.file");
+        if (file == null) {
+            System.out.println("METRICS " + metrics.summaryJson());
+            return;
+        }
+        try (JsonWriter out = JsonWriter.open(Paths.get(file))) {
+            metrics.writeSummary(out);
+            System.out.println("指标汇总已写入 " + file);
+        } catch (IOException e) {
+            System.err.println("写入指标失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 获取风险等级文本
      */
@@ -145,82 +298,4 @@ public class UserProfileApplication {
             default: return "未知";
         }
     }
-
-    /**
-     * 导出数据到文件（均匀采样不同日期的日志）
-     */
-    private static void exportDataToFile(List<NetflowLog> logs, Map<String, UserProfile> profiles, String filename) {
-        try (FileWriter writer = new FileWriter(filename)) {
-            writer.write("{\n");
-            writer.write("  \"logs\": [\n");
-
-            // 按日期分组
-            Map<java.time.LocalDate, List<NetflowLog>> logsByDate = new HashMap<>();
-            for (NetflowLog log : logs) {
-                java.time.LocalDate date = log.getEventTime().toLocalDate();
-                logsByDate.computeIfAbsent(date, k -> new ArrayList<>()).add(log);
-            }
-
-            // 从每个日期均匀采样，总共最多100条
-            List<NetflowLog> sampledLogs = new ArrayList<>();
-            int samplesPerDate = Math.max(1, 100 / logsByDate.size());
-            for (List<NetflowLog> dateLogs : logsByDate.values()) {
-                // 每个日期随机采样
-                Collections.shuffle(dateLogs);
-                int sampleCount = Math.min(samplesPerDate, dateLogs.size());
-                sampledLogs.addAll(dateLogs.subList(0, sampleCount));
-            }
-
-            // 按时间排序
-            sampledLogs.sort(Comparator.comparing(NetflowLog::getEventTime));
-
-            // 限制最多100条
-            sampledLogs = sampledLogs.subList(0, Math.min(100, sampledLogs.size()));
-
-            for (int i = 0; i < sampledLogs.size(); i++) {
-                NetflowLog log = sampledLogs.get(i);
-                writer.write("    {\n");
-                writer.write("      \"timestamp\": \"" + log.getEventTime().format(FORMATTER) + "\",\n");
-                writer.write("      \"user_id\": \"" + log.getUserId() + "\",\n");
-                writer.write("      \"department\": \"" + log.getDepartment() + "\",\n");
-                writer.write("      \"domain\": \"" + log.getDomain() + "\",\n");
-                writer.write("      \"category\": \"" + log.getSiteCategory() + "\",\n");
-                writer.write("      \"bytes\": " + log.getBytes() + "\n");
-                writer.write("    }");
-                if (i < sampledLogs.size() - 1) {
-                    writer.write(",");
-                }
-                writer.write("\n");
-            }
-
-            writer.write("  ],\n");
-            writer.write("  \"profiles\": {\n");
-
-            int profileCount = 0;
-            for (Map.Entry<String, UserProfile> entry : profiles.entrySet()) {
-                UserProfile profile = entry.getValue();
-                writer.write("    \"" + profile.getUserId() + "\": {\n");
-                writer.write("      \"user_name\": \"" + profile.getUserName() + "\",\n");
-                writer.write("      \"department\": \"" + profile.getDepartment() + "\",\n");
-                writer.write("      \"active_days\": " + profile.getActiveDays() + ",\n");
-                writer.write("      \"avg_daily_pv\": " + profile.getAvgDailyPv() + ",\n");
-                writer.write("      \"peak_time_slot\": \"" + profile.getPeakTimeSlot() + "\",\n");
-                writer.write("      \"top_site_category\": \"" + profile.getTopSiteCategory() + "\",\n");
-                writer.write("      \"non_work_ratio\": " + profile.getNonWorkRatio() + ",\n");
-                writer.write("      \"risk_level\": " + profile.getRiskLevel() + "\n");
-                writer.write("    }");
-                if (profileCount++ < profiles.size() - 1) {
-                    writer.write(",");
-                }
-                writer.write("\n");
-            }
-
-            writer.write("  }\n");
-            writer.write("}\n");
-
-            System.out.println("导出完成，共 " + logs.size() + " 条日志，" + profiles.size() + " 个用户画像");
-        } catch (IOException e) {
-            System.err.println("导出失败: " + e.getMessage());
-        }
-    }
 }
@@ -0,0 +1,238 @@
+package org.example.userprofile.aggregate;
+
+import org.example.userprofile.aggregate.StatisticsAggregator.Breakdown;
+import org.example.userprofile.dto.AccessStatistics;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.sketch.Hashing;
+import org.example.userprofile.sketch.HyperLogLog;
+import org.example.userprofile.store.StringDictionary;
+import org.example.userprofile.store.SymbolTables;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 部门 × 小时桶 × 网站分类 预聚合立方体（对应 ClickHouse dept_time_agg / site_category_stats）
+ * 日志到达时增量更新：
+ * 细粒度单元格保存 PV、流量和 UV 草图，用于任意部门/分类/时间范围的切片查询；
+ * 按部门、分类、日期、小时的汇总随单元格同步维护，查询耗时只与分组数有关，与原始日志量无关。
+ * 所有方法已同步，可一边写入一边查询
+ */
+public class RollupCube {
+
+    /** 单元格UV草图默认精度（1KB，标准误差约3.3%） */
+    public static final int DEFAULT_CELL_PRECISION = 10;
+
+    private static final int NO_FILTER = Integer.MIN_VALUE;
+
+    private final StringDictionary departmentDict = SymbolTables.DEPARTMENTS;
+    private final StringDictionary categoryDict = SymbolTables.CATEGORIES;
+    private final int cellPrecision;
+
+    // 键为 (小时桶 << 32) | (部门编码+1) << 16 | (分类编码+1)，小时桶为本地日期 × 24 + 小时
+    private final Map<Long, Cell> cells = new HashMap<>();
+    private final StatisticsAggregator rollup;
+    private final long[] hourCounts = new long[24];
+
+    /**
+     * 汇总维度精确UV，单元格使用默认精度草图
+     */
+    public RollupCube() {
+        this(0, DEFAULT_CELL_PRECISION);
+    }
+
+    /**
+     * @param uvPrecision   部门/分类/日期汇总的 HyperLogLog 精度，0 表示精确UV
+     * @param cellPrecision 单元格UV草图精度
+     */
+    public RollupCube(int uvPrecision, int cellPrecision) {
+        if (cellPrecision < HyperLogLog.MIN_PRECISION || cellPrecision > HyperLogLog.MAX_PRECISION) {
+            throw new IllegalArgumentException("cellPrecision 须在 " + HyperLogLog.MIN_PRECISION + "-"
+                    + HyperLogLog.MAX_PRECISION + " 之间: " + cellPrecision);
+        }
+        this.cellPrecision = cellPrecision;
+        this.rollup = new StatisticsAggregator(EnumSet.allOf(Breakdown.class), uvPrecision);
+    }
+
+    /**
+     * 累加一条日志
+     */
+    public synchronized void add(NetflowLog log) {
+        long hourBucket = log.getEventEpochDay() * 24 + log.getEventHour();
+        int department = log.getDepartmentId();
+        int category = log.getSiteCategoryId();
+        long bytes = log.getBytes() != null ? log.getBytes() : 0;
+
+        Cell cell = cells.computeIfAbsent(cellKey(hourBucket, department, category),
+                k -> new Cell(new HyperLogLog(cellPrecision)));
+        cell.pv++;
+        cell.bytes += bytes;
+        cell.sketch.addHash(Hashing.hash64(log.getUserId()));
+
+        rollup.add(log);
+        hourCounts[log.getEventHour()]++;
+    }
+
+    /**
+     * 批量累加
+     */
+    public synchronized void addAll(Iterable<NetflowLog> logs) {
+        for (NetflowLog log : logs) {
+            add(log);
+        }
+    }
+
+    /**
+     * 总体统计
+     */
+    public synchronized AccessStatistics total() {
+        return rollup.total();
+    }
+
+    /**
+     * 按部门统计
+     */
+    public synchronized Map<String, AccessStatistics> byDepartment() {
+        return rollup.byDepartment();
+    }
+
+    /**
+     * 按网站分类统计
+     */
+    public synchronized Map<String, AccessStatistics> byCategory() {
+        return rollup.byCategory();
+    }
+
+    /**
+     * 按天统计
+     */
+    public synchronized Map<LocalDate, AccessStatistics> byDay() {
+        return rollup.byDay();
+    }
+
+    /**
+     * 24小时访问趋势
+     */
+    public synchronized Map<Integer, Long> byHour() {
+        Map<Integer, Long> hourlyStats = new TreeMap<>();
+        for (int hour = 0; hour < 24; hour++) {
+            if (hourCounts[hour] > 0) {
+                hourlyStats.put(hour, hourCounts[hour]);
+            }
+        }
+        return hourlyStats;
+    }
+
+    /**
+     * 切片查询：合并满足条件的单元格，UV为草图估计
+     *
+     * @param department 部门，null 表示全部
+     * @param category   网站分类，null 表示全部
+     * @param from       起始时间（含，按小时桶对齐），null 表示不限
+     * @param to         结束时间（不含，按小时桶对齐），null 表示不限
+     */
+    public synchronized AccessStatistics query(String department, String category,
+                                               LocalDateTime from, LocalDateTime to) {
+        Cell merged = new Cell(new HyperLogLog(cellPrecision));
+        forEachCell(department, category, from, to, (hourBucket, cell) -> merged.merge(cell));
+        return merged.toStatistics();
+    }
+
+    /**
+     * 按小时桶的时间序列（dept_time_agg 的行），按时间升序
+     *
+     * @param department 部门，null 表示全部
+     * @param category   网站分类，null 表示全部
+     */
+    public synchronized Map<LocalDateTime, AccessStatistics> hourlySeries(String department, String category,
+                                                                          LocalDateTime from, LocalDateTime to) {
+        Map<Long, Cell> buckets = new TreeMap<>();
+        forEachCell(department, category, from, to, (hourBucket, cell) ->
+                buckets.computeIfAbsent(hourBucket, k -> new Cell(new HyperLogLog(cellPrecision))).merge(cell));
+
+        Map<LocalDateTime, AccessStatistics> result = new LinkedHashMap<>();
+        for (Map.Entry<Long, Cell> entry : buckets.entrySet()) {
+            long hourBucket = entry.getKey();
+            LocalDateTime bucketStart = LocalDate.ofEpochDay(Math.floorDiv(hourBucket, 24L))
+                    .atTime((int) Math.floorMod(hourBucket, 24L), 0);
+            result.put(bucketStart, entry.getValue().toStatistics());
+        }
+        return result;
+    }
+
+    /**
+     * 单元格个数
+     */
+    public synchronized int getCellCount() {
+        return cells.size();
+    }
+
+    private void forEachCell(String department, String category, LocalDateTime from, LocalDateTime to,
+                             CellVisitor visitor) {
+        int departmentFilter = department != null ? departmentDict.lookup(department) : NO_FILTER;
+        int categoryFilter = category != null ? categoryDict.lookup(category) : NO_FILTER;
+        if ((department != null && departmentFilter < 0) || (category != null && categoryFilter < 0)) {
+            return;
+        }
+        long fromBucket = from != null ? hourBucket(from) : Long.MIN_VALUE;
+        long toBucket = to != null ? hourBucket(to) : Long.MAX_VALUE;
+
+        for (Map.Entry<Long, Cell> entry : cells.entrySet()) {
+            long key = entry.getKey();
+            long hourBucket = key >> 32;
+            int cellDepartment = (int) ((key >>> 16) & 0xFFFF) - 1;
+            int cellCategory = (int) (key & 0xFFFF) - 1;
+            if (hourBucket < fromBucket || hourBucket >= toBucket
+                    || (departmentFilter != NO_FILTER && cellDepartment != departmentFilter)
+                    || (categoryFilter != NO_FILTER && cellCategory != categoryFilter)) {
+                continue;
+            }
+            visitor.visit(hourBucket, entry.getValue());
+        }
+    }
+
+    /**
+     * 本地时间所在的小时桶（本地日期 × 24 + 小时）
+     */
+    private static long hourBucket(LocalDateTime time) {
+        return time.toLocalDate().toEpochDay() * 24 + time.getHour();
+    }
+
+    private static long cellKey(long hourBucket, int department, int category) {
+        if (department >= 0xFFFF || category >= 0xFFFF) {
+            throw new IllegalStateException("部门或分类取值超过立方体上限 65534");
+        }
+        return (hourBucket << 32) | ((long) (department + 1) << 16) | (category + 1);
+    }
+
+    private interface CellVisitor {
+        void visit(long hourBucket, Cell cell);
+    }
+
+    /**
+     * 单元格：PV、流量、UV草图
+     */
+    private static final class Cell {
+        long pv;
+        long bytes;
+        final HyperLogLog sketch;
+
+        Cell(HyperLogLog sketch) {
+            this.sketch = sketch;
+        }
+
+        void merge(Cell other) {
+            pv += other.pv;
+            bytes += other.bytes;
+            sketch.merge(other.sketch);
+        }
+
+        AccessStatistics toStatistics() {
+            long uv = pv > 0 ? sketch.estimate() : 0;
+            AccessStatistics stats = new AccessStatistics(pv, uv, bytes, uv);
+            stats.setUvSketch(sketch);
+            return stats;
+        }
+    }
+}
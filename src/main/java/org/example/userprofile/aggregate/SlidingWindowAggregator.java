@@ -0,0 +1,440 @@
+package org.example.userprofile.aggregate;
+
+import org.example.userprofile.dto.AccessStatistics;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.sketch.Hashing;
+import org.example.userprofile.sketch.HyperLogLog;
+import org.example.userprofile.store.StringDictionary;
+import org.example.userprofile.store.SymbolTables;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 滑动窗口实时统计：最近 1/5/60 分钟（或任意不超过最大窗口的时长）按部门、网站分类的 PV、UV、流量
+ * 按事件时间切成固定秒数的时间桶，放在环形数组中循环复用，内存只与最大窗口长度和分组数有关：
+ * 每个桶保存各分组的 PV/流量原子计数和按需创建的 UV 草图，窗口查询合并最近若干个桶。
+ * 部门、分类的全局编码在本实例内映射为连续的分组槽位，超出分组上限的取值合并计入 {@link #OTHER_GROUP}；
+ * 事件时间超前墙钟过多的日志丢弃，不推进水位，避免一条错误时间戳使后续正常日志都被当作迟到丢弃。
+ * 写入共享持有所在桶的读锁，轮换持有写锁，写入不会计入复用同一槽位的新桶（已滑出窗口的迟到日志丢弃）；
+ * 更新草图时按分组短暂加锁。查询不加锁，按桶的时间戳前后两次校验跳过正在轮换的桶，不阻塞写入
+ */
+public class SlidingWindowAggregator {
+
+    /** 默认查询窗口：1、5、60 分钟 */
+    public static final List<Duration> DEFAULT_WINDOWS = List.of(
+            Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofMinutes(60));
+
+    /** 默认时间桶长度（秒） */
+    public static final int DEFAULT_BUCKET_SECONDS = 5;
+
+    /** 默认部门/分类分组上限 */
+    public static final int DEFAULT_MAX_GROUPS = 64;
+
+    /** 默认允许事件时间超前墙钟的时长 */
+    public static final Duration DEFAULT_MAX_FUTURE = Duration.ofMinutes(5);
+
+    /** 超出分组上限的部门/分类合并后的名称 */
+    public static final String OTHER_GROUP = "<其他>";
+
+    // 桶轮换期间的时间戳，查询遇到即跳过
+    private static final long ROTATING = Long.MIN_VALUE;
+    private static final long EMPTY = Long.MIN_VALUE + 1;
+
+    private final GroupSlots departmentSlots;
+    private final GroupSlots categorySlots;
+    private final int bucketSeconds;
+    private final int windowBuckets;
+    private final int uvPrecision;
+    // 部门、分类各自的槽位数（含 OTHER_GROUP）
+    private final int slots;
+    private final long maxFutureSeconds;
+    private final Clock clock;
+    private final Bucket[] ring;
+    // 已见到的最新时间桶（事件时间水位）
+    private final AtomicLong latestBucket = new AtomicLong(EMPTY);
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder futureCount = new LongAdder();
+
+    /**
+     * 最大窗口 60 分钟，5 秒一个时间桶，默认精度UV草图
+     */
+    public SlidingWindowAggregator() {
+        this(Duration.ofMinutes(60), DEFAULT_BUCKET_SECONDS, RollupCube.DEFAULT_CELL_PRECISION, DEFAULT_MAX_GROUPS);
+    }
+
+    /**
+     * @param maxWindow     可查询的最大窗口
+     * @param bucketSeconds 时间桶长度（秒），即窗口边界的时间粒度
+     * @param uvPrecision   UV草图精度
+     * @param maxGroups     部门、分类分组上限（各自），超出的取值合并计入 OTHER_GROUP
+     */
+    public SlidingWindowAggregator(Duration maxWindow, int bucketSeconds, int uvPrecision, int maxGroups) {
+        this(maxWindow, bucketSeconds, uvPrecision, maxGroups, DEFAULT_MAX_FUTURE, Clock.systemUTC());
+    }
+
+    /**
+     * @param maxFuture 允许事件时间超前墙钟的时长，更超前的日志丢弃
+     * @param clock     墙钟
+     */
+    public SlidingWindowAggregator(Duration maxWindow, int bucketSeconds, int uvPrecision, int maxGroups,
+                                   Duration maxFuture, Clock clock) {
+        if (bucketSeconds <= 0 || maxWindow.getSeconds() < bucketSeconds) {
+            throw new IllegalArgumentException("时间桶长度须为正且不超过最大窗口: " + bucketSeconds + "s / " + maxWindow);
+        }
+        if (uvPrecision < HyperLogLog.MIN_PRECISION || uvPrecision > HyperLogLog.MAX_PRECISION) {
+            throw new IllegalArgumentException("uvPrecision 须在 " + HyperLogLog.MIN_PRECISION + "-"
+                    + HyperLogLog.MAX_PRECISION + " 之间: " + uvPrecision);
+        }
+        if (maxGroups <= 0) {
+            throw new IllegalArgumentException("maxGroups 须为正: " + maxGroups);
+        }
+        if (maxFuture.isNegative()) {
+            throw new IllegalArgumentException("maxFuture 不能为负: " + maxFuture);
+        }
+        this.bucketSeconds = bucketSeconds;
+        this.windowBuckets = (int) ((maxWindow.getSeconds() + bucketSeconds - 1) / bucketSeconds);
+        this.uvPrecision = uvPrecision;
+        this.slots = maxGroups + 1;
+        this.departmentSlots = new GroupSlots(maxGroups);
+        this.categorySlots = new GroupSlots(maxGroups);
+        this.maxFutureSeconds = maxFuture.getSeconds();
+        this.clock = clock;
+        // 多留一个桶，最大窗口最早的桶不会被当前桶复用
+        this.ring = new Bucket[windowBuckets + 1];
+        int groups = 1 + 2 * slots;
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Bucket(groups);
+        }
+    }
+
+    /**
+     * 累加一条日志；早于最大窗口的迟到日志、超前墙钟过多的日志丢弃并计数
+     */
+    public void add(NetflowLog log) {
+        long eventSecond = log.getEventEpochSecond();
+        long bucketId = Math.floorDiv(eventSecond, bucketSeconds);
+        long latest = latestBucket.get();
+        // 只有推进水位的日志需要对照墙钟
+        if (bucketId > latest) {
+            if (eventSecond - clock.instant().getEpochSecond() > maxFutureSeconds) {
+                futureCount.increment();
+                return;
+            }
+            latest = latestBucket.accumulateAndGet(bucketId, Math::max);
+        }
+        if (bucketId <= latest - windowBuckets) {
+            droppedCount.increment();
+            return;
+        }
+        int department = departmentSlots.slot(SymbolTables.DEPARTMENTS, log.getDepartmentId());
+        int category = categorySlots.slot(SymbolTables.CATEGORIES, log.getSiteCategoryId());
+        Bucket bucket = ring[(int) Math.floorMod(bucketId, (long) ring.length)];
+        long stamp = bucket.acquire(bucketId);
+        if (stamp == 0) {
+            // 槽位已被更新的桶占用，本条日志已滑出窗口
+            droppedCount.increment();
+            return;
+        }
+        try {
+            long bytes = log.getBytes() != null ? log.getBytes() : 0;
+            long userHash = Hashing.hash64(log.getUserId());
+            bucket.add(0, bytes, userHash, uvPrecision);
+            if (department >= 0) {
+                bucket.add(1 + department, bytes, userHash, uvPrecision);
+            }
+            if (category >= 0) {
+                bucket.add(1 + slots + category, bytes, userHash, uvPrecision);
+            }
+        } finally {
+            bucket.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 批量累加
+     */
+    public void addAll(Iterable<NetflowLog> logs) {
+        for (NetflowLog log : logs) {
+            add(log);
+        }
+    }
+
+    /**
+     * 没有新日志时按墙钟推进水位，使窗口随时间滑动
+     */
+    public void advanceTo(long epochSecond) {
+        latestBucket.accumulateAndGet(Math.floorDiv(epochSecond, bucketSeconds), Math::max);
+    }
+
+    /**
+     * 最近 window 时长内（以最新时间桶为终点，按桶对齐）的统计快照
+     */
+    public WindowSnapshot snapshot(Duration window) {
+        long buckets = (window.getSeconds() + bucketSeconds - 1) / bucketSeconds;
+        if (buckets <= 0 || buckets > windowBuckets) {
+            throw new IllegalArgumentException("窗口须在 (0, " + (long) windowBuckets * bucketSeconds + "s] 之间: " + window);
+        }
+        int groups = 1 + 2 * slots;
+        long[] pv = new long[groups];
+        long[] bytes = new long[groups];
+        HyperLogLog[] sketches = new HyperLogLog[groups];
+
+        long latest = latestBucket.get();
+        if (latest != EMPTY) {
+            long from = latest - buckets + 1;
+            long[] bucketPv = new long[groups];
+            long[] bucketBytes = new long[groups];
+            HyperLogLog[] bucketSketches = new HyperLogLog[groups];
+            for (Bucket bucket : ring) {
+                long id = bucket.id;
+                if (id < from || id > latest) {
+                    continue;
+                }
+                bucket.read(bucketPv, bucketBytes, bucketSketches);
+                // 读取期间桶被轮换则丢弃本桶的读数（被复用的桶已滑出窗口）
+                if (bucket.id != id) {
+                    continue;
+                }
+                for (int group = 0; group < groups; group++) {
+                    pv[group] += bucketPv[group];
+                    bytes[group] += bucketBytes[group];
+                    if (bucketSketches[group] != null) {
+                        if (sketches[group] == null) {
+                            sketches[group] = new HyperLogLog(uvPrecision);
+                        }
+                        // 草图在轮换时整体替换而非清零，持有的引用始终属于本桶
+                        sketches[group].merge(bucketSketches[group]);
+                    }
+                }
+            }
+        }
+
+        Map<String, AccessStatistics> byDepartment = new LinkedHashMap<>();
+        Map<String, AccessStatistics> byCategory = new LinkedHashMap<>();
+        for (int slot = 0; slot < slots; slot++) {
+            int group = 1 + slot;
+            if (pv[group] > 0) {
+                byDepartment.put(departmentSlots.name(slot), toStatistics(pv[group], bytes[group], sketches[group]));
+            }
+            group = 1 + slots + slot;
+            if (pv[group] > 0) {
+                byCategory.put(categorySlots.name(slot), toStatistics(pv[group], bytes[group], sketches[group]));
+            }
+        }
+        return new WindowSnapshot(window, toStatistics(pv[0], bytes[0], sketches[0]),
+                Collections.unmodifiableMap(byDepartment), Collections.unmodifiableMap(byCategory));
+    }
+
+    /**
+     * 默认窗口（1/5/60 分钟）的快照，须不超过最大窗口
+     */
+    public Map<Duration, WindowSnapshot> snapshots() {
+        Map<Duration, WindowSnapshot> result = new LinkedHashMap<>();
+        for (Duration window : DEFAULT_WINDOWS) {
+            result.put(window, snapshot(window));
+        }
+        return result;
+    }
+
+    /**
+     * 早于最大窗口而被丢弃的迟到日志数
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * 事件时间超前墙钟过多而被丢弃的日志数
+     */
+    public long getFutureCount() {
+        return futureCount.sum();
+    }
+
+    /**
+     * 时间桶长度（秒）
+     */
+    public int getBucketSeconds() {
+        return bucketSeconds;
+    }
+
+    private AccessStatistics toStatistics(long pv, long bytes, HyperLogLog sketch) {
+        if (sketch == null) {
+            sketch = new HyperLogLog(uvPrecision);
+        }
+        long uv = pv > 0 ? sketch.estimate() : 0;
+        AccessStatistics stats = new AccessStatistics(pv, uv, bytes, uv);
+        stats.setUvSketch(sketch);
+        return stats;
+    }
+
+    /**
+     * 窗口快照：总体与按部门、分类的统计
+     */
+    public static final class WindowSnapshot {
+        private final Duration window;
+        private final AccessStatistics total;
+        private final Map<String, AccessStatistics> byDepartment;
+        private final Map<String, AccessStatistics> byCategory;
+
+        WindowSnapshot(Duration window, AccessStatistics total,
+                       Map<String, AccessStatistics> byDepartment, Map<String, AccessStatistics> byCategory) {
+            this.window = window;
+            this.total = total;
+            this.byDepartment = byDepartment;
+            this.byCategory = byCategory;
+        }
+
+        public Duration getWindow() { return window; }
+
+        public AccessStatistics total() { return total; }
+
+        public Map<String, AccessStatistics> byDepartment() { return byDepartment; }
+
+        public Map<String, AccessStatistics> byCategory() { return byCategory; }
+    }
+
+    /**
+     * 全局编码到本实例分组槽位的映射：槽位按首次出现顺序分配，满 limit 个后其余取值共用最后一个槽位
+     * 映射数组写时复制，写入路径上已映射的编码不加锁
+     */
+    private static final class GroupSlots {
+        private final int limit;
+        // 全局编码 → 槽位+1，0 表示尚未映射
+        private volatile int[] mapping = new int[16];
+        private final String[] names;
+        private int assigned;
+
+        GroupSlots(int limit) {
+            this.limit = limit;
+            this.names = new String[limit + 1];
+            this.names[limit] = OTHER_GROUP;
+        }
+
+        /**
+         * @return 槽位，编码为空（或溢出）时返回 -1
+         */
+        int slot(StringDictionary global, int globalCode) {
+            if (globalCode < 0) {
+                return -1;
+            }
+            int[] current = mapping;
+            if (globalCode < current.length && current[globalCode] != 0) {
+                return current[globalCode] - 1;
+            }
+            synchronized (this) {
+                current = mapping;
+                if (globalCode < current.length && current[globalCode] != 0) {
+                    return current[globalCode] - 1;
+                }
+                int slot = limit;
+                if (assigned < limit) {
+                    slot = assigned++;
+                    names[slot] = global.decode(globalCode);
+                }
+                int[] next = Arrays.copyOf(current, Math.max(current.length, globalCode + 1));
+                next[globalCode] = slot + 1;
+                mapping = next;
+                return slot;
+            }
+        }
+
+        synchronized String name(int slot) {
+            return names[slot];
+        }
+    }
+
+    /**
+     * 时间桶：分组0为总体，其后 slots 个为部门槽位，再后为分类槽位
+     */
+    private static final class Bucket {
+        volatile long id = EMPTY;
+        // 写入共享持有读锁，轮换持有写锁
+        final StampedLock lock = new StampedLock();
+        final AtomicLongArray pv;
+        final AtomicLongArray bytes;
+        final AtomicReferenceArray<HyperLogLog> sketches;
+
+        Bucket(int groups) {
+            pv = new AtomicLongArray(groups);
+            bytes = new AtomicLongArray(groups);
+            sketches = new AtomicReferenceArray<>(groups);
+        }
+
+        /**
+         * 获取写入 bucketId 的读锁，槽位是更早的桶时先轮换
+         *
+         * @return 读锁的 stamp，槽位已是更新的桶时返回 0
+         */
+        long acquire(long bucketId) {
+            while (true) {
+                long stamp = lock.readLock();
+                if (id == bucketId) {
+                    return stamp;
+                }
+                lock.unlockRead(stamp);
+                if (!rotate(bucketId)) {
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * 复用为新的时间桶；槽位已是更新的桶时返回 false
+         */
+        private boolean rotate(long newId) {
+            long stamp = lock.writeLock();
+            try {
+                long current = id;
+                if (current == newId) {
+                    return true;
+                }
+                if (current != EMPTY && current > newId) {
+                    return false;
+                }
+                // 先置轮换标记再清零，查询据此识别读到的残缺数据
+                id = ROTATING;
+                for (int group = 0; group < pv.length(); group++) {
+                    pv.set(group, 0);
+                    bytes.set(group, 0);
+                    sketches.set(group, null);
+                }
+                id = newId;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void add(int group, long bytes, long userHash, int uvPrecision) {
+            pv.incrementAndGet(group);
+            this.bytes.addAndGet(group, bytes);
+            HyperLogLog sketch;
+            while ((sketch = sketches.get(group)) == null) {
+                sketches.compareAndSet(group, null, new HyperLogLog(uvPrecision));
+            }
+            // 只与写同一分组的线程互斥；查询读取寄存器不加锁（寄存器只增不减）
+            synchronized (sketch) {
+                sketch.addHash(userHash);
+            }
+        }
+
+        void read(long[] pvOut, long[] bytesOut, HyperLogLog[] sketchesOut) {
+            for (int group = 0; group < pvOut.length; group++) {
+                pvOut[group] = pv.get(group);
+                bytesOut[group] = bytes.get(group);
+                sketchesOut[group] = sketches.get(group);
+            }
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package org.example.userprofile.aggregate;
+
+import org.example.userprofile.dto.AccessStatistics;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.sketch.Hashing;
+import org.example.userprofile.sketch.HyperLogLog;
+import org.example.userprofile.store.NetflowLogStore;
+import org.example.userprofile.store.StringDictionary;
+import org.example.userprofile.store.SymbolTables;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * 单遍融合聚合引擎
+ * 一次扫描同时计算总体统计以及按部门/分类/日期的分组统计，
+ * 每个分组使用可变的基本类型累加器，不经过 groupingBy/counting 装箱。
+ * UV默认按用户位图精确计算；指定 uvPrecision 时改用 HyperLogLog 草图近似计算
+ */
+public class StatisticsAggregator {
+
+    /**
+     * 分组维度
+     */
+    public enum Breakdown {
+        DEPARTMENT, CATEGORY, DAY
+    }
+
+    private final StringDictionary userIdDict;
+    private final StringDictionary departmentDict;
+    private final StringDictionary categoryDict;
+
+    private final boolean byDepartment;
+    private final boolean byCategory;
+    private final boolean byDay;
+    private final int uvPrecision;  // 0 表示精确UV
+    // 存储模式下按用户编码缓存的用户哈希
+    private long[] userHashes = new long[0];
+
+    private final GroupAccumulator total;
+    private GroupAccumulator[] departmentGroups = new GroupAccumulator[8];
+    private GroupAccumulator[] categoryGroups = new GroupAccumulator[8];
+    private final Map<Long, GroupAccumulator> dayGroups = new HashMap<>();
+
+    // 日志按时间有序时连续行通常落在同一天，缓存上一次的日期分组
+    private long lastDay = Long.MIN_VALUE;
+    private GroupAccumulator lastDayGroup;
+
+    /**
+     * 用于 List 输入，部门/分类直接使用日志上的全局符号编码
+     */
+    public StatisticsAggregator(Set<Breakdown> breakdowns) {
+        this(breakdowns, 0);
+    }
+
+    /**
+     * 用于 List 输入
+     *
+     * @param uvPrecision HyperLogLog 精度，0 表示精确UV
+     */
+    public StatisticsAggregator(Set<Breakdown> breakdowns, int uvPrecision) {
+        this(new StringDictionary(), SymbolTables.DEPARTMENTS, SymbolTables.CATEGORIES, breakdowns, uvPrecision);
+    }
+
+    private StatisticsAggregator(StringDictionary userIdDict, StringDictionary departmentDict,
+                                 StringDictionary categoryDict, Set<Breakdown> breakdowns, int uvPrecision) {
+        this.userIdDict = userIdDict;
+        this.departmentDict = departmentDict;
+        this.categoryDict = categoryDict;
+        this.byDepartment = breakdowns.contains(Breakdown.DEPARTMENT);
+        this.byCategory = breakdowns.contains(Breakdown.CATEGORY);
+        this.byDay = breakdowns.contains(Breakdown.DAY);
+        this.uvPrecision = uvPrecision;
+        this.total = new GroupAccumulator(uvPrecision);
+    }
+
+    /**
+     * 用于列式存储输入，直接复用存储的字典编码
+     */
+    public static StatisticsAggregator forStore(NetflowLogStore store, Set<Breakdown> breakdowns, int uvPrecision) {
+        return new StatisticsAggregator(store.getUserIdDictionary(), store.getDepartmentDictionary(),
+                store.getCategoryDictionary(), breakdowns, uvPrecision);
+    }
+
+    /**
+     * 聚合整个日志列表（精确UV）
+     */
+    public static StatisticsAggregator aggregate(List<NetflowLog> logs, Set<Breakdown> breakdowns) {
+        return aggregate(logs, breakdowns, 0);
+    }
+
+    /**
+     * 聚合整个日志列表
+     */
+    public static StatisticsAggregator aggregate(List<NetflowLog> logs, Set<Breakdown> breakdowns, int uvPrecision) {
+        StatisticsAggregator aggregator = new StatisticsAggregator(breakdowns, uvPrecision);
+        for (NetflowLog log : logs) {
+            aggregator.add(log);
+        }
+        return aggregator;
+    }
+
+    /**
+     * 聚合整个列式存储（精确UV）
+     */
+    public static StatisticsAggregator aggregate(NetflowLogStore store, Set<Breakdown> breakdowns) {
+        return aggregate(store, breakdowns, 0);
+    }
+
+    /**
+     * 聚合整个列式存储
+     */
+    public static StatisticsAggregator aggregate(NetflowLogStore store, Set<Breakdown> breakdowns, int uvPrecision) {
+        StatisticsAggregator aggregator = forStore(store, breakdowns, uvPrecision);
+        for (int row = 0; row < store.size(); row++) {
+            aggregator.addRow(store, row);
+        }
+        return aggregator;
+    }
+
+    /**
+     * 累加一条日志
+     */
+    public void add(NetflowLog log) {
+        long bytes = log.getBytes() != null ? log.getBytes() : 0;
+        long epochDay = byDay ? log.getEventEpochDay() : 0;
+        // 近似模式直接对用户ID取哈希，不再维护用户字典
+        int user = uvPrecision > 0 ? 0 : userIdDict.encode(log.getUserId());
+        long userHash = uvPrecision > 0 ? Hashing.hash64(log.getUserId()) : 0;
+        accumulate(user, userHash,
+                log.getDepartmentId(),
+                log.getSiteCategoryId(),
+                epochDay, bytes);
+    }
+
+    /**
+     * 累加列式存储中的一行（存储须与 forStore 时为同一实例）
+     */
+    public void addRow(NetflowLogStore store, int row) {
+        int user = store.userIdCode(row);
+        accumulate(user, uvPrecision > 0 ? userHash(user) : 0,
+                store.departmentCode(row), store.categoryCode(row),
+                byDay ? store.epochDay(row) : 0, store.bytes(row));
+    }
+
+    /**
+     * 按用户编码缓存哈希，每个用户只计算一次
+     */
+    private long userHash(int user) {
+        if (user < 0) {
+            return Hashing.NULL_HASH;
+        }
+        if (user >= userHashes.length) {
+            userHashes = Arrays.copyOf(userHashes, Math.max(user + 1, Math.max(16, userHashes.length * 2)));
+        }
+        long hash = userHashes[user];
+        if (hash == 0) {
+            hash = userHashes[user] = Hashing.hash64(userIdDict.decode(user));
+        }
+        return hash;
+    }
+
+    private void accumulate(int user, long userHash, int department, int category, long epochDay, long bytes) {
+        total.add(user, userHash, department, category, bytes);
+
+        if (byDepartment && department >= 0) {
+            if (department >= departmentGroups.length) {
+                departmentGroups = Arrays.copyOf(departmentGroups, Math.max(department + 1, departmentGroups.length * 2));
+            }
+            GroupAccumulator group = departmentGroups[department];
+            if (group == null) {
+                group = departmentGroups[department] = new GroupAccumulator(uvPrecision);
+            }
+            group.add(user, userHash, department, category, bytes);
+        }
+
+        if (byCategory && category >= 0) {
+            if (category >= categoryGroups.length) {
+                categoryGroups = Arrays.copyOf(categoryGroups, Math.max(category + 1, categoryGroups.length * 2));
+            }
+            GroupAccumulator group = categoryGroups[category];
+            if (group == null) {
+                group = categoryGroups[category] = new GroupAccumulator(uvPrecision);
+            }
+            group.add(user, userHash, department, category, bytes);
+        }
+
+        if (byDay) {
+            if (epochDay != lastDay || lastDayGroup == null) {
+                lastDayGroup = dayGroups.computeIfAbsent(epochDay, k -> new GroupAccumulator(uvPrecision));
+                lastDay = epochDay;
+            }
+            lastDayGroup.add(user, userHash, department, category, bytes);
+        }
+    }
+
+    /**
+     * 总体统计
+     */
+    public AccessStatistics total() {
+        return toStatistics(total);
+    }
+
+    /**
+     * 按部门统计
+     */
+    public Map<String, AccessStatistics> byDepartment() {
+        requireBreakdown(byDepartment, Breakdown.DEPARTMENT);
+        return toStatisticsMap(departmentGroups, departmentDict);
+    }
+
+    /**
+     * 按网站分类统计
+     */
+    public Map<String, AccessStatistics> byCategory() {
+        requireBreakdown(byCategory, Breakdown.CATEGORY);
+        return toStatisticsMap(categoryGroups, categoryDict);
+    }
+
+    /**
+     * 按天统计
+     */
+    public Map<LocalDate, AccessStatistics> byDay() {
+        requireBreakdown(byDay, Breakdown.DAY);
+        Map<LocalDate, AccessStatistics> result = new TreeMap<>();
+        for (Map.Entry<Long, GroupAccumulator> entry : dayGroups.entrySet()) {
+            result.put(LocalDate.ofEpochDay(entry.getKey()), toStatistics(entry.getValue()));
+        }
+        return result;
+    }
+
+    private static void requireBreakdown(boolean enabled, Breakdown breakdown) {
+        if (!enabled) {
+            throw new IllegalStateException("未启用分组维度: " + breakdown);
+        }
+    }
+
+    private Map<String, AccessStatistics> toStatisticsMap(GroupAccumulator[] groups, StringDictionary dictionary) {
+        Map<String, AccessStatistics> result = new HashMap<>();
+        for (int code = 0; code < groups.length; code++) {
+            if (groups[code] != null) {
+                result.put(dictionary.decode(code), toStatistics(groups[code]));
+            }
+        }
+        return result;
+    }
+
+    private AccessStatistics toStatistics(GroupAccumulator group) {
+        if (group.pv == 0) {
+            AccessStatistics empty = new AccessStatistics(0L, 0L, 0L, 0L);
+            if (group.sketch != null) {
+                empty.setUvSketch(group.sketch.copy());
+            }
+            return empty;
+        }
+        AccessStatistics stats = new AccessStatistics();
+        stats.setPv(group.pv);
+        stats.setUv(group.uv());
+        if (group.sketch != null) {
+            stats.setUvSketch(group.sketch.copy());
+        }
+        stats.setTotalBytes(group.bytes);
+        stats.setActiveUsers(stats.getUv());
+        stats.setDepartmentStats(toCountMap(group.departmentCounts, departmentDict));
+        stats.setCategoryStats(toCountMap(group.categoryCounts, categoryDict));
+        return stats;
+    }
+
+    /**
+     * 编码计数转为字符串计数表（按编码即首次出现顺序插入）
+     */
+    private static Map<String, Long> toCountMap(long[] counts, StringDictionary dictionary) {
+        Map<String, Long> result = new HashMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                result.put(dictionary.decode(code), counts[code]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 分组累加器：PV、流量、用户位图（或UV草图）以及组内部门/分类计数
+     */
+    private static final class GroupAccumulator {
+        long pv;
+        long bytes;
+        final BitSet users;
+        final HyperLogLog sketch;
+        boolean hasNullUser;
+        long[] departmentCounts = new long[8];
+        long[] categoryCounts = new long[8];
+
+        GroupAccumulator(int uvPrecision) {
+            users = uvPrecision > 0 ? null : new BitSet();
+            sketch = uvPrecision > 0 ? new HyperLogLog(uvPrecision) : null;
+        }
+
+        void add(int user, long userHash, int department, int category, long rowBytes) {
+            pv++;
+            bytes += rowBytes;
+            if (sketch != null) {
+                sketch.addHash(userHash);
+            } else if (user >= 0) {
+                users.set(user);
+            } else {
+                hasNullUser = true;
+            }
+            if (department >= 0) {
+                if (department >= departmentCounts.length) {
+                    departmentCounts = Arrays.copyOf(departmentCounts, Math.max(department + 1, departmentCounts.length * 2));
+                }
+                departmentCounts[department]++;
+            }
+            if (category >= 0) {
+                if (category >= categoryCounts.length) {
+                    categoryCounts = Arrays.copyOf(categoryCounts, Math.max(category + 1, categoryCounts.length * 2));
+                }
+                categoryCounts[category]++;
+            }
+        }
+
+        long uv() {
+            if (sketch != null) {
+                return sketch.estimate();
+            }
+            return users.cardinality() + (hasNullUser ? 1 : 0);
+        }
+    }
+}
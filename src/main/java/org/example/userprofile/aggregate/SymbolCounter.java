@@ -0,0 +1,74 @@
+package org.example.userprofile.aggregate;
+
+import org.example.userprofile.store.StringDictionary;
+
+import java.util.*;
+
+/**
+ * 按全局符号表编码计数
+ * 编码为 {@link StringDictionary#OVERFLOW_CODE}（符号表已满）的值按原始字符串在本地字典中计数，
+ * 已满后出现的值不会再获得全局编码，两部分不会重复。null 忽略。非线程安全
+ */
+public final class SymbolCounter {
+
+    private final StringDictionary symbols;
+    private long[] counts = new long[16];
+    private final StringDictionary overflow = new StringDictionary();
+    private long[] overflowCounts = new long[16];
+
+    public SymbolCounter(StringDictionary symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * @param code  全局编码
+     * @param value 编码为 OVERFLOW_CODE 时使用的原始字符串
+     */
+    public void add(int code, String value) {
+        if (code == StringDictionary.OVERFLOW_CODE) {
+            overflowCounts = increment(overflowCounts, overflow.encode(value));
+        } else {
+            counts = increment(counts, code);
+        }
+    }
+
+    /**
+     * 计数最大的 n 个值（计数相同按值升序）
+     */
+    public List<Map.Entry<String, Long>> top(int n) {
+        if (overflow.size() == 0) {
+            return TopNSelector.select(symbols, counts, n);
+        }
+        int base = counts.length;
+        long[] all = Arrays.copyOf(counts, base + overflow.size());
+        System.arraycopy(overflowCounts, 0, all, base, overflow.size());
+        return TopNSelector.select(code -> code < base ? symbols.decode(code) : overflow.decode(code - base), all, n);
+    }
+
+    /**
+     * 各值的计数
+     */
+    public Map<String, Long> toMap() {
+        Map<String, Long> result = new HashMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                result.put(symbols.decode(code), counts[code]);
+            }
+        }
+        for (int code = 0; code < overflow.size(); code++) {
+            result.put(overflow.decode(code), overflowCounts[code]);
+        }
+        return result;
+    }
+
+    private static long[] increment(long[] counts, int code) {
+        if (code < 0) {
+            return counts;
+        }
+        if (code >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(code + 1, counts.length * 2));
+        }
+        counts[code]++;
+        return counts;
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.userprofile.aggregate;
+
+import org.example.userprofile.store.StringDictionary;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * 精确 Top N 选择
+ * 以大小为 n 的小顶堆代替对全部键排序，复杂度 O(K log n)。
+ * 排序规则为计数降序、计数相同按键升序（{@link #RANK}），单进程查询与分片合并结果一致；
+ * 堆中只保存编码，计数相同时才解码比较键
+ */
+public final class TopNSelector {
+
+    /** 计数降序、键升序 */
+    public static final Comparator<Map.Entry<String, Long>> RANK =
+            Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+
+    private TopNSelector() {
+    }
+
+    /**
+     * 从按字典编码计数的数组中选出计数最大的 n 个键（计数为0的编码忽略）
+     */
+    public static List<Map.Entry<String, Long>> select(StringDictionary dictionary, long[] counts, int n) {
+        return select(dictionary::decode, counts, n);
+    }
+
+    /**
+     * 同上
+     *
+     * @param keys 编码到键的映射，计数大于0的编码不能映射为 null
+     */
+    public static List<Map.Entry<String, Long>> select(IntFunction<String> keys, long[] counts, int n) {
+        if (n <= 0) {
+            return new ArrayList<>();
+        }
+        // 堆顶 heap[0] 是当前入选集合中排名最靠后的编码
+        int[] heap = new int[Math.min(n, counts.length)];
+        int size = 0;
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] <= 0) {
+                continue;
+            }
+            if (size < n) {
+                heap[size] = code;
+                siftUp(heap, size++, keys, counts);
+            } else if (before(code, heap[0], keys, counts)) {
+                heap[0] = code;
+                siftDown(heap, size, keys, counts);
+            }
+        }
+
+        // 依次弹出堆顶得到从后往前的顺序
+        List<Map.Entry<String, Long>> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(null);
+        }
+        while (size > 0) {
+            int code = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, size, keys, counts);
+            result.set(size, new AbstractMap.SimpleImmutableEntry<>(keys.apply(code), counts[code]));
+        }
+        return result;
+    }
+
+    /**
+     * 编码 a 是否排在 b 之前
+     */
+    private static boolean before(int a, int b, IntFunction<String> keys, long[] counts) {
+        if (counts[a] != counts[b]) {
+            return counts[a] > counts[b];
+        }
+        return keys.apply(a).compareTo(keys.apply(b)) < 0;
+    }
+
+    private static void siftUp(int[] heap, int index, IntFunction<String> keys, long[] counts) {
+        int code = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!before(heap[parent], code, keys, counts)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = code;
+    }
+
+    private static void siftDown(int[] heap, int size, IntFunction<String> keys, long[] counts) {
+        if (size == 0) {
+            return;
+        }
+        int code = heap[0];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            // 选排名更靠后的子节点
+            if (child + 1 < size && before(heap[child], heap[child + 1], keys, counts)) {
+                child++;
+            }
+            if (!before(code, heap[child], keys, counts)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = code;
+    }
+}
@@ -0,0 +1,63 @@
+package org.example.userprofile.aggregate;
+
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.sketch.SpaceSaving;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式 Top N 用户/域名跟踪
+ * 基于 Space-Saving，内存只与计数器个数有关；摄入过程中可随时从其他线程查询当前 Top N
+ */
+public class TopNTracker {
+
+    private final SpaceSaving users;
+    private final SpaceSaving domains;
+
+    /**
+     * @param capacity 每个维度保留的计数器个数，高估误差不超过 总PV/capacity
+     */
+    public TopNTracker(int capacity) {
+        this.users = new SpaceSaving(capacity);
+        this.domains = new SpaceSaving(capacity);
+    }
+
+    /**
+     * 累加一条日志
+     */
+    public void add(NetflowLog log) {
+        users.add(log.getUserId());
+        domains.add(log.getDomain());
+    }
+
+    /**
+     * 合并另一个跟踪器（如其他分片）
+     */
+    public void merge(TopNTracker other) {
+        users.merge(other.users);
+        domains.merge(other.domains);
+    }
+
+    /**
+     * 当前 Top N 用户（估计PV）
+     */
+    public List<Map.Entry<String, Long>> topUsers(int n) {
+        return users.topN(n);
+    }
+
+    /**
+     * 当前 Top N 域名（估计PV）
+     */
+    public List<Map.Entry<String, Long>> topDomains(int n) {
+        return domains.topN(n);
+    }
+
+    public SpaceSaving getUsers() {
+        return users;
+    }
+
+    public SpaceSaving getDomains() {
+        return domains;
+    }
+}
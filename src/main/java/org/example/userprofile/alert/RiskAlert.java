@@ -0,0 +1,65 @@
+package org.example.userprofile.alert;
+
+/**
+ * 风险告警：用户在某条日志到达时升至中/高风险
+ */
+public class RiskAlert {
+
+    private final String userId;
+    private final String department;
+    private final int previousLevel;
+    private final int riskLevel;
+    private final long eventEpochSecond;
+    private final long pv;
+    private final long nightAccessCount;
+    private final float nonWorkRatio;
+    private final long totalBytes;
+
+    public RiskAlert(String userId, String department, int previousLevel, int riskLevel, long eventEpochSecond,
+                     long pv, long nightAccessCount, float nonWorkRatio, long totalBytes) {
+        this.userId = userId;
+        this.department = department;
+        this.previousLevel = previousLevel;
+        this.riskLevel = riskLevel;
+        this.eventEpochSecond = eventEpochSecond;
+        this.pv = pv;
+        this.nightAccessCount = nightAccessCount;
+        this.nonWorkRatio = nonWorkRatio;
+        this.totalBytes = totalBytes;
+    }
+
+    public String getUserId() { return userId; }
+
+    public String getDepartment() { return department; }
+
+    /** 此前已告警的最高等级，0 表示首次告警 */
+    public int getPreviousLevel() { return previousLevel; }
+
+    /** 风险等级：1-中风险, 2-高风险 */
+    public int getRiskLevel() { return riskLevel; }
+
+    /** 触发告警的日志事件时间（epoch秒） */
+    public long getEventEpochSecond() { return eventEpochSecond; }
+
+    public long getPv() { return pv; }
+
+    public long getNightAccessCount() { return nightAccessCount; }
+
+    public float getNonWorkRatio() { return nonWorkRatio; }
+
+    public long getTotalBytes() { return totalBytes; }
+
+    @Override
+    public String toString() {
+        return "RiskAlert{" +
+                "userId='" + userId + '\'' +
+                ", department='" + department + '\'' +
+                ", riskLevel=" + previousLevel + "->" + riskLevel +
+                ", eventEpochSecond=" + eventEpochSecond +
+                ", pv=" + pv +
+                ", nightAccessCount=" + nightAccessCount +
+                ", nonWorkRatio=" + nonWorkRatio +
+                ", totalBytes=" + totalBytes +
+                '}';
+    }
+}
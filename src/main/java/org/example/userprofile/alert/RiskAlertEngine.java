@@ -0,0 +1,268 @@
+package org.example.userprofile.alert;
+
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.profile.UserProfileAccumulator;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 流式风险告警引擎
+ * 对每个用户只保存深夜访问、非工作网站、流量三项规则所需的计数，每条日志到达时按
+ * {@link UserProfileAccumulator#riskLevel} 重新评估，升至更高的中/高风险时立即告警（同一等级只告警一次）。
+ * 用户状态按 userId 哈希分片，每片一把锁，多线程写入只在同片时互斥；
+ * 分片内按最后出现时间推进的先后排列（查询不改变顺序），每条日志顺带轮转检查分片头部的若干用户，
+ * 超过空闲时长（按事件时间）未出现的用户被淘汰，状态量与活跃用户数有关
+ */
+public class RiskAlertEngine {
+
+    /** 默认最少日志条数：条数过少时比例规则不稳定，不参与评估 */
+    public static final int DEFAULT_MIN_EVENTS = 20;
+
+    /** 默认空闲淘汰时长 */
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofHours(24);
+
+    // 每条日志顺带检查的分片头部用户数，摊还淘汰开销
+    private static final int SWEEP_PER_EVENT = 2;
+
+    private final Shard[] shards;
+    private final int shardMask;
+    private final long idleSeconds;
+    private final int minEvents;
+    private final Consumer<RiskAlert> listener;
+    private final LongAdder eventCount = new LongAdder();
+    private final LongAdder alertCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+
+    /**
+     * 分片数为 CPU 数的 4 倍，默认空闲时长与最少日志条数
+     */
+    public RiskAlertEngine(Consumer<RiskAlert> listener) {
+        this(Runtime.getRuntime().availableProcessors() * 4, DEFAULT_IDLE_TIMEOUT, DEFAULT_MIN_EVENTS, listener);
+    }
+
+    /**
+     * @param shardCount  分片数（向上取整为2的幂）
+     * @param idleTimeout 用户空闲淘汰时长，淘汰后状态清零重新累计
+     * @param minEvents   用户累计日志达到该条数后才评估风险
+     * @param listener    告警回调，在处理线程上、分片锁之外调用
+     */
+    public RiskAlertEngine(int shardCount, Duration idleTimeout, int minEvents, Consumer<RiskAlert> listener) {
+        if (shardCount <= 0 || idleTimeout.isNegative() || idleTimeout.isZero() || minEvents <= 0) {
+            throw new IllegalArgumentException("分片数、空闲时长、最少日志条数须为正");
+        }
+        int size = Integer.highestOneBit(Math.max(shardCount - 1, 1)) << 1;
+        this.shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Shard();
+        }
+        this.shardMask = size - 1;
+        this.idleSeconds = idleTimeout.getSeconds();
+        this.minEvents = minEvents;
+        this.listener = listener;
+    }
+
+    /**
+     * 处理一条日志，触发告警时返回告警（已回调），否则返回 null；无 userId 的日志忽略
+     */
+    public RiskAlert process(NetflowLog log) {
+        String userId = log.getUserId();
+        if (userId == null) {
+            return null;
+        }
+        eventCount.increment();
+        long epochSecond = log.getEventEpochSecond();
+        int hour = log.getEventHour();
+        boolean nonWork = UserProfileAccumulator.isNonWork(log.getSiteCategory(), log.getWorkSite());
+        long bytes = log.getBytes() != null ? log.getBytes() : 0;
+
+        RiskAlert alert = null;
+        Shard shard = shards[spread(userId.hashCode()) & shardMask];
+        shard.lock.lock();
+        try {
+            UserRiskState state = shard.users.get(userId);
+            if (state == null) {
+                state = new UserRiskState(log.getDepartment());
+                shard.users.put(userId, state);
+            } else if (epochSecond > state.lastSeen) {
+                // 最后出现时间推进时移到尾部
+                shard.users.remove(userId);
+                shard.users.put(userId, state);
+            }
+            state.pv++;
+            if (hour >= 22 || hour < 6) {
+                state.nightAccessCount++;
+            }
+            if (nonWork) {
+                state.nonWorkPv++;
+            }
+            state.totalBytes += bytes;
+            state.lastSeen = Math.max(state.lastSeen, epochSecond);
+
+            if (state.pv >= minEvents) {
+                float nonWorkRatio = (float) state.nonWorkPv / state.pv;
+                int level = UserProfileAccumulator.riskLevel(state.pv, state.nightAccessCount, nonWorkRatio,
+                        state.totalBytes);
+                if (level > state.alertedLevel) {
+                    alert = new RiskAlert(userId, state.department, state.alertedLevel, level, epochSecond,
+                            state.pv, state.nightAccessCount, nonWorkRatio, state.totalBytes);
+                    state.alertedLevel = level;
+                }
+            }
+            shard.sweep(epochSecond - idleSeconds, SWEEP_PER_EVENT);
+        } finally {
+            shard.lock.unlock();
+        }
+
+        if (alert != null) {
+            alertCount.increment();
+            listener.accept(alert);
+        }
+        return alert;
+    }
+
+    /**
+     * 批量处理
+     */
+    public void processAll(Iterable<NetflowLog> logs) {
+        for (NetflowLog log : logs) {
+            process(log);
+        }
+    }
+
+    /**
+     * 淘汰在 nowEpochSecond 之前空闲超过时长的用户（没有新日志时由调用方定期触发），返回淘汰数
+     */
+    public int evictIdle(long nowEpochSecond) {
+        int evicted = 0;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                evicted += shard.evictIdle(nowEpochSecond - idleSeconds);
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * 用户当前已告警的最高风险等级，无状态时返回 0
+     */
+    public int getRiskLevel(String userId) {
+        Shard shard = shards[spread(userId.hashCode()) & shardMask];
+        shard.lock.lock();
+        try {
+            UserRiskState state = shard.users.get(userId);
+            return state != null ? state.alertedLevel : 0;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * 当前保存状态的用户数
+     */
+    public int getUserCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                count += shard.users.size();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return count;
+    }
+
+    public long getEventCount() {
+        return eventCount.sum();
+    }
+
+    public long getAlertCount() {
+        return alertCount.sum();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.sum();
+    }
+
+    /**
+     * 与 HashMap 相同的高位扰动，避免相近 hashCode 落在同一分片
+     */
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 分片：按插入顺序排列的用户状态，只在 process 中调整顺序
+     */
+    private final class Shard {
+        final ReentrantLock lock = new ReentrantLock();
+        final LinkedHashMap<String, UserRiskState> users = new LinkedHashMap<>(64);
+
+        /**
+         * 从头部起检查至多 budget 个用户：最后出现时间早于 threshold 的淘汰，其余移到尾部。
+         * 乱序日志使排列顺序与最后出现时间不完全一致，轮转检查保证头部较新的用户不会挡住其后的空闲用户
+         */
+        int sweep(long threshold, int budget) {
+            int evicted = 0;
+            for (int i = 0; i < budget && !users.isEmpty(); i++) {
+                Map.Entry<String, UserRiskState> head = users.entrySet().iterator().next();
+                String userId = head.getKey();
+                UserRiskState state = head.getValue();
+                users.remove(userId);
+                if (state.lastSeen < threshold) {
+                    evicted++;
+                } else {
+                    users.put(userId, state);
+                }
+            }
+            if (evicted > 0) {
+                evictedCount.add(evicted);
+            }
+            return evicted;
+        }
+
+        /**
+         * 淘汰全部最后出现时间早于 threshold 的用户
+         */
+        int evictIdle(long threshold) {
+            int evicted = 0;
+            Iterator<Map.Entry<String, UserRiskState>> it = users.entrySet().iterator();
+            while (it.hasNext()) {
+                if (it.next().getValue().lastSeen < threshold) {
+                    it.remove();
+                    evicted++;
+                }
+            }
+            if (evicted > 0) {
+                evictedCount.add(evicted);
+            }
+            return evicted;
+        }
+    }
+
+    /**
+     * 单用户的规则计数
+     */
+    private static final class UserRiskState {
+        final String department;
+        long pv;
+        long nightAccessCount;
+        long nonWorkPv;
+        long totalBytes;
+        long lastSeen = Long.MIN_VALUE;
+        int alertedLevel;
+
+        UserRiskState(String department) {
+            this.department = department;
+        }
+    }
+}
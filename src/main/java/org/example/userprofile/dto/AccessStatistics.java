@@ -1,5 +1,8 @@
 package org.example.userprofile.dto;
 
+import org.example.userprofile.sketch.HyperLogLog;
+
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -12,6 +15,7 @@ public class AccessStatistics {
     private Long activeUsers;  // 活跃用户数
     private Map<String, Long> departmentStats;  // 部门统计
     private Map<String, Long> categoryStats;  // 网站分类统计
+    private HyperLogLog uvSketch;  // UV草图（仅近似UV模式），可跨维度合并
 
     public AccessStatistics() {
     }
@@ -42,6 +46,65 @@ public class AccessStatistics {
     public Map<String, Long> getCategoryStats() { return categoryStats; }
     public void setCategoryStats(Map<String, Long> categoryStats) { this.categoryStats = categoryStats; }
 
+    public HyperLogLog getUvSketch() { return uvSketch; }
+    public void setUvSketch(HyperLogLog uvSketch) { this.uvSketch = uvSketch; }
+
+    /**
+     * 合并另一个统计结果（就地修改并返回自身），PV、流量与部门/分类计数相加。
+     * 两侧都带UV草图时合并草图后重新估计UV；都不带时UV直接相加，
+     * 仅当两侧用户互不重叠（如按 userId 哈希分片）时结果精确
+     */
+    public AccessStatistics merge(AccessStatistics other) {
+        if (uvSketch != null && other.uvSketch != null) {
+            uvSketch.merge(other.uvSketch);
+            uv = uvSketch.estimate();
+        } else if (other.uvSketch != null && isEmpty()) {
+            uvSketch = other.uvSketch.copy();
+            uv = uvSketch.estimate();
+        } else if ((uvSketch == null && other.uvSketch == null) || other.isEmpty()) {
+            uv = sum(uv, other.uv);
+        } else {
+            throw new IllegalArgumentException("不能合并精确UV与近似UV的统计结果");
+        }
+        pv = sum(pv, other.pv);
+        totalBytes = sum(totalBytes, other.totalBytes);
+        activeUsers = uv;
+        departmentStats = mergeCounts(departmentStats, other.departmentStats);
+        categoryStats = mergeCounts(categoryStats, other.categoryStats);
+        return this;
+    }
+
+    /**
+     * 副本：部门/分类计数与UV草图均复制，修改副本不影响原对象
+     */
+    public AccessStatistics copy() {
+        AccessStatistics copy = new AccessStatistics(pv, uv, totalBytes, activeUsers);
+        copy.departmentStats = departmentStats != null ? new HashMap<>(departmentStats) : null;
+        copy.categoryStats = categoryStats != null ? new HashMap<>(categoryStats) : null;
+        copy.uvSketch = uvSketch != null ? uvSketch.copy() : null;
+        return copy;
+    }
+
+    private boolean isEmpty() {
+        return pv == null || pv == 0;
+    }
+
+    private static Long sum(Long a, Long b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null ? a : a + b;
+    }
+
+    private static Map<String, Long> mergeCounts(Map<String, Long> a, Map<String, Long> b) {
+        if (b == null) {
+            return a;
+        }
+        Map<String, Long> merged = a != null ? new HashMap<>(a) : new HashMap<>();
+        b.forEach((key, count) -> merged.merge(key, count, Long::sum));
+        return merged;
+    }
+
     @Override
     public String toString() {
         return "AccessStatistics{" +
@@ -0,0 +1,173 @@
+package org.example.userprofile.enrich;
+
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.store.StringDictionary;
+import org.example.userprofile.store.SymbolTables;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 域名 → 网站分类富化
+ * 按日志上的全局域名编码缓存查询结果（含未命中），同一域名只做一次后缀匹配；
+ * 重新加载时整体替换快照（索引 + 缓存），查询线程无需加锁
+ */
+public class DomainCategoryEnricher implements Closeable {
+
+    // 缓存中表示"已查询但未命中"
+    private static final SiteCategory MISS = new SiteCategory("", null, null, true);
+
+    private volatile Snapshot snapshot;
+    private FileTime loadedModifiedTime;
+    private ScheduledExecutorService reloader;
+
+    public DomainCategoryEnricher(SiteCategoryIndex index) {
+        this.snapshot = new Snapshot(index);
+    }
+
+    /**
+     * 从 site_category_dim 导出文件创建
+     */
+    public static DomainCategoryEnricher fromFile(Path file) throws IOException {
+        FileTime modified = Files.getLastModifiedTime(file);
+        DomainCategoryEnricher enricher = new DomainCategoryEnricher(SiteCategoryIndex.load(file));
+        enricher.loadedModifiedTime = modified;
+        return enricher;
+    }
+
+    /**
+     * 富化一条日志：命中时写入 is_work_site，日志原本没有分类时同时写入分类
+     *
+     * @return 是否命中
+     */
+    public boolean enrich(NetflowLog log) {
+        int domainId = log.getDomainId();
+        // 符号表已满的域名没有编码，不经缓存按字符串查询
+        SiteCategory site = domainId == StringDictionary.OVERFLOW_CODE ? lookup(log.getDomain()) : lookup(domainId);
+        if (site == null) {
+            return false;
+        }
+        if (log.getSiteCategoryId() < 0) {
+            log.setSiteCategory(site.getCategory());
+        }
+        log.setWorkSite(site.isWorkSite());
+        return true;
+    }
+
+    /**
+     * 按全局域名编码查询
+     */
+    public SiteCategory lookup(int domainId) {
+        if (domainId < 0) {
+            return null;
+        }
+        return snapshot.lookup(domainId);
+    }
+
+    /**
+     * 按域名查询（不经缓存）
+     */
+    public SiteCategory lookup(String domain) {
+        return snapshot.index.lookup(domain);
+    }
+
+    /**
+     * 替换为新的索引快照，旧缓存随之失效
+     */
+    public void reload(SiteCategoryIndex index) {
+        snapshot = new Snapshot(index);
+    }
+
+    /**
+     * 文件修改时间变化时重新加载
+     *
+     * @return 是否重新加载
+     */
+    public synchronized boolean reloadIfModified(Path file) throws IOException {
+        FileTime modified = Files.getLastModifiedTime(file);
+        if (modified.equals(loadedModifiedTime)) {
+            return false;
+        }
+        reload(SiteCategoryIndex.load(file));
+        loadedModifiedTime = modified;
+        return true;
+    }
+
+    /**
+     * 启动后台线程定期检查文件并热加载，{@link #close()} 时停止
+     */
+    public synchronized void startAutoReload(Path file, long period, TimeUnit unit) {
+        if (reloader != null) {
+            throw new IllegalStateException("已启动自动重新加载");
+        }
+        reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "site-category-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reloader.scheduleWithFixedDelay(() -> {
+            try {
+                reloadIfModified(file);
+            } catch (IOException | RuntimeException e) {
+                // 加载失败时保留当前快照，下个周期重试
+                System.err.println("网站分类维表重新加载失败: " + e.getMessage());
+            }
+        }, period, period, unit);
+    }
+
+    public SiteCategoryIndex getIndex() {
+        return snapshot.index;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+            reloader = null;
+        }
+    }
+
+    /**
+     * 索引快照及其按域名编码的查询缓存
+     * 缓存写入无需同步：条目不可变，并发写入同一位置的值相同，丢失的写入只会导致重新查询
+     */
+    private static final class Snapshot {
+        final SiteCategoryIndex index;
+        volatile SiteCategory[] cache = new SiteCategory[Math.max(16, SymbolTables.DOMAINS.size())];
+
+        Snapshot(SiteCategoryIndex index) {
+            this.index = index;
+        }
+
+        SiteCategory lookup(int domainId) {
+            SiteCategory[] entries = cache;
+            if (domainId < entries.length) {
+                SiteCategory cached = entries[domainId];
+                if (cached != null) {
+                    return cached == MISS ? null : cached;
+                }
+            } else {
+                entries = grow(domainId);
+            }
+            SiteCategory site = index.lookup(SymbolTables.DOMAINS.decode(domainId));
+            entries[domainId] = site != null ? site : MISS;
+            return site;
+        }
+
+        private synchronized SiteCategory[] grow(int domainId) {
+            SiteCategory[] entries = cache;
+            if (domainId >= entries.length) {
+                entries = Arrays.copyOf(entries, Math.max(domainId + 1, entries.length * 2));
+                cache = entries;
+            }
+            return entries;
+        }
+    }
+}
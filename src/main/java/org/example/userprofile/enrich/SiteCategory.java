@@ -0,0 +1,40 @@
+package org.example.userprofile.enrich;
+
+import org.example.userprofile.store.SymbolTables;
+
+/**
+ * 网站分类维度（site_category_dim 的一行）
+ */
+public final class SiteCategory {
+
+    private final String domain;
+    private final String category;
+    private final String subCategory;
+    private final boolean workSite;
+
+    public SiteCategory(String domain, String category, String subCategory, boolean workSite) {
+        this.domain = domain;
+        // 取全局符号表中的规范实例，富化时写入日志只命中已有编码
+        this.category = SymbolTables.CATEGORIES.intern(category);
+        this.subCategory = subCategory;
+        this.workSite = workSite;
+    }
+
+    public String getDomain() { return domain; }
+
+    public String getCategory() { return category; }
+
+    public String getSubCategory() { return subCategory; }
+
+    /** 是否工作相关网站（is_work_site） */
+    public boolean isWorkSite() { return workSite; }
+
+    @Override
+    public String toString() {
+        return "SiteCategory{" +
+                "domain='" + domain + '\'' +
+                ", category='" + category + '\'' +
+                ", workSite=" + workSite +
+                '}';
+    }
+}
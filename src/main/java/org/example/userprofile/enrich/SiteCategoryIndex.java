@@ -0,0 +1,235 @@
+package org.example.userprofile.enrich;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 域名 → 网站分类的后缀匹配索引（不可变快照）
+ * 按标签边界匹配最长后缀：sub.zhihu.com 依次尝试 com、zhihu.com、sub.zhihu.com，取最长的命中。
+ * 后缀哈希自右向左增量计算，查询过程不截取子串、不分配对象
+ */
+public final class SiteCategoryIndex {
+
+    private static final String SELECT_SQL =
+            "SELECT domain, category, sub_category, is_work_site FROM site_category_dim";
+
+    private final String[] keys;
+    private final int[] hashes;
+    private final SiteCategory[] values;
+    private final int size;
+
+    private SiteCategoryIndex(Collection<SiteCategory> entries) {
+        int capacity = Integer.highestOneBit(Math.max(16, entries.size() * 2 - 1)) << 1;
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        values = new SiteCategory[capacity];
+        int count = 0;
+        for (SiteCategory entry : entries) {
+            String key = normalize(entry.getDomain());
+            if (key.isEmpty()) {
+                continue;
+            }
+            int hash = suffixHash(key, 0, key.length());
+            int slot = mix(hash) & (capacity - 1);
+            while (keys[slot] != null && !keys[slot].equals(key)) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            if (keys[slot] == null) {
+                count++;
+            }
+            // 重复的域名以后出现的为准
+            keys[slot] = key;
+            hashes[slot] = hash;
+            values[slot] = entry;
+        }
+        size = count;
+    }
+
+    public static SiteCategoryIndex of(Collection<SiteCategory> entries) {
+        return new SiteCategoryIndex(entries);
+    }
+
+    /**
+     * 从 site_category_dim 导出文件加载（CSV 或 TSV，首行为表头）
+     * 必需列 domain、category，可选列 sub_category、is_work_site（缺省为1，与表定义一致）
+     */
+    public static SiteCategoryIndex load(Path file) throws IOException {
+        List<SiteCategory> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return of(entries);
+            }
+            String delimiter = header.indexOf('\t') >= 0 ? "\t" : ",";
+            String[] columns = split(header, delimiter);
+            int domainColumn = indexOf(columns, "domain");
+            int categoryColumn = indexOf(columns, "category");
+            int subCategoryColumn = indexOf(columns, "sub_category");
+            int workSiteColumn = indexOf(columns, "is_work_site");
+            if (domainColumn < 0 || categoryColumn < 0) {
+                throw new IOException("缺少 domain 或 category 列: " + file);
+            }
+
+            String line;
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] fields = split(line, delimiter);
+                if (fields.length <= Math.max(domainColumn, categoryColumn)) {
+                    throw new IOException("第 " + lineNumber + " 行字段数不足: " + file);
+                }
+                entries.add(new SiteCategory(fields[domainColumn], fields[categoryColumn],
+                        field(fields, subCategoryColumn), parseWorkSite(field(fields, workSiteColumn))));
+            }
+        }
+        return of(entries);
+    }
+
+    /**
+     * 经 JDBC 从 site_category_dim 表加载
+     */
+    public static SiteCategoryIndex load(Connection connection) throws SQLException {
+        List<SiteCategory> entries = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(SELECT_SQL)) {
+            while (rs.next()) {
+                int workSite = rs.getInt(4);
+                entries.add(new SiteCategory(rs.getString(1), rs.getString(2), rs.getString(3),
+                        rs.wasNull() || workSite != 0));
+            }
+        }
+        return of(entries);
+    }
+
+    /**
+     * 按最长后缀匹配查询，未命中返回 null
+     */
+    public SiteCategory lookup(String domain) {
+        if (domain == null) {
+            return null;
+        }
+        int end = domain.length();
+        while (end > 0 && domain.charAt(end - 1) == '.') {
+            end--;
+        }
+        for (int i = 0; i < end; i++) {
+            char c = domain.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                // 含大写字母时先转小写（少见情况）
+                return lookup(domain.substring(0, end).toLowerCase(Locale.ROOT));
+            }
+        }
+
+        SiteCategory match = null;
+        int hash = 0;
+        for (int i = end - 1; i >= 0; i--) {
+            hash = hash * 31 + domain.charAt(i);
+            if (i == 0 || domain.charAt(i - 1) == '.') {
+                SiteCategory found = find(domain, i, end, hash);
+                if (found != null) {
+                    match = found;
+                }
+            }
+        }
+        return match;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private SiteCategory find(String domain, int from, int to, int hash) {
+        int mask = keys.length - 1;
+        int slot = mix(hash) & mask;
+        int length = to - from;
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && keys[slot].length() == length
+                    && keys[slot].regionMatches(0, domain, from, length)) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * 自右向左的多项式哈希，与 lookup 中的增量计算一致
+     */
+    private static int suffixHash(String s, int from, int to) {
+        int hash = 0;
+        for (int i = to - 1; i >= from; i--) {
+            hash = hash * 31 + s.charAt(i);
+        }
+        return hash;
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 统一为小写，去掉首尾的点及通配前缀 "*."
+     */
+    private static String normalize(String domain) {
+        String key = domain.trim().toLowerCase(Locale.ROOT);
+        if (key.startsWith("*.")) {
+            key = key.substring(2);
+        }
+        int start = 0;
+        int end = key.length();
+        while (start < end && key.charAt(start) == '.') {
+            start++;
+        }
+        while (end > start && key.charAt(end - 1) == '.') {
+            end--;
+        }
+        return key.substring(start, end);
+    }
+
+    private static boolean parseWorkSite(String value) {
+        if (value == null || value.isEmpty()) {
+            return true;
+        }
+        return !("0".equals(value) || "false".equalsIgnoreCase(value) || "否".equals(value));
+    }
+
+    private static String[] split(String line, String delimiter) {
+        String[] fields = line.split(delimiter, -1);
+        for (int i = 0; i < fields.length; i++) {
+            String field = fields[i].trim();
+            if (field.length() >= 2 && field.startsWith("\"") && field.endsWith("\"")) {
+                field = field.substring(1, field.length() - 1);
+            }
+            fields[i] = field;
+        }
+        return fields;
+    }
+
+    private static int indexOf(String[] columns, String name) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String field(String[] fields, int column) {
+        return column >= 0 && column < fields.length && !fields[column].isEmpty() ? fields[column] : null;
+    }
+}
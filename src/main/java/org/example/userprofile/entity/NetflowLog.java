@@ -1,22 +1,41 @@
 package org.example.userprofile.entity;
 
+import org.example.userprofile.store.StringDictionary;
+import org.example.userprofile.store.SymbolTables;
+import org.example.userprofile.time.EventTimes;
+
 import java.time.LocalDateTime;
 
 /**
  * 网络流量日志实体
+ * 事件时间保存为 epoch 秒（本地时间按 {@link EventTimes} 配置的时区解释），
+ * 小时与日期在设置时间时换算一次，分析代码应使用 getEventHour/getEventEpochDay。
+ * 部门、域名、分类、方法、User-Agent 保存为 {@link SymbolTables} 中的全局编码，
+ * 字符串 setter 即在全局符号表中编码。分组时应使用 get*Id，字符串 getter 返回字典中的规范实例；
+ * 符号表已满时 get*Id 返回 {@link StringDictionary#OVERFLOW_CODE}，字符串 getter 返回保留的原始字符串
  */
 public class NetflowLog {
-    private LocalDateTime eventTime;
+    private long eventEpochSecond;
+    private int eventNano;
+    private int eventHour = -1;  // 0-23，-1 表示未设置时间
+    private long eventEpochDay;
     private String userId;
-    private String department;
+    private int departmentId = StringDictionary.NULL_CODE;
     private String srcIp;
     private String dstIp;
-    private String domain;
+    private int domainId = StringDictionary.NULL_CODE;
     private String url;
-    private String method;
+    private int methodId = StringDictionary.NULL_CODE;
     private Long bytes;
-    private String userAgent;
-    private String siteCategory;
+    private int userAgentId = StringDictionary.NULL_CODE;
+    private int siteCategoryId = StringDictionary.NULL_CODE;
+    private byte workSite = -1;  // 是否工作相关网站（由维表富化）：1 是，0 否，-1 未知
+    // 符号表已满时保留的原始字符串，按 DOMAIN/METHOD/USER_AGENT 下标，通常为 null
+    private String[] overflowSymbols;
+
+    private static final int DOMAIN = 0;
+    private static final int METHOD = 1;
+    private static final int USER_AGENT = 2;
 
     public NetflowLog() {
     }
@@ -24,28 +43,77 @@ public class NetflowLog {
     public NetflowLog(LocalDateTime eventTime, String userId, String department,
                      String srcIp, String dstIp, String domain, String url,
                      String method, Long bytes, String userAgent, String siteCategory) {
-        this.eventTime = eventTime;
+        setEventTime(eventTime);
         this.userId = userId;
-        this.department = department;
+        setDepartment(department);
         this.srcIp = srcIp;
         this.dstIp = dstIp;
-        this.domain = domain;
+        setDomain(domain);
         this.url = url;
-        this.method = method;
+        setMethod(method);
         this.bytes = bytes;
-        this.userAgent = userAgent;
-        this.siteCategory = siteCategory;
+        setUserAgent(userAgent);
+        setSiteCategory(siteCategory);
     }
 
     // Getters and Setters
-    public LocalDateTime getEventTime() { return eventTime; }
-    public void setEventTime(LocalDateTime eventTime) { this.eventTime = eventTime; }
+    /**
+     * 事件的本地时间（每次调用构造新对象，仅用于展示和对外接口）
+     */
+    public LocalDateTime getEventTime() {
+        return eventHour < 0 ? null : EventTimes.toLocalDateTime(eventEpochSecond, eventNano);
+    }
+
+    public void setEventTime(LocalDateTime eventTime) {
+        if (eventTime == null) {
+            eventHour = -1;
+            return;
+        }
+        setEventEpochSecond(EventTimes.toEpochSecond(eventTime), eventTime.getNano());
+    }
+
+    /**
+     * 按 epoch 秒设置事件时间，同时换算小时与日期
+     */
+    public void setEventEpochSecond(long epochSecond, int nano) {
+        this.eventEpochSecond = epochSecond;
+        this.eventNano = nano;
+        this.eventHour = EventTimes.hourOf(epochSecond);
+        this.eventEpochDay = EventTimes.epochDayOf(epochSecond);
+    }
+
+    public boolean hasEventTime() { return eventHour >= 0; }
+
+    public long getEventEpochSecond() { requireEventTime(); return eventEpochSecond; }
+
+    public int getEventNano() { requireEventTime(); return eventNano; }
+
+    /** 本地时间的小时（0-23） */
+    public int getEventHour() { requireEventTime(); return eventHour; }
+
+    /** 本地日期的 epochDay */
+    public long getEventEpochDay() { requireEventTime(); return eventEpochDay; }
+
+    /**
+     * 按事件时间比较（秒、纳秒）
+     */
+    public int compareEventTime(NetflowLog other) {
+        int bySecond = Long.compare(getEventEpochSecond(), other.getEventEpochSecond());
+        return bySecond != 0 ? bySecond : Integer.compare(eventNano, other.eventNano);
+    }
+
+    private void requireEventTime() {
+        if (eventHour < 0) {
+            throw new IllegalStateException("事件时间未设置");
+        }
+    }
 
     public String getUserId() { return userId; }
     public void setUserId(String userId) { this.userId = userId; }
 
-    public String getDepartment() { return department; }
-    public void setDepartment(String department) { this.department = department; }
+    public String getDepartment() { return SymbolTables.DEPARTMENTS.decode(departmentId); }
+    public void setDepartment(String department) { this.departmentId = SymbolTables.DEPARTMENTS.encode(department); }
+    public int getDepartmentId() { return departmentId; }
 
     public String getSrcIp() { return srcIp; }
     public void setSrcIp(String srcIp) { this.srcIp = srcIp; }
@@ -53,31 +121,56 @@ public class NetflowLog {
     public String getDstIp() { return dstIp; }
     public void setDstIp(String dstIp) { this.dstIp = dstIp; }
 
-    public String getDomain() { return domain; }
-    public void setDomain(String domain) { this.domain = domain; }
+    public String getDomain() { return decode(SymbolTables.DOMAINS, domainId, DOMAIN); }
+    public void setDomain(String domain) { this.domainId = encode(SymbolTables.DOMAINS, domain, DOMAIN); }
+    public int getDomainId() { return domainId; }
 
     public String getUrl() { return url; }
     public void setUrl(String url) { this.url = url; }
 
-    public String getMethod() { return method; }
-    public void setMethod(String method) { this.method = method; }
+    public String getMethod() { return decode(SymbolTables.METHODS, methodId, METHOD); }
+    public void setMethod(String method) { this.methodId = encode(SymbolTables.METHODS, method, METHOD); }
+    public int getMethodId() { return methodId; }
 
     public Long getBytes() { return bytes; }
     public void setBytes(Long bytes) { this.bytes = bytes; }
 
-    public String getUserAgent() { return userAgent; }
-    public void setUserAgent(String userAgent) { this.userAgent = userAgent; }
+    public String getUserAgent() { return decode(SymbolTables.USER_AGENTS, userAgentId, USER_AGENT); }
+    public void setUserAgent(String userAgent) { this.userAgentId = encode(SymbolTables.USER_AGENTS, userAgent, USER_AGENT); }
+    public int getUserAgentId() { return userAgentId; }
+
+    public String getSiteCategory() { return SymbolTables.CATEGORIES.decode(siteCategoryId); }
+    public void setSiteCategory(String siteCategory) { this.siteCategoryId = SymbolTables.CATEGORIES.encode(siteCategory); }
+    public int getSiteCategoryId() { return siteCategoryId; }
+
+    /** 是否工作相关网站，未经维表富化时为 null */
+    public Boolean getWorkSite() { return workSite < 0 ? null : workSite == 1; }
+    public void setWorkSite(Boolean workSite) { this.workSite = (byte) (workSite == null ? -1 : workSite ? 1 : 0); }
+
+    private int encode(StringDictionary symbols, String value, int field) {
+        int code = symbols.encode(value);
+        if (code == StringDictionary.OVERFLOW_CODE) {
+            if (overflowSymbols == null) {
+                overflowSymbols = new String[3];
+            }
+            overflowSymbols[field] = value;
+        } else if (overflowSymbols != null) {
+            overflowSymbols[field] = null;
+        }
+        return code;
+    }
 
-    public String getSiteCategory() { return siteCategory; }
-    public void setSiteCategory(String siteCategory) { this.siteCategory = siteCategory; }
+    private String decode(StringDictionary symbols, int code, int field) {
+        return code == StringDictionary.OVERFLOW_CODE ? overflowSymbols[field] : symbols.decode(code);
+    }
 
     @Override
     public String toString() {
         return "NetflowLog{" +
-                "eventTime=" + eventTime +
+                "eventTime=" + getEventTime() +
                 ", userId='" + userId + '\'' +
-                ", department='" + department + '\'' +
-                ", domain='" + domain + '\'' +
+                ", department='" + getDepartment() + '\'' +
+                ", domain='" + getDomain() + '\'' +
                 ", bytes=" + bytes +
                 '}';
     }
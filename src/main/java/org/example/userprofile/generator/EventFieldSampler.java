@@ -0,0 +1,166 @@
+package org.example.userprofile.generator;
+
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.store.SymbolTables;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.example.userprofile.generator.MockDataGenerator.*;
+
+/**
+ * 按 MockDataGenerator 的分布抽取日志字段
+ * 员工在构造时按随机源生成，低基数字段预先取全局符号表中的规范实例，URL 预先拼接，
+ * 生成日志时不做字符串格式化，字典查找只命中已有编码。构造后只读，可被多个线程共享（随机源由调用方提供）
+ */
+final class EventFieldSampler {
+
+    // generateWeightedTime：85% 的概率最多尝试10次均匀抽样直到落在 8:00-18:00，否则均匀抽样
+    private static final double WORK_TIME_PROBABILITY = 0.85;
+    private static final int WORK_TIME_ATTEMPTS = 10;
+    private static final int WORK_START_HOUR = 8;
+    private static final int WORK_END_HOUR = 18;
+
+    private final Map<String, String> employees = new LinkedHashMap<>();
+    private final String[] userIds;
+    private final String[] userDepartments;
+
+    private final String[] categories = new String[CATEGORIES.length];
+    private final String[][] domains = new String[CATEGORIES.length][];
+    private final String[][][] urls = new String[CATEGORIES.length][][];
+    private final String[] methods = new String[METHODS.length];
+    private final String[] userAgents = new String[USER_AGENTS.length];
+
+    EventFieldSampler(SplittableRandom random, int employeeCount) {
+        this(random, employeeCount, 0);
+    }
+
+    /**
+     * @param domainCount 域名个数，0 表示使用 MockDataGenerator 的域名；
+     *                    大于0时改用合成域名 site{i}.example.com，第 i 个属于第 i % 分类数 个分类，用于覆盖不同的域名基数
+     */
+    EventFieldSampler(SplittableRandom random, int employeeCount, int domainCount) {
+        if (employeeCount <= 0) {
+            throw new IllegalArgumentException("employeeCount 须大于0: " + employeeCount);
+        }
+        if (domainCount != 0 && domainCount < CATEGORIES.length) {
+            throw new IllegalArgumentException("domainCount 须为0或不小于分类数 " + CATEGORIES.length + ": " + domainCount);
+        }
+        String[] firstNames = {"张", "李", "王", "刘", "陈", "杨", "赵", "黄", "周", "吴"};
+        String[] lastNames = {"伟", "芳", "娜", "秀英", "敏", "静", "丽", "强", "磊", "军"};
+        for (int i = 0; i < employeeCount; i++) {
+            String department = DEPARTMENTS[DEPARTMENT_TABLE.sample(random)];
+            int userNum = 1000 + random.nextInt(9000);
+            String userId = "E" + String.format("%03d%04d", Math.abs(department.hashCode() % 1000), userNum);
+            employees.put(userId, firstNames[random.nextInt(firstNames.length)]
+                    + lastNames[random.nextInt(lastNames.length)]);
+        }
+        userIds = employees.keySet().toArray(new String[0]);
+        userDepartments = new String[userIds.length];
+        for (int i = 0; i < userIds.length; i++) {
+            // 与 generateLogs 相同，部门由 userId 推断
+            userDepartments[i] = SymbolTables.DEPARTMENTS.intern(generateDepartmentFromUserId(userIds[i]));
+        }
+
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            categories[c] = SymbolTables.CATEGORIES.intern(CATEGORIES[c]);
+            String[] categoryDomains = domainCount > 0 ? syntheticDomains(c, domainCount) : CATEGORY_DOMAINS[c];
+            domains[c] = new String[categoryDomains.length];
+            urls[c] = new String[categoryDomains.length][PATHS.length];
+            for (int d = 0; d < categoryDomains.length; d++) {
+                domains[c][d] = SymbolTables.DOMAINS.intern(categoryDomains[d]);
+                for (int p = 0; p < PATHS.length; p++) {
+                    urls[c][d][p] = "https://" + categoryDomains[d] + "/" + PATHS[p];
+                }
+            }
+        }
+        for (int i = 0; i < METHODS.length; i++) {
+            methods[i] = SymbolTables.METHODS.intern(METHODS[i]);
+        }
+        for (int i = 0; i < USER_AGENTS.length; i++) {
+            userAgents[i] = SymbolTables.USER_AGENTS.intern(USER_AGENTS[i]);
+        }
+    }
+
+    private static String[] syntheticDomains(int category, int domainCount) {
+        String[] domains = new String[(domainCount - category + CATEGORIES.length - 1) / CATEGORIES.length];
+        for (int d = 0; d < domains.length; d++) {
+            domains[d] = "site" + (category + d * CATEGORIES.length) + ".example.com";
+        }
+        return domains;
+    }
+
+    /**
+     * 员工信息（userId → 姓名），按生成顺序
+     */
+    Map<String, String> getEmployees() {
+        return Collections.unmodifiableMap(employees);
+    }
+
+    static boolean isWorkHour(int hour) {
+        return hour >= WORK_START_HOUR && hour < WORK_END_HOUR;
+    }
+
+    /**
+     * generateWeightedTime 得到的时间分布中，非工作时间与工作时间每秒的相对概率（全时段平均为1）
+     *
+     * @param workFraction 工作时间占全时段的比例
+     * @return {非工作时间, 工作时间}
+     */
+    static double[] relativeRates(double workFraction) {
+        double allMiss = Math.pow(1 - workFraction, WORK_TIME_ATTEMPTS);
+        double uniform = 1 - WORK_TIME_PROBABILITY + WORK_TIME_PROBABILITY * allMiss;
+        double work = workFraction > 0 ? WORK_TIME_PROBABILITY * (1 - allMiss) / workFraction : 0;
+        return new double[]{uniform, uniform + work};
+    }
+
+    /**
+     * 抽取一条日志
+     */
+    NetflowLog sample(long epochSecond, int nano, SplittableRandom random) {
+        int user = random.nextInt(userIds.length);
+        int category = CATEGORY_TABLE.sample(random);
+        int domain = random.nextInt(domains[category].length);
+
+        NetflowLog log = new NetflowLog();
+        log.setEventEpochSecond(epochSecond, nano);
+        log.setUserId(userIds[user]);
+        log.setDepartment(userDepartments[user]);
+        log.setSrcIp(ip(random));
+        log.setDstIp(ip(random));
+        log.setDomain(domains[category][domain]);
+        log.setUrl(urls[category][domain][random.nextInt(PATHS.length)]);
+        log.setMethod(methods[random.nextInt(methods.length)]);
+        log.setBytes(bytes(random));
+        log.setUserAgent(userAgents[random.nextInt(userAgents.length)]);
+        log.setSiteCategory(categories[category]);
+        return log;
+    }
+
+    /**
+     * 与 generateIp 相同的分布，不经过 String.format
+     */
+    private static String ip(SplittableRandom random) {
+        return new StringBuilder(15)
+                .append(10 + random.nextInt(20)).append('.')
+                .append(random.nextInt(256)).append('.')
+                .append(random.nextInt(256)).append('.')
+                .append(random.nextInt(256))
+                .toString();
+    }
+
+    /**
+     * 与 generateBytes 相同的分布
+     */
+    private static long bytes(SplittableRandom random) {
+        if (random.nextDouble() < 0.8) {
+            return 1000 + random.nextInt(999000);
+        } else if (random.nextDouble() < 0.95) {
+            return 1024000 + random.nextInt(9000000);
+        } else {
+            return 10485760 + random.nextInt(50000000);
+        }
+    }
+}
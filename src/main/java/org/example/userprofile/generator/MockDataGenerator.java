@@ -1,10 +1,16 @@
 package org.example.userprofile.generator;
 
 import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.io.JsonWriter;
+import org.example.userprofile.io.LogExporter;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * 模拟数据生成器
@@ -37,7 +43,7 @@ public class MockDataGenerator {
     }};
 
     // User Agent 列表
-    private static final String[] USER_AGENTS = {
+    static final String[] USER_AGENTS = {
             "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 Chrome/120.0.0.0",
             "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36 Chrome/120.0.0.0",
             "Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:121.0) Gecko/20100101 Firefox/121.0",
@@ -46,59 +52,47 @@ public class MockDataGenerator {
     };
 
     // HTTP 方法
-    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE"};
+    static final String[] METHODS = {"GET", "POST", "PUT", "DELETE"};
+
+    // URL 路径
+    static final String[] PATHS = {"api/v1/data", "home", "detail/123", "search?q=test",
+            "user/profile", "images/2024/12/file.jpg", "docs/guide", "post/45678"};
+
+    // 预计算的部门与网站分类别名表，抽样时不再累加权重
+    static final String[] DEPARTMENTS = DEPARTMENT_WEIGHTS.keySet().toArray(new String[0]);
+    static final AliasTable DEPARTMENT_TABLE = new AliasTable(
+            DEPARTMENT_WEIGHTS.values().stream().mapToInt(Integer::intValue).toArray());
+    private static final int DEPARTMENT_TOTAL_WEIGHT =
+            DEPARTMENT_WEIGHTS.values().stream().mapToInt(Integer::intValue).sum();
+
+    static final String[] CATEGORIES = SITE_CATEGORIES.keySet().toArray(new String[0]);
+    static final String[][] CATEGORY_DOMAINS = SITE_CATEGORIES.values().stream()
+            .map(data -> (String[]) data[0]).toArray(String[][]::new);
+    private static final boolean[] CATEGORY_WORK_RELATED = new boolean[CATEGORIES.length];
+    static final AliasTable CATEGORY_TABLE = new AliasTable(
+            SITE_CATEGORIES.values().stream().mapToInt(data -> (Integer) data[1]).toArray());
+
+    static {
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            CATEGORY_WORK_RELATED[i] = (Boolean) SITE_CATEGORIES.get(CATEGORIES[i])[2];
+        }
+    }
 
     /**
      * 加权随机选择部门
      */
     public static String generateDepartment() {
-        int totalWeight = DEPARTMENT_WEIGHTS.values().stream().mapToInt(Integer::intValue).sum();
-        int random = RANDOM.nextInt(totalWeight);
-        int currentWeight = 0;
-
-        for (Map.Entry<String, Integer> entry : DEPARTMENT_WEIGHTS.entrySet()) {
-            currentWeight += entry.getValue();
-            if (random < currentWeight) {
-                return entry.getKey();
-            }
-        }
-        return DEPARTMENT_WEIGHTS.keySet().iterator().next();
+        return DEPARTMENTS[DEPARTMENT_TABLE.sample(RANDOM)];
     }
 
     /**
      * 加权随机选择网站（工作相关网站概率更高）
      */
     public static String[] generateSite() {
-        int totalWeight = 0;
-        for (Object[] categoryData : SITE_CATEGORIES.values()) {
-            totalWeight += (Integer) categoryData[1]; // 权重
-        }
-
-        int random = RANDOM.nextInt(totalWeight);
-        int currentWeight = 0;
-        String selectedCategory = null;
-        Object[] selectedData = null;
-
-        for (Map.Entry<String, Object[]> entry : SITE_CATEGORIES.entrySet()) {
-            Object[] data = entry.getValue();
-            currentWeight += (Integer) data[1];
-            if (random < currentWeight) {
-                selectedCategory = entry.getKey();
-                selectedData = data;
-                break;
-            }
-        }
-
-        if (selectedData == null) {
-            selectedCategory = SITE_CATEGORIES.keySet().iterator().next();
-            selectedData = SITE_CATEGORIES.get(selectedCategory);
-        }
-
-        String[] domains = (String[]) selectedData[0];
+        int category = CATEGORY_TABLE.sample(RANDOM);
+        String[] domains = CATEGORY_DOMAINS[category];
         String domain = domains[RANDOM.nextInt(domains.length)];
-        boolean isWorkRelated = (Boolean) selectedData[2];
-
-        return new String[]{selectedCategory, domain, String.valueOf(isWorkRelated)};
+        return new String[]{CATEGORIES[category], domain, String.valueOf(CATEGORY_WORK_RELATED[category])};
     }
 
     /**
@@ -114,11 +108,12 @@ public class MockDataGenerator {
      * 生成IP地址
      */
     public static String generateIp() {
-        return String.format("%d.%d.%d.%d",
-                10 + RANDOM.nextInt(20),
-                RANDOM.nextInt(256),
-                RANDOM.nextInt(256),
-                RANDOM.nextInt(256));
+        return new StringBuilder(15)
+                .append(10 + RANDOM.nextInt(20)).append('.')
+                .append(RANDOM.nextInt(256)).append('.')
+                .append(RANDOM.nextInt(256)).append('.')
+                .append(RANDOM.nextInt(256))
+                .toString();
     }
 
     /**
@@ -178,7 +173,7 @@ public class MockDataGenerator {
         String domain = site[1];
 
         // 构造URL
-        String url = String.format("https://%s/%s", domain, generatePath());
+        String url = "https://" + domain + "/" + generatePath();
 
         NetflowLog log = new NetflowLog();
         log.setEventTime(eventTime);
@@ -209,9 +204,14 @@ public class MockDataGenerator {
      * 生成URL路径
      */
     private static String generatePath() {
-        String[] paths = {"api/v1/data", "home", "detail/123", "search?q=test",
-                "user/profile", "images/2024/12/file.jpg", "docs/guide", "post/45678"};
-        return paths[RANDOM.nextInt(paths.length)];
+        return PATHS[RANDOM.nextInt(PATHS.length)];
+    }
+
+    /**
+     * 重置串行生成方法共享的随机源，之后的调用序列可复现（用于基准测试；多线程同时调用时不保证）
+     */
+    public static void reseed(long seed) {
+        RANDOM.setSeed(seed);
     }
 
     /**
@@ -245,19 +245,30 @@ public class MockDataGenerator {
         }
 
         // 按时间排序
-        logs.sort(Comparator.comparing(NetflowLog::getEventTime));
+        logs.sort(NetflowLog::compareEventTime);
 
         return logs;
     }
 
+    /**
+     * 按种子可复现地并行生成日志（按时间排序），相同种子在任意线程数下结果相同
+     */
+    public static List<NetflowLog> generateLogs(LocalDateTime startTime,
+                                                 LocalDateTime endTime,
+                                                 int totalLogs,
+                                                 long seed) {
+        ParallelLogGenerator generator = new ParallelLogGenerator(seed, startTime, endTime,
+                Math.max(20, totalLogs / 100));
+        return generator.generateLogs(totalLogs, ForkJoinPool.commonPool());
+    }
+
     /**
      * 从userId推断部门
      */
-    private static String generateDepartmentFromUserId(String userId) {
+    static String generateDepartmentFromUserId(String userId) {
         // 使用userId的hash值选择部门，确保一致性
         int hash = Math.abs(userId.hashCode());
-        int totalWeight = DEPARTMENT_WEIGHTS.values().stream().mapToInt(Integer::intValue).sum();
-        int random = hash % totalWeight;
+        int random = hash % DEPARTMENT_TOTAL_WEIGHT;
         int currentWeight = 0;
 
         for (Map.Entry<String, Integer> entry : DEPARTMENT_WEIGHTS.entrySet()) {
@@ -290,7 +301,7 @@ public class MockDataGenerator {
             LocalDateTime eventTime = startTime.plusMinutes(randomMinutes);
 
             // 构造URL
-            String url = String.format("https://%s/%s", domain, generatePath());
+            String url = "https://" + domain + "/" + generatePath();
 
             NetflowLog log = new NetflowLog();
             log.setEventTime(eventTime);
@@ -308,7 +319,7 @@ public class MockDataGenerator {
             logs.add(log);
         }
 
-        logs.sort(Comparator.comparing(NetflowLog::getEventTime));
+        logs.sort(NetflowLog::compareEventTime);
 
         return logs;
     }
@@ -353,31 +364,12 @@ public class MockDataGenerator {
      * 导出日志为JSON格式
      */
     public static String exportToJson(List<NetflowLog> logs) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[\n");
-
-        for (int i = 0; i < logs.size(); i++) {
-            NetflowLog log = logs.get(i);
-            sb.append("  {\n");
-            sb.append("    \"timestamp\": \"").append(log.getEventTime()).append("\",\n");
-            sb.append("    \"src_ip\": \"").append(log.getSrcIp()).append("\",\n");
-            sb.append("    \"user_id\": \"").append(log.getUserId()).append("\",\n");
-            sb.append("    \"department\": \"").append(log.getDepartment()).append("\",\n");
-            sb.append("    \"dst_ip\": \"").append(log.getDstIp()).append("\",\n");
-            sb.append("    \"domain\": \"").append(log.getDomain()).append("\",\n");
-            sb.append("    \"url\": \"").append(log.getUrl()).append("\",\n");
-            sb.append("    \"method\": \"").append(log.getMethod()).append("\",\n");
-            sb.append("    \"bytes\": ").append(log.getBytes()).append(",\n");
-            sb.append("    \"user_agent\": \"").append(log.getUserAgent()).append("\",\n");
-            sb.append("    \"site_category\": \"").append(log.getSiteCategory()).append("\"\n");
-            sb.append("  }");
-            if (i < logs.size() - 1) {
-                sb.append(",");
-            }
-            sb.append("\n");
+        StringWriter sb = new StringWriter();
+        try {
+            LogExporter.writeJsonArray(new JsonWriter(sb), logs);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-
-        sb.append("]");
         return sb.toString();
     }
 }
@@ -0,0 +1,205 @@
+package org.example.userprofile.generator;
+
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.time.EventTimes;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * 可复现的并行模拟日志生成器
+ * 与 {@link MockDataGenerator#generateLogs} 分布相同（工作时间加权、部门/分类按权重），但：
+ * 给定种子时输出确定，与线程数无关；日志按固定行数切块，每块使用由种子顺序派生的 SplittableRandom；
+ * 事件时间按有序统计量生成（指数间隔的累计和经时间分布的反函数映射），
+ * 每块覆盖互不重叠的连续时间段且块内已按时间有序，按块顺序输出即为全局时间序，不需要整体排序，
+ * 内存只与在途块数有关
+ */
+public class ParallelLogGenerator {
+
+    public static final int CHUNK_SIZE = 1 << 15;
+
+    private final long seed;
+    private final EventFieldSampler fields;
+
+    // 时间分布：按本地整点切段，段内概率密度为常数
+    private final long[] segmentOffsets;   // 段起点（距起始时间的秒数），末尾为总秒数
+    private final long[] segmentEpochs;    // 段起点的 epoch 秒
+    private final double[] segmentCdf;     // 段起点的累计概率
+    private final double[] segmentDensity; // 每秒概率
+
+    /**
+     * @param seed          随机种子，相同参数与种子得到相同输出
+     * @param startTime     起始时间（含）
+     * @param endTime       结束时间（不含）
+     * @param employeeCount 员工数
+     */
+    public ParallelLogGenerator(long seed, LocalDateTime startTime, LocalDateTime endTime, int employeeCount) {
+        this(seed, startTime, endTime, employeeCount, 0);
+    }
+
+    /**
+     * @param domainCount 合成域名个数（不小于分类数），0 表示使用内置域名
+     */
+    public ParallelLogGenerator(long seed, LocalDateTime startTime, LocalDateTime endTime, int employeeCount,
+                                int domainCount) {
+        if (!startTime.isBefore(endTime)) {
+            throw new IllegalArgumentException("结束时间须晚于起始时间");
+        }
+        this.seed = seed;
+        this.fields = new EventFieldSampler(new SplittableRandom(seed), employeeCount, domainCount);
+
+        // 按本地整点切段
+        List<LocalDateTime> boundaries = new ArrayList<>();
+        boundaries.add(startTime);
+        LocalDateTime hour = startTime.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+        while (hour.isBefore(endTime)) {
+            boundaries.add(hour);
+            hour = hour.plusHours(1);
+        }
+        int segments = boundaries.size();
+        segmentOffsets = new long[segments + 1];
+        segmentEpochs = new long[segments];
+        boolean[] workHour = new boolean[segments];
+        long workSeconds = 0;
+        for (int i = 0; i < segments; i++) {
+            LocalDateTime boundary = boundaries.get(i);
+            segmentOffsets[i] = Duration.between(startTime, boundary).toSeconds();
+            segmentEpochs[i] = EventTimes.toEpochSecond(boundary);
+            workHour[i] = EventFieldSampler.isWorkHour(boundary.getHour());
+        }
+        long totalSeconds = Duration.between(startTime, endTime).toSeconds();
+        segmentOffsets[segments] = totalSeconds;
+        for (int i = 0; i < segments; i++) {
+            if (workHour[i]) {
+                workSeconds += segmentOffsets[i + 1] - segmentOffsets[i];
+            }
+        }
+
+        // 与 generateWeightedTime 相同的时间分布
+        double[] rates = EventFieldSampler.relativeRates((double) workSeconds / totalSeconds);
+        segmentCdf = new double[segments + 1];
+        segmentDensity = new double[segments];
+        for (int i = 0; i < segments; i++) {
+            segmentDensity[i] = rates[workHour[i] ? 1 : 0] / totalSeconds;
+            segmentCdf[i + 1] = segmentCdf[i] + segmentDensity[i] * (segmentOffsets[i + 1] - segmentOffsets[i]);
+        }
+    }
+
+    /**
+     * 员工信息（userId → 姓名），按生成顺序
+     */
+    public Map<String, String> getEmployees() {
+        return fields.getEmployees();
+    }
+
+    /**
+     * 生成日志并收集为列表（按时间有序）
+     */
+    public List<NetflowLog> generateLogs(int totalLogs, Executor executor) {
+        List<NetflowLog> logs = new ArrayList<>(totalLogs);
+        generate(totalLogs, executor, logs::add);
+        return logs;
+    }
+
+    /**
+     * 并行生成日志，在调用线程上按时间顺序逐条交给 consumer
+     *
+     * @return 生成的日志条数
+     */
+    public long generate(long totalLogs, Executor executor, Consumer<NetflowLog> consumer) {
+        if (totalLogs <= 0) {
+            return 0;
+        }
+        int chunks = (int) ((totalLogs + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        // 块种子顺序派生，与线程数无关
+        SplittableRandom root = new SplittableRandom(seed ^ 0x9E3779B97F4A7C15L);
+        long[] timeSeeds = new long[chunks];
+        long[] fieldSeeds = new long[chunks];
+        for (int c = 0; c < chunks; c++) {
+            timeSeeds[c] = root.nextLong();
+            fieldSeeds[c] = root.nextLong();
+        }
+
+        // 第一遍：各块指数间隔之和，按块顺序求前缀和
+        List<CompletableFuture<Double>> sums = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            final int chunk = c;
+            sums.add(CompletableFuture.supplyAsync(() -> {
+                SplittableRandom random = new SplittableRandom(timeSeeds[chunk]);
+                double sum = 0;
+                for (int i = chunkRows(chunk, totalLogs); i > 0; i--) {
+                    sum += exponential(random);
+                }
+                return sum;
+            }, executor));
+        }
+        double[] prefix = new double[chunks + 1];
+        for (int c = 0; c < chunks; c++) {
+            prefix[c + 1] = prefix[c] + sums.get(c).join();
+        }
+        // 末尾再加一个间隔，使最后一条日志的分位数小于1
+        double total = prefix[chunks] + exponential(root);
+
+        // 第二遍：生成各块日志，按块顺序输出，在途块数有上限
+        int window = Math.max(2, 2 * Runtime.getRuntime().availableProcessors());
+        Deque<CompletableFuture<NetflowLog[]>> pending = new ArrayDeque<>();
+        int next = 0;
+        long emitted = 0;
+        for (int c = 0; c < chunks; c++) {
+            while (next < chunks && next < c + window) {
+                final int chunk = next++;
+                pending.add(CompletableFuture.supplyAsync(() -> generateChunk(
+                        chunkRows(chunk, totalLogs), timeSeeds[chunk], fieldSeeds[chunk], prefix[chunk], total),
+                        executor));
+            }
+            for (NetflowLog log : pending.poll().join()) {
+                consumer.accept(log);
+                emitted++;
+            }
+        }
+        return emitted;
+    }
+
+    private static int chunkRows(int chunk, long totalLogs) {
+        return (int) Math.min(CHUNK_SIZE, totalLogs - (long) chunk * CHUNK_SIZE);
+    }
+
+    private NetflowLog[] generateChunk(int rows, long timeSeed, long fieldSeed,
+                                       double chunkStart, double total) {
+        SplittableRandom times = new SplittableRandom(timeSeed);
+        SplittableRandom random = new SplittableRandom(fieldSeed);
+        NetflowLog[] logs = new NetflowLog[rows];
+        // 与第一遍相同的求和顺序，块内分位数单调且不超过下一块的起点
+        double sum = 0;
+        for (int i = 0; i < rows; i++) {
+            sum += exponential(times);
+            long eventTime = epochSecondAt((chunkStart + sum) / total);
+
+            logs[i] = fields.sample(eventTime, 0, random);
+        }
+        return logs;
+    }
+
+    /**
+     * 时间分布的反函数：累计概率 → epoch 秒
+     */
+    private long epochSecondAt(double quantile) {
+        int segment = Arrays.binarySearch(segmentCdf, 0, segmentDensity.length, quantile);
+        if (segment < 0) {
+            segment = -segment - 2;
+        }
+        segment = Math.max(0, Math.min(segment, segmentDensity.length - 1));
+        long length = segmentOffsets[segment + 1] - segmentOffsets[segment];
+        long offset = (long) ((quantile - segmentCdf[segment]) / segmentDensity[segment]);
+        return segmentEpochs[segment] + Math.max(0, Math.min(offset, length - 1));
+    }
+
+    private static double exponential(SplittableRandom random) {
+        return -Math.log(1 - random.nextDouble());
+    }
+}
@@ -0,0 +1,149 @@
+package org.example.userprofile.generator;
+
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.io.NetflowLogSource;
+import org.example.userprofile.time.EventTimes;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 按泊松过程惰性生成的日志流
+ * 到达率按本地整点分段为常数：工作时间（8:00-18:00）与非工作时间的相对强度与
+ * generateWeightedTime 按天计算的分布一致；段内按指数间隔生成，跨越整点时从整点重新抽样（无记忆性）。
+ * 事件按时间顺序逐条产生，不持有已生成的日志；不指定结束时间时无限生成。
+ * 与文件读取实现同一 {@link NetflowLogSource} 接口，可直接接入相同的下游处理
+ */
+public class PoissonLogSource implements NetflowLogSource, Iterator<NetflowLog> {
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final EventFieldSampler fields;
+    private final SplittableRandom random;
+    private final double[] ratePerSecond = new double[2];
+    private final long endEpochSecond;
+
+    // 当前时间：epoch 秒 + 秒内小数部分
+    private long second;
+    private double fraction;
+    private long segmentEnd;
+    private double segmentRate;
+    private NetflowLog next;
+    private long emitted;
+
+    /**
+     * @param seed          随机种子
+     * @param startTime     起始时间
+     * @param endTime       结束时间（不含），null 表示无限生成
+     * @param eventsPerHour 全天平均每小时事件数
+     * @param employeeCount 员工数
+     */
+    public PoissonLogSource(long seed, LocalDateTime startTime, LocalDateTime endTime,
+                            double eventsPerHour, int employeeCount) {
+        if (eventsPerHour <= 0) {
+            throw new IllegalArgumentException("eventsPerHour 须大于0: " + eventsPerHour);
+        }
+        this.random = new SplittableRandom(seed);
+        this.fields = new EventFieldSampler(random.split(), employeeCount);
+        double[] rates = EventFieldSampler.relativeRates(10 / 24.0);
+        double baseRate = eventsPerHour / EventTimes.SECONDS_PER_HOUR;
+        ratePerSecond[0] = rates[0] * baseRate;
+        ratePerSecond[1] = rates[1] * baseRate;
+        this.endEpochSecond = endTime != null ? EventTimes.toEpochSecond(endTime) : Long.MAX_VALUE;
+        this.second = EventTimes.toEpochSecond(startTime);
+        enterSegment();
+    }
+
+    /**
+     * 员工信息（userId → 姓名）
+     */
+    public Map<String, String> getEmployees() {
+        return fields.getEmployees();
+    }
+
+    /**
+     * 已产生的日志条数
+     */
+    public long getEmittedCount() {
+        return emitted;
+    }
+
+    @Override
+    public NetflowLog read() {
+        if (next != null) {
+            NetflowLog log = next;
+            next = null;
+            return log;
+        }
+        return advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = advance();
+        }
+        return next != null;
+    }
+
+    @Override
+    public NetflowLog next() {
+        NetflowLog log = read();
+        if (log == null) {
+            throw new NoSuchElementException();
+        }
+        return log;
+    }
+
+    /**
+     * 以有序、非空的 Stream 形式使用，无限流须配合 limit 等短路操作
+     */
+    public Stream<NetflowLog> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private NetflowLog advance() {
+        while (true) {
+            double gap = -Math.log(1 - random.nextDouble()) / segmentRate;
+            double arrival = fraction + gap;
+            if (second + arrival >= segmentEnd) {
+                // 跨过整点，从整点按新到达率重新抽样
+                second = segmentEnd;
+                fraction = 0;
+                if (second >= endEpochSecond) {
+                    return null;
+                }
+                enterSegment();
+                continue;
+            }
+            long whole = (long) arrival;
+            second += whole;
+            fraction = arrival - whole;
+            if (second >= endEpochSecond) {
+                return null;
+            }
+            emitted++;
+            int nano = Math.min((int) (fraction * NANOS_PER_SECOND), 999_999_999);
+            return fields.sample(second, nano, random);
+        }
+    }
+
+    /**
+     * 进入当前时间所在的本地整点段
+     */
+    private void enterSegment() {
+        LocalDateTime local = EventTimes.toLocalDateTime(second, 0);
+        segmentEnd = Math.min(EventTimes.toEpochSecond(local.truncatedTo(ChronoUnit.HOURS).plusHours(1)),
+                endEpochSecond);
+        segmentRate = ratePerSecond[EventFieldSampler.isWorkHour(local.getHour()) ? 1 : 0];
+    }
+}
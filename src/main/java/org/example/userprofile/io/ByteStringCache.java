@@ -0,0 +1,76 @@
+package org.example.userprofile.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * UTF-8 字节到字符串的解码缓存
+ * 部门、分类、域名等重复度高的字段命中缓存时直接复用同一个String实例，不再分配
+ */
+final class ByteStringCache {
+
+    // 超过该长度的值（如URL）重复率低，不进入缓存
+    private static final int MAX_CACHED_LENGTH = 96;
+    private static final int MAX_ENTRIES = 1 << 16;
+
+    private byte[][] keys = new byte[1024][];
+    private String[] values = new String[1024];
+    private int size;
+
+    String decode(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return "";
+        }
+        if (length > MAX_CACHED_LENGTH) {
+            return new String(bytes, offset, length, StandardCharsets.UTF_8);
+        }
+
+        int hash = hash(bytes, offset, length);
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (keys[slot] != null) {
+            byte[] key = keys[slot];
+            if (key.length == length && Arrays.equals(key, 0, length, bytes, offset, offset + length)) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        String value = new String(bytes, offset, length, StandardCharsets.UTF_8);
+        if (size < MAX_ENTRIES) {
+            keys[slot] = Arrays.copyOfRange(bytes, offset, offset + length);
+            values[slot] = value;
+            if (++size * 2 > keys.length) {
+                rehash();
+            }
+        }
+        return value;
+    }
+
+    private void rehash() {
+        byte[][] oldKeys = keys;
+        String[] oldValues = values;
+        keys = new byte[oldKeys.length * 2][];
+        values = new String[oldValues.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = hash(oldKeys[i], 0, oldKeys[i].length) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int h = 1;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.userprofile.io;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 带缓冲的 UTF-8 JSON 输出
+ * 只负责转义字符串与输出字面量，结构（括号、逗号、缩进）由调用方按原样写出；
+ * 文件名以 .gz 结尾时以 gzip 压缩写出
+ */
+public class JsonWriter implements Closeable, Flushable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+
+    public JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * 打开文件输出，.gz 后缀时压缩
+     */
+    public static JsonWriter open(Path file) throws IOException {
+        OutputStream stream = Files.newOutputStream(file);
+        if (file.getFileName().toString().toLowerCase().endsWith(".gz")) {
+            stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+        }
+        return new JsonWriter(new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE));
+    }
+
+    /**
+     * 原样输出（结构字符、字段名等不需要转义的内容）
+     */
+    public JsonWriter raw(String text) throws IOException {
+        out.write(text);
+        return this;
+    }
+
+    /**
+     * 输出字符串值（含引号），null 输出为 null
+     */
+    public JsonWriter string(String value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return this;
+        }
+        out.write('"');
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            out.write(value, start, i - start);
+            start = i + 1;
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                case '\b': out.write("\\b"); break;
+                case '\f': out.write("\\f"); break;
+                default:
+                    out.write("\\u00");
+                    out.write(HEX[c >> 4]);
+                    out.write(HEX[c & 0xF]);
+            }
+        }
+        out.write(value, start, length - start);
+        out.write('"');
+        return this;
+    }
+
+    /**
+     * 输出数值或布尔值，null 输出为 null
+     */
+    public JsonWriter value(Object value) throws IOException {
+        out.write(String.valueOf(value));
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,128 @@
+package org.example.userprofile.io;
+
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.entity.UserProfile;
+import org.example.userprofile.sketch.DailyReservoirSampler;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 日志与用户画像导出
+ * 逐条写出到 {@link JsonWriter}，不在内存中拼接整个文档；采样导出单遍完成，内存与日志量无关
+ */
+public final class LogExporter {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private LogExporter() {
+    }
+
+    /**
+     * 输出日志的 JSON 数组（多行缩进格式，字段与 ods_netflow_log 列一致）
+     *
+     * @return 输出条数
+     */
+    public static long writeJsonArray(JsonWriter out, Iterable<NetflowLog> logs) throws IOException {
+        long count = 0;
+        out.raw("[\n");
+        for (Iterator<NetflowLog> it = logs.iterator(); it.hasNext(); ) {
+            NetflowLog log = it.next();
+            out.raw("  {\n");
+            out.raw("    \"timestamp\": ").string(String.valueOf(log.getEventTime())).raw(",\n");
+            out.raw("    \"src_ip\": ").string(log.getSrcIp()).raw(",\n");
+            out.raw("    \"user_id\": ").string(log.getUserId()).raw(",\n");
+            out.raw("    \"department\": ").string(log.getDepartment()).raw(",\n");
+            out.raw("    \"dst_ip\": ").string(log.getDstIp()).raw(",\n");
+            out.raw("    \"domain\": ").string(log.getDomain()).raw(",\n");
+            out.raw("    \"url\": ").string(log.getUrl()).raw(",\n");
+            out.raw("    \"method\": ").string(log.getMethod()).raw(",\n");
+            out.raw("    \"bytes\": ").value(log.getBytes()).raw(",\n");
+            out.raw("    \"user_agent\": ").string(log.getUserAgent()).raw(",\n");
+            out.raw("    \"site_category\": ").string(log.getSiteCategory()).raw("\n");
+            out.raw(it.hasNext() ? "  },\n" : "  }\n");
+            count++;
+        }
+        out.raw("]");
+        return count;
+    }
+
+    /**
+     * 输出 NDJSON（每行一条日志），可由 {@link NetflowLogReader} 读回
+     *
+     * @return 输出条数
+     */
+    public static long writeNdjson(JsonWriter out, Iterable<NetflowLog> logs) throws IOException {
+        long count = 0;
+        for (NetflowLog log : logs) {
+            out.raw("{\"timestamp\":").string(log.hasEventTime() ? log.getEventTime().format(FORMATTER) : null);
+            out.raw(",\"src_ip\":").string(log.getSrcIp());
+            out.raw(",\"user_id\":").string(log.getUserId());
+            out.raw(",\"department\":").string(log.getDepartment());
+            out.raw(",\"dst_ip\":").string(log.getDstIp());
+            out.raw(",\"domain\":").string(log.getDomain());
+            out.raw(",\"url\":").string(log.getUrl());
+            out.raw(",\"method\":").string(log.getMethod());
+            out.raw(",\"bytes\":").value(log.getBytes());
+            out.raw(",\"user_agent\":").string(log.getUserAgent());
+            out.raw(",\"site_category\":").string(log.getSiteCategory());
+            out.raw("}\n");
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 导出按天均匀采样的日志（总数不超过 limit）与全部用户画像
+     *
+     * @return 采样的日志条数
+     */
+    public static int exportSample(Path file, Iterable<NetflowLog> logs, Map<String, UserProfile> profiles,
+                                   int limit) throws IOException {
+        DailyReservoirSampler sampler = new DailyReservoirSampler(Math.max(1, limit));
+        for (NetflowLog log : logs) {
+            sampler.add(log);
+        }
+        List<NetflowLog> sampledLogs = sampler.sample(limit);
+
+        try (JsonWriter out = JsonWriter.open(file)) {
+            out.raw("{\n");
+            out.raw("  \"logs\": [\n");
+            for (int i = 0; i < sampledLogs.size(); i++) {
+                NetflowLog log = sampledLogs.get(i);
+                out.raw("    {\n");
+                out.raw("      \"timestamp\": ").string(log.getEventTime().format(FORMATTER)).raw(",\n");
+                out.raw("      \"user_id\": ").string(log.getUserId()).raw(",\n");
+                out.raw("      \"department\": ").string(log.getDepartment()).raw(",\n");
+                out.raw("      \"domain\": ").string(log.getDomain()).raw(",\n");
+                out.raw("      \"category\": ").string(log.getSiteCategory()).raw(",\n");
+                out.raw("      \"bytes\": ").value(log.getBytes()).raw("\n");
+                out.raw(i < sampledLogs.size() - 1 ? "    },\n" : "    }\n");
+            }
+            out.raw("  ],\n");
+            out.raw("  \"profiles\": {\n");
+
+            int profileCount = 0;
+            for (UserProfile profile : profiles.values()) {
+                out.raw("    ").string(profile.getUserId()).raw(": {\n");
+                out.raw("      \"user_name\": ").string(profile.getUserName()).raw(",\n");
+                out.raw("      \"department\": ").string(profile.getDepartment()).raw(",\n");
+                out.raw("      \"active_days\": ").value(profile.getActiveDays()).raw(",\n");
+                out.raw("      \"avg_daily_pv\": ").value(profile.getAvgDailyPv()).raw(",\n");
+                out.raw("      \"peak_time_slot\": ").string(profile.getPeakTimeSlot()).raw(",\n");
+                out.raw("      \"top_site_category\": ").string(profile.getTopSiteCategory()).raw(",\n");
+                out.raw("      \"non_work_ratio\": ").value(profile.getNonWorkRatio()).raw(",\n");
+                out.raw("      \"risk_level\": ").value(profile.getRiskLevel()).raw("\n");
+                out.raw(profileCount++ < profiles.size() - 1 ? "    },\n" : "    }\n");
+            }
+
+            out.raw("  }\n");
+            out.raw("}\n");
+        }
+        return sampledLogs.size();
+    }
+}
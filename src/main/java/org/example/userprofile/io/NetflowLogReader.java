@@ -0,0 +1,583 @@
+package org.example.userprofile.io;
+
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.time.EventTimes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 流式日志读取器，支持 JSON 与带表头的 CSV
+ * 通过固定大小的缓冲区从通道读取，解析缓冲区复用，内存占用与文件大小无关。
+ * JSON 可以是以下任一形式，每条日志为一个扁平对象：
+ * <ul>
+ *     <li>NDJSON，每行一个对象（{@link LogExporter#writeNdjson}）</li>
+ *     <li>对象数组（exportToJson、{@link LogExporter#writeJsonArray}）</li>
+ *     <li>首个字段为 logs 数组的包装对象（{@link LogExporter#exportSample}），logs 之后的内容忽略</li>
+ * </ul>
+ * 字段名与 exportToJson 输出及 ods_netflow_log 列名一致：
+ * timestamp/event_time, src_ip, user_id, department, dst_ip, domain, url,
+ * method, bytes, user_agent, site_category/category
+ */
+public class NetflowLogReader implements NetflowLogSource {
+
+    /**
+     * 文件格式
+     */
+    public enum Format {
+        NDJSON, CSV;
+
+        /**
+         * 按扩展名推断格式（忽略 .gz 后缀），.csv 为 CSV，其余按 NDJSON 处理
+         */
+        public static Format of(Path path) {
+            String name = path.getFileName().toString().toLowerCase();
+            if (name.endsWith(".gz")) {
+                name = name.substring(0, name.length() - 3);
+            }
+            return name.endsWith(".csv") ? CSV : NDJSON;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 1 << 18;
+    private static final int EOF = -1;
+
+    // JSON 文档结构
+    private static final int JSON_START = 0;     // 尚未读到第一个对象
+    private static final int JSON_RECORDS = 1;   // NDJSON 或对象数组
+    private static final int JSON_ENVELOPE = 2;  // 包装对象的 logs 数组内
+    private static final int JSON_END = 3;       // logs 数组已结束
+
+    // 字段编号
+    private static final int FIELD_UNKNOWN = -1;
+    private static final int FIELD_EVENT_TIME = 0;
+    private static final int FIELD_SRC_IP = 1;
+    private static final int FIELD_USER_ID = 2;
+    private static final int FIELD_DEPARTMENT = 3;
+    private static final int FIELD_DST_IP = 4;
+    private static final int FIELD_DOMAIN = 5;
+    private static final int FIELD_URL = 6;
+    private static final int FIELD_METHOD = 7;
+    private static final int FIELD_BYTES = 8;
+    private static final int FIELD_USER_AGENT = 9;
+    private static final int FIELD_SITE_CATEGORY = 10;
+
+    private final ReadableByteChannel channel;
+    private final Format format;
+    private final ByteBuffer buffer;
+    private final byte[] buf;
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    // 当前字段值（已反转义的UTF-8字节），每条记录复用
+    private byte[] scratch = new byte[256];
+    private int scratchLength;
+    private boolean scratchNull;
+
+    private final ByteStringCache strings = new ByteStringCache();
+    private int[] csvColumns;
+    private int jsonState = JSON_START;
+    private long recordCount;
+
+    public NetflowLogReader(ReadableByteChannel channel, Format format) {
+        this.channel = channel;
+        this.format = format;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.buf = buffer.array();
+    }
+
+    /**
+     * 打开文件，按扩展名确定格式，.gz 文件自动解压
+     */
+    public static NetflowLogReader open(Path path) throws IOException {
+        ReadableByteChannel channel;
+        if (path.getFileName().toString().toLowerCase().endsWith(".gz")) {
+            channel = Channels.newChannel(new GZIPInputStream(Files.newInputStream(path), BUFFER_SIZE));
+        } else {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+        return new NetflowLogReader(channel, Format.of(path));
+    }
+
+    @Override
+    public NetflowLog read() throws IOException {
+        NetflowLog log = format == Format.CSV ? readCsvRecord() : readJsonRecord();
+        if (log != null) {
+            recordCount++;
+        }
+        return log;
+    }
+
+    /**
+     * 已读取的记录数
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ---------------------------------------------------------------- NDJSON
+
+    /**
+     * 读取下一个扁平JSON对象；对象之间的换行、逗号及外层数组括号均被跳过
+     * 第一个对象的首个字段为 logs 数组时视为包装对象，改为读取数组中的对象，数组结束即读取结束
+     */
+    private NetflowLog readJsonRecord() throws IOException {
+        if (jsonState == JSON_END) {
+            return null;
+        }
+        int b;
+        do {
+            b = next();
+        } while (b != EOF && b != '{' && !(b == ']' && jsonState == JSON_ENVELOPE));
+        if (b == EOF) {
+            if (jsonState == JSON_ENVELOPE) {
+                throw parseError("logs 数组未结束");
+            }
+            return null;
+        }
+        if (b == ']') {
+            jsonState = JSON_END;
+            return null;
+        }
+        boolean first = jsonState == JSON_START;
+        if (first) {
+            jsonState = JSON_RECORDS;
+        }
+
+        NetflowLog log = new NetflowLog();
+        while (true) {
+            b = skipWhitespace();
+            if (b == '}') {
+                return requireEventTime(log);
+            }
+            if (b == ',') {
+                continue;
+            }
+            if (b != '"') {
+                throw parseError("期望字段名，实际为 " + describe(b));
+            }
+            readJsonString();
+            String name = strings.decode(scratch, 0, scratchLength);
+            int field = fieldId(name);
+
+            b = skipWhitespace();
+            if (b != ':') {
+                throw parseError("期望 ':'，实际为 " + describe(b));
+            }
+
+            b = skipWhitespace();
+            if (b == '"') {
+                readJsonString();
+            } else if (b == '[' && first && name.equals("logs")) {
+                jsonState = JSON_ENVELOPE;
+                return readJsonRecord();
+            } else if (b == '{' || b == '[') {
+                throw parseError("不支持嵌套的JSON值");
+            } else if (b == EOF) {
+                throw parseError("记录不完整");
+            } else {
+                readJsonLiteral(b);
+            }
+            assign(log, field);
+        }
+    }
+
+    private void readJsonString() throws IOException {
+        scratchLength = 0;
+        scratchNull = false;
+        while (true) {
+            int b = next();
+            if (b == '"') {
+                return;
+            }
+            if (b == EOF) {
+                throw parseError("字符串未结束");
+            }
+            if (b == '\\') {
+                readEscape();
+            } else {
+                append((byte) b);
+            }
+        }
+    }
+
+    private void readEscape() throws IOException {
+        int b = next();
+        switch (b) {
+            case '"': append((byte) '"'); break;
+            case '\\': append((byte) '\\'); break;
+            case '/': append((byte) '/'); break;
+            case 'b': append((byte) '\b'); break;
+            case 'f': append((byte) '\f'); break;
+            case 'n': append((byte) '\n'); break;
+            case 'r': append((byte) '\r'); break;
+            case 't': append((byte) '\t'); break;
+            case 'u': appendCodePoint(readUnicodeEscape()); break;
+            default: throw parseError("非法转义 \\" + describe(b));
+        }
+    }
+
+    private int readUnicodeEscape() throws IOException {
+        int unit = readHex4();
+        if (Character.isHighSurrogate((char) unit)) {
+            // 代理对须紧跟 \\uXXXX 低位
+            if (next() != '\\' || next() != 'u') {
+                throw parseError("代理对不完整");
+            }
+            int low = readHex4();
+            if (!Character.isLowSurrogate((char) low)) {
+                throw parseError("代理对不完整");
+            }
+            return Character.toCodePoint((char) unit, (char) low);
+        }
+        if (Character.isLowSurrogate((char) unit)) {
+            throw parseError("代理对不完整");
+        }
+        return unit;
+    }
+
+    private int readHex4() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(next(), 16);
+            if (digit < 0) {
+                throw parseError("非法的\\u转义");
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * 读取数字、true/false/null 等非字符串值
+     */
+    private void readJsonLiteral(int first) throws IOException {
+        scratchLength = 0;
+        append((byte) first);
+        while (true) {
+            int b = peek();
+            if (b == EOF || b == ',' || b == '}' || isWhitespace(b)) {
+                break;
+            }
+            append((byte) next());
+        }
+        scratchNull = scratchLength == 4 && scratch[0] == 'n' && scratch[1] == 'u'
+                && scratch[2] == 'l' && scratch[3] == 'l';
+    }
+
+    // ---------------------------------------------------------------- CSV
+
+    private NetflowLog readCsvRecord() throws IOException {
+        if (csvColumns == null && !readCsvHeader()) {
+            return null;
+        }
+
+        while (true) {
+            int b = peek();
+            if (b == EOF) {
+                return null;
+            }
+            if (b == '\n' || b == '\r') {
+                next();  // 跳过空行
+                continue;
+            }
+            break;
+        }
+
+        NetflowLog log = new NetflowLog();
+        int column = 0;
+        boolean endOfRecord = false;
+        while (!endOfRecord) {
+            endOfRecord = readCsvField();
+            if (column < csvColumns.length) {
+                assign(log, csvColumns[column]);
+            }
+            column++;
+        }
+        return requireEventTime(log);
+    }
+
+    private boolean readCsvHeader() throws IOException {
+        List<String> names = new ArrayList<>();
+        if (peek() == EOF) {
+            return false;
+        }
+        boolean endOfRecord = false;
+        while (!endOfRecord) {
+            endOfRecord = readCsvField();
+            names.add(scratchNull ? "" : strings.decode(scratch, 0, scratchLength).trim());
+        }
+        csvColumns = new int[names.size()];
+        for (int i = 0; i < csvColumns.length; i++) {
+            csvColumns[i] = fieldId(names.get(i));
+        }
+        return true;
+    }
+
+    /**
+     * 读取一个CSV字段（RFC 4180，双引号转义），返回该字段是否为行尾
+     * 未加引号的空字段及 \N 视为null
+     */
+    private boolean readCsvField() throws IOException {
+        scratchLength = 0;
+        scratchNull = false;
+        int b = next();
+        if (b == '"') {
+            while (true) {
+                b = next();
+                if (b == EOF) {
+                    throw parseError("引号未闭合");
+                }
+                if (b == '"') {
+                    if (peek() == '"') {
+                        append((byte) next());
+                        continue;
+                    }
+                    b = next();
+                    break;
+                }
+                append((byte) b);
+            }
+        } else {
+            while (b != ',' && b != '\n' && b != '\r' && b != EOF) {
+                append((byte) b);
+                b = next();
+            }
+            scratchNull = scratchLength == 0 || (scratchLength == 2 && scratch[0] == '\\' && scratch[1] == 'N');
+        }
+
+        if (b == '\r') {
+            if (peek() == '\n') {
+                next();
+            }
+            return true;
+        }
+        if (b == ',') {
+            return false;
+        }
+        if (b == '\n' || b == EOF) {
+            return true;
+        }
+        throw parseError("引号后出现多余字符 " + describe(b));
+    }
+
+    // ---------------------------------------------------------------- 字段赋值
+
+    /**
+     * 事件时间是必填字段，缺少时在解析处报错，而不是到统计时才失败
+     */
+    private NetflowLog requireEventTime(NetflowLog log) throws IOException {
+        if (!log.hasEventTime()) {
+            throw parseError("缺少事件时间");
+        }
+        return log;
+    }
+
+    private static int fieldId(String name) {
+        switch (name) {
+            case "timestamp":
+            case "event_time":
+                return FIELD_EVENT_TIME;
+            case "src_ip": return FIELD_SRC_IP;
+            case "user_id": return FIELD_USER_ID;
+            case "department": return FIELD_DEPARTMENT;
+            case "dst_ip": return FIELD_DST_IP;
+            case "domain": return FIELD_DOMAIN;
+            case "url": return FIELD_URL;
+            case "method": return FIELD_METHOD;
+            case "bytes": return FIELD_BYTES;
+            case "user_agent": return FIELD_USER_AGENT;
+            case "site_category":
+            case "category":
+                return FIELD_SITE_CATEGORY;
+            default:
+                return FIELD_UNKNOWN;
+        }
+    }
+
+    private void assign(NetflowLog log, int field) throws IOException {
+        if (field == FIELD_UNKNOWN || scratchNull) {
+            return;
+        }
+        switch (field) {
+            case FIELD_EVENT_TIME: parseTime(log); break;
+            case FIELD_BYTES: log.setBytes(parseLong()); break;
+            case FIELD_SRC_IP: log.setSrcIp(text()); break;
+            case FIELD_USER_ID: log.setUserId(text()); break;
+            case FIELD_DEPARTMENT: log.setDepartment(text()); break;
+            case FIELD_DST_IP: log.setDstIp(text()); break;
+            case FIELD_DOMAIN: log.setDomain(text()); break;
+            case FIELD_URL: log.setUrl(text()); break;
+            case FIELD_METHOD: log.setMethod(text()); break;
+            case FIELD_USER_AGENT: log.setUserAgent(text()); break;
+            case FIELD_SITE_CATEGORY: log.setSiteCategory(text()); break;
+            default: break;
+        }
+    }
+
+    private String text() {
+        return strings.decode(scratch, 0, scratchLength);
+    }
+
+    private long parseLong() throws IOException {
+        if (scratchLength == 0) {
+            throw parseError("bytes 为空");
+        }
+        long value = 0;
+        for (int i = 0; i < scratchLength; i++) {
+            int digit = scratch[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw parseError("bytes 不是整数: " + text());
+            }
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                throw parseError("bytes 超出范围: " + text());
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * 解析 yyyy-MM-dd HH:mm[:ss[.fraction]]（小数 1-9 位），日期与时间之间可为空格或T；
+     * 不接受时区后缀等其他多余字符
+     */
+    private void parseTime(NetflowLog log) throws IOException {
+        byte[] s = scratch;
+        int n = scratchLength;
+        if ((n != 16 && n != 19 && (n < 21 || n > 29))
+                || s[4] != '-' || s[7] != '-' || (s[10] != ' ' && s[10] != 'T') || s[13] != ':') {
+            throw parseError("无法解析时间: " + text());
+        }
+        int second = 0;
+        int nano = 0;
+        if (n >= 19) {
+            if (s[16] != ':' || (n > 19 && s[19] != '.')) {
+                throw parseError("无法解析时间: " + text());
+            }
+            second = digits(s, 17, 2);
+            if (n > 19) {
+                int fractionDigits = n - 20;
+                nano = digits(s, 20, fractionDigits);
+                for (int i = fractionDigits; i < 9; i++) {
+                    nano *= 10;
+                }
+            }
+        }
+        // 直接由各字段换算 epoch 秒，不构造 LocalDateTime
+        try {
+            log.setEventEpochSecond(EventTimes.toEpochSecond(digits(s, 0, 4), digits(s, 5, 2), digits(s, 8, 2),
+                    digits(s, 11, 2), digits(s, 14, 2), second), nano);
+        } catch (DateTimeException e) {
+            throw parseError(e.getMessage());
+        }
+    }
+
+    private int digits(byte[] s, int offset, int count) throws IOException {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = s[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw parseError("无法解析时间: " + text());
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    // ---------------------------------------------------------------- 缓冲区
+
+    private int next() throws IOException {
+        if (pos == limit && !fill()) {
+            return EOF;
+        }
+        return buf[pos++] & 0xFF;
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return EOF;
+        }
+        return buf[pos] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        buffer.clear();
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+        if (read < 0) {
+            eof = true;
+            pos = limit = 0;
+            return false;
+        }
+        pos = 0;
+        limit = buffer.position();
+        return true;
+    }
+
+    private int skipWhitespace() throws IOException {
+        int b;
+        do {
+            b = next();
+        } while (isWhitespace(b));
+        return b;
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private void append(byte b) {
+        if (scratchLength == scratch.length) {
+            scratch = Arrays.copyOf(scratch, scratch.length * 2);
+        }
+        scratch[scratchLength++] = b;
+    }
+
+    private void appendCodePoint(int codePoint) {
+        if (codePoint < 0x80) {
+            append((byte) codePoint);
+        } else if (codePoint < 0x800) {
+            append((byte) (0xC0 | (codePoint >> 6)));
+            append((byte) (0x80 | (codePoint & 0x3F)));
+        } else if (codePoint < 0x10000) {
+            append((byte) (0xE0 | (codePoint >> 12)));
+            append((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            append((byte) (0x80 | (codePoint & 0x3F)));
+        } else {
+            append((byte) (0xF0 | (codePoint >> 18)));
+            append((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+            append((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            append((byte) (0x80 | (codePoint & 0x3F)));
+        }
+    }
+
+    private static String describe(int b) {
+        return b == EOF ? "文件结束" : "'" + (char) b + "'";
+    }
+
+    private IOException parseError(String message) {
+        return new IOException("第 " + (recordCount + 1) + " 条记录解析失败: " + message);
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.userprofile.io;
+
+import org.example.userprofile.entity.NetflowLog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 网络流量日志数据源
+ * 文件读取、模拟数据流等数据源统一实现该接口，按条或按块向下游输出日志
+ */
+public interface NetflowLogSource extends Closeable {
+
+    /**
+     * 读取下一条日志，没有更多数据时返回null
+     */
+    NetflowLog read() throws IOException;
+
+    /**
+     * 按块读取并交给consumer处理，块对象在consumer返回后会被复用，consumer不应持有其引用
+     *
+     * @return 读取的日志总条数
+     */
+    default long forEachChunk(int chunkSize, Consumer<List<NetflowLog>> consumer) throws IOException {
+        List<NetflowLog> chunk = new ArrayList<>(chunkSize);
+        long total = 0;
+        NetflowLog log;
+        while ((log = read()) != null) {
+            chunk.add(log);
+            if (chunk.size() == chunkSize) {
+                consumer.accept(chunk);
+                total += chunk.size();
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk);
+            total += chunk.size();
+        }
+        return total;
+    }
+
+    /**
+     * 逐条处理全部日志
+     *
+     * @return 读取的日志总条数
+     */
+    default long forEach(Consumer<NetflowLog> consumer) throws IOException {
+        long total = 0;
+        NetflowLog log;
+        while ((log = read()) != null) {
+            consumer.accept(log);
+            total++;
+        }
+        return total;
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+}
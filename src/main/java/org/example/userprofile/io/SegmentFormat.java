@@ -0,0 +1,48 @@
+package org.example.userprofile.io;
+
+/**
+ * 日志段文件格式
+ * 文件由若干段顺序追加而成，段写入后不再修改。每段：
+ * <pre>
+ *   头部   int 魔数, int 数据区长度
+ *   数据区 按时间排序的行
+ *   尾部   long 最小时间, long 最大时间, int 行数, int 数据区 CRC32
+ * </pre>
+ * 每行依次为：时间差（与上一行的 epoch 秒之差，zigzag varint）、纳秒（varint）、
+ * 9 个字符串字段、流量（null 为0，否则 zigzag+1）、is_work_site（0 未知、1 否、2 是）。
+ * 字符串字段按段内、按字段字典编码：0 为 null，1 表示新字典项（随后为 UTF-8 长度与字节），
+ * k≥2 引用第 k-2 个字典项
+ */
+final class SegmentFormat {
+
+    static final int MAGIC = 0x4E465331;  // "NFS1"
+    static final int HEADER_SIZE = 8;
+    static final int FOOTER_SIZE = 24;
+
+    static final int STRING_NULL = 0;
+    static final int STRING_NEW = 1;
+    static final int STRING_REF_BASE = 2;
+
+    // 字符串字段顺序
+    static final int USER_ID = 0;
+    static final int DEPARTMENT = 1;
+    static final int SRC_IP = 2;
+    static final int DST_IP = 3;
+    static final int DOMAIN = 4;
+    static final int URL = 5;
+    static final int METHOD = 6;
+    static final int USER_AGENT = 7;
+    static final int SITE_CATEGORY = 8;
+    static final int STRING_FIELDS = 9;
+
+    private SegmentFormat() {
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,293 @@
+package org.example.userprofile.io;
+
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.store.StringDictionary;
+import org.example.userprofile.store.SymbolTables;
+import org.example.userprofile.time.EventTimes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.example.userprofile.io.SegmentFormat.*;
+
+/**
+ * 日志段读取器
+ * 打开时只读取各段的头部与尾部，按尾部的最小/最大时间跳过查询范围之外的段；
+ * 命中的段通过 FileChannel.map 映射后逐行解码，段内按时间有序，越过结束时间即停止。
+ * 低基数字段直接解码为全局符号表编码，不重复创建字符串
+ */
+public class SegmentReader implements NetflowLogSource {
+
+    private final FileChannel channel;
+    private final List<Segment> segments = new ArrayList<>();
+    private final int totalSegments;
+    private final long fromSecond;
+    private final int fromNano;
+    private final long toSecond;
+    private final int toNano;
+
+    private int nextSegment;
+    private ByteBuffer body;
+    private int rowsLeft;
+    private long previousSecond;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final List<String>[] values = new List[STRING_FIELDS];
+    private final String[][] symbolValues = new String[STRING_FIELDS][];
+    private final int[] symbolCounts = new int[STRING_FIELDS];
+
+    private SegmentReader(Path file, LocalDateTime from, LocalDateTime to) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fromSecond = from != null ? EventTimes.toEpochSecond(from) : Long.MIN_VALUE;
+        this.fromNano = from != null ? from.getNano() : 0;
+        this.toSecond = to != null ? EventTimes.toEpochSecond(to) : Long.MAX_VALUE;
+        this.toNano = to != null ? to.getNano() : Integer.MAX_VALUE;
+        for (int i = 0; i < STRING_FIELDS; i++) {
+            values[i] = new ArrayList<>();
+            symbolValues[i] = new String[16];
+        }
+
+        List<Segment> all = scan(channel);
+        this.totalSegments = all.size();
+        for (Segment segment : all) {
+            if (segment.maxTime >= fromSecond && segment.minTime <= toSecond) {
+                segments.add(segment);
+            }
+        }
+    }
+
+    /**
+     * 读取全部日志
+     */
+    public static SegmentReader open(Path file) throws IOException {
+        return new SegmentReader(file, null, null);
+    }
+
+    /**
+     * 读取事件时间在 [from, to] 内的日志
+     *
+     * @param from 起始时间（含），null 表示不限
+     * @param to   结束时间（含），null 表示不限
+     */
+    public static SegmentReader open(Path file, LocalDateTime from, LocalDateTime to) throws IOException {
+        return new SegmentReader(file, from, to);
+    }
+
+    @Override
+    public NetflowLog read() throws IOException {
+        while (true) {
+            if (rowsLeft == 0 && !nextSegment()) {
+                return null;
+            }
+            rowsLeft--;
+            NetflowLog log = decodeRow();
+            long second = log.getEventEpochSecond();
+            int nano = log.getEventNano();
+            if (second > toSecond || (second == toSecond && nano > toNano)) {
+                // 段内有序，之后的行都在范围外
+                rowsLeft = 0;
+                continue;
+            }
+            if (second < fromSecond || (second == fromSecond && nano < fromNano)) {
+                continue;
+            }
+            return log;
+        }
+    }
+
+    /**
+     * 文件中完整段的个数
+     */
+    public int getSegmentCount() {
+        return totalSegments;
+    }
+
+    /**
+     * 因时间范围不相交而跳过的段数
+     */
+    public int getSkippedSegmentCount() {
+        return totalSegments - segments.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        body = null;
+        channel.close();
+    }
+
+    /**
+     * 文件中完整段的总长度，之后的字节为未写完的段
+     */
+    static long validLength(FileChannel channel) throws IOException {
+        List<Segment> all = scan(channel);
+        if (all.isEmpty()) {
+            return 0;
+        }
+        Segment last = all.get(all.size() - 1);
+        return last.bodyOffset + last.bodyLength + FOOTER_SIZE;
+    }
+
+    private static List<Segment> scan(FileChannel channel) throws IOException {
+        List<Segment> all = new ArrayList<>();
+        long size = channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (offset + HEADER_SIZE + FOOTER_SIZE <= size) {
+            header.clear();
+            if (!readFully(channel, header, offset) || header.getInt(0) != MAGIC) {
+                break;
+            }
+            int bodyLength = header.getInt(4);
+            long footerOffset = offset + HEADER_SIZE + bodyLength;
+            footer.clear();
+            if (bodyLength < 0 || footerOffset + FOOTER_SIZE > size || !readFully(channel, footer, footerOffset)) {
+                break;
+            }
+            all.add(new Segment(offset + HEADER_SIZE, bodyLength, footer.getLong(0), footer.getLong(8),
+                    footer.getInt(16), footer.getInt(20)));
+            offset = footerOffset + FOOTER_SIZE;
+        }
+        return all;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean nextSegment() throws IOException {
+        while (nextSegment < segments.size()) {
+            Segment segment = segments.get(nextSegment++);
+            if (segment.rowCount == 0) {
+                continue;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, segment.bodyOffset,
+                    segment.bodyLength);
+            CRC32 crc = new CRC32();
+            crc.update(mapped.duplicate());
+            if ((int) crc.getValue() != segment.crc) {
+                throw new IOException("日志段校验失败，偏移 " + (segment.bodyOffset - HEADER_SIZE));
+            }
+            body = mapped;
+            rowsLeft = segment.rowCount;
+            previousSecond = segment.minTime;
+            for (int i = 0; i < STRING_FIELDS; i++) {
+                values[i].clear();
+                symbolCounts[i] = 0;
+            }
+            return true;
+        }
+        body = null;
+        return false;
+    }
+
+    private NetflowLog decodeRow() {
+        NetflowLog log = new NetflowLog();
+        long second = previousSecond + unzigzag(readVarLong());
+        previousSecond = second;
+        log.setEventEpochSecond(second, (int) readVarLong());
+        log.setUserId(readString(USER_ID));
+        log.setDepartment(readSymbol(DEPARTMENT, SymbolTables.DEPARTMENTS));
+        log.setSrcIp(readString(SRC_IP));
+        log.setDstIp(readString(DST_IP));
+        log.setDomain(readSymbol(DOMAIN, SymbolTables.DOMAINS));
+        log.setUrl(readString(URL));
+        log.setMethod(readSymbol(METHOD, SymbolTables.METHODS));
+        log.setUserAgent(readSymbol(USER_AGENT, SymbolTables.USER_AGENTS));
+        log.setSiteCategory(readSymbol(SITE_CATEGORY, SymbolTables.CATEGORIES));
+        long bytes = readVarLong();
+        log.setBytes(bytes == 0 ? null : unzigzag(bytes - 1));
+        byte workSite = body.get();
+        log.setWorkSite(workSite == 0 ? null : workSite == 2);
+        return log;
+    }
+
+    private String readString(int field) {
+        int marker = (int) readVarLong();
+        if (marker == STRING_NULL) {
+            return null;
+        }
+        List<String> dictionary = values[field];
+        if (marker >= STRING_REF_BASE) {
+            return dictionary.get(marker - STRING_REF_BASE);
+        }
+        String value = readUtf8();
+        dictionary.add(value);
+        return value;
+    }
+
+    /**
+     * 读取低基数字段，返回全局符号表中的规范实例（符号表已满时为原始字符串）
+     */
+    private String readSymbol(int field, StringDictionary symbols) {
+        int marker = (int) readVarLong();
+        if (marker == STRING_NULL) {
+            return null;
+        }
+        String[] values = symbolValues[field];
+        if (marker >= STRING_REF_BASE) {
+            return values[marker - STRING_REF_BASE];
+        }
+        String value = symbols.intern(readUtf8());
+        int count = symbolCounts[field];
+        if (count == values.length) {
+            values = symbolValues[field] = Arrays.copyOf(values, count * 2);
+        }
+        values[count] = value;
+        symbolCounts[field] = count + 1;
+        return value;
+    }
+
+    private String readUtf8() {
+        int length = (int) readVarLong();
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long readVarLong() {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = body.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    private static final class Segment {
+        final long bodyOffset;
+        final int bodyLength;
+        final long minTime;
+        final long maxTime;
+        final int rowCount;
+        final int crc;
+
+        Segment(long bodyOffset, int bodyLength, long minTime, long maxTime, int rowCount, int crc) {
+            this.bodyOffset = bodyOffset;
+            this.bodyLength = bodyLength;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            this.rowCount = rowCount;
+            this.crc = crc;
+        }
+    }
+}
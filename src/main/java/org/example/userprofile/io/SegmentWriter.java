@@ -0,0 +1,202 @@
+package org.example.userprofile.io;
+
+import org.example.userprofile.entity.NetflowLog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static org.example.userprofile.io.SegmentFormat.*;
+
+/**
+ * 日志段追加写入器
+ * 缓冲 rowsPerSegment 条日志后按时间排序、编码为一个段追加到文件末尾，格式见 {@link SegmentFormat}。
+ * 打开已有文件时会截掉末尾未写完整的段（如进程中途退出）
+ */
+public class SegmentWriter implements Closeable {
+
+    public static final int DEFAULT_ROWS_PER_SEGMENT = 1 << 16;
+
+    private final FileChannel channel;
+    private final int rowsPerSegment;
+    private final List<NetflowLog> pending = new ArrayList<>();
+
+    // 段编码缓冲区，各段复用
+    private byte[] buf = new byte[1 << 16];
+    private int pos;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final Map<String, Integer>[] dictionaries = new Map[STRING_FIELDS];
+
+    private long segmentCount;
+    private long rowCount;
+
+    public SegmentWriter(Path file) throws IOException {
+        this(file, DEFAULT_ROWS_PER_SEGMENT);
+    }
+
+    public SegmentWriter(Path file, int rowsPerSegment) throws IOException {
+        if (rowsPerSegment <= 0) {
+            throw new IllegalArgumentException("rowsPerSegment 须大于0: " + rowsPerSegment);
+        }
+        this.rowsPerSegment = rowsPerSegment;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long validLength = SegmentReader.validLength(channel);
+        if (validLength < channel.size()) {
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+        for (int i = 0; i < STRING_FIELDS; i++) {
+            dictionaries[i] = new HashMap<>();
+        }
+    }
+
+    /**
+     * 将日志写入新文件（已存在时追加）
+     *
+     * @return 写入的条数
+     */
+    public static long write(Path file, Iterable<NetflowLog> logs) throws IOException {
+        try (SegmentWriter writer = new SegmentWriter(file)) {
+            for (NetflowLog log : logs) {
+                writer.append(log);
+            }
+            return writer.rowCount + writer.pending.size();
+        }
+    }
+
+    /**
+     * 追加一条日志（事件时间不能为空）
+     */
+    public void append(NetflowLog log) throws IOException {
+        if (!log.hasEventTime()) {
+            throw new IllegalArgumentException("事件时间为空的日志不能写入: " + log);
+        }
+        pending.add(log);
+        if (pending.size() >= rowsPerSegment) {
+            flush();
+        }
+    }
+
+    /**
+     * 将缓冲的日志写为一个段
+     */
+    public void flush() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        pending.sort(NetflowLog::compareEventTime);
+        long minTime = pending.get(0).getEventEpochSecond();
+        long maxTime = pending.get(pending.size() - 1).getEventEpochSecond();
+
+        pos = HEADER_SIZE;
+        long previous = minTime;
+        for (NetflowLog log : pending) {
+            long second = log.getEventEpochSecond();
+            writeVarLong(zigzag(second - previous));
+            previous = second;
+            writeVarLong(log.getEventNano());
+            writeString(USER_ID, log.getUserId());
+            writeString(DEPARTMENT, log.getDepartment());
+            writeString(SRC_IP, log.getSrcIp());
+            writeString(DST_IP, log.getDstIp());
+            writeString(DOMAIN, log.getDomain());
+            writeString(URL, log.getUrl());
+            writeString(METHOD, log.getMethod());
+            writeString(USER_AGENT, log.getUserAgent());
+            writeString(SITE_CATEGORY, log.getSiteCategory());
+            writeVarLong(log.getBytes() == null ? 0 : zigzag(log.getBytes()) + 1);
+            Boolean workSite = log.getWorkSite();
+            ensure(1);
+            buf[pos++] = (byte) (workSite == null ? 0 : workSite ? 2 : 1);
+        }
+        int bodyLength = pos - HEADER_SIZE;
+
+        CRC32 crc = new CRC32();
+        crc.update(buf, HEADER_SIZE, bodyLength);
+        ensure(FOOTER_SIZE);
+        ByteBuffer out = ByteBuffer.wrap(buf, 0, pos + FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(0, MAGIC);
+        out.putInt(4, bodyLength);
+        out.putLong(pos, minTime);
+        out.putLong(pos + 8, maxTime);
+        out.putInt(pos + 16, pending.size());
+        out.putInt(pos + 20, (int) crc.getValue());
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+
+        segmentCount++;
+        rowCount += pending.size();
+        pending.clear();
+        for (Map<String, Integer> dictionary : dictionaries) {
+            dictionary.clear();
+        }
+    }
+
+    public long getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * 已写入段中的行数（不含缓冲中的行）
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeString(int field, String value) {
+        if (value == null) {
+            writeVarLong(STRING_NULL);
+            return;
+        }
+        Map<String, Integer> dictionary = dictionaries[field];
+        Integer code = dictionary.get(value);
+        if (code != null) {
+            writeVarLong(STRING_REF_BASE + code);
+            return;
+        }
+        dictionary.put(value, dictionary.size());
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(STRING_NEW);
+        writeVarLong(bytes.length);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    private void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+    }
+
+    private void ensure(int bytes) {
+        if (pos + bytes > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(pos + bytes, buf.length * 2));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.userprofile.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 各线程已分配字节数（HotSpot 的 com.sun.management.ThreadMXBean），不支持时恒为0
+ * 按进程内全部存活线程求和，并行阶段在 ForkJoin 工作线程上的分配也计入；
+ * 同一时段其他线程的分配同样计入，阶段内结束的线程不计入
+ */
+final class AllocationCounter {
+
+    private final com.sun.management.ThreadMXBean threads;
+
+    private AllocationCounter(com.sun.management.ThreadMXBean threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * 创建时在 JVM 范围开启线程分配统计，只应在启用指标时调用
+     */
+    static AllocationCounter create() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+            if (hotspot.isThreadAllocatedMemorySupported()) {
+                if (!hotspot.isThreadAllocatedMemoryEnabled()) {
+                    hotspot.setThreadAllocatedMemoryEnabled(true);
+                }
+                return new AllocationCounter(hotspot);
+            }
+        }
+        return new AllocationCounter(null);
+    }
+
+    /**
+     * 当前各存活线程的已分配字节数（线程id → 字节数）
+     */
+    Map<Long, Long> snapshot() {
+        Map<Long, Long> bytes = new HashMap<>();
+        if (threads == null) {
+            return bytes;
+        }
+        long[] ids = threads.getAllThreadIds();
+        long[] allocated = threads.getThreadAllocatedBytes(ids);
+        for (int i = 0; i < ids.length; i++) {
+            // 已结束的线程返回 -1
+            if (allocated[i] >= 0) {
+                bytes.put(ids[i], allocated[i]);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 自 start 快照以来各线程新分配的字节数（线程名 → 字节数，同名线程合并），期间新建的线程按全部分配计入
+     */
+    Map<String, Long> allocatedSince(Map<Long, Long> start) {
+        Map<String, Long> bytes = new HashMap<>();
+        if (threads == null) {
+            return bytes;
+        }
+        long[] ids = threads.getAllThreadIds();
+        long[] allocated = threads.getThreadAllocatedBytes(ids);
+        ThreadInfo[] infos = threads.getThreadInfo(ids);
+        for (int i = 0; i < ids.length; i++) {
+            long delta = allocated[i] - start.getOrDefault(ids[i], 0L);
+            // 已结束的线程返回 -1
+            if (allocated[i] >= 0 && delta > 0) {
+                String name = infos[i] != null ? infos[i].getThreadName() : "thread-" + ids[i];
+                bytes.merge(name, delta, Long::sum);
+            }
+        }
+        return bytes;
+    }
+}
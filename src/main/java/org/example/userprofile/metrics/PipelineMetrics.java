@@ -0,0 +1,204 @@
+package org.example.userprofile.metrics;
+
+import org.example.userprofile.io.JsonWriter;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 流水线各阶段的耗时、吞吐与分配统计
+ * 用法：{@code try (PipelineMetrics.Timing t = metrics.time("aggregate")) { ...; t.rows(n); }}。
+ * 阶段首次出现时注册为 JMX MBean（可用 jconsole 等查看），运行结束时可输出 JSON 汇总。
+ * 分配字节数按全部线程求和（见 {@link AllocationCounter}），包括并行阶段的工作线程，并按线程名分别累计。
+ * 关闭时 time() 返回共享的空计时器，不读时钟、不分配对象，也不开启 JVM 的线程分配统计
+ */
+public class PipelineMetrics {
+
+    /** 系统属性：设为 true 启用指标 */
+    public static final String ENABLED_PROPERTY = "userprofile.metrics";
+    public static final String JMX_DOMAIN = "org.example.userprofile";
+
+    private static final Timing NOOP = new Timing(null, null);
+
+    private final boolean enabled;
+    private final boolean registerMBeans;
+    private final Map<String, StageMetrics> stages = new ConcurrentHashMap<>();
+    private final List<StageMetrics> order = new CopyOnWriteArrayList<>();
+    private final List<ObjectName> registered = new CopyOnWriteArrayList<>();
+    private final AllocationCounter allocation;
+
+    public PipelineMetrics(boolean enabled, boolean registerMBeans) {
+        this.enabled = enabled;
+        this.registerMBeans = registerMBeans;
+        this.allocation = enabled ? AllocationCounter.create() : null;
+    }
+
+    /**
+     * 按系统属性 userprofile.metrics 决定是否启用（默认关闭），启用时注册 MBean
+     */
+    public static PipelineMetrics fromSystemProperties() {
+        boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+        return new PipelineMetrics(enabled, enabled);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 开始计时，close 时计入阶段指标
+     */
+    public Timing time(String stage) {
+        if (!enabled) {
+            return NOOP;
+        }
+        return new Timing(stage(stage), allocation);
+    }
+
+    /**
+     * 获取（不存在时创建）阶段指标
+     */
+    public StageMetrics stage(String name) {
+        StageMetrics metrics = stages.get(name);
+        if (metrics != null) {
+            return metrics;
+        }
+        synchronized (this) {
+            metrics = stages.get(name);
+            if (metrics == null) {
+                metrics = new StageMetrics(name);
+                register(metrics);
+                order.add(metrics);
+                stages.put(name, metrics);
+            }
+            return metrics;
+        }
+    }
+
+    /**
+     * 全部阶段，按首次出现顺序
+     */
+    public List<StageMetrics> getStages() {
+        return new ArrayList<>(order);
+    }
+
+    /**
+     * 输出 JSON 汇总：{"stages":[{"name":..,"invocations":..,...,"thread_allocated_bytes":{线程名:..}}]}
+     */
+    public void writeSummary(JsonWriter out) throws IOException {
+        out.raw("{\"stages\":[");
+        boolean first = true;
+        for (StageMetrics stage : order) {
+            out.raw(first ? "{\"name\":" : ",{\"name\":").string(stage.getName());
+            out.raw(",\"invocations\":").value(stage.getInvocations());
+            out.raw(",\"rows\":").value(stage.getRows());
+            out.raw(",\"total_ms\":").value(round(stage.getTotalMillis()));
+            out.raw(",\"rows_per_sec\":").value(Math.round(stage.getRowsPerSecond()));
+            out.raw(",\"allocated_bytes\":").value(stage.getAllocatedBytes());
+            out.raw(",\"thread_allocated_bytes\":{");
+            boolean firstThread = true;
+            for (Map.Entry<String, Long> entry : stage.getThreadAllocatedBytes().entrySet()) {
+                out.raw(firstThread ? "" : ",").string(entry.getKey()).raw(":").value(entry.getValue());
+                firstThread = false;
+            }
+            out.raw("}");
+            out.raw(",\"p50_ms\":").value(round(stage.getP50Millis()));
+            out.raw(",\"p99_ms\":").value(round(stage.getP99Millis()));
+            out.raw(",\"max_ms\":").value(round(stage.getMaxMillis()));
+            out.raw("}");
+            first = false;
+        }
+        out.raw("]}");
+        out.flush();
+    }
+
+    public String summaryJson() {
+        StringWriter writer = new StringWriter();
+        try {
+            writeSummary(new JsonWriter(writer));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * 注销已注册的 MBean
+     */
+    public void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                // 已被注销
+            }
+        }
+        registered.clear();
+    }
+
+    private void register(StageMetrics metrics) {
+        if (!registerMBeans) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":type=Stage,name=" + ObjectName.quote(metrics.getName()));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(metrics, name);
+            registered.add(name);
+        } catch (JMException e) {
+            // JMX 不可用时只保留进程内指标
+        }
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    /**
+     * 一次计时，须在开始计时的线程上关闭
+     */
+    public static final class Timing implements AutoCloseable {
+        private final StageMetrics stage;
+        private final AllocationCounter allocation;
+        private final long startNanos;
+        private final Map<Long, Long> startAllocated;
+        private long rows;
+
+        private Timing(StageMetrics stage, AllocationCounter allocation) {
+            this.stage = stage;
+            this.allocation = allocation;
+            this.startAllocated = stage != null ? allocation.snapshot() : null;
+            this.startNanos = stage != null ? System.nanoTime() : 0;
+        }
+
+        /**
+         * 计入本次处理的行数
+         */
+        public Timing rows(long count) {
+            rows += count;
+            return this;
+        }
+
+        @Override
+        public void close() {
+            if (stage == null) {
+                return;
+            }
+            long elapsed = System.nanoTime() - startNanos;
+            stage.record(elapsed, rows, allocation.allocatedSince(startAllocated));
+        }
+    }
+}
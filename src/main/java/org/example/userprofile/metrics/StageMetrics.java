@@ -0,0 +1,103 @@
+package org.example.userprofile.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个阶段的累计指标：调用次数、处理行数、耗时、全部线程及各线程分配的字节数、耗时分布
+ */
+public class StageMetrics implements StageMetricsMBean {
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final String name;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final Map<String, LongAdder> threadAllocatedBytes = new ConcurrentHashMap<>();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    StageMetrics(String name) {
+        this.name = name;
+    }
+
+    void record(long elapsedNanos, long rowCount, Map<String, Long> allocatedByThread) {
+        invocations.increment();
+        rows.add(rowCount);
+        nanos.add(elapsedNanos);
+        for (Map.Entry<String, Long> entry : allocatedByThread.entrySet()) {
+            allocatedBytes.add(entry.getValue());
+            threadAllocatedBytes.computeIfAbsent(entry.getKey(), k -> new LongAdder()).add(entry.getValue());
+        }
+        latency.record(elapsedNanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getInvocations() {
+        return invocations.sum();
+    }
+
+    @Override
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getTotalNanos() {
+        return nanos.sum();
+    }
+
+    @Override
+    public double getTotalMillis() {
+        return nanos.sum() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getRowsPerSecond() {
+        long elapsed = nanos.sum();
+        return elapsed > 0 ? rows.sum() * 1e9 / elapsed : 0;
+    }
+
+    /**
+     * 阶段内全部线程分配的字节数（含并行阶段的工作线程）
+     */
+    @Override
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    /**
+     * 各线程分配的字节数（线程名 → 字节数），按线程名排序
+     */
+    @Override
+    public Map<String, Long> getThreadAllocatedBytes() {
+        Map<String, Long> result = new TreeMap<>();
+        threadAllocatedBytes.forEach((thread, bytes) -> result.put(thread, bytes.sum()));
+        return result;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return latency.percentile(0.5) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return latency.percentile(0.99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latency.getMax() / NANOS_PER_MILLI;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
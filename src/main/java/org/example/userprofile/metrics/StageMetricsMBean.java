@@ -0,0 +1,27 @@
+package org.example.userprofile.metrics;
+
+import java.util.Map;
+
+/**
+ * 阶段指标的 JMX 接口，ObjectName 为 org.example.userprofile:type=Stage,name=阶段名
+ */
+public interface StageMetricsMBean {
+
+    long getInvocations();
+
+    long getRows();
+
+    double getTotalMillis();
+
+    double getRowsPerSecond();
+
+    long getAllocatedBytes();
+
+    Map<String, Long> getThreadAllocatedBytes();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+}
@@ -0,0 +1,214 @@
+package org.example.userprofile.profile;
+
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.time.EventTimes;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 按天持久化的用户画像部分聚合
+ * 每天一个文件，保存当天各用户的 {@link UserProfileAccumulator}（小时分布、分类/域名计数、流量、深夜访问等）。
+ * 任意 N 天窗口的画像由 N 个日文件按日期顺序合并得到，每日任务只需处理新一天的日志，
+ * 不必重新扫描整个窗口。文件头记录写入时该天是否已结束（按事件时区），
+ * 当天结束前写入的文件视为未完成，之后仍会重写；已完成的日期只能整天重写，不接受部分日志的覆盖。
+ * 文件先写临时文件再原子改名，尾部带 CRC32 校验
+ */
+public class DailyPartialStore {
+
+    private static final int MAGIC = 0x55504432;
+    private static final String PREFIX = "partial-";
+    private static final String SUFFIX = ".bin";
+
+    private final Path directory;
+    private final Clock clock;
+
+    public DailyPartialStore(Path directory) throws IOException {
+        this(directory, Clock.systemUTC());
+    }
+
+    /**
+     * @param clock 判断日期是否已结束的墙钟
+     */
+    public DailyPartialStore(Path directory, Clock clock) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.clock = clock;
+    }
+
+    /**
+     * 按事件日期切分日志，写入尚未完成的日期（无文件或当天结束前写入），返回写入的日期。
+     * 已完成的日期不改动：迟到或不完整的批次不会覆盖，重新导入须用 {@link #writeDay(LocalDate, Iterable)}。
+     * 用于补写多天；每日任务可只取 {@link #pendingDays} 的日志逐天写入
+     */
+    public SortedSet<LocalDate> writePendingDays(Iterable<NetflowLog> logs) throws IOException {
+        Map<Long, UserProfileAggregator> days = new TreeMap<>();
+        Set<Long> complete = new HashSet<>();
+        for (NetflowLog log : logs) {
+            long epochDay = log.getEventEpochDay();
+            UserProfileAggregator partial = days.get(epochDay);
+            if (partial == null) {
+                if (complete.contains(epochDay)) {
+                    continue;
+                }
+                if (isComplete(LocalDate.ofEpochDay(epochDay))) {
+                    complete.add(epochDay);
+                    continue;
+                }
+                partial = new UserProfileAggregator();
+                days.put(epochDay, partial);
+            }
+            partial.add(log);
+        }
+        SortedSet<LocalDate> written = new TreeSet<>();
+        for (Map.Entry<Long, UserProfileAggregator> entry : days.entrySet()) {
+            LocalDate day = LocalDate.ofEpochDay(entry.getKey());
+            writeDay(day, entry.getValue());
+            written.add(day);
+        }
+        return written;
+    }
+
+    /**
+     * 用当天的全部日志（当天未结束时为截至目前的全部日志）生成某天的部分聚合，替换已有文件；
+     * 日志不属于该天时抛出 IllegalArgumentException
+     */
+    public void writeDay(LocalDate day, Iterable<NetflowLog> logs) throws IOException {
+        long epochDay = day.toEpochDay();
+        UserProfileAggregator partial = new UserProfileAggregator();
+        for (NetflowLog log : logs) {
+            if (log.getEventEpochDay() != epochDay) {
+                throw new IllegalArgumentException("日志不属于 " + day + ": " + log.getEventTime());
+            }
+            partial.add(log);
+        }
+        writeDay(day, partial);
+    }
+
+    /**
+     * 写入（替换）某天的部分聚合，该天已结束时标记为已完成
+     */
+    public void writeDay(LocalDate day, UserProfileAggregator partial) throws IOException {
+        Path file = path(day);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (OutputStream raw = Files.newOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(raw), crc));
+            out.writeInt(MAGIC);
+            out.writeLong(day.toEpochDay());
+            out.writeBoolean(isClosed(day));
+            partial.writeTo(out);
+            out.flush();
+            raw.write(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * 读取某天的部分聚合，该天没有数据时返回 null
+     */
+    public UserProfileAggregator readDay(LocalDate day) throws IOException {
+        Path file = path(day);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        byte[] data = Files.readAllBytes(file);
+        if (data.length < 16) {
+            throw new IOException("部分聚合文件长度异常: " + file);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 4);
+        if ((int) crc.getValue() != ByteBuffer.wrap(data, data.length - 4, 4).getInt()) {
+            throw new IOException("部分聚合文件校验失败: " + file);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - 4));
+        if (in.readInt() != MAGIC || in.readLong() != day.toEpochDay()) {
+            throw new IOException("部分聚合文件格式错误: " + file);
+        }
+        in.readBoolean();
+        return UserProfileAggregator.readFrom(in);
+    }
+
+    public boolean hasDay(LocalDate day) {
+        return Files.exists(path(day));
+    }
+
+    /**
+     * 某天的部分聚合是否在当天结束后写入；无文件或文件头无法识别时返回 false
+     */
+    public boolean isComplete(LocalDate day) throws IOException {
+        Path file = path(day);
+        if (!Files.exists(file)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readInt() == MAGIC && in.readLong() == day.toEpochDay() && in.readBoolean();
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 该天（事件时区的本地日期）是否已经结束
+     */
+    public boolean isClosed(LocalDate day) {
+        return day.toEpochDay() < EventTimes.epochDayOf(clock.instant().getEpochSecond());
+    }
+
+    /**
+     * [from, to] 内缺少部分聚合的日期
+     */
+    public List<LocalDate> missingDays(LocalDate from, LocalDate to) {
+        List<LocalDate> missing = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            if (!hasDay(day)) {
+                missing.add(day);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * [from, to] 内需要写入的日期：没有部分聚合，或部分聚合写入时该天尚未结束
+     */
+    public List<LocalDate> pendingDays(LocalDate from, LocalDate to) throws IOException {
+        List<LocalDate> pending = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            if (!isComplete(day)) {
+                pending.add(day);
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * 按日期顺序合并 [from, to] 内各天的部分聚合（缺少的日期跳过）
+     */
+    public UserProfileAggregator mergeWindow(LocalDate from, LocalDate to) throws IOException {
+        UserProfileAggregator merged = new UserProfileAggregator();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            UserProfileAggregator partial = readDay(day);
+            if (partial != null) {
+                merged.merge(partial);
+            }
+        }
+        return merged;
+    }
+
+    private Path path(LocalDate day) {
+        return directory.resolve(PREFIX + day + SUFFIX);
+    }
+}
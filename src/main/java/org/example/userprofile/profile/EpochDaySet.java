@@ -0,0 +1,75 @@
+package org.example.userprofile.profile;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * epochDay 位图，用于统计活跃天数
+ * 起始日按64天对齐，向前或向后超出范围时扩展
+ */
+final class EpochDaySet {
+
+    private long baseDay = Long.MIN_VALUE;  // 第0个bit对应的epochDay
+    private long[] words = new long[2];
+
+    void add(long epochDay) {
+        if (baseDay == Long.MIN_VALUE) {
+            baseDay = Math.floorDiv(epochDay, 64) * 64;
+        } else if (epochDay < baseDay) {
+            long newBase = Math.floorDiv(epochDay, 64) * 64;
+            int shiftWords = (int) ((baseDay - newBase) / 64);
+            long[] expanded = new long[words.length + shiftWords];
+            System.arraycopy(words, 0, expanded, shiftWords, words.length);
+            words = expanded;
+            baseDay = newBase;
+        }
+
+        long offset = epochDay - baseDay;
+        int word = (int) (offset >>> 6);
+        if (word >= words.length) {
+            words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+        }
+        words[word] |= 1L << offset;
+    }
+
+    void addAll(EpochDaySet other) {
+        for (int i = 0; i < other.words.length; i++) {
+            long bits = other.words[i];
+            while (bits != 0) {
+                add(other.baseDay + i * 64L + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    int size() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * 序列化：天数，随后为各 epochDay（升序）
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size());
+        for (int i = 0; i < words.length; i++) {
+            long bits = words[i];
+            while (bits != 0) {
+                out.writeLong(baseDay + i * 64L + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    void readFrom(DataInput in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            add(in.readLong());
+        }
+    }
+}
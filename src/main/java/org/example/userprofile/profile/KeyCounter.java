@@ -0,0 +1,160 @@
+package org.example.userprofile.profile;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 开放寻址字符串计数器
+ * 计数不装箱，条目按首次出现顺序存放；
+ * 取最大值时若出现并列，按首次出现顺序回放到 HashMap 中再取最大，
+ * 与原先 HashMap + stream().max() 的结果保持一致
+ */
+final class KeyCounter {
+
+    private String[] keys;
+    private int[] counts;
+    private int size;
+    // 哈希槽，存放条目下标+1，0表示空槽
+    private int[] slots;
+
+    KeyCounter() {
+        this(8);
+    }
+
+    KeyCounter(int expectedKeys) {
+        int capacity = Math.max(8, expectedKeys);
+        keys = new String[capacity];
+        counts = new int[capacity];
+        slots = new int[tableSizeFor(capacity * 2)];
+    }
+
+    void increment(String key) {
+        add(key, 1);
+    }
+
+    void add(String key, int delta) {
+        int mask = slots.length - 1;
+        int slot = spread(key.hashCode()) & mask;
+        while (true) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                break;
+            }
+            if (keys[entry - 1].equals(key)) {
+                counts[entry - 1] += delta;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        keys[size] = key;
+        counts[size] = delta;
+        size++;
+        slots[slot] = size;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+    }
+
+    /**
+     * 合并另一个计数器，新出现的键排在已有键之后
+     */
+    void addAll(KeyCounter other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.keys[i], other.counts[i]);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 序列化：条目数，随后按首次出现顺序为键与计数
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeUTF(keys[i]);
+            out.writeInt(counts[i]);
+        }
+    }
+
+    /**
+     * 按序列化顺序累加，首次出现顺序与序列化前一致
+     */
+    void readFrom(DataInput in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            add(in.readUTF(), in.readInt());
+        }
+    }
+
+    String keyAt(int index) {
+        return keys[index];
+    }
+
+    int countAt(int index) {
+        return counts[index];
+    }
+
+    /**
+     * 出现次数最多的键
+     */
+    String mostFrequent(String defaultKey) {
+        if (size == 0) {
+            return defaultKey;
+        }
+        int best = 0;
+        boolean tied = false;
+        for (int i = 1; i < size; i++) {
+            if (counts[i] > counts[best]) {
+                best = i;
+                tied = false;
+            } else if (counts[i] == counts[best]) {
+                tied = true;
+            }
+        }
+        if (!tied) {
+            return keys[best];
+        }
+
+        Map<String, Integer> replay = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            replay.put(keys[i], counts[i]);
+        }
+        return replay.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(defaultKey);
+    }
+
+    private void rehash(int newLength) {
+        slots = new int[newLength];
+        int mask = newLength - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = spread(keys[i].hashCode()) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i + 1;
+        }
+    }
+
+    private static int spread(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int n) {
+        return Integer.highestOneBit(Math.max(n - 1, 1)) << 1;
+    }
+}
@@ -0,0 +1,287 @@
+package org.example.userprofile.profile;
+
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.entity.UserProfile;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 单用户画像累加器
+ * 一次扫描即可得到全部画像标签：24槽小时计数、开放寻址的分类/域名计数、epochDay位图，
+ * 扫描过程中不产生装箱对象。
+ * 累加器只保存计数状态，不保留原始日志，可逐条累加、随时生成画像，也可与其他累加器合并
+ */
+public class UserProfileAccumulator {
+
+    private static final String UNKNOWN = "未知";
+    private static final int DEFAULT_PEAK_HOUR = 9;
+
+    private String userId;
+    private String department;
+    private long pv;
+    private long totalBytes;
+    private long nightAccessCount;
+    private long nonWorkPv;
+
+    private final int[] hourCounts = new int[24];
+    // 小时首次出现顺序，用于并列时还原原有取值
+    private final byte[] hourOrder = new byte[24];
+    private int hourSeen;
+
+    private final KeyCounter categoryCounts = new KeyCounter();
+    private final KeyCounter domainCounts = new KeyCounter();
+    private final EpochDaySet activeDays = new EpochDaySet();
+
+    /**
+     * 累加一条日志
+     */
+    public void add(NetflowLog log) {
+        add(log.getUserId(), log.getDepartment(), log.getEventEpochDay(), log.getEventHour(),
+                log.getSiteCategory(), log.getDomain(), log.getBytes() != null ? log.getBytes() : 0,
+                log.getWorkSite());
+    }
+
+    /**
+     * 按字段累加一条访问记录
+     */
+    public void add(String userId, String department, long epochDay, int hour,
+                    String category, String domain, long bytes) {
+        add(userId, department, epochDay, hour, category, domain, bytes, null);
+    }
+
+    /**
+     * 按字段累加一条访问记录
+     *
+     * @param workSite 维表中的 is_work_site，未知时为 null（按分类判断）
+     */
+    public void add(String userId, String department, long epochDay, int hour,
+                    String category, String domain, long bytes, Boolean workSite) {
+        if (pv == 0) {
+            this.userId = userId;
+            this.department = department;
+        }
+        pv++;
+        totalBytes += bytes;
+
+        activeDays.add(epochDay);
+
+        if (hourCounts[hour]++ == 0) {
+            hourOrder[hourSeen++] = (byte) hour;
+        }
+        if (hour >= 22 || hour < 6) {
+            nightAccessCount++;
+        }
+
+        categoryCounts.increment(category != null ? category : UNKNOWN);
+        if (isNonWork(category, workSite)) {
+            nonWorkPv++;
+        }
+        domainCounts.increment(domain != null ? domain : UNKNOWN);
+    }
+
+    /**
+     * 合并另一个累加器，结果等同于先累加本对象的日志、再累加other的日志
+     */
+    public void merge(UserProfileAccumulator other) {
+        if (other.pv == 0) {
+            return;
+        }
+        if (pv == 0) {
+            userId = other.userId;
+            department = other.department;
+        }
+        pv += other.pv;
+        totalBytes += other.totalBytes;
+        nightAccessCount += other.nightAccessCount;
+        nonWorkPv += other.nonWorkPv;
+
+        for (int i = 0; i < other.hourSeen; i++) {
+            int hour = other.hourOrder[i];
+            if (hourCounts[hour] == 0) {
+                hourOrder[hourSeen++] = (byte) hour;
+            }
+            hourCounts[hour] += other.hourCounts[hour];
+        }
+        categoryCounts.addAll(other.categoryCounts);
+        domainCounts.addAll(other.domainCounts);
+        activeDays.addAll(other.activeDays);
+    }
+
+    /**
+     * 序列化全部计数状态（小时、分类、域名按首次出现顺序），{@link #readFrom} 还原后合并与画像结果不变
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        writeNullable(out, userId);
+        writeNullable(out, department);
+        out.writeLong(pv);
+        out.writeLong(totalBytes);
+        out.writeLong(nightAccessCount);
+        out.writeLong(nonWorkPv);
+        out.writeByte(hourSeen);
+        for (int i = 0; i < hourSeen; i++) {
+            out.writeByte(hourOrder[i]);
+            out.writeInt(hourCounts[hourOrder[i]]);
+        }
+        categoryCounts.writeTo(out);
+        domainCounts.writeTo(out);
+        activeDays.writeTo(out);
+    }
+
+    /**
+     * 反序列化 {@link #writeTo} 写出的累加器
+     */
+    public static UserProfileAccumulator readFrom(DataInput in) throws IOException {
+        UserProfileAccumulator accumulator = new UserProfileAccumulator();
+        accumulator.userId = readNullable(in);
+        accumulator.department = readNullable(in);
+        accumulator.pv = in.readLong();
+        accumulator.totalBytes = in.readLong();
+        accumulator.nightAccessCount = in.readLong();
+        accumulator.nonWorkPv = in.readLong();
+        accumulator.hourSeen = in.readByte();
+        for (int i = 0; i < accumulator.hourSeen; i++) {
+            byte hour = in.readByte();
+            accumulator.hourOrder[i] = hour;
+            accumulator.hourCounts[hour] = in.readInt();
+        }
+        accumulator.categoryCounts.readFrom(in);
+        accumulator.domainCounts.readFrom(in);
+        accumulator.activeDays.readFrom(in);
+        return accumulator;
+    }
+
+    private static void writeNullable(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public long getPv() {
+        return pv;
+    }
+
+    /**
+     * 生成用户画像，未累加任何记录时返回null
+     */
+    public UserProfile toProfile(String userName) {
+        return toProfile(userName, LocalDateTime.now());
+    }
+
+    /**
+     * 生成用户画像并指定更新时间（批量计算时整批使用同一时间）
+     */
+    public UserProfile toProfile(String userName, LocalDateTime updateTime) {
+        if (pv == 0) {
+            return null;
+        }
+
+        UserProfile profile = new UserProfile();
+        profile.setUserId(userId);
+        profile.setUserName(userName);
+        profile.setDepartment(department);
+        profile.setLastUpdateTime(updateTime);
+
+        int days = activeDays.size();
+        profile.setActiveDays(days);
+        profile.setAvgDailyPv((int) (pv / Math.max(days, 1)));
+
+        int peakHour = peakHour();
+        profile.setPeakTimeSlot(String.format("%02d:00-%02d:00", peakHour, peakHour + 1));
+        profile.setTopSiteCategory(categoryCounts.mostFrequent(UNKNOWN));
+        profile.setTopDomain(domainCounts.mostFrequent(UNKNOWN));
+        profile.setNonWorkRatio((float) nonWorkPv / pv);
+        profile.setTotalBytes(totalBytes);
+        profile.setAvgDailyBytes(totalBytes / Math.max(days, 1));
+        profile.setRiskLevel(riskLevel(pv, nightAccessCount, profile.getNonWorkRatio(), totalBytes));
+
+        return profile;
+    }
+
+    /**
+     * 高峰小时，并列时按首次出现顺序回放到HashMap取最大，与原实现一致
+     */
+    private int peakHour() {
+        if (hourSeen == 0) {
+            return DEFAULT_PEAK_HOUR;
+        }
+        int best = hourOrder[0];
+        boolean tied = false;
+        for (int i = 1; i < hourSeen; i++) {
+            int hour = hourOrder[i];
+            if (hourCounts[hour] > hourCounts[best]) {
+                best = hour;
+                tied = false;
+            } else if (hourCounts[hour] == hourCounts[best]) {
+                tied = true;
+            }
+        }
+        if (!tied) {
+            return best;
+        }
+
+        Map<Integer, Integer> replay = new HashMap<>();
+        for (int i = 0; i < hourSeen; i++) {
+            replay.put((int) hourOrder[i], hourCounts[hourOrder[i]]);
+        }
+        return replay.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(DEFAULT_PEAK_HOUR);
+    }
+
+    /**
+     * 是否非工作网站：优先使用维表的 is_work_site，未富化时按分类判断
+     */
+    public static boolean isNonWork(String category, Boolean workSite) {
+        return workSite != null ? !workSite : isNonWorkCategory(category);
+    }
+
+    /**
+     * 是否非工作网站分类（维表缺失时的回退规则）
+     */
+    public static boolean isNonWorkCategory(String category) {
+        return "娱乐".equals(category) ||
+                "社交".equals(category) ||
+                "购物".equals(category) ||
+                "游戏".equals(category);
+    }
+
+    /**
+     * 计算风险等级
+     * 0-低风险, 1-中风险, 2-高风险
+     */
+    public static int riskLevel(long pv, long nightAccessCount, float nonWorkRatio, long totalBytes) {
+        int riskScore = 0;
+
+        // 深夜高频访问 (22:00-06:00)
+        if (nightAccessCount > pv * 0.3) {
+            riskScore += 1;
+        }
+
+        // 非工作网站占比过高
+        if (nonWorkRatio > 0.5) {
+            riskScore += 1;
+        }
+
+        // 大流量外传：平均单次访问超过10MB
+        if (totalBytes / Math.max(pv, 1) > 10 * 1024 * 1024) {
+            riskScore += 1;
+        }
+
+        return Math.min(riskScore, 2);
+    }
+}
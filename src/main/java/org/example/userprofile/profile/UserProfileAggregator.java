@@ -0,0 +1,113 @@
+package org.example.userprofile.profile;
+
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.entity.UserProfile;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 增量用户画像聚合
+ * 按用户维护 {@link UserProfileAccumulator}，逐条接收日志，内存随用户数而不是日志条数增长；
+ * 可随时生成画像快照，也可合并其他分片/线程的聚合结果。非线程安全
+ */
+public class UserProfileAggregator {
+
+    private static final String UNKNOWN_USER = "未知用户";
+
+    private final Map<String, UserProfileAccumulator> accumulators = new HashMap<>();
+    private long logCount;
+
+    /**
+     * 累加一条日志
+     */
+    public void add(NetflowLog log) {
+        UserProfileAccumulator accumulator = accumulators.get(log.getUserId());
+        if (accumulator == null) {
+            accumulator = new UserProfileAccumulator();
+            accumulators.put(log.getUserId(), accumulator);
+        }
+        accumulator.add(log);
+        logCount++;
+    }
+
+    /**
+     * 合并另一个聚合结果
+     */
+    public void merge(UserProfileAggregator other) {
+        for (Map.Entry<String, UserProfileAccumulator> entry : other.accumulators.entrySet()) {
+            accumulators.computeIfAbsent(entry.getKey(), k -> new UserProfileAccumulator()).merge(entry.getValue());
+        }
+        logCount += other.logCount;
+    }
+
+    /**
+     * 单个用户的当前画像，用户不存在时返回null
+     */
+    public UserProfile getProfile(String userId, String userName) {
+        UserProfileAccumulator accumulator = accumulators.get(userId);
+        return accumulator != null ? accumulator.toProfile(userName) : null;
+    }
+
+    /**
+     * 生成全部用户的画像快照
+     */
+    public Map<String, UserProfile> toProfiles(Map<String, String> userNames) {
+        LocalDateTime updateTime = LocalDateTime.now();
+        Map<String, UserProfile> profiles = new HashMap<>(Math.max(16, (int) (accumulators.size() / 0.75f) + 1));
+        for (Map.Entry<String, UserProfileAccumulator> entry : accumulators.entrySet()) {
+            String userId = entry.getKey();
+            profiles.put(userId, entry.getValue().toProfile(userNames.getOrDefault(userId, UNKNOWN_USER), updateTime));
+        }
+        return profiles;
+    }
+
+    /**
+     * 序列化：日志条数、用户数，随后为各用户的累加器
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(logCount);
+        out.writeInt(accumulators.size());
+        for (Map.Entry<String, UserProfileAccumulator> entry : accumulators.entrySet()) {
+            out.writeBoolean(entry.getKey() != null);
+            if (entry.getKey() != null) {
+                out.writeUTF(entry.getKey());
+            }
+            entry.getValue().writeTo(out);
+        }
+    }
+
+    /**
+     * 反序列化 {@link #writeTo} 写出的聚合结果
+     */
+    public static UserProfileAggregator readFrom(DataInput in) throws IOException {
+        UserProfileAggregator aggregator = new UserProfileAggregator();
+        aggregator.logCount = in.readLong();
+        int users = in.readInt();
+        for (int i = 0; i < users; i++) {
+            String userId = in.readBoolean() ? in.readUTF() : null;
+            aggregator.accumulators.put(userId, UserProfileAccumulator.readFrom(in));
+        }
+        return aggregator;
+    }
+
+    /**
+     * 各用户的累加器（只读视图）
+     */
+    public Map<String, UserProfileAccumulator> getAccumulators() {
+        return Collections.unmodifiableMap(accumulators);
+    }
+
+    public int getUserCount() {
+        return accumulators.size();
+    }
+
+    public long getLogCount() {
+        return logCount;
+    }
+}
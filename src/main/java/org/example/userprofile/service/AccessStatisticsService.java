@@ -1,8 +1,21 @@
 package org.example.userprofile.service;
 
+import org.example.userprofile.aggregate.RollupCube;
+import org.example.userprofile.aggregate.StatisticsAggregator;
+import org.example.userprofile.aggregate.StatisticsAggregator.Breakdown;
+import org.example.userprofile.aggregate.SymbolCounter;
+import org.example.userprofile.aggregate.TopNSelector;
+import org.example.userprofile.aggregate.TopNTracker;
 import org.example.userprofile.dto.AccessStatistics;
 import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.io.NetflowLogSource;
+import org.example.userprofile.sketch.HyperLogLog;
+import org.example.userprofile.store.NetflowLogStore;
+import org.example.userprofile.store.StringDictionary;
+import org.example.userprofile.store.SymbolTables;
+import org.example.userprofile.time.EventTimes;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -13,6 +26,32 @@ import java.util.stream.Collectors;
  */
 public class AccessStatisticsService {
 
+    // HyperLogLog 精度，0 表示精确UV
+    private final int uvPrecision;
+
+    /**
+     * 精确UV模式（默认）
+     */
+    public AccessStatisticsService() {
+        this.uvPrecision = 0;
+    }
+
+    /**
+     * 近似UV模式：UV由 HyperLogLog 草图估计，结果中附带可合并的草图
+     *
+     * @param uvRelativeError UV的目标相对误差（标准误差），如 0.01
+     */
+    public AccessStatisticsService(double uvRelativeError) {
+        this.uvPrecision = HyperLogLog.precisionFor(uvRelativeError);
+    }
+
+    /**
+     * 是否为近似UV模式
+     */
+    public boolean isApproximateUv() {
+        return uvPrecision > 0;
+    }
+
     /**
      * 计算基础访问统计
      */
@@ -21,86 +60,139 @@ public class AccessStatisticsService {
             return new AccessStatistics(0L, 0L, 0L, 0L);
         }
 
-        AccessStatistics stats = new AccessStatistics();
-
-        // PV（访问次数）
-        stats.setPv((long) logs.size());
-
-        // UV（独立用户数）
-        Set<String> uniqueUsers = logs.stream()
-                .map(NetflowLog::getUserId)
-                .collect(Collectors.toSet());
-        stats.setUv((long) uniqueUsers.size());
-
-        // 总流量
-        long totalBytes = logs.stream()
-                .mapToLong(log -> log.getBytes() != null ? log.getBytes() : 0)
-                .sum();
-        stats.setTotalBytes(totalBytes);
+        // 单遍计算PV、UV、总流量以及部门/分类统计
+        return StatisticsAggregator.aggregate(logs, EnumSet.noneOf(Breakdown.class), uvPrecision).total();
+    }
 
-        // 活跃用户数（有访问行为的用户）
-        stats.setActiveUsers(stats.getUv());
+    /**
+     * 单遍计算总体统计及按部门、分类、日期的分组统计
+     */
+    public StatisticsAggregator aggregate(List<NetflowLog> logs) {
+        return StatisticsAggregator.aggregate(logs, EnumSet.allOf(Breakdown.class), uvPrecision);
+    }
 
-        // 部门统计
-        Map<String, Long> departmentStats = logs.stream()
-                .collect(Collectors.groupingBy(
-                        NetflowLog::getDepartment,
-                        Collectors.counting()
-                ));
-        stats.setDepartmentStats(departmentStats);
+    /**
+     * 流式单遍统计：逐条读取数据源并累加，不在内存中保留原始日志
+     */
+    public StatisticsAggregator aggregate(NetflowLogSource source) throws IOException {
+        StatisticsAggregator aggregator = new StatisticsAggregator(EnumSet.allOf(Breakdown.class), uvPrecision);
+        source.forEach(aggregator::add);
+        return aggregator;
+    }
 
-        // 网站分类统计
-        Map<String, Long> categoryStats = logs.stream()
-                .filter(log -> log.getSiteCategory() != null)
-                .collect(Collectors.groupingBy(
-                        NetflowLog::getSiteCategory,
-                        Collectors.counting()
-                ));
-        stats.setCategoryStats(categoryStats);
+    /**
+     * 合并多个统计结果的UV草图，得到跨天、跨部门或跨分片汇总后的近似UV，无需重新扫描原始日志
+     * 各结果须由相同误差配置的近似UV模式产生；没有访问记录的空结果会被忽略
+     */
+    public long mergeUv(Collection<AccessStatistics> parts) {
+        HyperLogLog merged = null;
+        for (AccessStatistics part : parts) {
+            HyperLogLog sketch = part.getUvSketch();
+            if (sketch == null) {
+                if (part.getPv() == null || part.getPv() == 0) {
+                    continue;
+                }
+                throw new IllegalArgumentException("统计结果不包含UV草图，请使用近似UV模式");
+            }
+            if (merged == null) {
+                merged = sketch.copy();
+            } else {
+                merged.merge(sketch);
+            }
+        }
+        return merged != null ? merged.estimate() : 0;
+    }
 
-        return stats;
+    /**
+     * 按时间范围统计，逐条过滤并原地聚合，不要求日志有序
+     */
+    public AccessStatistics calculateStatisticsByTimeRange(List<NetflowLog> logs,
+                                                          LocalDateTime startTime,
+                                                          LocalDateTime endTime) {
+        return calculateStatisticsByTimeRange(logs, startTime, endTime, false);
     }
 
     /**
      * 按时间范围统计
+     *
+     * @param sortedByTime 调用方保证 logs 按事件时间升序（如 generateLogs 的结果）时为 true，
+     *                     此时二分定位首尾、只访问命中的行；不检查是否真的有序，无序时结果不正确
      */
     public AccessStatistics calculateStatisticsByTimeRange(List<NetflowLog> logs,
                                                           LocalDateTime startTime,
-                                                          LocalDateTime endTime) {
-        List<NetflowLog> filteredLogs = logs.stream()
-                .filter(log -> !log.getEventTime().isBefore(startTime))
-                .filter(log -> !log.getEventTime().isAfter(endTime))
-                .collect(Collectors.toList());
+                                                          LocalDateTime endTime,
+                                                          boolean sortedByTime) {
+        if (sortedByTime && logs instanceof RandomAccess) {
+            int from = firstNotBefore(logs, startTime);
+            int to = firstAfter(logs, endTime);
+            return calculateStatistics(logs.subList(from, Math.max(from, to)));
+        }
 
-        return calculateStatistics(filteredLogs);
+        long startSecond = EventTimes.toEpochSecond(startTime);
+        long endSecond = EventTimes.toEpochSecond(endTime);
+        StatisticsAggregator aggregator = new StatisticsAggregator(EnumSet.noneOf(Breakdown.class), uvPrecision);
+        for (NetflowLog log : logs) {
+            if (compareTime(log, startSecond, startTime.getNano()) >= 0
+                    && compareTime(log, endSecond, endTime.getNano()) <= 0) {
+                aggregator.add(log);
+            }
+        }
+        return aggregator.total();
+    }
+
+    private static int compareTime(NetflowLog log, long second, int nano) {
+        int bySecond = Long.compare(log.getEventEpochSecond(), second);
+        return bySecond != 0 ? bySecond : Integer.compare(log.getEventNano(), nano);
+    }
+
+    /**
+     * 第一条时间不早于 time 的下标
+     */
+    private static int firstNotBefore(List<NetflowLog> logs, LocalDateTime time) {
+        long second = EventTimes.toEpochSecond(time);
+        int low = 0;
+        int high = logs.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareTime(logs.get(mid), second, time.getNano()) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 第一条时间晚于 time 的下标
+     */
+    private static int firstAfter(List<NetflowLog> logs, LocalDateTime time) {
+        long second = EventTimes.toEpochSecond(time);
+        int low = 0;
+        int high = logs.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareTime(logs.get(mid), second, time.getNano()) > 0) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
     }
 
     /**
      * 按部门统计
      */
     public Map<String, AccessStatistics> calculateByDepartment(List<NetflowLog> logs) {
-        return logs.stream()
-                .collect(Collectors.groupingBy(NetflowLog::getDepartment))
-                .entrySet().stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        entry -> calculateStatistics(entry.getValue())
-                ));
+        return StatisticsAggregator.aggregate(logs, EnumSet.of(Breakdown.DEPARTMENT), uvPrecision).byDepartment();
     }
 
     /**
      * 按天统计趋势
      */
     public Map<LocalDate, AccessStatistics> calculateDailyTrend(List<NetflowLog> logs) {
-        Map<LocalDate, List<NetflowLog>> dailyLogs = logs.stream()
-                .collect(Collectors.groupingBy(log -> log.getEventTime().toLocalDate()));
-
-        Map<LocalDate, AccessStatistics> trend = new TreeMap<>();
-        for (Map.Entry<LocalDate, List<NetflowLog>> entry : dailyLogs.entrySet()) {
-            trend.put(entry.getKey(), calculateStatistics(entry.getValue()));
-        }
-
-        return trend;
+        return StatisticsAggregator.aggregate(logs, EnumSet.of(Breakdown.DAY), uvPrecision).byDay();
     }
 
     /**
@@ -110,7 +202,7 @@ public class AccessStatisticsService {
         Map<Integer, Long> hourlyStats = new TreeMap<>();
 
         for (NetflowLog log : logs) {
-            int hour = log.getEventTime().getHour();
+            int hour = log.getEventHour();
             hourlyStats.put(hour, hourlyStats.getOrDefault(hour, 0L) + 1);
         }
 
@@ -121,46 +213,194 @@ public class AccessStatisticsService {
      * 按网站分类统计
      */
     public Map<String, AccessStatistics> calculateByCategory(List<NetflowLog> logs) {
-        return logs.stream()
-                .filter(log -> log.getSiteCategory() != null)
-                .collect(Collectors.groupingBy(NetflowLog::getSiteCategory))
-                .entrySet().stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        entry -> calculateStatistics(entry.getValue())
-                ));
+        return StatisticsAggregator.aggregate(logs, EnumSet.of(Breakdown.CATEGORY), uvPrecision).byCategory();
     }
 
     /**
-     * Top N 用户
+     * Top N 用户（计数相同按 userId 升序）
      */
     public List<Map.Entry<String, Long>> getTopNUsers(List<NetflowLog> logs, int n) {
-        Map<String, Long> userPv = logs.stream()
-                .collect(Collectors.groupingBy(
-                        NetflowLog::getUserId,
-                        Collectors.counting()
-                ));
-
-        return userPv.entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .limit(n)
-                .collect(Collectors.toList());
+        StringDictionary users = new StringDictionary();
+        long[] counts = new long[16];
+        for (NetflowLog log : logs) {
+            counts = increment(counts, users.encode(log.getUserId()));
+        }
+        return TopNSelector.select(users, counts, n);
     }
 
     /**
-     * Top N 域名
+     * Top N 域名（计数相同按域名升序），按日志上的全局域名编码计数
      */
     public List<Map.Entry<String, Long>> getTopNDomains(List<NetflowLog> logs, int n) {
-        Map<String, Long> domainPv = logs.stream()
-                .filter(log -> log.getDomain() != null)
-                .collect(Collectors.groupingBy(
-                        NetflowLog::getDomain,
-                        Collectors.counting()
-                ));
-
-        return domainPv.entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .limit(n)
-                .collect(Collectors.toList());
-    }
-}
\ No newline at end of file
+        SymbolCounter counter = new SymbolCounter(SymbolTables.DOMAINS);
+        for (NetflowLog log : logs) {
+            counter.add(log.getDomainId(), log.getDomain());
+        }
+        return counter.top(n);
+    }
+
+    /**
+     * 流式跟踪 Top N 用户/域名，内存只与计数器个数有关
+     * 摄入过程中可从其他线程随时调用 {@link TopNTracker#topUsers(int)} 等方法查询
+     *
+     * @param capacity 每个维度保留的计数器个数，估计PV的高估误差不超过 总PV/capacity
+     */
+    public TopNTracker trackTopN(NetflowLogSource source, int capacity) throws IOException {
+        TopNTracker tracker = new TopNTracker(capacity);
+        source.forEach(tracker::add);
+        return tracker;
+    }
+
+    /**
+     * 计算基础访问统计（列式存储）
+     */
+    public AccessStatistics calculateStatistics(NetflowLogStore store) {
+        return StatisticsAggregator.aggregate(store, EnumSet.noneOf(Breakdown.class), uvPrecision).total();
+    }
+
+    /**
+     * 单遍计算总体统计及按部门、分类、日期的分组统计（列式存储）
+     */
+    public StatisticsAggregator aggregate(NetflowLogStore store) {
+        return StatisticsAggregator.aggregate(store, EnumSet.allOf(Breakdown.class), uvPrecision);
+    }
+
+    /**
+     * 按时间范围统计（列式存储）
+     * 经按天分区的时间索引定位命中的行并原地聚合，不扫描范围外的数据、不复制行
+     */
+    public AccessStatistics calculateStatisticsByTimeRange(NetflowLogStore store,
+                                                          LocalDateTime startTime,
+                                                          LocalDateTime endTime) {
+        // 存储为秒级时间：起点含纳秒时向上取整，终点向下取整
+        long fromSecond = EventTimes.toEpochSecond(startTime) + (startTime.getNano() > 0 ? 1 : 0);
+        long toSecond = EventTimes.toEpochSecond(endTime);
+        StatisticsAggregator aggregator = StatisticsAggregator.forStore(store, EnumSet.noneOf(Breakdown.class), uvPrecision);
+        store.timeIndex().forEachRow(fromSecond, toSecond, row -> aggregator.addRow(store, row));
+        return aggregator.total();
+    }
+
+    /**
+     * 按部门统计（列式存储）
+     */
+    public Map<String, AccessStatistics> calculateByDepartment(NetflowLogStore store) {
+        return StatisticsAggregator.aggregate(store, EnumSet.of(Breakdown.DEPARTMENT), uvPrecision).byDepartment();
+    }
+
+    /**
+     * 按网站分类统计（列式存储）
+     */
+    public Map<String, AccessStatistics> calculateByCategory(NetflowLogStore store) {
+        return StatisticsAggregator.aggregate(store, EnumSet.of(Breakdown.CATEGORY), uvPrecision).byCategory();
+    }
+
+    /**
+     * 按天统计趋势（列式存储）
+     */
+    public Map<LocalDate, AccessStatistics> calculateDailyTrend(NetflowLogStore store) {
+        return StatisticsAggregator.aggregate(store, EnumSet.of(Breakdown.DAY), uvPrecision).byDay();
+    }
+
+    /**
+     * 按小时统计趋势（列式存储）
+     */
+    public Map<Integer, Long> calculateHourlyTrend(NetflowLogStore store) {
+        long[] hourCounts = new long[24];
+        for (int row = 0; row < store.size(); row++) {
+            hourCounts[store.hour(row)]++;
+        }
+
+        Map<Integer, Long> hourlyStats = new TreeMap<>();
+        for (int hour = 0; hour < 24; hour++) {
+            if (hourCounts[hour] > 0) {
+                hourlyStats.put(hour, hourCounts[hour]);
+            }
+        }
+        return hourlyStats;
+    }
+
+    /**
+     * Top N 用户（列式存储）
+     */
+    public List<Map.Entry<String, Long>> getTopNUsers(NetflowLogStore store, int n) {
+        long[] counts = new long[store.getUserIdDictionary().size()];
+        for (int row = 0; row < store.size(); row++) {
+            int user = store.userIdCode(row);
+            if (user >= 0) {
+                counts[user]++;
+            }
+        }
+        return TopNSelector.select(store.getUserIdDictionary(), counts, n);
+    }
+
+    /**
+     * Top N 域名（列式存储）
+     */
+    public List<Map.Entry<String, Long>> getTopNDomains(NetflowLogStore store, int n) {
+        long[] counts = new long[store.getDomainDictionary().size()];
+        for (int row = 0; row < store.size(); row++) {
+            int domain = store.domainCode(row);
+            if (domain >= 0) {
+                counts[domain]++;
+            }
+        }
+        return TopNSelector.select(store.getDomainDictionary(), counts, n);
+    }
+
+    /**
+     * 创建预聚合立方体，汇总维度的UV模式与本服务一致
+     * 日志到达时调用 {@link RollupCube#add(NetflowLog)} 增量更新，以下查询方法直接读取汇总结果
+     */
+    public RollupCube createCube() {
+        return new RollupCube(uvPrecision, RollupCube.DEFAULT_CELL_PRECISION);
+    }
+
+    /**
+     * 计算基础访问统计（预聚合立方体）
+     */
+    public AccessStatistics calculateStatistics(RollupCube cube) {
+        return cube.total();
+    }
+
+    /**
+     * 按部门统计（预聚合立方体）
+     */
+    public Map<String, AccessStatistics> calculateByDepartment(RollupCube cube) {
+        return cube.byDepartment();
+    }
+
+    /**
+     * 按网站分类统计（预聚合立方体）
+     */
+    public Map<String, AccessStatistics> calculateByCategory(RollupCube cube) {
+        return cube.byCategory();
+    }
+
+    /**
+     * 计算日访问趋势（预聚合立方体）
+     */
+    public Map<LocalDate, AccessStatistics> calculateDailyTrend(RollupCube cube) {
+        return cube.byDay();
+    }
+
+    /**
+     * 计算24小时访问趋势（预聚合立方体）
+     */
+    public Map<Integer, Long> calculateHourlyTrend(RollupCube cube) {
+        return cube.byHour();
+    }
+
+    /**
+     * 按编码计数，数组不足时扩容（null 编码忽略）
+     */
+    private static long[] increment(long[] counts, int code) {
+        if (code < 0) {
+            return counts;
+        }
+        if (code >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(code + 1, counts.length * 2));
+        }
+        counts[code]++;
+        return counts;
+    }
+}
@@ -2,187 +2,194 @@ package org.example.userprofile.service;
 
 import org.example.userprofile.entity.UserProfile;
 import org.example.userprofile.entity.NetflowLog;
-
+import org.example.userprofile.io.NetflowLogSource;
+import org.example.userprofile.profile.DailyPartialStore;
+import org.example.userprofile.profile.UserProfileAccumulator;
+import org.example.userprofile.profile.UserProfileAggregator;
+import org.example.userprofile.store.NetflowLogStore;
+import org.example.userprofile.store.StringDictionary;
+
+import java.io.IOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
 
 /**
  * 用户画像分析服务
  */
 public class UserProfileService {
 
+    private static final String UNKNOWN_USER = "未知用户";
+
     /**
      * 计算用户画像
+     * 活跃天数、高峰时段、偏好类型、TOP域名、非工作占比、流量与风险等级在一次扫描中完成
      */
     public UserProfile calculateUserProfile(List<NetflowLog> logs, String userName) {
+        return calculateUserProfile(logs, userName, LocalDateTime.now());
+    }
+
+    private UserProfile calculateUserProfile(List<NetflowLog> logs, String userName, LocalDateTime updateTime) {
         if (logs == null || logs.isEmpty()) {
             return null;
         }
 
-        UserProfile profile = new UserProfile();
-        profile.setUserId(logs.get(0).getUserId());
-        profile.setUserName(userName);
-        profile.setDepartment(logs.get(0).getDepartment());
-        profile.setLastUpdateTime(LocalDateTime.now());
-
-        // 计算活跃天数（使用LocalDate避免跨年问题）
-        Set<java.time.LocalDate> activeDates = new HashSet<>();
+        UserProfileAccumulator accumulator = new UserProfileAccumulator();
         for (NetflowLog log : logs) {
-            activeDates.add(log.getEventTime().toLocalDate());
+            accumulator.add(log);
         }
-        profile.setActiveDays(activeDates.size());
-
-        // 计算日均访问次数
-        int totalPv = logs.size();
-        profile.setAvgDailyPv(totalPv / Math.max(activeDates.size(), 1));
-
-        // 计算高峰时段
-        profile.setPeakTimeSlot(calculatePeakTimeSlot(logs));
-
-        // 计算偏好网站类型
-        profile.setTopSiteCategory(calculateTopSiteCategory(logs));
-
-        // 计算top域名
-        profile.setTopDomain(calculateTopDomain(logs));
-
-        // 计算非工作网站占比
-        profile.setNonWorkRatio(calculateNonWorkRatio(logs));
-
-        // 计算总流量和日均流量
-        long totalBytes = logs.stream().mapToLong(log -> log.getBytes() != null ? log.getBytes() : 0).sum();
-        profile.setTotalBytes(totalBytes);
-        profile.setAvgDailyBytes(totalBytes / Math.max(activeDates.size(), 1));
-
-        // 计算风险等级
-        profile.setRiskLevel(calculateRiskLevel(logs, profile));
+        return accumulator.toProfile(userName, updateTime);
+    }
 
-        return profile;
+    /**
+     * 批量计算用户画像
+     */
+    public Map<String, UserProfile> calculateBatchProfiles(Map<String, List<NetflowLog>> userLogs,
+                                                           Map<String, String> userNames) {
+        return calculateBatchProfiles(userLogs, userNames, null);
     }
 
     /**
-     * 计算高峰时段
+     * 并行批量计算用户画像
+     * 按用户日志条数切分任务，executor 为 ForkJoinPool 时使用工作窃取递归切分；
+     * executor 为 null 时在当前线程顺序计算。结果与顺序计算完全一致
      */
-    private String calculatePeakTimeSlot(List<NetflowLog> logs) {
-        Map<Integer, Integer> hourCount = new HashMap<>();
+    public Map<String, UserProfile> calculateBatchProfiles(Map<String, List<NetflowLog>> userLogs,
+                                                           Map<String, String> userNames,
+                                                           Executor executor) {
+        return calculateBatchProfiles(userLogs, userNames, executor, 0);
+    }
 
-        for (NetflowLog log : logs) {
-            int hour = log.getEventTime().getHour();
-            hourCount.put(hour, hourCount.getOrDefault(hour, 0) + 1);
+    /**
+     * 同上，显式指定 executor 的并行度（工作线程数），0 表示按 executor 类型推断
+     */
+    public Map<String, UserProfile> calculateBatchProfiles(Map<String, List<NetflowLog>> userLogs,
+                                                           Map<String, String> userNames,
+                                                           Executor executor, int parallelism) {
+        int userCount = userLogs.size();
+        String[] userIds = new String[userCount];
+        List<List<NetflowLog>> logsByUser = new ArrayList<>(userCount);
+        int[] weights = new int[userCount];
+        int index = 0;
+        for (Map.Entry<String, List<NetflowLog>> entry : userLogs.entrySet()) {
+            userIds[index] = entry.getKey();
+            logsByUser.add(entry.getValue());
+            weights[index] = entry.getValue() != null ? entry.getValue().size() : 0;
+            index++;
         }
 
-        int maxHour = hourCount.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse(9);
-
-        return String.format("%02d:00-%02d:00", maxHour, maxHour + 1);
+        LocalDateTime updateTime = LocalDateTime.now();
+        return computeProfiles(userIds, weights, i -> calculateUserProfile(logsByUser.get(i),
+                userNames.getOrDefault(userIds[i], UNKNOWN_USER), updateTime), executor, parallelism);
     }
 
     /**
-     * 计算偏好网站类型
+     * 流式批量计算用户画像：逐条累加到各用户的累加器，不保留原始日志
      */
-    private String calculateTopSiteCategory(List<NetflowLog> logs) {
-        Map<String, Integer> categoryCount = new HashMap<>();
-
-        for (NetflowLog log : logs) {
-            String category = log.getSiteCategory() != null ? log.getSiteCategory() : "未知";
-            categoryCount.put(category, categoryCount.getOrDefault(category, 0) + 1);
-        }
+    public Map<String, UserProfile> calculateBatchProfiles(NetflowLogSource source,
+                                                           Map<String, String> userNames) throws IOException {
+        UserProfileAggregator aggregator = new UserProfileAggregator();
+        source.forEach(aggregator::add);
+        return aggregator.toProfiles(userNames);
+    }
 
-        return categoryCount.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse("未知");
+    /**
+     * 由按天持久化的部分聚合计算 [from, to] 窗口内的用户画像：合并各天的累加器，不重新扫描日志
+     */
+    public Map<String, UserProfile> calculateWindowProfiles(DailyPartialStore partials, LocalDate from, LocalDate to,
+                                                            Map<String, String> userNames) throws IOException {
+        return partials.mergeWindow(from, to).toProfiles(userNames);
     }
 
     /**
-     * 计算top域名
+     * 计算用户画像（列式存储，rows为该用户的行号，按时间顺序）
+     * 结果与 {@link #calculateUserProfile(List, String)} 一致
      */
-    private String calculateTopDomain(List<NetflowLog> logs) {
-        Map<String, Integer> domainCount = new HashMap<>();
+    public UserProfile calculateUserProfile(NetflowLogStore store, int[] rows, String userName) {
+        return calculateUserProfile(store, rows, userName, LocalDateTime.now());
+    }
 
-        for (NetflowLog log : logs) {
-            String domain = log.getDomain() != null ? log.getDomain() : "未知";
-            domainCount.put(domain, domainCount.getOrDefault(domain, 0) + 1);
+    private UserProfile calculateUserProfile(NetflowLogStore store, int[] rows, String userName,
+                                             LocalDateTime updateTime) {
+        if (rows == null || rows.length == 0) {
+            return null;
         }
 
-        return domainCount.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse("未知");
+        StringDictionary userIdDict = store.getUserIdDictionary();
+        StringDictionary departmentDict = store.getDepartmentDictionary();
+        StringDictionary categoryDict = store.getCategoryDictionary();
+        StringDictionary domainDict = store.getDomainDictionary();
+
+        UserProfileAccumulator accumulator = new UserProfileAccumulator();
+        for (int row : rows) {
+            accumulator.add(userIdDict.decode(store.userIdCode(row)),
+                    departmentDict.decode(store.departmentCode(row)),
+                    store.epochDay(row), store.hour(row),
+                    categoryDict.decode(store.categoryCode(row)),
+                    domainDict.decode(store.domainCode(row)),
+                    store.bytes(row), store.workSite(row));
+        }
+        return accumulator.toProfile(userName, updateTime);
     }
 
     /**
-     * 计算非工作网站占比
+     * 批量计算用户画像（列式存储）
      */
-    private Float calculateNonWorkRatio(List<NetflowLog> logs) {
-        long totalPv = logs.size();
-        if (totalPv == 0) {
-            return 0.0f;
-        }
-
-        long nonWorkPv = logs.stream()
-                .filter(log -> "娱乐".equals(log.getSiteCategory()) ||
-                        "社交".equals(log.getSiteCategory()) ||
-                        "购物".equals(log.getSiteCategory()) ||
-                        "游戏".equals(log.getSiteCategory()))
-                .count();
-
-        return (float) nonWorkPv / totalPv;
+    public Map<String, UserProfile> calculateBatchProfiles(NetflowLogStore store, Map<String, String> userNames) {
+        return calculateBatchProfiles(store, userNames, null);
     }
 
     /**
-     * 计算风险等级
-     * 0-低风险, 1-中风险, 2-高风险
+     * 并行批量计算用户画像（列式存储），切分方式同 {@link #calculateBatchProfiles(Map, Map, Executor)}
      */
-    private Integer calculateRiskLevel(List<NetflowLog> logs, UserProfile profile) {
-        int riskScore = 0;
-
-        // 深夜高频访问 (22:00-06:00)
-        long nightAccessCount = logs.stream()
-                .filter(log -> {
-                    int hour = log.getEventTime().getHour();
-                    return hour >= 22 || hour < 6;
-                })
-                .count();
-
-        if (nightAccessCount > logs.size() * 0.3) {
-            riskScore += 1;
-        }
-
-        // 非工作网站占比过高
-        if (profile.getNonWorkRatio() > 0.5) {
-            riskScore += 1;
-        }
+    public Map<String, UserProfile> calculateBatchProfiles(NetflowLogStore store, Map<String, String> userNames,
+                                                           Executor executor) {
+        return calculateBatchProfiles(store, userNames, executor, 0);
+    }
 
-        // 大流量外传
-        long avgBytes = logs.stream().mapToLong(log -> log.getBytes() != null ? log.getBytes() : 0).sum()
-                / Math.max(logs.size(), 1);
-        if (avgBytes > 10 * 1024 * 1024) {  // 平均单次访问超过10MB
-            riskScore += 1;
+    /**
+     * 同上，显式指定 executor 的并行度（工作线程数），0 表示按 executor 类型推断
+     */
+    public Map<String, UserProfile> calculateBatchProfiles(NetflowLogStore store, Map<String, String> userNames,
+                                                           Executor executor, int parallelism) {
+        StringDictionary userIdDict = store.getUserIdDictionary();
+        int[][] userRows = store.groupRowsByUser();
+        String[] userIds = new String[userRows.length];
+        int[] weights = new int[userRows.length];
+        for (int code = 0; code < userRows.length; code++) {
+            userIds[code] = userIdDict.decode(code);
+            weights[code] = userRows[code].length;
         }
 
-        return Math.min(riskScore, 2);
+        LocalDateTime updateTime = LocalDateTime.now();
+        return computeProfiles(userIds, weights, code -> calculateUserProfile(store, userRows[code],
+                userNames.getOrDefault(userIds[code], UNKNOWN_USER), updateTime), executor, parallelism);
     }
 
     /**
-     * 批量计算用户画像
+     * 计算每个用户的画像，结果按用户原有顺序写入预分配的结果表，保证输出与线程数无关
      */
-    public Map<String, UserProfile> calculateBatchProfiles(Map<String, List<NetflowLog>> userLogs,
-                                                           Map<String, String> userNames) {
-        Map<String, UserProfile> profiles = new HashMap<>();
-
-        for (Map.Entry<String, List<NetflowLog>> entry : userLogs.entrySet()) {
-            String userId = entry.getKey();
-            List<NetflowLog> logs = entry.getValue();
-            String userName = userNames.getOrDefault(userId, "未知用户");
-
-            UserProfile profile = calculateUserProfile(logs, userName);
-            if (profile != null) {
-                profiles.put(userId, profile);
+    private Map<String, UserProfile> computeProfiles(String[] userIds, int[] weights,
+                                                     IntFunction<UserProfile> compute, Executor executor,
+                                                     int parallelism) {
+        UserProfile[] results = new UserProfile[userIds.length];
+        if (executor == null) {
+            for (int i = 0; i < userIds.length; i++) {
+                results[i] = compute.apply(i);
             }
+        } else {
+            WeightedBatchRunner.run(weights, i -> results[i] = compute.apply(i), executor,
+                    parallelism > 0 ? parallelism : WeightedBatchRunner.parallelismOf(executor));
         }
 
+        Map<String, UserProfile> profiles = new HashMap<>(Math.max(16, (int) (userIds.length / 0.75f) + 1));
+        for (int i = 0; i < userIds.length; i++) {
+            if (results[i] != null) {
+                profiles.put(userIds[i], results[i]);
+            }
+        }
         return profiles;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,148 @@
+package org.example.userprofile.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.IntConsumer;
+
+/**
+ * 按权重（日志条数）切分的并行批处理
+ * 任务按权重从大到小排列，按累计权重而不是任务个数切分，
+ * 少数重度用户单独成块，避免拖尾
+ */
+final class WeightedBatchRunner {
+
+    // 每个工作线程平均分到的块数，越大负载越均衡、调度开销越高
+    private static final int CHUNKS_PER_THREAD = 8;
+
+    private final int[] order;     // 按权重降序排列的任务下标
+    private final long[] prefix;   // order 上的累计权重
+    private final IntConsumer task;
+
+    private WeightedBatchRunner(int[] weights, IntConsumer task) {
+        this.task = task;
+        int n = weights.length;
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            packed[i] = ((long) weights[i] << 32) | i;
+        }
+        Arrays.sort(packed);
+
+        order = new int[n];
+        prefix = new long[n + 1];
+        for (int i = 0; i < n; i++) {
+            long entry = packed[n - 1 - i];
+            order[i] = (int) entry;
+            prefix[i + 1] = prefix[i] + Math.max(entry >>> 32, 1);
+        }
+    }
+
+    /**
+     * 同 {@link #run(int[], IntConsumer, Executor, int)}，并行度由 {@link #parallelismOf(Executor)} 推断
+     */
+    static void run(int[] weights, IntConsumer task, Executor executor) {
+        run(weights, task, executor, parallelismOf(executor));
+    }
+
+    /**
+     * 对下标 0..weights.length-1 并行执行 task，返回时所有任务均已完成
+     * ForkJoinPool 使用工作窃取的递归切分，其他 Executor 按权重预切块提交
+     *
+     * @param parallelism executor 的工作线程数，决定切块粒度
+     */
+    static void run(int[] weights, IntConsumer task, Executor executor, int parallelism) {
+        if (weights.length == 0) {
+            return;
+        }
+        WeightedBatchRunner runner = new WeightedBatchRunner(weights, task);
+        if (executor instanceof ForkJoinPool) {
+            ((ForkJoinPool) executor).invoke(runner.new RangeTask(0, weights.length, runner.threshold(parallelism)));
+        } else {
+            runner.runChunks(executor, runner.threshold(parallelism));
+        }
+    }
+
+    /**
+     * executor 的并行度：ForkJoinPool 取其并行度，有界线程池取最大线程数，其余按CPU核数
+     */
+    static int parallelismOf(Executor executor) {
+        if (executor instanceof ForkJoinPool) {
+            return ((ForkJoinPool) executor).getParallelism();
+        }
+        if (executor instanceof ThreadPoolExecutor) {
+            int maximum = ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+            if (maximum < Integer.MAX_VALUE) {
+                return maximum;
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private long threshold(int parallelism) {
+        return Math.max(1, prefix[order.length] / ((long) Math.max(parallelism, 1) * CHUNKS_PER_THREAD));
+    }
+
+    private void runRange(int from, int to) {
+        for (int i = from; i < to; i++) {
+            task.accept(order[i]);
+        }
+    }
+
+    private void runChunks(Executor executor, long threshold) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        int from = 0;
+        while (from < order.length) {
+            int to = from + 1;
+            while (to < order.length && prefix[to] - prefix[from] < threshold) {
+                to++;
+            }
+            final int chunkFrom = from;
+            final int chunkTo = to;
+            futures.add(CompletableFuture.runAsync(() -> runRange(chunkFrom, chunkTo), executor));
+            from = to;
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    /**
+     * 按累计权重二分的递归任务
+     */
+    private final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final long threshold;
+
+        RangeTask(int from, int to, long threshold) {
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1 || prefix[to] - prefix[from] <= threshold) {
+                runRange(from, to);
+                return;
+            }
+            int mid = splitPoint();
+            invokeAll(new RangeTask(from, mid, threshold), new RangeTask(mid, to, threshold));
+        }
+
+        /**
+         * 找到使两侧累计权重尽量相等的切分点，保证两侧非空
+         */
+        private int splitPoint() {
+            long half = prefix[from] + (prefix[to] - prefix[from]) / 2;
+            int index = Arrays.binarySearch(prefix, from + 1, to, half);
+            int mid = index >= 0 ? index : -index - 1;
+            return Math.min(Math.max(mid, from + 1), to - 1);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package org.example.userprofile.shard;
+
+import org.example.userprofile.aggregate.TopNSelector;
+import org.example.userprofile.dto.AccessStatistics;
+import org.example.userprofile.entity.UserProfile;
+import org.example.userprofile.profile.UserProfileAggregator;
+import org.example.userprofile.store.ProfileStore;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * 分片协调器：逐个合并各分片的 {@link ShardPartial}
+ * PV、流量、部门/分类/域名计数直接相加；分片按 userId 划分、用户互不重叠，精确UV相加、画像累加器合并即为精确结果，
+ * 近似UV则合并草图。全局 Top N 用户必然出现在所在分片的 Top N 中（各分片按同一全序 {@link TopNSelector#RANK} 选取），
+ * 因此只需合并各分片的候选。内存只与分组数、域名数和（可选的）用户画像有关，与日志条数无关
+ */
+public class ShardCoordinator {
+
+    private final boolean mergeProfiles;
+
+    private int shardCount = -1;
+    private final BitSet received = new BitSet();
+    private int topN = Integer.MAX_VALUE;
+    private long skippedCount;
+
+    private final AccessStatistics total = new AccessStatistics();
+    private final Map<String, AccessStatistics> departments = new HashMap<>();
+    private final Map<String, AccessStatistics> categories = new HashMap<>();
+    private final Map<LocalDate, AccessStatistics> days = new TreeMap<>();
+    private final List<Map.Entry<String, Long>> userCandidates = new ArrayList<>();
+    private final Map<String, Long> domainCounts = new HashMap<>();
+    private final UserProfileAggregator profiles = new UserProfileAggregator();
+
+    public ShardCoordinator() {
+        this(true);
+    }
+
+    /**
+     * @param mergeProfiles 是否合并各分片的画像累加器；用户很多时可改为逐个分片处理 {@link ShardPartial#getProfiles()}
+     */
+    public ShardCoordinator(boolean mergeProfiles) {
+        this.mergeProfiles = mergeProfiles;
+    }
+
+    /**
+     * 合并一组部分聚合
+     */
+    public static ShardCoordinator merge(Collection<ShardPartial> partials) {
+        ShardCoordinator coordinator = new ShardCoordinator();
+        for (ShardPartial partial : partials) {
+            coordinator.add(partial);
+        }
+        return coordinator;
+    }
+
+    /**
+     * 合并一个分片的部分聚合，分片数不一致或分片重复时抛出 IllegalArgumentException
+     */
+    public synchronized void add(ShardPartial partial) {
+        if (shardCount < 0) {
+            shardCount = partial.getShardCount();
+        } else if (partial.getShardCount() != shardCount) {
+            throw new IllegalArgumentException("分片数不一致: " + partial.getShardCount() + " / " + shardCount);
+        }
+        if (received.get(partial.getShard())) {
+            throw new IllegalArgumentException("重复的分片: " + partial.getShard());
+        }
+        received.set(partial.getShard());
+        topN = Math.min(topN, partial.getTopN());
+        skippedCount += partial.getSkippedCount();
+
+        total.merge(partial.getTotal());
+        mergeGroups(departments, partial.getDepartments());
+        mergeGroups(categories, partial.getCategories());
+        mergeGroups(days, partial.getDays());
+        userCandidates.addAll(partial.getTopUsers());
+        partial.getDomainCounts().forEach((domain, count) -> domainCounts.merge(domain, count, Long::sum));
+        if (mergeProfiles && partial.getProfiles() != null) {
+            profiles.merge(partial.getProfiles());
+        }
+    }
+
+    /**
+     * 是否已收齐全部分片
+     */
+    public synchronized boolean isComplete() {
+        return shardCount >= 0 && received.cardinality() == shardCount;
+    }
+
+    /**
+     * 尚未收到的分片号
+     */
+    public synchronized List<Integer> missingShards() {
+        List<Integer> missing = new ArrayList<>();
+        for (int shard = received.nextClearBit(0); shard < shardCount; shard = received.nextClearBit(shard + 1)) {
+            missing.add(shard);
+        }
+        return missing;
+    }
+
+    /**
+     * 合并后的总体统计（副本，修改不影响之后的合并）
+     */
+    public synchronized AccessStatistics total() {
+        return total.copy();
+    }
+
+    public synchronized Map<String, AccessStatistics> byDepartment() {
+        return copyGroups(departments, new HashMap<>());
+    }
+
+    public synchronized Map<String, AccessStatistics> byCategory() {
+        return copyGroups(categories, new HashMap<>());
+    }
+
+    public synchronized Map<LocalDate, AccessStatistics> byDay() {
+        return copyGroups(days, new TreeMap<>());
+    }
+
+    /**
+     * 全局 Top N 用户（计数相同按 userId 升序），n 不能超过各分片保留的个数
+     */
+    public synchronized List<Map.Entry<String, Long>> topUsers(int n) {
+        if (n > topN) {
+            throw new IllegalArgumentException("分片只保留了 Top " + topN + " 用户: " + n);
+        }
+        userCandidates.sort(TopNSelector.RANK);
+        return new ArrayList<>(userCandidates.subList(0, Math.min(n, userCandidates.size())));
+    }
+
+    /**
+     * 全局 Top N 域名（计数相同按域名升序）
+     */
+    public synchronized List<Map.Entry<String, Long>> topDomains(int n) {
+        List<Map.Entry<String, Long>> domains = new ArrayList<>(domainCounts.entrySet());
+        domains.sort(TopNSelector.RANK);
+        List<Map.Entry<String, Long>> result = new ArrayList<>(Math.min(n, domains.size()));
+        for (Map.Entry<String, Long> entry : domains.subList(0, Math.min(n, domains.size()))) {
+            result.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+        }
+        return result;
+    }
+
+    /**
+     * 合并后的画像累加器（未合并画像时为空）
+     */
+    public synchronized UserProfileAggregator getProfileAggregator() {
+        return profiles;
+    }
+
+    public synchronized Map<String, UserProfile> profiles(Map<String, String> userNames) {
+        return profiles.toProfiles(userNames);
+    }
+
+    /**
+     * 各分片输入中属于其他分片的日志条数之和
+     */
+    public synchronized long getSkippedCount() {
+        return skippedCount;
+    }
+
+    private static <K> Map<K, AccessStatistics> copyGroups(Map<K, AccessStatistics> groups,
+                                                          Map<K, AccessStatistics> target) {
+        groups.forEach((key, stats) -> target.put(key, stats.copy()));
+        return target;
+    }
+
+    private static <K> void mergeGroups(Map<K, AccessStatistics> target, Map<K, AccessStatistics> partial) {
+        for (Map.Entry<K, AccessStatistics> entry : partial.entrySet()) {
+            target.computeIfAbsent(entry.getKey(), k -> new AccessStatistics()).merge(entry.getValue());
+        }
+    }
+
+    /**
+     * 命令行入口：ShardCoordinator &lt;部分聚合文件...&gt;
+     * 逐个读取并合并后输出汇总；设置 -Duserprofile.profile.store 时各分片画像直接写入画像存储，不在协调器合并
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("用法: ShardCoordinator <部分聚合文件...>");
+            System.exit(2);
+        }
+        String profileStoreDir = System.getProperty("userprofile.profile.store");
+        ShardCoordinator coordinator = new ShardCoordinator(false);
+        try (ProfileStore profileStore = profileStoreDir != null ? ProfileStore.open(Paths.get(profileStoreDir)) : null) {
+            for (String file : args) {
+                ShardPartial partial = ShardPartial.read(Paths.get(file));
+                coordinator.add(partial);
+                if (profileStore != null && partial.getProfiles() != null) {
+                    profileStore.upsertAll(partial.getProfiles().toProfiles(Collections.emptyMap()).values());
+                }
+            }
+            if (profileStore != null) {
+                profileStore.sync();
+            }
+        }
+        if (!coordinator.isComplete()) {
+            System.err.println("缺少分片: " + coordinator.missingShards());
+        }
+
+        AccessStatistics total = coordinator.total();
+        System.out.println("总PV: " + total.getPv());
+        System.out.println("总UV: " + total.getUv());
+        System.out.println("总流量: " + total.getTotalBytes() + " bytes");
+        System.out.println("\n部门统计:");
+        new TreeMap<>(coordinator.byDepartment()).forEach((department, stats) ->
+                System.out.println("  " + department + ": PV=" + stats.getPv() + ", UV=" + stats.getUv()));
+        System.out.println("\n每日统计:");
+        coordinator.byDay().forEach((day, stats) ->
+                System.out.println("  " + day + ": PV=" + stats.getPv() + ", UV=" + stats.getUv()));
+        System.out.println("\nTop 10 用户:");
+        coordinator.topUsers(Math.min(10, coordinator.topN)).forEach(entry ->
+                System.out.println("  " + entry.getKey() + ": " + entry.getValue()));
+        System.out.println("\nTop 10 域名:");
+        coordinator.topDomains(10).forEach(entry ->
+                System.out.println("  " + entry.getKey() + ": " + entry.getValue()));
+    }
+}
@@ -0,0 +1,342 @@
+package org.example.userprofile.shard;
+
+import org.example.userprofile.aggregate.TopNSelector;
+import org.example.userprofile.dto.AccessStatistics;
+import org.example.userprofile.profile.UserProfileAggregator;
+import org.example.userprofile.sketch.HyperLogLog;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 单个分片的部分聚合结果，由 {@link ShardWorker} 产生、{@link ShardCoordinator} 合并
+ * 包含总体/部门/分类/日期的访问统计、本分片 Top N 用户、全部域名计数以及（可选的）各用户画像累加器。
+ * <p>
+ * 传输格式（整体 GZIP 压缩，自带 CRC 校验）：魔数、分片信息、字符串表（部门/分类/域名/用户编码只写一次，
+ * 其余位置写表下标），随后为统计、Top 用户、域名计数，最后是画像累加器。整数均为变长编码
+ */
+public class ShardPartial {
+
+    private static final int MAGIC = 0x53485031;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int shard;
+    private final int shardCount;
+    private final int topN;
+    private final long skippedCount;
+    private final AccessStatistics total;
+    private final Map<String, AccessStatistics> departments;
+    private final Map<String, AccessStatistics> categories;
+    private final Map<LocalDate, AccessStatistics> days;
+    private final List<Map.Entry<String, Long>> topUsers;
+    private final Map<String, Long> domainCounts;
+    private final UserProfileAggregator profiles;
+
+    ShardPartial(int shard, int shardCount, int topN, long skippedCount, AccessStatistics total,
+                 Map<String, AccessStatistics> departments, Map<String, AccessStatistics> categories,
+                 Map<LocalDate, AccessStatistics> days, List<Map.Entry<String, Long>> topUsers,
+                 Map<String, Long> domainCounts, UserProfileAggregator profiles) {
+        this.shard = shard;
+        this.shardCount = shardCount;
+        this.topN = topN;
+        this.skippedCount = skippedCount;
+        this.total = total;
+        this.departments = departments;
+        this.categories = categories;
+        this.days = days;
+        this.topUsers = topUsers;
+        this.domainCounts = domainCounts;
+        this.profiles = profiles;
+    }
+
+    /**
+     * 写入文件：先写临时文件再原子改名
+     */
+    public void write(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            writeTo(out);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static ShardPartial read(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return readFrom(in);
+        }
+    }
+
+    /**
+     * 序列化到输出流（不关闭输出流，可用于管道或套接字）
+     */
+    public void writeTo(OutputStream stream) throws IOException {
+        // 统计部分较小，先编码到内存以收集字符串表；画像部分随后直接流式写出
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(4096);
+        DataOutputStream bodyOut = new DataOutputStream(body);
+        writeStatistics(bodyOut, total, strings);
+        writeVarLong(bodyOut, departments.size());
+        for (Map.Entry<String, AccessStatistics> entry : departments.entrySet()) {
+            writeVarLong(bodyOut, strings.index(entry.getKey()));
+            writeStatistics(bodyOut, entry.getValue(), strings);
+        }
+        writeVarLong(bodyOut, categories.size());
+        for (Map.Entry<String, AccessStatistics> entry : categories.entrySet()) {
+            writeVarLong(bodyOut, strings.index(entry.getKey()));
+            writeStatistics(bodyOut, entry.getValue(), strings);
+        }
+        writeVarLong(bodyOut, days.size());
+        for (Map.Entry<LocalDate, AccessStatistics> entry : days.entrySet()) {
+            writeVarLong(bodyOut, entry.getKey().toEpochDay());
+            writeStatistics(bodyOut, entry.getValue(), strings);
+        }
+        writeCounts(bodyOut, topUsers, strings);
+        writeCounts(bodyOut, domainCounts.entrySet(), strings);
+
+        GZIPOutputStream gzip = new GZIPOutputStream(stream, BUFFER_SIZE);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(gzip, BUFFER_SIZE));
+        out.writeInt(MAGIC);
+        writeVarLong(out, shard);
+        writeVarLong(out, shardCount);
+        writeVarLong(out, topN);
+        writeVarLong(out, skippedCount);
+        strings.writeTo(out);
+        body.writeTo(out);
+        out.writeBoolean(profiles != null);
+        if (profiles != null) {
+            profiles.writeTo(out);
+        }
+        out.flush();
+        gzip.finish();
+    }
+
+    /**
+     * 从输入流反序列化 {@link #writeTo} 写出的部分聚合
+     */
+    public static ShardPartial readFrom(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(stream, BUFFER_SIZE), BUFFER_SIZE));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("分片部分聚合格式错误");
+        }
+        int shard = (int) readVarLong(in);
+        int shardCount = (int) readVarLong(in);
+        int topN = (int) readVarLong(in);
+        long skippedCount = readVarLong(in);
+        String[] strings = StringTable.readFrom(in);
+
+        AccessStatistics total = readStatistics(in, strings);
+        Map<String, AccessStatistics> departments = new HashMap<>();
+        for (long i = readVarLong(in); i > 0; i--) {
+            departments.put(strings[(int) readVarLong(in)], readStatistics(in, strings));
+        }
+        Map<String, AccessStatistics> categories = new HashMap<>();
+        for (long i = readVarLong(in); i > 0; i--) {
+            categories.put(strings[(int) readVarLong(in)], readStatistics(in, strings));
+        }
+        Map<LocalDate, AccessStatistics> days = new TreeMap<>();
+        for (long i = readVarLong(in); i > 0; i--) {
+            days.put(LocalDate.ofEpochDay(readVarLong(in)), readStatistics(in, strings));
+        }
+        List<Map.Entry<String, Long>> topUsers = new ArrayList<>(readCounts(in, strings).entrySet());
+        topUsers.sort(TopNSelector.RANK);
+        Map<String, Long> domainCounts = readCounts(in, strings);
+        UserProfileAggregator profiles = in.readBoolean() ? UserProfileAggregator.readFrom(in) : null;
+        return new ShardPartial(shard, shardCount, topN, skippedCount, total, departments, categories, days,
+                topUsers, domainCounts, profiles);
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * 本分片保留的 Top 用户个数上限，合并后最多可精确查询同样多个
+     */
+    public int getTopN() {
+        return topN;
+    }
+
+    /**
+     * 输入中属于其他分片、被跳过的日志条数
+     */
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    public AccessStatistics getTotal() {
+        return total;
+    }
+
+    public Map<String, AccessStatistics> getDepartments() {
+        return Collections.unmodifiableMap(departments);
+    }
+
+    public Map<String, AccessStatistics> getCategories() {
+        return Collections.unmodifiableMap(categories);
+    }
+
+    public Map<LocalDate, AccessStatistics> getDays() {
+        return Collections.unmodifiableMap(days);
+    }
+
+    /**
+     * 本分片访问次数最多的用户（按 {@link TopNSelector#RANK} 排序）
+     */
+    public List<Map.Entry<String, Long>> getTopUsers() {
+        return Collections.unmodifiableList(topUsers);
+    }
+
+    public Map<String, Long> getDomainCounts() {
+        return Collections.unmodifiableMap(domainCounts);
+    }
+
+    /**
+     * 本分片各用户的画像累加器，未保留画像时为 null
+     */
+    public UserProfileAggregator getProfiles() {
+        return profiles;
+    }
+
+    /**
+     * 统计编码：PV/UV/流量/活跃用户（值+1，0 表示 null）、部门与分类计数、UV草图
+     */
+    private static void writeStatistics(DataOutput out, AccessStatistics stats, StringTable strings)
+            throws IOException {
+        writeNullableLong(out, stats.getPv());
+        writeNullableLong(out, stats.getUv());
+        writeNullableLong(out, stats.getTotalBytes());
+        writeNullableLong(out, stats.getActiveUsers());
+        writeNullableCounts(out, stats.getDepartmentStats(), strings);
+        writeNullableCounts(out, stats.getCategoryStats(), strings);
+        if (stats.getUvSketch() == null) {
+            writeVarLong(out, 0);
+        } else {
+            byte[] sketch = stats.getUvSketch().toBytes();
+            writeVarLong(out, sketch.length);
+            out.write(sketch);
+        }
+    }
+
+    private static AccessStatistics readStatistics(DataInput in, String[] strings) throws IOException {
+        AccessStatistics stats = new AccessStatistics(readNullableLong(in), readNullableLong(in),
+                readNullableLong(in), readNullableLong(in));
+        stats.setDepartmentStats(readNullableCounts(in, strings));
+        stats.setCategoryStats(readNullableCounts(in, strings));
+        int sketchLength = (int) readVarLong(in);
+        if (sketchLength > 0) {
+            byte[] sketch = new byte[sketchLength];
+            in.readFully(sketch);
+            stats.setUvSketch(HyperLogLog.fromBytes(sketch));
+        }
+        return stats;
+    }
+
+    private static void writeNullableCounts(DataOutput out, Map<String, Long> counts, StringTable strings)
+            throws IOException {
+        out.writeBoolean(counts != null);
+        if (counts != null) {
+            writeCounts(out, counts.entrySet(), strings);
+        }
+    }
+
+    private static Map<String, Long> readNullableCounts(DataInput in, String[] strings) throws IOException {
+        return in.readBoolean() ? readCounts(in, strings) : null;
+    }
+
+    private static void writeCounts(DataOutput out, Collection<Map.Entry<String, Long>> counts, StringTable strings)
+            throws IOException {
+        writeVarLong(out, counts.size());
+        for (Map.Entry<String, Long> entry : counts) {
+            writeVarLong(out, strings.index(entry.getKey()));
+            writeVarLong(out, entry.getValue());
+        }
+    }
+
+    private static Map<String, Long> readCounts(DataInput in, String[] strings) throws IOException {
+        int size = (int) readVarLong(in);
+        Map<String, Long> counts = new HashMap<>(Math.max(16, (int) (size / 0.75f) + 1));
+        for (int i = 0; i < size; i++) {
+            counts.put(strings[(int) readVarLong(in)], readVarLong(in));
+        }
+        return counts;
+    }
+
+    private static void writeNullableLong(DataOutput out, Long value) throws IOException {
+        writeVarLong(out, value != null ? value + 1 : 0);
+    }
+
+    private static Long readNullableLong(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        return value != 0 ? value - 1 : null;
+    }
+
+    /**
+     * 无符号 LEB128 变长整数
+     */
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("变长整数过长");
+    }
+
+    /**
+     * 字符串表，下标 0 保留给 null
+     */
+    private static final class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int index(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer index = indexes.get(value);
+            if (index == null) {
+                values.add(value);
+                index = values.size();
+                indexes.put(value, index);
+            }
+            return index;
+        }
+
+        void writeTo(DataOutput out) throws IOException {
+            writeVarLong(out, values.size());
+            for (String value : values) {
+                out.writeUTF(value);
+            }
+        }
+
+        static String[] readFrom(DataInput in) throws IOException {
+            String[] strings = new String[(int) readVarLong(in) + 1];
+            for (int i = 1; i < strings.length; i++) {
+                strings[i] = in.readUTF();
+            }
+            return strings;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package org.example.userprofile.shard;
+
+import org.example.userprofile.aggregate.StatisticsAggregator;
+import org.example.userprofile.aggregate.SymbolCounter;
+import org.example.userprofile.aggregate.TopNSelector;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.io.NetflowLogReader;
+import org.example.userprofile.io.NetflowLogSource;
+import org.example.userprofile.io.SegmentReader;
+import org.example.userprofile.io.SegmentWriter;
+import org.example.userprofile.profile.UserProfileAggregator;
+import org.example.userprofile.sketch.Hashing;
+import org.example.userprofile.store.StringDictionary;
+import org.example.userprofile.store.SymbolTables;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * 分片工作进程：只处理 userId 哈希落在本分片的日志，产生 {@link ShardPartial}
+ * 同一用户的日志全部落在同一分片，因此各分片的精确UV、Top 用户和用户画像互不重叠，合并时直接相加即可精确还原。
+ * 输入可以是全量日志（各分片各自过滤，解析开销不随分片数下降），
+ * 也可以先用 split 按分片切分为日志段文件，每个工作进程只读自己的文件。非线程安全
+ */
+public class ShardWorker {
+
+    public static final int DEFAULT_TOP_N = 100;
+
+    private final int shard;
+    private final int shardCount;
+    private final int topN;
+    private final StatisticsAggregator statistics;
+    private final UserProfileAggregator profiles;
+
+    private final StringDictionary users = new StringDictionary();
+    private long[] userCounts = new long[16];
+    private final SymbolCounter domainCounts = new SymbolCounter(SymbolTables.DOMAINS);
+    private long skippedCount;
+
+    /**
+     * 精确UV，保留画像，Top 用户保留 {@link #DEFAULT_TOP_N} 个
+     */
+    public ShardWorker(int shard, int shardCount) {
+        this(shard, shardCount, 0, DEFAULT_TOP_N, true);
+    }
+
+    /**
+     * @param uvPrecision  HyperLogLog 精度，0 表示精确UV
+     * @param topN         本分片保留的 Top 用户个数，即合并后可精确查询的最大 N
+     * @param keepProfiles 是否保留各用户的画像累加器
+     */
+    public ShardWorker(int shard, int shardCount, int uvPrecision, int topN, boolean keepProfiles) {
+        if (shardCount <= 0 || shard < 0 || shard >= shardCount) {
+            throw new IllegalArgumentException("非法的分片: " + shard + "/" + shardCount);
+        }
+        this.shard = shard;
+        this.shardCount = shardCount;
+        this.topN = topN;
+        this.statistics = new StatisticsAggregator(EnumSet.allOf(StatisticsAggregator.Breakdown.class), uvPrecision);
+        this.profiles = keepProfiles ? new UserProfileAggregator() : null;
+    }
+
+    /**
+     * 用户所属分片，按字符内容哈希，跨进程、跨机器一致
+     */
+    public static int shardOf(String userId, int shardCount) {
+        return (int) Long.remainderUnsigned(Hashing.hash64(userId), shardCount);
+    }
+
+    /**
+     * 累加一条日志，不属于本分片时跳过并返回 false
+     */
+    public boolean add(NetflowLog log) {
+        if (shardOf(log.getUserId(), shardCount) != shard) {
+            skippedCount++;
+            return false;
+        }
+        statistics.add(log);
+        if (profiles != null) {
+            profiles.add(log);
+        }
+        userCounts = increment(userCounts, users.encode(log.getUserId()));
+        domainCounts.add(log.getDomainId(), log.getDomain());
+        return true;
+    }
+
+    /**
+     * 读取整个数据源
+     *
+     * @return 属于本分片的日志条数
+     */
+    public long addAll(NetflowLogSource source) throws IOException {
+        long[] accepted = new long[1];
+        source.forEach(log -> {
+            if (add(log)) {
+                accepted[0]++;
+            }
+        });
+        return accepted[0];
+    }
+
+    /**
+     * 当前的部分聚合结果
+     */
+    public ShardPartial toPartial() {
+        return new ShardPartial(shard, shardCount, topN, skippedCount, statistics.total(),
+                statistics.byDepartment(), statistics.byCategory(), statistics.byDay(),
+                TopNSelector.select(users, userCounts, topN), domainCounts.toMap(), profiles);
+    }
+
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    private static long[] increment(long[] counts, int code) {
+        if (code < 0) {
+            return counts;
+        }
+        if (code >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(code + 1, counts.length * 2));
+        }
+        counts[code]++;
+        return counts;
+    }
+
+    /**
+     * 命令行入口：
+     * <pre>
+     * ShardWorker run &lt;分片号&gt; &lt;分片数&gt; &lt;输出文件&gt; &lt;日志文件...&gt;
+     * ShardWorker split &lt;分片数&gt; &lt;输出目录&gt; &lt;日志文件...&gt;
+     * </pre>
+     * run 产生部分聚合文件；split 按分片把日志切分为 shard-i.seg，供各工作进程分别读取。
+     * -Duserprofile.shard.uvPrecision 指定近似UV精度，-Duserprofile.shard.topN 指定 Top 用户个数，
+     * -Duserprofile.shard.profiles=false 不保留画像
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 5 && args[0].equals("run")) {
+            int shard = Integer.parseInt(args[1]);
+            int shardCount = Integer.parseInt(args[2]);
+            ShardWorker worker = new ShardWorker(shard, shardCount,
+                    Integer.getInteger("userprofile.shard.uvPrecision", 0),
+                    Integer.getInteger("userprofile.shard.topN", DEFAULT_TOP_N),
+                    !"false".equals(System.getProperty("userprofile.shard.profiles")));
+            long accepted = 0;
+            for (int i = 4; i < args.length; i++) {
+                try (NetflowLogSource source = open(Paths.get(args[i]))) {
+                    accepted += worker.addAll(source);
+                }
+            }
+            worker.toPartial().write(Paths.get(args[3]));
+            System.out.println("分片 " + shard + "/" + shardCount + " 处理 " + accepted + " 条日志，跳过 "
+                    + worker.getSkippedCount() + " 条");
+        } else if (args.length >= 4 && args[0].equals("split")) {
+            long[] rows = split(Integer.parseInt(args[1]), Paths.get(args[2]), args);
+            System.out.println("已切分为 " + rows.length + " 个分片: " + Arrays.toString(rows));
+        } else {
+            System.err.println("用法: ShardWorker run <分片号> <分片数> <输出文件> <日志文件...>");
+            System.err.println("      ShardWorker split <分片数> <输出目录> <日志文件...>");
+            System.exit(2);
+        }
+    }
+
+    /**
+     * 按分片切分日志，返回各分片的条数
+     */
+    private static long[] split(int shardCount, Path directory, String[] args) throws IOException {
+        Files.createDirectories(directory);
+        SegmentWriter[] writers = new SegmentWriter[shardCount];
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                Path file = directory.resolve("shard-" + i + ".seg");
+                Files.deleteIfExists(file);
+                writers[i] = new SegmentWriter(file);
+            }
+            for (int i = 3; i < args.length; i++) {
+                try (NetflowLogSource source = open(Paths.get(args[i]))) {
+                    NetflowLog log;
+                    while ((log = source.read()) != null) {
+                        writers[shardOf(log.getUserId(), shardCount)].append(log);
+                    }
+                }
+            }
+        } finally {
+            for (SegmentWriter writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+        long[] rows = new long[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            rows[i] = writers[i].getRowCount();
+        }
+        return rows;
+    }
+
+    private static NetflowLogSource open(Path file) throws IOException {
+        return file.getFileName().toString().endsWith(".seg") ? SegmentReader.open(file) : NetflowLogReader.open(file);
+    }
+}
@@ -0,0 +1,309 @@
+package org.example.userprofile.sink;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 批量异步写入 ClickHouse（HTTP 接口，RowBinary 格式）
+ * 行在调用线程上直接编码进当前批次缓冲区，达到行数或字节数上限、或缓冲超过刷新间隔时封批，
+ * 异步 POST 到 {@code endpoint?query=INSERT ... FORMAT RowBinary}。
+ * 同时在途的批次数有上限：上限已满时 {@link #add} 阻塞等待（反压），定时刷新则推迟到下个周期；
+ * 连接失败、5xx 与 429 按指数退避重试，重试耗尽或其他错误计为失败批次，{@link #close()} 时报告。
+ * 每批带固定的 insert_deduplication_token（本实例的随机id + 批次序号），重试沿用同一 token：
+ * 超时后 ClickHouse 实际已写入的批次在重试时被去重，前提是目标表开启了插入去重
+ * （非复制 MergeTree 须设置 non_replicated_deduplication_window，见 schema.sql），否则重试为至少一次语义。
+ * endpoint 可带 user/password 等查询参数。线程安全
+ */
+public class ClickHouseSink<T> implements Closeable {
+
+    public static final int DEFAULT_BATCH_ROWS = 100_000;
+    public static final int DEFAULT_BATCH_BYTES = 16 * 1024 * 1024;
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(1);
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final Duration DEFAULT_RETRY_BACKOFF = Duration.ofMillis(200);
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+
+    private final ClickHouseTable<T> table;
+    private final String insertUri;
+    private final String sinkId = UUID.randomUUID().toString();
+    private final HttpClient client;
+    private final int batchRows;
+    private final int batchBytes;
+    private final long flushIntervalNanos;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+    private final ScheduledExecutorService scheduler;
+
+    // 当前批次，由 this 保护
+    private RowBinaryWriter buffer;
+    private int bufferedRows;
+    private long bufferStartNanos;
+    private long batchSequence;
+    private boolean closed;
+
+    private final LongAdder sentRows = new LongAdder();
+    private final LongAdder sentBatches = new LongAdder();
+    private final LongAdder retryCount = new LongAdder();
+    private final LongAdder failedRows = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private volatile Throwable lastError;
+
+    /**
+     * 默认批次大小、刷新间隔、在途上限与重试
+     *
+     * @param endpoint ClickHouse HTTP 地址，如 http://localhost:8123/
+     */
+    public ClickHouseSink(URI endpoint, ClickHouseTable<T> table) {
+        this(endpoint, table, DEFAULT_BATCH_ROWS, DEFAULT_BATCH_BYTES, DEFAULT_FLUSH_INTERVAL,
+                DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_RETRIES, DEFAULT_RETRY_BACKOFF);
+    }
+
+    /**
+     * @param batchRows     每批最多行数
+     * @param batchBytes    每批最多编码字节数（超过后封批，单行不拆分）
+     * @param flushInterval 缓冲的首行超过该时长未发送时定时封批
+     * @param maxInFlight   同时在途（含等待重试）的批次上限
+     * @param maxRetries    单批最多重试次数
+     * @param retryBackoff  首次重试等待时长，之后每次加倍
+     */
+    public ClickHouseSink(URI endpoint, ClickHouseTable<T> table, int batchRows, int batchBytes,
+                          Duration flushInterval, int maxInFlight, int maxRetries, Duration retryBackoff) {
+        if (batchRows <= 0 || batchBytes <= 0 || maxInFlight <= 0 || maxRetries < 0
+                || flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("批次大小、刷新间隔、在途上限须为正，重试次数不能为负");
+        }
+        this.table = table;
+        String query = "query=" + URLEncoder.encode(table.insertQuery(), StandardCharsets.UTF_8);
+        String base = endpoint.toString();
+        this.insertUri = base + (endpoint.getRawQuery() == null ? "?" : "&") + query;
+        this.client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        this.batchRows = batchRows;
+        this.batchBytes = batchBytes;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxRetries = maxRetries;
+        this.retryBackoffMillis = retryBackoff.toMillis();
+        this.buffer = new RowBinaryWriter();
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "clickhouse-sink-" + table.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(flushInterval.toMillis() / 2, 1);
+        scheduler.scheduleWithFixedDelay(this::flushIfDue, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 写入一行；批次已满且在途批次达到上限时阻塞
+     */
+    public void add(T row) throws IOException {
+        Batch full = null;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("ClickHouseSink 已关闭");
+            }
+            if (bufferedRows == 0) {
+                bufferStartNanos = System.nanoTime();
+            }
+            table.encode(row, buffer);
+            bufferedRows++;
+            if (bufferedRows >= batchRows || buffer.size() >= batchBytes) {
+                full = seal();
+            }
+        }
+        if (full != null) {
+            submit(full);
+        }
+    }
+
+    /**
+     * 批量写入
+     */
+    public void addAll(Iterable<? extends T> rows) throws IOException {
+        for (T row : rows) {
+            add(row);
+        }
+    }
+
+    /**
+     * 发送当前缓冲的行并等待所有在途批次完成（成功或重试耗尽）
+     */
+    public void flush() throws IOException {
+        Batch batch;
+        synchronized (this) {
+            batch = bufferedRows > 0 ? seal() : null;
+        }
+        if (batch != null) {
+            submit(batch);
+        }
+        try {
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待 ClickHouse 写入完成时被中断");
+        }
+    }
+
+    /**
+     * 刷新并停止定时任务；有批次最终写入失败时抛出异常
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            flush();
+        } finally {
+            scheduler.shutdownNow();
+        }
+        long failed = failedBatches.sum();
+        if (failed > 0) {
+            throw new IOException("写入 " + table.getName() + " 失败 " + failed + " 批、"
+                    + failedRows.sum() + " 行", lastError);
+        }
+    }
+
+    public long getSentRows() {
+        return sentRows.sum();
+    }
+
+    public long getSentBatches() {
+        return sentBatches.sum();
+    }
+
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
+
+    public long getFailedRows() {
+        return failedRows.sum();
+    }
+
+    public long getFailedBatches() {
+        return failedBatches.sum();
+    }
+
+    /**
+     * 最近一次失败批次的原因
+     */
+    public Throwable getLastError() {
+        return lastError;
+    }
+
+    /**
+     * 定时刷新：缓冲超过刷新间隔时封批；在途已满时不等待，留到下个周期
+     */
+    private void flushIfDue() {
+        Batch batch;
+        synchronized (this) {
+            if (bufferedRows == 0 || System.nanoTime() - bufferStartNanos < flushIntervalNanos
+                    || !inFlight.tryAcquire()) {
+                return;
+            }
+            batch = seal();
+        }
+        send(batch, 0);
+    }
+
+    private Batch seal() {
+        Batch batch = new Batch(buffer.buffer(), buffer.size(), bufferedRows, sinkId + "-" + batchSequence++);
+        buffer = new RowBinaryWriter(Math.min(batchBytes, buffer.size() + buffer.size() / 8));
+        bufferedRows = 0;
+        return batch;
+    }
+
+    private void submit(Batch batch) throws IOException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            recordFailure(batch, e);
+            throw new InterruptedIOException("等待 ClickHouse 在途批次时被中断");
+        }
+        send(batch, 0);
+    }
+
+    /**
+     * 异步发送一批，已持有一个在途许可，完成或失败后释放
+     */
+    private void send(Batch batch, int attempt) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(insertUri + "&insert_deduplication_token=" + batch.token))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/octet-stream")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(batch.data, 0, batch.length))
+                .build();
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+            if (error == null && response.statusCode() / 100 == 2) {
+                sentRows.add(batch.rows);
+                sentBatches.increment();
+                inFlight.release();
+                return;
+            }
+            Throwable cause = error != null ? error
+                    : new IOException("ClickHouse 返回 " + response.statusCode() + ": " + response.body());
+            boolean retryable = error != null || response.statusCode() >= 500 || response.statusCode() == 429;
+            if (retryable && attempt < maxRetries) {
+                retryCount.increment();
+                try {
+                    scheduler.schedule(() -> send(batch, attempt + 1), retryBackoffMillis << attempt,
+                            TimeUnit.MILLISECONDS);
+                    return;
+                } catch (RuntimeException e) {
+                    // 已关闭，不再重试
+                    cause.addSuppressed(e);
+                }
+            }
+            recordFailure(batch, cause);
+            inFlight.release();
+        });
+    }
+
+    private void recordFailure(Batch batch, Throwable cause) {
+        lastError = cause;
+        failedRows.add(batch.rows);
+        failedBatches.increment();
+    }
+
+    /**
+     * 已封批的 RowBinary 数据
+     */
+    private static final class Batch {
+        final byte[] data;
+        final int length;
+        final int rows;
+        // 插入去重 token，重试时不变
+        final String token;
+
+        Batch(byte[] data, int length, int rows, String token) {
+            this.data = data;
+            this.length = length;
+            this.rows = rows;
+            this.token = token;
+        }
+    }
+}
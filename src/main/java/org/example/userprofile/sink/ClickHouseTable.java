@@ -0,0 +1,89 @@
+package org.example.userprofile.sink;
+
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.entity.UserProfile;
+import org.example.userprofile.time.EventTimes;
+
+import java.util.List;
+
+/**
+ * ClickHouse 目标表：表名、列顺序与行的 RowBinary 编码，列与 resources/clickhouse/schema.sql 一致
+ */
+public abstract class ClickHouseTable<T> {
+
+    /** 原始网络流量日志表 */
+    public static final ClickHouseTable<NetflowLog> ODS_NETFLOW_LOG = new ClickHouseTable<>(
+            "user_profile.ods_netflow_log", List.of("event_time", "user_id", "department", "src_ip", "dst_ip",
+            "domain", "url", "method", "bytes", "user_agent", "site_category")) {
+        @Override
+        public void encode(NetflowLog log, RowBinaryWriter out) {
+            out.writeDateTime(log.getEventEpochSecond());
+            out.writeString(log.getUserId());
+            out.writeString(log.getDepartment());
+            out.writeString(log.getSrcIp());
+            out.writeString(log.getDstIp());
+            out.writeString(log.getDomain());
+            out.writeString(log.getUrl());
+            out.writeString(log.getMethod());
+            out.writeUInt64(log.getBytes() != null ? log.getBytes() : 0);
+            out.writeString(log.getUserAgent());
+            out.writeString(log.getSiteCategory());
+        }
+    };
+
+    /** 用户画像宽表 */
+    public static final ClickHouseTable<UserProfile> USER_PROFILE_WIDE = new ClickHouseTable<>(
+            "user_profile.user_profile_wide", List.of("user_id", "user_name", "department", "active_days",
+            "avg_daily_pv", "peak_time_slot", "top_site_category", "top_domain", "non_work_ratio", "total_bytes",
+            "avg_daily_bytes", "risk_level", "last_update_time")) {
+        @Override
+        public void encode(UserProfile profile, RowBinaryWriter out) {
+            out.writeString(profile.getUserId());
+            out.writeString(profile.getUserName());
+            out.writeString(profile.getDepartment());
+            out.writeUInt16(orZero(profile.getActiveDays()));
+            out.writeUInt32(orZero(profile.getAvgDailyPv()));
+            out.writeString(profile.getPeakTimeSlot());
+            out.writeString(profile.getTopSiteCategory());
+            out.writeString(profile.getTopDomain());
+            out.writeFloat32(profile.getNonWorkRatio() != null ? profile.getNonWorkRatio() : 0f);
+            out.writeUInt64(profile.getTotalBytes() != null ? profile.getTotalBytes() : 0);
+            out.writeUInt64(profile.getAvgDailyBytes() != null ? profile.getAvgDailyBytes() : 0);
+            out.writeUInt8(orZero(profile.getRiskLevel()));
+            out.writeDateTime(profile.getLastUpdateTime() != null
+                    ? EventTimes.toEpochSecond(profile.getLastUpdateTime()) : 0);
+        }
+    };
+
+    private final String name;
+    private final List<String> columns;
+
+    protected ClickHouseTable(String name, List<String> columns) {
+        this.name = name;
+        this.columns = List.copyOf(columns);
+    }
+
+    /**
+     * 按列顺序编码一行
+     */
+    public abstract void encode(T row, RowBinaryWriter out);
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * 批量插入语句，数据随请求体以 RowBinary 格式发送
+     */
+    public String insertQuery() {
+        return "INSERT INTO " + name + " (" + String.join(", ", columns) + ") FORMAT RowBinary";
+    }
+
+    private static int orZero(Integer value) {
+        return value != null ? value : 0;
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.userprofile.sink;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * ClickHouse RowBinary 编码缓冲区
+ * 数值小端序；String 为 LEB128 长度前缀 + UTF-8 字节；DateTime 为 UInt32 的 Unix 秒
+ */
+public final class RowBinaryWriter {
+
+    private byte[] buffer;
+    private int size;
+
+    public RowBinaryWriter() {
+        this(64 * 1024);
+    }
+
+    public RowBinaryWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    public void writeUInt8(int value) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) value;
+    }
+
+    public void writeUInt16(int value) {
+        ensureCapacity(2);
+        buffer[size++] = (byte) value;
+        buffer[size++] = (byte) (value >>> 8);
+    }
+
+    public void writeUInt32(long value) {
+        ensureCapacity(4);
+        for (int i = 0; i < 4; i++) {
+            buffer[size++] = (byte) (value >>> (i * 8));
+        }
+    }
+
+    public void writeUInt64(long value) {
+        ensureCapacity(8);
+        for (int i = 0; i < 8; i++) {
+            buffer[size++] = (byte) (value >>> (i * 8));
+        }
+    }
+
+    public void writeFloat32(float value) {
+        writeUInt32(Float.floatToIntBits(value) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * DateTime：epoch秒，超出 UInt32 范围时截断到边界
+     */
+    public void writeDateTime(long epochSecond) {
+        writeUInt32(Math.max(0, Math.min(epochSecond, 0xFFFFFFFFL)));
+    }
+
+    /**
+     * String，null 写为空串（表结构中字符串列均不可为 NULL）
+     */
+    public void writeString(String value) {
+        if (value == null || value.isEmpty()) {
+            writeVarUInt(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarUInt(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    public void writeVarUInt(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    /**
+     * 已编码的字节数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 内部缓冲区，有效内容为前 {@link #size()} 字节
+     */
+    byte[] buffer() {
+        return buffer;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
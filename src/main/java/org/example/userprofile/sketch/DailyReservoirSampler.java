@@ -0,0 +1,87 @@
+package org.example.userprofile.sketch;
+
+import org.example.userprofile.entity.NetflowLog;
+
+import java.util.*;
+
+/**
+ * 按天分层的蓄水池采样
+ * 单遍扫描，每天最多保留 capacity 条等概率样本（Algorithm R），内存只与天数有关，与日志量无关。
+ * 取样时各天平均分配名额，与先按天分组、再逐天打乱取前几条的结果同分布
+ */
+public class DailyReservoirSampler {
+
+    private final int capacity;
+    private final Random random;
+    private final Map<Long, Reservoir> reservoirs = new HashMap<>();
+
+    /**
+     * @param capacity 每天保留的样本数上限，应不小于最终取样总数
+     */
+    public DailyReservoirSampler(int capacity, Random random) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity 须大于0: " + capacity);
+        }
+        this.capacity = capacity;
+        this.random = random;
+    }
+
+    public DailyReservoirSampler(int capacity) {
+        this(capacity, new Random());
+    }
+
+    public void add(NetflowLog log) {
+        Reservoir reservoir = reservoirs.computeIfAbsent(log.getEventEpochDay(), k -> new Reservoir());
+        long seen = ++reservoir.seen;
+        if (reservoir.items.size() < capacity) {
+            reservoir.items.add(log);
+        } else {
+            long slot = (long) (random.nextDouble() * seen);
+            if (slot < capacity) {
+                reservoir.items.set((int) slot, log);
+            }
+        }
+    }
+
+    /**
+     * 每天取 max(1, limit / 天数) 条，合并后按事件时间排序，总数不超过 limit
+     */
+    public List<NetflowLog> sample(int limit) {
+        List<NetflowLog> sampled = new ArrayList<>();
+        if (reservoirs.isEmpty() || limit <= 0) {
+            return sampled;
+        }
+        int perDay = Math.max(1, limit / reservoirs.size());
+        for (Reservoir reservoir : reservoirs.values()) {
+            List<NetflowLog> items = reservoir.items;
+            int count = Math.min(perDay, items.size());
+            // 蓄水池内的位置与到达顺序相关，先随机选出 count 个位置
+            for (int i = 0; i < count; i++) {
+                Collections.swap(items, i, i + random.nextInt(items.size() - i));
+            }
+            sampled.addAll(items.subList(0, count));
+        }
+        sampled.sort(NetflowLog::compareEventTime);
+        return new ArrayList<>(sampled.subList(0, Math.min(limit, sampled.size())));
+    }
+
+    /**
+     * 已见过的日志条数
+     */
+    public long getSeenCount() {
+        long total = 0;
+        for (Reservoir reservoir : reservoirs.values()) {
+            total += reservoir.seen;
+        }
+        return total;
+    }
+
+    public int getDayCount() {
+        return reservoirs.size();
+    }
+
+    private static final class Reservoir {
+        final List<NetflowLog> items = new ArrayList<>();
+        long seen;
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.userprofile.sketch;
+
+/**
+ * 64位哈希工具
+ * 概要结构需要跨进程、跨分片合并，因此按字符内容计算，不依赖字典编码或对象地址
+ */
+public final class Hashing {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** null 值的固定哈希 */
+    public static final long NULL_HASH = 0x5bd1e9955bd1e995L;
+
+    private Hashing() {
+    }
+
+    /**
+     * 字符串64位哈希（FNV-1a 累积 + murmur3 finalizer 打散）
+     */
+    public static long hash64(CharSequence value) {
+        if (value == null) {
+            return NULL_HASH;
+        }
+        long h = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return mix64(h ^ value.length());
+    }
+
+    /**
+     * murmur3 fmix64
+     */
+    public static long mix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
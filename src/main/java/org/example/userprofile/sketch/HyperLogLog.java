@@ -0,0 +1,146 @@
+package org.example.userprofile.sketch;
+
+import java.util.Arrays;
+
+/**
+ * HyperLogLog 基数估计
+ * 2^p 个6位寄存器（按字节存放），标准误差约为 1.04/sqrt(2^p)；
+ * 相同精度的草图可按寄存器取最大值合并，用于跨天、跨部门、跨分片汇总UV
+ */
+public class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("precision 须在 " + MIN_PRECISION + "-" + MAX_PRECISION + " 之间: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    private HyperLogLog(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+    /**
+     * 按目标相对误差（标准误差）选择精度，例如 0.01 对应 p=14（16KB）
+     */
+    public static HyperLogLog withRelativeError(double relativeError) {
+        return new HyperLogLog(precisionFor(relativeError));
+    }
+
+    /**
+     * 满足相对误差所需的最小精度
+     */
+    public static int precisionFor(double relativeError) {
+        if (relativeError <= 0 || relativeError >= 1) {
+            throw new IllegalArgumentException("relativeError 须在 (0, 1) 之间: " + relativeError);
+        }
+        double m = Math.pow(1.04 / relativeError, 2);
+        int p = 64 - Long.numberOfLeadingZeros((long) Math.ceil(m) - 1);
+        return Math.max(MIN_PRECISION, Math.min(MAX_PRECISION, p));
+    }
+
+    /**
+     * 由字节数组恢复（与 {@link #toBytes()} 对应）
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        int precision = bytes[0];
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION || bytes.length != (1 << precision) + 1) {
+            throw new IllegalArgumentException("非法的HyperLogLog序列化数据");
+        }
+        return new HyperLogLog(precision, Arrays.copyOfRange(bytes, 1, bytes.length));
+    }
+
+    /**
+     * 序列化：首字节为精度，其后为寄存器
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[registers.length + 1];
+        bytes[0] = (byte) precision;
+        System.arraycopy(registers, 0, bytes, 1, registers.length);
+        return bytes;
+    }
+
+    public void add(CharSequence value) {
+        addHash(Hashing.hash64(value));
+    }
+
+    /**
+     * 加入一个64位哈希值（须为均匀分布的哈希）
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // 剩余位中首个1的位置；末尾补1保证结果不超过 64-p+1
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * 合并另一个草图（取寄存器最大值），精度须一致
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("精度不同的HyperLogLog不能合并: " + precision + " / " + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public HyperLogLog copy() {
+        return new HyperLogLog(precision, registers.clone());
+    }
+
+    /**
+     * 基数估计
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        // 小基数时使用线性计数修正
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * 标准误差
+     */
+    public double getRelativeError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16: return 0.673;
+            case 32: return 0.697;
+            case 64: return 0.709;
+            default: return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+}
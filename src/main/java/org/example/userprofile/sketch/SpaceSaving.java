@@ -0,0 +1,260 @@
+package org.example.userprofile.sketch;
+
+import java.util.*;
+
+/**
+ * Space-Saving 频繁项（heavy hitter）统计
+ * 最多保留 capacity 个计数器，内存与键的基数无关；计数器满时替换当前最小计数器，
+ * 新键继承其计数作为误差上界。保证：
+ * 任一键的估计计数不低于真实计数，且高估不超过 total/capacity；
+ * 真实计数超过 total/capacity 的键一定在计数器中。
+ * 所有方法已同步，可在持续写入的同时随时查询 Top N
+ */
+public class SpaceSaving {
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+    // 按计数排列的小顶堆
+    private final Counter[] heap;
+    private int size;
+    private long total;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity 须大于0: " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+        this.heap = new Counter[capacity];
+    }
+
+    /**
+     * 按最大高估误差（占总数的比例）选择计数器个数，例如 0.001 对应 1000 个计数器
+     */
+    public static SpaceSaving withMaxError(double errorRatio) {
+        if (errorRatio <= 0 || errorRatio >= 1) {
+            throw new IllegalArgumentException("errorRatio 须在 (0, 1) 之间: " + errorRatio);
+        }
+        return new SpaceSaving((int) Math.ceil(1 / errorRatio));
+    }
+
+    public synchronized void add(String key) {
+        add(key, 1);
+    }
+
+    public synchronized void add(String key, long weight) {
+        add(key, weight, 0);
+    }
+
+    private synchronized void add(String key, long weight, long error) {
+        if (key == null || weight <= 0) {
+            return;
+        }
+        total += weight;
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.count += weight;
+            counter.error += error;
+            siftDown(counter.index);
+            return;
+        }
+        if (size < capacity) {
+            counter = new Counter(key, weight, error);
+            counter.index = size;
+            heap[size++] = counter;
+            siftUp(counter.index);
+        } else {
+            // 复用最小计数器
+            counter = heap[0];
+            counters.remove(counter.key);
+            counter.error = counter.count + error;
+            counter.count += weight;
+            counter.key = key;
+            siftDown(0);
+        }
+        counters.put(key, counter);
+    }
+
+    /**
+     * 合并另一个统计（如其他分片），高估误差上界为两者之和
+     * 按可合并摘要的做法：计数器取并集，一侧没有的键按该侧的最小计数补记（同时计入误差），
+     * 再保留计数最大的 capacity 个，合并后估计计数仍不低于真实计数
+     */
+    public void merge(SpaceSaving other) {
+        // 先取对方状态再合并，不同时持有两把锁
+        List<HeavyHitter> items;
+        long otherMin;
+        long otherTotal;
+        synchronized (other) {
+            items = other.snapshot();
+            otherMin = other.maxError();
+            otherTotal = other.total;
+        }
+        synchronized (this) {
+            long min = maxError();
+            Map<String, Counter> merged = new HashMap<>((size + items.size()) * 2);
+            for (int i = 0; i < size; i++) {
+                Counter counter = heap[i];
+                merged.put(counter.key, new Counter(counter.key, counter.count + otherMin, counter.error + otherMin));
+            }
+            for (HeavyHitter item : items) {
+                Counter counter = merged.get(item.getKey());
+                if (counter != null) {
+                    counter.count += item.getCount() - otherMin;
+                    counter.error += item.getError() - otherMin;
+                } else {
+                    merged.put(item.getKey(), new Counter(item.getKey(), item.getCount() + min, item.getError() + min));
+                }
+            }
+            List<Counter> sorted = new ArrayList<>(merged.values());
+            sorted.sort(Comparator.comparingLong((Counter counter) -> counter.count).reversed()
+                    .thenComparing(counter -> counter.key));
+            // 计数升序排列的数组即是合法的小顶堆
+            int kept = Math.min(capacity, sorted.size());
+            counters.clear();
+            for (int i = 0; i < kept; i++) {
+                Counter counter = sorted.get(kept - 1 - i);
+                place(counter, i);
+                counters.put(counter.key, counter);
+            }
+            if (kept < size) {
+                Arrays.fill(heap, kept, size, null);
+            }
+            size = kept;
+            total += otherTotal;
+        }
+    }
+
+    /**
+     * 估计计数最大的 n 个键，按估计计数降序
+     */
+    public List<Map.Entry<String, Long>> topN(int n) {
+        List<HeavyHitter> items = snapshot();
+        List<Map.Entry<String, Long>> result = new ArrayList<>(Math.min(n, items.size()));
+        for (int i = 0; i < items.size() && i < n; i++) {
+            result.add(new AbstractMap.SimpleImmutableEntry<>(items.get(i).getKey(), items.get(i).getCount()));
+        }
+        return result;
+    }
+
+    /**
+     * 当前全部计数器（含误差），按估计计数降序、键升序
+     */
+    public synchronized List<HeavyHitter> snapshot() {
+        List<HeavyHitter> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(new HeavyHitter(heap[i].key, heap[i].count, heap[i].error));
+        }
+        items.sort(Comparator.comparingLong(HeavyHitter::getCount).reversed()
+                .thenComparing(HeavyHitter::getKey, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return items;
+    }
+
+    /**
+     * 键的估计计数，不在计数器中时返回可能的最大计数
+     */
+    public synchronized long estimate(String key) {
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            return counter.count;
+        }
+        return size < capacity ? 0 : heap[0].count;
+    }
+
+    /**
+     * 当前的高估误差上界
+     */
+    public synchronized long maxError() {
+        return size < capacity ? 0 : heap[0].count;
+    }
+
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void siftUp(int i) {
+        Counter counter = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            place(heap[parent], i);
+            i = parent;
+        }
+        place(counter, i);
+    }
+
+    private void siftDown(int i) {
+        Counter counter = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], i);
+            i = child;
+        }
+        place(counter, i);
+    }
+
+    private void place(Counter counter, int i) {
+        heap[i] = counter;
+        counter.index = i;
+    }
+
+    private static final class Counter {
+        String key;
+        long count;
+        long error;
+        int index;
+
+        Counter(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    /**
+     * 频繁项：估计计数及其高估误差，真实计数位于 [count - error, count]
+     */
+    public static final class HeavyHitter {
+        private final String key;
+        private final long count;
+        private final long error;
+
+        HeavyHitter(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+
+        /**
+         * 保证的最小真实计数
+         */
+        public long getGuaranteedCount() {
+            return count - error;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package org.example.userprofile.store;
+
+import org.example.userprofile.entity.NetflowLog;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * 列式网络流量日志存储
+ * 时间与流量使用基本类型数组，部门/分类/域名等低基数字段使用字典编码，
+ * 行对象仅在访问时按需构造，避免每行一个对象带来的内存开销
+ */
+public class NetflowLogStore {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final StringDictionary userIdDict = new StringDictionary();
+    private final StringDictionary departmentDict = new StringDictionary();
+    private final StringDictionary domainDict = new StringDictionary();
+    private final StringDictionary methodDict = new StringDictionary();
+    private final StringDictionary userAgentDict = new StringDictionary();
+    private final StringDictionary categoryDict = new StringDictionary();
+    // 全局符号编码到本存储编码的映射，入库时不再对字符串求哈希
+    private final CodeRemap departmentRemap = new CodeRemap(SymbolTables.DEPARTMENTS, departmentDict);
+    private final CodeRemap domainRemap = new CodeRemap(SymbolTables.DOMAINS, domainDict);
+    private final CodeRemap methodRemap = new CodeRemap(SymbolTables.METHODS, methodDict);
+    private final CodeRemap userAgentRemap = new CodeRemap(SymbolTables.USER_AGENTS, userAgentDict);
+    private final CodeRemap categoryRemap = new CodeRemap(SymbolTables.CATEGORIES, categoryDict);
+
+    private int size;
+    private long[] eventTimes;  // 事件时间 epoch 秒（ClickHouse DateTime 精度）
+    private byte[] hours;       // 入库时换算的本地小时
+    private int[] epochDays;    // 入库时换算的本地日期
+    private long[] bytes;
+    private final BitSet nullBytes = new BitSet();  // 流量为空的行
+    private int[] userIds;
+    private int[] departments;
+    private int[] domains;
+    private int[] methods;
+    private int[] userAgents;
+    private int[] categories;
+    private byte[] workSites;   // 1 工作相关，0 非工作，-1 未知
+    // 高基数字段保持原始引用
+    private String[] srcIps;
+    private String[] dstIps;
+    private String[] urls;
+
+    // 是否按事件时间非递减追加
+    private boolean sortedByTime = true;
+    private TimePartitionIndex timeIndex;
+
+    public NetflowLogStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public NetflowLogStore(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        eventTimes = new long[capacity];
+        hours = new byte[capacity];
+        epochDays = new int[capacity];
+        bytes = new long[capacity];
+        userIds = new int[capacity];
+        departments = new int[capacity];
+        domains = new int[capacity];
+        methods = new int[capacity];
+        userAgents = new int[capacity];
+        categories = new int[capacity];
+        workSites = new byte[capacity];
+        srcIps = new String[capacity];
+        dstIps = new String[capacity];
+        urls = new String[capacity];
+    }
+
+    /**
+     * 由日志集合构建列式存储
+     */
+    public static NetflowLogStore of(Collection<NetflowLog> logs) {
+        NetflowLogStore store = new NetflowLogStore(logs.size());
+        for (NetflowLog log : logs) {
+            store.add(log);
+        }
+        return store;
+    }
+
+    /**
+     * 追加一行日志
+     */
+    public void add(NetflowLog log) {
+        if (size == eventTimes.length) {
+            grow();
+        }
+        int row = size;
+        eventTimes[row] = log.getEventEpochSecond();
+        hours[row] = (byte) log.getEventHour();
+        epochDays[row] = (int) log.getEventEpochDay();
+        if (row > 0 && eventTimes[row] < eventTimes[row - 1]) {
+            sortedByTime = false;
+        }
+        if (log.getBytes() != null) {
+            bytes[row] = log.getBytes();
+        } else {
+            bytes[row] = 0;
+            nullBytes.set(row);
+        }
+        userIds[row] = userIdDict.encode(log.getUserId());
+        departments[row] = departmentRemap.toLocal(log.getDepartmentId());
+        domains[row] = domainRemap.toLocal(log.getDomainId(), log.getDomain());
+        methods[row] = methodRemap.toLocal(log.getMethodId(), log.getMethod());
+        userAgents[row] = userAgentRemap.toLocal(log.getUserAgentId(), log.getUserAgent());
+        categories[row] = categoryRemap.toLocal(log.getSiteCategoryId());
+        Boolean workSite = log.getWorkSite();
+        workSites[row] = (byte) (workSite == null ? -1 : workSite ? 1 : 0);
+        srcIps[row] = log.getSrcIp();
+        dstIps[row] = log.getDstIp();
+        urls[row] = log.getUrl();
+        size++;
+    }
+
+    private void grow() {
+        int capacity = eventTimes.length + (eventTimes.length >> 1);
+        eventTimes = Arrays.copyOf(eventTimes, capacity);
+        hours = Arrays.copyOf(hours, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        bytes = Arrays.copyOf(bytes, capacity);
+        userIds = Arrays.copyOf(userIds, capacity);
+        departments = Arrays.copyOf(departments, capacity);
+        domains = Arrays.copyOf(domains, capacity);
+        methods = Arrays.copyOf(methods, capacity);
+        userAgents = Arrays.copyOf(userAgents, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        workSites = Arrays.copyOf(workSites, capacity);
+        srcIps = Arrays.copyOf(srcIps, capacity);
+        dstIps = Arrays.copyOf(dstIps, capacity);
+        urls = Arrays.copyOf(urls, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 行是否按事件时间非递减排列
+     */
+    public boolean isSortedByTime() {
+        return sortedByTime;
+    }
+
+    /**
+     * 按天分区的时间索引，首次使用或有新追加的行时重建
+     */
+    public TimePartitionIndex timeIndex() {
+        if (timeIndex == null || timeIndex.getRowCount() != size) {
+            timeIndex = TimePartitionIndex.build(this);
+        }
+        return timeIndex;
+    }
+
+    // 列访问
+    public long eventTime(int row) { return eventTimes[row]; }
+
+    /**
+     * 本地小时（0-23）
+     */
+    public int hour(int row) {
+        return hours[row];
+    }
+
+    /**
+     * 本地日期，自1970-01-01起的天数
+     */
+    public long epochDay(int row) {
+        return epochDays[row];
+    }
+
+    /**
+     * 流量，为空时按0计
+     */
+    public long bytes(int row) {
+        return bytes[row];
+    }
+
+    public int userIdCode(int row) { return userIds[row]; }
+    public int departmentCode(int row) { return departments[row]; }
+    public int domainCode(int row) { return domains[row]; }
+    public int categoryCode(int row) { return categories[row]; }
+
+    /**
+     * 是否工作相关网站，未富化时为 null
+     */
+    public Boolean workSite(int row) {
+        return workSites[row] < 0 ? null : workSites[row] == 1;
+    }
+
+    public StringDictionary getUserIdDictionary() { return userIdDict; }
+    public StringDictionary getDepartmentDictionary() { return departmentDict; }
+    public StringDictionary getDomainDictionary() { return domainDict; }
+    public StringDictionary getCategoryDictionary() { return categoryDict; }
+
+    /**
+     * 按用户分组行号，下标为用户编码
+     */
+    public int[][] groupRowsByUser() {
+        return groupRows(row -> userIds[row], userIdDict.size());
+    }
+
+    /**
+     * 计数排序方式分组：一次计数、一次回填
+     */
+    private int[][] groupRows(IntUnaryOperator keyOf, int cardinality) {
+        int[] counts = new int[cardinality];
+        for (int row = 0; row < size; row++) {
+            int key = keyOf.applyAsInt(row);
+            if (key >= 0) {
+                counts[key]++;
+            }
+        }
+        int[][] groups = new int[cardinality][];
+        for (int key = 0; key < cardinality; key++) {
+            groups[key] = new int[counts[key]];
+            counts[key] = 0;
+        }
+        for (int row = 0; row < size; row++) {
+            int key = keyOf.applyAsInt(row);
+            if (key >= 0) {
+                groups[key][counts[key]++] = row;
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * 按需构造第row行的日志对象
+     */
+    public NetflowLog get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + ", size " + size);
+        }
+        NetflowLog log = new NetflowLog();
+        log.setEventEpochSecond(eventTimes[row], 0);
+        log.setUserId(userIdDict.decode(userIds[row]));
+        log.setDepartment(departmentDict.decode(departments[row]));
+        log.setSrcIp(srcIps[row]);
+        log.setDstIp(dstIps[row]);
+        log.setDomain(domainDict.decode(domains[row]));
+        log.setUrl(urls[row]);
+        log.setMethod(methodDict.decode(methods[row]));
+        log.setBytes(nullBytes.get(row) ? null : bytes[row]);
+        log.setUserAgent(userAgentDict.decode(userAgents[row]));
+        log.setSiteCategory(categoryDict.decode(categories[row]));
+        log.setWorkSite(workSite(row));
+        return log;
+    }
+
+    /**
+     * 日期（由epochDay转换，仅用于结果输出）
+     */
+    public static LocalDate toDate(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay);
+    }
+
+    /**
+     * 只读行视图，元素在访问时才构造
+     */
+    public List<NetflowLog> asList() {
+        return new RowView();
+    }
+
+    /**
+     * 全局编码到存储内编码的映射（存储内编码保持本存储的首次出现顺序，且连续紧凑）
+     */
+    private static final class CodeRemap {
+        private final StringDictionary global;
+        private final StringDictionary local;
+        // 存储内编码+1，0 表示尚未映射
+        private int[] mapping = new int[16];
+
+        CodeRemap(StringDictionary global, StringDictionary local) {
+            this.global = global;
+            this.local = local;
+        }
+
+        /**
+         * @param value 全局编码为 OVERFLOW_CODE 时使用的原始字符串
+         */
+        int toLocal(int globalCode, String value) {
+            if (globalCode == StringDictionary.OVERFLOW_CODE) {
+                return local.encode(value);
+            }
+            return toLocal(globalCode);
+        }
+
+        int toLocal(int globalCode) {
+            if (globalCode < 0) {
+                return StringDictionary.NULL_CODE;
+            }
+            if (globalCode >= mapping.length) {
+                mapping = Arrays.copyOf(mapping, Math.max(globalCode + 1, mapping.length * 2));
+            }
+            int code = mapping[globalCode];
+            if (code == 0) {
+                code = mapping[globalCode] = local.encode(global.decode(globalCode)) + 1;
+            }
+            return code - 1;
+        }
+    }
+
+    private class RowView extends AbstractList<NetflowLog> implements RandomAccess {
+        @Override
+        public NetflowLog get(int index) {
+            return NetflowLogStore.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
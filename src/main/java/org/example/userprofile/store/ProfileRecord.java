@@ -0,0 +1,147 @@
+package org.example.userprofile.store;
+
+import org.example.userprofile.entity.UserProfile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * 画像存储中的一条记录：用户编码、版本（lastUpdateTime）与编码后的画像
+ * 编码格式：用户编码、版本、字段存在位图，随后依次为存在的字段；数值大端序，字符串为长度前缀的 UTF-8。
+ * 版本按本地时间原样保存（按 UTC 换算秒数），与时区配置无关
+ */
+final class ProfileRecord {
+
+    /** 无 lastUpdateTime 的记录版本最低 */
+    static final long NO_VERSION = Long.MIN_VALUE;
+
+    final String userId;
+    final long versionSecond;
+    final int versionNano;
+    final byte[] payload;
+
+    private ProfileRecord(String userId, long versionSecond, int versionNano, byte[] payload) {
+        this.userId = userId;
+        this.versionSecond = versionSecond;
+        this.versionNano = versionNano;
+        this.payload = payload;
+    }
+
+    /**
+     * 编码画像，userId 不能为空
+     */
+    static ProfileRecord of(UserProfile profile) {
+        if (profile.getUserId() == null) {
+            throw new IllegalArgumentException("画像缺少 userId");
+        }
+        LocalDateTime version = profile.getLastUpdateTime();
+        long versionSecond = version != null ? version.toEpochSecond(ZoneOffset.UTC) : NO_VERSION;
+        int versionNano = version != null ? version.getNano() : 0;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, profile.getUserId());
+            out.writeLong(versionSecond);
+            out.writeInt(versionNano);
+            int present = 0;
+            Object[] fields = fields(profile);
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i] != null) {
+                    present |= 1 << i;
+                }
+            }
+            out.writeShort(present);
+            writeString(out, profile.getUserName());
+            writeString(out, profile.getDepartment());
+            if (profile.getActiveDays() != null) out.writeInt(profile.getActiveDays());
+            if (profile.getAvgDailyPv() != null) out.writeInt(profile.getAvgDailyPv());
+            writeString(out, profile.getPeakTimeSlot());
+            writeString(out, profile.getTopSiteCategory());
+            writeString(out, profile.getTopDomain());
+            if (profile.getNonWorkRatio() != null) out.writeFloat(profile.getNonWorkRatio());
+            if (profile.getTotalBytes() != null) out.writeLong(profile.getTotalBytes());
+            if (profile.getAvgDailyBytes() != null) out.writeLong(profile.getAvgDailyBytes());
+            if (profile.getRiskLevel() != null) out.writeInt(profile.getRiskLevel());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new ProfileRecord(profile.getUserId(), versionSecond, versionNano, bytes.toByteArray());
+    }
+
+    /**
+     * 从编码后的画像还原记录（只解析用户编码与版本）
+     */
+    static ProfileRecord fromPayload(byte[] payload) {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        String userId = readString(in);
+        return new ProfileRecord(userId, in.getLong(), in.getInt(), payload);
+    }
+
+    /**
+     * 解码为新的画像对象
+     */
+    UserProfile toProfile() {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        UserProfile profile = new UserProfile();
+        profile.setUserId(readString(in));
+        in.getLong();
+        in.getInt();
+        if (versionSecond != NO_VERSION) {
+            profile.setLastUpdateTime(LocalDateTime.ofEpochSecond(versionSecond, versionNano, ZoneOffset.UTC));
+        }
+        int present = in.getShort();
+        if ((present & 1) != 0) profile.setUserName(readString(in));
+        if ((present & 1 << 1) != 0) profile.setDepartment(readString(in));
+        if ((present & 1 << 2) != 0) profile.setActiveDays(in.getInt());
+        if ((present & 1 << 3) != 0) profile.setAvgDailyPv(in.getInt());
+        if ((present & 1 << 4) != 0) profile.setPeakTimeSlot(readString(in));
+        if ((present & 1 << 5) != 0) profile.setTopSiteCategory(readString(in));
+        if ((present & 1 << 6) != 0) profile.setTopDomain(readString(in));
+        if ((present & 1 << 7) != 0) profile.setNonWorkRatio(in.getFloat());
+        if ((present & 1 << 8) != 0) profile.setTotalBytes(in.getLong());
+        if ((present & 1 << 9) != 0) profile.setAvgDailyBytes(in.getLong());
+        if ((present & 1 << 10) != 0) profile.setRiskLevel(in.getInt());
+        return profile;
+    }
+
+    /**
+     * 版本是否严格新于另一条记录（版本相同时由调用方按写入先后决定）
+     */
+    boolean newerThan(ProfileRecord other) {
+        if (versionSecond != other.versionSecond) {
+            return versionSecond > other.versionSecond;
+        }
+        return versionNano > other.versionNano;
+    }
+
+    /**
+     * 可选字段，顺序即存在位图的位序
+     */
+    private static Object[] fields(UserProfile profile) {
+        return new Object[]{profile.getUserName(), profile.getDepartment(), profile.getActiveDays(),
+                profile.getAvgDailyPv(), profile.getPeakTimeSlot(), profile.getTopSiteCategory(),
+                profile.getTopDomain(), profile.getNonWorkRatio(), profile.getTotalBytes(),
+                profile.getAvgDailyBytes(), profile.getRiskLevel()};
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,254 @@
+package org.example.userprofile.store;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 画像存储的不可变有序文件（按 userId 升序，每个用户一条）
+ * 格式：魔数、记录（长度 + 编码后的画像）、稀疏索引（每隔 INDEX_INTERVAL 条记录的偏移）、
+ * 尾部（索引起点、索引条数、记录条数、CRC32、魔数）。
+ * 打开时整体映射并校验 CRC，稀疏索引的键常驻内存，点查二分定位后只扫描一个索引间隔
+ */
+final class ProfileRun {
+
+    static final String SUFFIX = ".run";
+
+    private static final int MAGIC = 0x50524631;
+    private static final int HEADER_SIZE = 4;
+    private static final int FOOTER_SIZE = 20;
+    private static final int INDEX_INTERVAL = 32;
+
+    private final Path file;
+    private final long sequence;
+    private final int generation;
+    private final ByteBuffer data;
+    private final int recordsEnd;
+    private final int recordCount;
+    private final int[] indexOffsets;
+    private final String[] indexKeys;
+
+    private ProfileRun(Path file, long sequence, int generation, ByteBuffer data, int recordsEnd,
+                       int recordCount, int[] indexOffsets, String[] indexKeys) {
+        this.file = file;
+        this.sequence = sequence;
+        this.generation = generation;
+        this.data = data;
+        this.recordsEnd = recordsEnd;
+        this.recordCount = recordCount;
+        this.indexOffsets = indexOffsets;
+        this.indexKeys = indexKeys;
+    }
+
+    /**
+     * 文件名：序号（写入先后）与合并代数
+     */
+    static Path path(Path directory, long sequence, int generation) {
+        return directory.resolve(String.format("run-%016d-%d%s", sequence, generation, SUFFIX));
+    }
+
+    /**
+     * 按 userId 升序写入记录（键不重复），先写临时文件、刷盘后原子改名
+     */
+    static ProfileRun write(Path directory, long sequence, int generation, Iterator<ProfileRecord> records)
+            throws IOException {
+        Path file = path(directory, sequence, generation);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        int[] offsets = new int[16];
+        int indexCount = 0;
+        int recordCount = 0;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024), crc));
+            out.writeInt(MAGIC);
+            String previous = null;
+            while (records.hasNext()) {
+                ProfileRecord record = records.next();
+                if (previous != null && previous.compareTo(record.userId) >= 0) {
+                    throw new IllegalArgumentException("记录须按 userId 严格升序: " + previous + " / " + record.userId);
+                }
+                previous = record.userId;
+                if (recordCount % INDEX_INTERVAL == 0) {
+                    if (indexCount == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, indexCount * 2);
+                    }
+                    offsets[indexCount++] = out.size();
+                }
+                out.writeInt(record.payload.length);
+                out.write(record.payload);
+                recordCount++;
+                if (out.size() < 0) {
+                    throw new IOException("画像文件超过 2GB");
+                }
+            }
+            int indexStart = out.size();
+            for (int i = 0; i < indexCount; i++) {
+                out.writeInt(offsets[i]);
+            }
+            out.writeInt(indexStart);
+            out.writeInt(indexCount);
+            out.writeInt(recordCount);
+            out.flush();
+            // CRC 覆盖尾部 CRC 字段之前的全部内容
+            ByteBuffer trailer = ByteBuffer.allocate(8).putInt((int) crc.getValue()).putInt(MAGIC).flip();
+            while (trailer.hasRemaining()) {
+                channel.write(trailer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return open(file);
+    }
+
+    /**
+     * 打开并校验文件
+     */
+    static ProfileRun open(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        String[] parts = name.substring(0, name.length() - SUFFIX.length()).split("-");
+        long sequence = Long.parseLong(parts[1]);
+        int generation = Integer.parseInt(parts[2]);
+
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE + FOOTER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("画像文件长度异常: " + file);
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int footer = data.limit() - FOOTER_SIZE;
+        int indexStart = data.getInt(footer);
+        int indexCount = data.getInt(footer + 4);
+        int recordCount = data.getInt(footer + 8);
+        int storedCrc = data.getInt(footer + 12);
+        if (data.getInt(0) != MAGIC || data.getInt(footer + 16) != MAGIC
+                || indexStart < HEADER_SIZE || indexStart + indexCount * 4 != footer) {
+            throw new IOException("画像文件格式错误: " + file);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate().limit(footer + 12));
+        if ((int) crc.getValue() != storedCrc) {
+            throw new IOException("画像文件校验失败: " + file);
+        }
+
+        int[] offsets = new int[indexCount];
+        String[] keys = new String[indexCount];
+        for (int i = 0; i < indexCount; i++) {
+            offsets[i] = data.getInt(indexStart + i * 4);
+            keys[i] = keyAt(data, offsets[i]);
+        }
+        return new ProfileRun(file, sequence, generation, data, indexStart, recordCount, offsets, keys);
+    }
+
+    /**
+     * 点查，不存在时返回 null
+     */
+    ProfileRecord get(String userId) {
+        int block = blockFor(userId);
+        if (block < 0) {
+            return null;
+        }
+        int end = block + 1 < indexOffsets.length ? indexOffsets[block + 1] : recordsEnd;
+        for (int offset = indexOffsets[block]; offset < end; offset += 4 + data.getInt(offset)) {
+            int cmp = keyAt(data, offset).compareTo(userId);
+            if (cmp == 0) {
+                return recordAt(offset);
+            }
+            if (cmp > 0) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按 userId 升序遍历 [from, to) 内的记录，null 表示不限
+     */
+    Iterator<ProfileRecord> iterator(String from, String to) {
+        int block = from != null ? Math.max(blockFor(from), 0) : 0;
+        int start = indexOffsets.length > 0 ? indexOffsets[block] : recordsEnd;
+        return new Iterator<>() {
+            private int offset = start;
+            private ProfileRecord next = advance();
+
+            private ProfileRecord advance() {
+                while (offset < recordsEnd) {
+                    ProfileRecord record = recordAt(offset);
+                    offset += 4 + record.payload.length;
+                    if (from != null && record.userId.compareTo(from) < 0) {
+                        continue;
+                    }
+                    return to == null || record.userId.compareTo(to) < 0 ? record : null;
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public ProfileRecord next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                ProfileRecord record = next;
+                next = advance();
+                if (next == null) {
+                    offset = recordsEnd;
+                }
+                return record;
+            }
+        };
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    int getGeneration() {
+        return generation;
+    }
+
+    int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * 首键不大于 userId 的最后一个索引间隔，userId 小于全部键时返回 -1
+     */
+    private int blockFor(String userId) {
+        int pos = Arrays.binarySearch(indexKeys, userId);
+        return pos >= 0 ? pos : -pos - 2;
+    }
+
+    private ProfileRecord recordAt(int offset) {
+        byte[] payload = new byte[data.getInt(offset)];
+        data.get(offset + 4, payload);
+        return ProfileRecord.fromPayload(payload);
+    }
+
+    private static String keyAt(ByteBuffer data, int offset) {
+        return ProfileRecord.readString(data.duplicate().position(offset + 4));
+    }
+}
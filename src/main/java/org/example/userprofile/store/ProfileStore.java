@@ -0,0 +1,491 @@
+package org.example.userprofile.store;
+
+import org.example.userprofile.entity.UserProfile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 本地画像存储（LSM 结构，语义同 ClickHouse user_profile_wide 的 ReplacingMergeTree(last_update_time)）
+ * 写入先追加到预写日志（长度 + CRC + 记录），再放入内存表；内存表达到上限后写成按 userId 有序的不可变文件，
+ * 文件数达到上限时由后台线程合并为一个。同一用户保留 lastUpdateTime 最新的版本，版本相同时后写入的生效，
+ * 因此合并中途崩溃留下的重复文件不影响结果。
+ * 读取不加锁：内存表与文件列表整体作为快照替换，点查与范围扫描在快照上按版本合并。
+ * 写入方法已同步；预写日志写入操作系统缓存，{@link #sync()} 刷盘
+ */
+public class ProfileStore implements Closeable {
+
+    public static final int DEFAULT_MEMTABLE_LIMIT = 100_000;
+    public static final int DEFAULT_MAX_RUNS = 4;
+
+    private static final String WAL_SUFFIX = ".wal";
+
+    private final Path directory;
+    private final int memtableLimit;
+    private final int maxRuns;
+    private final ExecutorService compactor;
+
+    private volatile State state;
+    // 以下由 this 保护
+    private final List<Path> walFiles = new ArrayList<>();
+    private FileChannel wal;
+    private long walSequence;
+    private long nextSequence;
+    private int memtableSize;
+    private Future<?> compaction;
+    private boolean closed;
+
+    private ProfileStore(Path directory, int memtableLimit, int maxRuns) {
+        this.directory = directory;
+        this.memtableLimit = memtableLimit;
+        this.maxRuns = maxRuns;
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "profile-store-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 打开（不存在时创建）目录下的画像存储，默认内存表与文件数上限
+     */
+    public static ProfileStore open(Path directory) throws IOException {
+        return open(directory, DEFAULT_MEMTABLE_LIMIT, DEFAULT_MAX_RUNS);
+    }
+
+    /**
+     * @param memtableLimit 内存表用户数上限，超过后写成文件
+     * @param maxRuns       文件数达到该值时后台合并
+     */
+    public static ProfileStore open(Path directory, int memtableLimit, int maxRuns) throws IOException {
+        if (memtableLimit <= 0 || maxRuns < 2) {
+            throw new IllegalArgumentException("memtableLimit 须为正，maxRuns 至少为 2");
+        }
+        Files.createDirectories(directory);
+        ProfileStore store = new ProfileStore(directory, memtableLimit, maxRuns);
+        store.recover();
+        return store;
+    }
+
+    /**
+     * 写入或替换画像（按 lastUpdateTime 取新）
+     */
+    public synchronized void upsert(UserProfile profile) throws IOException {
+        upsertAll(Collections.singletonList(profile));
+    }
+
+    /**
+     * 批量写入，整批一次追加预写日志
+     */
+    public synchronized void upsertAll(Collection<UserProfile> profiles) throws IOException {
+        ensureOpen();
+        List<ProfileRecord> records = new ArrayList<>(profiles.size());
+        int bytes = 0;
+        for (UserProfile profile : profiles) {
+            ProfileRecord record = ProfileRecord.of(profile);
+            records.add(record);
+            bytes += 8 + record.payload.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        CRC32 crc = new CRC32();
+        for (ProfileRecord record : records) {
+            crc.reset();
+            crc.update(record.payload);
+            buffer.putInt(record.payload.length).putInt((int) crc.getValue()).put(record.payload);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            wal.write(buffer);
+        }
+
+        ConcurrentSkipListMap<String, ProfileRecord> memtable = state.memtable;
+        for (ProfileRecord record : records) {
+            if (putNewer(memtable, record)) {
+                memtableSize++;
+            }
+        }
+        if (memtableSize >= memtableLimit) {
+            flush();
+        }
+    }
+
+    /**
+     * 点查，不存在时返回 null；每次返回新的画像对象
+     */
+    public UserProfile get(String userId) {
+        State current = state;
+        ProfileRecord best = current.memtable.get(userId);
+        // 文件按新到旧排列，版本相同时先遇到的生效
+        for (ProfileRun run : current.runs) {
+            ProfileRecord record = run.get(userId);
+            if (record != null && (best == null || record.newerThan(best))) {
+                best = record;
+            }
+        }
+        return best != null ? best.toProfile() : null;
+    }
+
+    /**
+     * 按 userId 升序返回 [from, to) 内的画像，null 表示不限
+     */
+    public List<UserProfile> scan(String from, String to) {
+        List<UserProfile> result = new ArrayList<>();
+        scan(from, to, result::add);
+        return result;
+    }
+
+    /**
+     * 按 userId 升序逐个回调 [from, to) 内的画像，不一次性物化结果
+     */
+    public void scan(String from, String to, Consumer<UserProfile> action) {
+        new MergingIterator(sources(state, from, to)).forEachRemaining(record -> action.accept(record.toProfile()));
+    }
+
+    /**
+     * 将内存表写成文件并清空预写日志
+     */
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        State current = state;
+        if (current.memtable.isEmpty()) {
+            return;
+        }
+        ProfileRun run = ProfileRun.write(directory, walSequence, 0, current.memtable.values().iterator());
+        List<ProfileRun> runs = new ArrayList<>(current.runs.size() + 1);
+        runs.add(run);
+        runs.addAll(current.runs);
+        state = new State(new ConcurrentSkipListMap<>(), runs);
+        memtableSize = 0;
+
+        wal.close();
+        for (Path file : walFiles) {
+            Files.deleteIfExists(file);
+        }
+        walFiles.clear();
+        openWal();
+        if (runs.size() >= maxRuns && (compaction == null || compaction.isDone())) {
+            compaction = compactor.submit(() -> {
+                try {
+                    compactAll();
+                } catch (IOException e) {
+                    // 保留原文件，下次写入文件时重试
+                    System.err.println("画像文件合并失败: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * 预写日志刷盘
+     */
+    public synchronized void sync() throws IOException {
+        ensureOpen();
+        wal.force(false);
+    }
+
+    /**
+     * 写出内存表并把全部文件合并为一个（等待完成）
+     */
+    public void compact() throws IOException {
+        Future<?> task;
+        synchronized (this) {
+            flush();
+            task = compaction = compactor.submit(() -> {
+                compactAll();
+                return null;
+            });
+        }
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待画像文件合并时被中断");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                    : new IOException("画像文件合并失败", e.getCause());
+        }
+    }
+
+    /**
+     * 当前文件数
+     */
+    public int getRunCount() {
+        return state.runs.size();
+    }
+
+    /**
+     * 等待后台合并结束，预写日志刷盘后关闭；内存表不落文件，下次打开时由预写日志恢复
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            wal.force(false);
+            wal.close();
+        }
+    }
+
+    /**
+     * 在合并线程上把当前全部文件合并为一个：序号取输入中最大者，代数加一，在文件列表中替换输入。
+     * 合并期间新写出的文件序号更大，不在输入之列
+     */
+    private void compactAll() throws IOException {
+        List<ProfileRun> inputs = state.runs;
+        if (inputs.size() < 2) {
+            return;
+        }
+        List<Iterator<ProfileRecord>> sources = new ArrayList<>();
+        long sequence = Long.MIN_VALUE;
+        int generation = 0;
+        for (ProfileRun run : inputs) {
+            sources.add(run.iterator(null, null));
+            sequence = Math.max(sequence, run.getSequence());
+            generation = Math.max(generation, run.getGeneration());
+        }
+        ProfileRun output = ProfileRun.write(directory, sequence, generation + 1, new MergingIterator(sources));
+
+        synchronized (this) {
+            List<ProfileRun> runs = new ArrayList<>(state.runs);
+            runs.removeAll(inputs);
+            runs.add(output);
+            runs.sort(NEWEST_FIRST);
+            state = new State(state.memtable, runs);
+        }
+        // 已映射的文件删除后仍可被正在进行的读取访问
+        for (ProfileRun run : inputs) {
+            Files.deleteIfExists(run.getFile());
+        }
+    }
+
+    private static final Comparator<ProfileRun> NEWEST_FIRST = Comparator
+            .comparingLong(ProfileRun::getSequence).thenComparingInt(ProfileRun::getGeneration).reversed();
+
+    /**
+     * 打开已有文件、重放预写日志，并开始新的预写日志
+     */
+    private synchronized void recover() throws IOException {
+        List<ProfileRun> runs = new ArrayList<>();
+        List<Path> wals = new ArrayList<>();
+        long maxSequence = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.delete(file);
+                } else if (name.startsWith("run-") && name.endsWith(ProfileRun.SUFFIX)) {
+                    ProfileRun run = ProfileRun.open(file);
+                    runs.add(run);
+                    maxSequence = Math.max(maxSequence, run.getSequence());
+                } else if (name.startsWith("wal-") && name.endsWith(WAL_SUFFIX)) {
+                    wals.add(file);
+                    maxSequence = Math.max(maxSequence, walSequenceOf(file));
+                }
+            }
+        }
+        runs.sort(NEWEST_FIRST);
+        wals.sort(Comparator.comparingLong(ProfileStore::walSequenceOf));
+
+        ConcurrentSkipListMap<String, ProfileRecord> memtable = new ConcurrentSkipListMap<>();
+        for (Path file : wals) {
+            replay(file, memtable);
+        }
+        memtableSize = memtable.size();
+        walFiles.addAll(wals);
+        state = new State(memtable, runs);
+        nextSequence = maxSequence + 1;
+        openWal();
+    }
+
+    /**
+     * 重放预写日志，尾部残缺或校验失败的记录截断
+     */
+    private static void replay(Path file, ConcurrentSkipListMap<String, ProfileRecord> memtable) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer data = ByteBuffer.allocate((int) channel.size());
+            while (data.hasRemaining() && channel.read(data) >= 0) {
+                // 读满文件
+            }
+            data.flip();
+            CRC32 crc = new CRC32();
+            int valid = 0;
+            while (data.remaining() >= 8) {
+                int length = data.getInt();
+                int storedCrc = data.getInt();
+                if (length < 0 || length > data.remaining()) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                data.get(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != storedCrc) {
+                    break;
+                }
+                putNewer(memtable, ProfileRecord.fromPayload(payload));
+                valid = data.position();
+            }
+            if (valid < channel.size()) {
+                channel.truncate(valid);
+            }
+        }
+    }
+
+    private void openWal() throws IOException {
+        walSequence = nextSequence++;
+        Path file = directory.resolve(String.format("wal-%016d%s", walSequence, WAL_SUFFIX));
+        wal = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        walFiles.add(file);
+    }
+
+    private static long walSequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(4, name.length() - WAL_SUFFIX.length()));
+    }
+
+    /**
+     * 记录不旧于内存表中已有版本时放入（版本相同后写入的生效），返回是否新增了用户
+     */
+    private static boolean putNewer(ConcurrentSkipListMap<String, ProfileRecord> memtable, ProfileRecord record) {
+        ProfileRecord previous = memtable.get(record.userId);
+        if (previous == null) {
+            memtable.put(record.userId, record);
+            return true;
+        }
+        if (!previous.newerThan(record)) {
+            memtable.put(record.userId, record);
+        }
+        return false;
+    }
+
+    /**
+     * 快照中与 [from, to) 相交的数据源，按新到旧排列
+     */
+    private static List<Iterator<ProfileRecord>> sources(State state, String from, String to) {
+        NavigableMap<String, ProfileRecord> range = state.memtable;
+        if (from != null) {
+            range = range.tailMap(from, true);
+        }
+        if (to != null) {
+            range = range.headMap(to, false);
+        }
+        List<Iterator<ProfileRecord>> sources = new ArrayList<>();
+        sources.add(range.values().iterator());
+        for (ProfileRun run : state.runs) {
+            sources.add(run.iterator(from, to));
+        }
+        return sources;
+    }
+
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("ProfileStore 已关闭");
+        }
+    }
+
+    /**
+     * 内存表与文件列表（新到旧）的不可变快照
+     */
+    private static final class State {
+        final ConcurrentSkipListMap<String, ProfileRecord> memtable;
+        final List<ProfileRun> runs;
+
+        State(ConcurrentSkipListMap<String, ProfileRecord> memtable, List<ProfileRun> runs) {
+            this.memtable = memtable;
+            this.runs = List.copyOf(runs);
+        }
+    }
+
+    /**
+     * 多路归并有序数据源，每个用户输出版本最新的一条；版本相同时排在前面（更新）的数据源生效
+     */
+    private static final class MergingIterator implements Iterator<ProfileRecord> {
+        private final PriorityQueue<Head> heads = new PriorityQueue<>();
+
+        MergingIterator(List<Iterator<ProfileRecord>> sources) {
+            for (int rank = 0; rank < sources.size(); rank++) {
+                Iterator<ProfileRecord> source = sources.get(rank);
+                if (source.hasNext()) {
+                    heads.add(new Head(source.next(), rank, source));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public ProfileRecord next() {
+            Head head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            ProfileRecord best = head.record;
+            advance(head);
+            while (!heads.isEmpty() && heads.peek().record.userId.equals(best.userId)) {
+                Head same = heads.poll();
+                if (same.record.newerThan(best)) {
+                    best = same.record;
+                }
+                advance(same);
+            }
+            return best;
+        }
+
+        private void advance(Head head) {
+            if (head.source.hasNext()) {
+                heads.add(new Head(head.source.next(), head.rank, head.source));
+            }
+        }
+    }
+
+    /**
+     * 归并中某个数据源的当前记录，按 userId、再按数据源新旧排序
+     */
+    private static final class Head implements Comparable<Head> {
+        final ProfileRecord record;
+        final int rank;
+        final Iterator<ProfileRecord> source;
+
+        Head(ProfileRecord record, int rank, Iterator<ProfileRecord> source) {
+            this.record = record;
+            this.rank = rank;
+            this.source = source;
+        }
+
+        @Override
+        public int compareTo(Head other) {
+            int byKey = record.userId.compareTo(other.record.userId);
+            return byKey != 0 ? byKey : Integer.compare(rank, other.rank);
+        }
+    }
+}
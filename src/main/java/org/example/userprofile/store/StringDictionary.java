@@ -0,0 +1,106 @@
+package org.example.userprofile.store;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 字符串字典：将低基数字符串字段编码为连续的int编码
+ * 编码从0开始按首次出现顺序分配，null 固定编码为 -1；
+ * 可限制容量，已满后新值不再分配编码而返回 -2，由调用方保留原始字符串。
+ * 线程安全：已有编码的查询与反查不加锁，分配新编码时加锁
+ */
+public class StringDictionary {
+
+    public static final int NULL_CODE = -1;
+    public static final int OVERFLOW_CODE = -2;
+
+    private final int capacity;
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    // 先写入数组再发布到 codes，经 codes 取得的编码一定可以反查
+    private volatile String[] values = new String[16];
+    private volatile int size;
+
+    public StringDictionary() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param capacity 最多分配的编码个数
+     */
+    public StringDictionary(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity 须大于0: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * 获取编码，不存在时分配新编码，字典已满时返回 {@link #OVERFLOW_CODE}
+     */
+    public int encode(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(value);
+            if (code == null) {
+                if (size == capacity) {
+                    return OVERFLOW_CODE;
+                }
+                code = size;
+                if (code == values.length) {
+                    values = Arrays.copyOf(values, (int) Math.min(capacity, code * 2L));
+                }
+                values[code] = value;
+                size = code + 1;
+                codes.put(value, code);
+            }
+            return code;
+        }
+    }
+
+    /**
+     * 查询编码，不存在时返回 -1
+     */
+    public int lookup(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : NULL_CODE;
+    }
+
+    /**
+     * 编码反查字符串
+     */
+    public String decode(int code) {
+        if (code == NULL_CODE) {
+            return null;
+        }
+        if (code < 0 || code >= size) {
+            throw new IndexOutOfBoundsException("code " + code + ", size " + size);
+        }
+        return values[code];
+    }
+
+    /**
+     * 返回字典中的规范实例，相同内容的字符串共享同一对象；字典已满时原样返回
+     */
+    public String intern(String value) {
+        int code = encode(value);
+        return code == OVERFLOW_CODE ? value : decode(code);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+}
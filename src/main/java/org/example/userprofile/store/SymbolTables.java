@@ -0,0 +1,25 @@
+package org.example.userprofile.store;
+
+/**
+ * 全局符号表
+ * 部门、域名、网站分类、请求方法、User-Agent 在入库（生成或解析日志）时编码为int，
+ * 日志对象只保存编码，统计与画像按编码分组，输出时再反查字符串。
+ * 编码在进程内全局有效、只增不减。
+ * 部门与分类来自组织架构和分类维表，基数有限，不限容量；
+ * 域名、请求方法、User-Agent 来自输入数据，长期运行的流式进程中会不断出现新值，
+ * 按系统属性 userprofile.symbols.capacity（默认 1048576）限制容量，
+ * 已满后新值编码为 {@link StringDictionary#OVERFLOW_CODE}，日志保留原始字符串
+ */
+public final class SymbolTables {
+
+    public static final int CAPACITY = Integer.getInteger("userprofile.symbols.capacity", 1 << 20);
+
+    public static final StringDictionary DEPARTMENTS = new StringDictionary();
+    public static final StringDictionary DOMAINS = new StringDictionary(CAPACITY);
+    public static final StringDictionary CATEGORIES = new StringDictionary();
+    public static final StringDictionary METHODS = new StringDictionary(CAPACITY);
+    public static final StringDictionary USER_AGENTS = new StringDictionary(CAPACITY);
+
+    private SymbolTables() {
+    }
+}
@@ -0,0 +1,166 @@
+package org.example.userprofile.store;
+
+import org.example.userprofile.time.EventTimes;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * 按天分区的时间索引（对应 ClickHouse PARTITION BY toDate(event_time)，按本地日期分区）
+ * 行按事件时间排序后按天切分为分区，范围查询先二分定位首尾分区，再在分区内二分定位行，
+ * 只访问命中的行，不扫描其他日期的数据。
+ * 存储按时间顺序追加时直接以行号为序，不额外保存排序后的行号
+ */
+public class TimePartitionIndex {
+
+    private final NetflowLogStore store;
+    private final int rowCount;
+    // 按时间排序后的行号与时间；存储本身有序时为 null
+    private final int[] sortedRows;
+    private final long[] sortedTimes;
+    // 分区日期（epochDay）及各分区在排序序列中的起始位置，partitionStarts 末尾为总行数
+    private final long[] partitionDays;
+    private final int[] partitionStarts;
+
+    private TimePartitionIndex(NetflowLogStore store, int[] sortedRows, long[] sortedTimes) {
+        this.store = store;
+        this.rowCount = store.size();
+        this.sortedRows = sortedRows;
+        this.sortedTimes = sortedTimes;
+
+        long[] days = new long[16];
+        int[] starts = new int[17];
+        int partitions = 0;
+        for (int pos = 0; pos < rowCount; pos++) {
+            long day = store.epochDay(sortedRows != null ? sortedRows[pos] : pos);
+            if (partitions == 0 || day != days[partitions - 1]) {
+                if (partitions == days.length) {
+                    days = Arrays.copyOf(days, partitions * 2);
+                    starts = Arrays.copyOf(starts, partitions * 2 + 1);
+                }
+                days[partitions] = day;
+                starts[partitions] = pos;
+                partitions++;
+            }
+        }
+        starts[partitions] = rowCount;
+        this.partitionDays = Arrays.copyOf(days, partitions);
+        this.partitionStarts = Arrays.copyOf(starts, partitions + 1);
+    }
+
+    /**
+     * 为存储当前的全部行建立索引
+     */
+    public static TimePartitionIndex build(NetflowLogStore store) {
+        if (store.isSortedByTime()) {
+            return new TimePartitionIndex(store, null, null);
+        }
+        int size = store.size();
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        for (int row = 0; row < size; row++) {
+            minTime = Math.min(minTime, store.eventTime(row));
+            maxTime = Math.max(maxTime, store.eventTime(row));
+        }
+        // 时间相对最小值的偏移与行号打包为 long 排序，相同时间按行号有序
+        long[] packed = new long[size];
+        if (maxTime - minTime >= (1L << 32)) {
+            throw new IllegalStateException("事件时间跨度过大，无法建立时间索引");
+        }
+        for (int row = 0; row < size; row++) {
+            packed[row] = ((store.eventTime(row) - minTime) << 31) | row;
+        }
+        Arrays.sort(packed);
+        int[] rows = new int[size];
+        long[] times = new long[size];
+        for (int pos = 0; pos < size; pos++) {
+            rows[pos] = (int) (packed[pos] & Integer.MAX_VALUE);
+            times[pos] = store.eventTime(rows[pos]);
+        }
+        return new TimePartitionIndex(store, rows, times);
+    }
+
+    /**
+     * 遍历事件时间位于 [fromSecond, toSecond]（闭区间，秒级）的行号，按时间升序
+     */
+    public void forEachRow(long fromSecond, long toSecond, IntConsumer action) {
+        int begin = lowerBound(fromSecond);
+        int end = upperBound(toSecond);
+        for (int pos = begin; pos < end; pos++) {
+            action.accept(sortedRows != null ? sortedRows[pos] : pos);
+        }
+    }
+
+    /**
+     * 时间范围内的行数
+     */
+    public int countRows(long fromSecond, long toSecond) {
+        return Math.max(0, upperBound(toSecond) - lowerBound(fromSecond));
+    }
+
+    /**
+     * 已建立索引的行数（之后追加到存储的行不在索引中）
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getPartitionCount() {
+        return partitionDays.length;
+    }
+
+    /**
+     * 第一个时间 >= second 的位置
+     */
+    private int lowerBound(long second) {
+        int partition = firstPartitionFrom(EventTimes.epochDayOf(second));
+        if (partition == partitionDays.length) {
+            return rowCount;
+        }
+        int low = partitionStarts[partition];
+        int high = partitionStarts[partition + 1];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (time(mid) < second) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 第一个时间 > second 的位置
+     */
+    private int upperBound(long second) {
+        int partition = firstPartitionFrom(EventTimes.epochDayOf(second));
+        if (partition == partitionDays.length || partitionDays[partition] != EventTimes.epochDayOf(second)) {
+            // 当天没有数据，结束位置即下一个分区的起点
+            return partition == partitionDays.length ? rowCount : partitionStarts[partition];
+        }
+        int low = partitionStarts[partition];
+        int high = partitionStarts[partition + 1];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (time(mid) <= second) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 第一个日期 >= day 的分区
+     */
+    private int firstPartitionFrom(long day) {
+        int index = Arrays.binarySearch(partitionDays, day);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private long time(int pos) {
+        return sortedTimes != null ? sortedTimes[pos] : store.eventTime(pos);
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.userprofile.time;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * 事件时间换算
+ * 日志时间统一保存为 epoch 秒，日志中的本地时间按配置时区解释
+ * （系统属性 userprofile.timezone，默认 Asia/Shanghai）；
+ * 小时与日期（epochDay）在入库时由 epoch 秒换算一次，分析路径只使用这些基本类型键，
+ * LocalDateTime 仅在对外展示时构造
+ */
+public final class EventTimes {
+
+    public static final long SECONDS_PER_DAY = 86400L;
+    public static final long SECONDS_PER_HOUR = 3600L;
+
+    // 时区最后一次偏移变更之后按整数运算换算，见 ZoneConversion
+    private static final ZoneConversion ZONE = new ZoneConversion(
+            ZoneId.of(System.getProperty("userprofile.timezone", "Asia/Shanghai")));
+
+    private EventTimes() {
+    }
+
+    public static ZoneId zone() {
+        return ZONE.zone();
+    }
+
+    /**
+     * 本地时间转 epoch 秒（忽略纳秒）
+     */
+    public static long toEpochSecond(LocalDateTime time) {
+        return ZONE.epochSecond(time.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    /**
+     * 本地时间各字段转 epoch 秒，字段非法时抛出 DateTimeException
+     */
+    public static long toEpochSecond(int year, int month, int day, int hour, int minute, int second) {
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour > 23 || minute > 59 || second > 59 || hour < 0 || minute < 0 || second < 0) {
+            throw new DateTimeException(String.format("非法时间 %04d-%02d-%02d %02d:%02d:%02d",
+                    year, month, day, hour, minute, second));
+        }
+        return ZONE.epochSecond(epochDayOf(year, month, day) * SECONDS_PER_DAY
+                + hour * SECONDS_PER_HOUR + minute * 60L + second);
+    }
+
+    /**
+     * epoch 秒转本地时间（仅用于展示）
+     */
+    public static LocalDateTime toLocalDateTime(long epochSecond, int nano) {
+        return ZONE.toLocalDateTime(epochSecond, nano);
+    }
+
+    /**
+     * 本地时间的小时（0-23）
+     */
+    public static int hourOf(long epochSecond) {
+        return (int) (Math.floorMod(ZONE.localSecond(epochSecond), SECONDS_PER_DAY) / SECONDS_PER_HOUR);
+    }
+
+    /**
+     * 本地日期的 epochDay
+     */
+    public static long epochDayOf(long epochSecond) {
+        return Math.floorDiv(ZONE.localSecond(epochSecond), SECONDS_PER_DAY);
+    }
+
+    /**
+     * 公历日期的 epochDay（days_from_civil 算法）
+     */
+    private static long epochDayOf(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2: return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4: case 6: case 9: case 11: return 30;
+            default: return 31;
+        }
+    }
+}
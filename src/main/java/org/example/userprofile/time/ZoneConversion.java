@@ -0,0 +1,75 @@
+package org.example.userprofile.time;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.List;
+
+/**
+ * 某一时区下 epoch 秒与本地秒（本地时间按 UTC 计的秒数）的换算
+ * 时区最后一次偏移变更之后（且没有后续的夏令时规则），偏移固定，按整数运算换算；
+ * 此前或仍有夏令时的时区按时区规则换算。
+ * 如 Asia/Shanghai 在 1991 年后不再有偏移变更，实际数据都走整数路径，但 isFixedOffset() 为 false
+ */
+final class ZoneConversion {
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    // 不早于 stableFrom 的 epoch 秒、不早于 stableLocalFrom 的本地秒偏移固定为 stableOffset
+    private final long stableFrom;
+    private final long stableLocalFrom;
+    private final long stableOffset;
+
+    ZoneConversion(ZoneId zone) {
+        this.zone = zone;
+        this.rules = zone.getRules();
+        List<ZoneOffsetTransition> transitions = rules.getTransitions();
+        if (!rules.getTransitionRules().isEmpty()) {
+            stableFrom = Long.MAX_VALUE;
+            stableLocalFrom = Long.MAX_VALUE;
+            stableOffset = 0;
+        } else if (transitions.isEmpty()) {
+            stableFrom = Long.MIN_VALUE;
+            stableLocalFrom = Long.MIN_VALUE;
+            stableOffset = rules.getOffset(Instant.EPOCH).getTotalSeconds();
+        } else {
+            ZoneOffsetTransition last = transitions.get(transitions.size() - 1);
+            stableFrom = last.toEpochSecond();
+            // 变更处的本地时间有空隙或重叠，取较晚的一端之后才唯一对应
+            stableLocalFrom = stableFrom + Math.max(last.getOffsetBefore().getTotalSeconds(),
+                    last.getOffsetAfter().getTotalSeconds());
+            stableOffset = last.getOffsetAfter().getTotalSeconds();
+        }
+    }
+
+    ZoneId zone() {
+        return zone;
+    }
+
+    /**
+     * epoch 秒对应的本地秒
+     */
+    long localSecond(long epochSecond) {
+        if (epochSecond >= stableFrom) {
+            return epochSecond + stableOffset;
+        }
+        return epochSecond + rules.getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds();
+    }
+
+    /**
+     * 本地秒对应的 epoch 秒，与 {@link LocalDateTime#atZone} 一致：空隙中的时间顺延，重叠时取较早的偏移
+     */
+    long epochSecond(long localSecond) {
+        if (localSecond >= stableLocalFrom) {
+            return localSecond - stableOffset;
+        }
+        return LocalDateTime.ofEpochSecond(localSecond, 0, ZoneOffset.UTC).atZone(zone).toEpochSecond();
+    }
+
+    LocalDateTime toLocalDateTime(long epochSecond, int nano) {
+        return LocalDateTime.ofEpochSecond(localSecond(epochSecond), nano, ZoneOffset.UTC);
+    }
+}
@@ -21,7 +21,9 @@ CREATE TABLE IF NOT EXISTS ods_netflow_log (
 ) ENGINE = MergeTree
 PARTITION BY toDate(event_time)
 ORDER BY (event_time, user_id)
-SETTINGS index_granularity = 8192;
+-- 非复制表默认不做插入去重；ClickHouseSink 重试时沿用 insert_deduplication_token，
+-- 需保留最近若干个插入块的哈希才能丢弃超时后已写入批次的重复
+SETTINGS index_granularity = 8192, non_replicated_deduplication_window = 1000;
 
 -- 7.3 部门时间聚合表
 CREATE TABLE IF NOT EXISTS dept_time_agg (
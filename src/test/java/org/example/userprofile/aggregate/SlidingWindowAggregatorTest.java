@@ -0,0 +1,192 @@
+package org.example.userprofile.aggregate;
+
+import junit.framework.TestCase;
+import org.example.userprofile.dto.AccessStatistics;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.generator.MockDataGenerator;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * 滑动窗口统计与按时间过滤的逐条统计一致性测试
+ */
+public class SlidingWindowAggregatorTest extends TestCase {
+
+    private List<NetflowLog> logs;
+
+    @Override
+    protected void setUp() {
+        LocalDateTime start = LocalDate.of(2025, 12, 1).atTime(9, 0);
+        logs = MockDataGenerator.generateLogs(start, start.plusHours(2), 20000);
+        logs.sort(NetflowLog::compareEventTime);
+    }
+
+    public void testWindowsMatchFilteredLogs() {
+        SlidingWindowAggregator aggregator = new SlidingWindowAggregator();
+        aggregator.addAll(logs);
+
+        int bucketSeconds = aggregator.getBucketSeconds();
+        long latestBucket = Math.floorDiv(logs.get(logs.size() - 1).getEventEpochSecond(), bucketSeconds);
+        for (Duration window : SlidingWindowAggregator.DEFAULT_WINDOWS) {
+            long from = (latestBucket - window.getSeconds() / bucketSeconds + 1) * bucketSeconds;
+            List<NetflowLog> inWindow = logs.stream()
+                    .filter(log -> log.getEventEpochSecond() >= from)
+                    .collect(Collectors.toList());
+            SlidingWindowAggregator.WindowSnapshot snapshot = aggregator.snapshot(window);
+
+            assertStatisticsClose(inWindow, snapshot.total());
+            Map<String, List<NetflowLog>> byDepartment = inWindow.stream()
+                    .collect(Collectors.groupingBy(NetflowLog::getDepartment));
+            assertEquals(byDepartment.keySet(), snapshot.byDepartment().keySet());
+            byDepartment.forEach((dept, group) -> assertStatisticsClose(group, snapshot.byDepartment().get(dept)));
+            Map<String, List<NetflowLog>> byCategory = inWindow.stream()
+                    .collect(Collectors.groupingBy(NetflowLog::getSiteCategory));
+            assertEquals(byCategory.keySet(), snapshot.byCategory().keySet());
+            byCategory.forEach((category, group) -> assertStatisticsClose(group, snapshot.byCategory().get(category)));
+        }
+        assertEquals(0, aggregator.getDroppedCount());
+    }
+
+    public void testLateLogsAndIdleWindows() {
+        SlidingWindowAggregator aggregator = new SlidingWindowAggregator();
+        NetflowLog last = logs.get(logs.size() - 1);
+        aggregator.add(last);
+        // 早于最大窗口的迟到日志被丢弃
+        aggregator.add(logs.get(0));
+        assertEquals(1, aggregator.getDroppedCount());
+        assertEquals(1L, (long) aggregator.snapshot(Duration.ofMinutes(1)).total().getPv());
+
+        // 无新日志时推进水位，旧数据滑出窗口
+        aggregator.advanceTo(last.getEventEpochSecond() + 120);
+        assertEquals(0L, (long) aggregator.snapshot(Duration.ofMinutes(1)).total().getPv());
+        assertEquals(1L, (long) aggregator.snapshot(Duration.ofMinutes(5)).total().getPv());
+    }
+
+    public void testExtraGroupsFoldIntoOtherAndFutureLogsAreDropped() {
+        NetflowLog template = logs.get(logs.size() - 1);
+        long now = template.getEventEpochSecond();
+        SlidingWindowAggregator aggregator = new SlidingWindowAggregator(Duration.ofMinutes(5), 1, 8, 2,
+                Duration.ofMinutes(1), Clock.fixed(Instant.ofEpochSecond(now), ZoneOffset.UTC));
+        // 超出分组上限的部门合并计入 OTHER_GROUP，不影响写入
+        String[] departments = {"窗口测试一部", "窗口测试二部", "窗口测试三部", "窗口测试四部", "窗口测试一部"};
+        for (String department : departments) {
+            NetflowLog log = copyAt(template, now);
+            log.setDepartment(department);
+            aggregator.add(log);
+        }
+        Map<String, AccessStatistics> byDepartment = aggregator.snapshot(Duration.ofMinutes(1)).byDepartment();
+        assertEquals(2L, (long) byDepartment.get("窗口测试一部").getPv());
+        assertEquals(1L, (long) byDepartment.get("窗口测试二部").getPv());
+        assertEquals(2L, (long) byDepartment.get(SlidingWindowAggregator.OTHER_GROUP).getPv());
+
+        // 时间戳远超墙钟的日志丢弃，不推进水位，之后的正常日志照常计入
+        aggregator.add(copyAt(template, now + 86400));
+        aggregator.add(copyAt(template, now + 30));
+        aggregator.add(copyAt(template, now));
+        assertEquals(1, aggregator.getFutureCount());
+        assertEquals(0, aggregator.getDroppedCount());
+        assertEquals(7L, (long) aggregator.snapshot(Duration.ofMinutes(5)).total().getPv());
+    }
+
+    public void testReadsWhileWriting() throws Exception {
+        SlidingWindowAggregator aggregator = new SlidingWindowAggregator(Duration.ofMinutes(5), 1, 8, 64);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    AccessStatistics total = aggregator.snapshot(Duration.ofMinutes(5)).total();
+                    if (total.getPv() < 0 || total.getTotalBytes() < 0) {
+                        throw new AssertionError("窗口读数为负: " + total);
+                    }
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        reader.start();
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 2; w++) {
+            int offset = w;
+            Thread writer = new Thread(() -> {
+                for (int i = offset; i < logs.size(); i += 2) {
+                    aggregator.add(logs.get(i));
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        done.set(true);
+        reader.join();
+        assertNull(failure.get());
+        assertTrue(aggregator.snapshot(Duration.ofMinutes(5)).total().getPv() > 0);
+    }
+
+    public void testLateWritesNotCountedInRotatedBucket() throws Exception {
+        // 1 秒一个桶、环形数组 3 个槽位：第 r 轮的旧桶 3r 与新桶 3r+3 共用同一槽位
+        SlidingWindowAggregator aggregator = new SlidingWindowAggregator(Duration.ofSeconds(2), 1, 8, 64);
+        int perRound = 2000;
+        NetflowLog template = logs.get(0);
+        for (int round = 0; round < 100; round++) {
+            long oldSecond = 3L * round;
+            CyclicBarrier start = new CyclicBarrier(2);
+            Thread late = new Thread(() -> {
+                NetflowLog log = copyAt(template, oldSecond);
+                await(start);
+                for (int i = 0; i < perRound; i++) {
+                    aggregator.add(log);
+                }
+            });
+            late.start();
+            NetflowLog log = copyAt(template, oldSecond + 3);
+            await(start);
+            for (int i = 0; i < perRound; i++) {
+                aggregator.add(log);
+            }
+            late.join();
+            // 旧桶的写入要么计入旧桶，要么丢弃，不能计入复用槽位的新桶
+            assertEquals(perRound, (long) aggregator.snapshot(Duration.ofSeconds(1)).total().getPv());
+        }
+    }
+
+    private static NetflowLog copyAt(NetflowLog template, long epochSecond) {
+        NetflowLog log = new NetflowLog();
+        log.setEventEpochSecond(epochSecond, 0);
+        log.setUserId(template.getUserId());
+        log.setDepartment(template.getDepartment());
+        log.setBytes(template.getBytes());
+        return log;
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void assertStatisticsClose(List<NetflowLog> expected, AccessStatistics actual) {
+        assertEquals(expected.size(), (long) actual.getPv());
+        assertEquals(expected.stream().mapToLong(log -> log.getBytes() != null ? log.getBytes() : 0).sum(),
+                (long) actual.getTotalBytes());
+        long uv = expected.stream().map(NetflowLog::getUserId).filter(Objects::nonNull).distinct().count();
+        assertEquals((double) uv, (double) actual.getUv(), Math.max(3, uv * 0.15));
+    }
+}
@@ -0,0 +1,122 @@
+package org.example.userprofile.aggregate;
+
+import junit.framework.TestCase;
+import org.example.userprofile.dto.AccessStatistics;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.generator.MockDataGenerator;
+import org.example.userprofile.service.AccessStatisticsService;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 单遍聚合引擎与逐项流式统计的一致性测试
+ */
+public class StatisticsAggregatorTest extends TestCase {
+
+    private List<NetflowLog> logs;
+
+    @Override
+    protected void setUp() {
+        LocalDateTime start = LocalDate.of(2025, 12, 1).atStartOfDay();
+        logs = MockDataGenerator.generateLogs(start, start.plusDays(7), 5000);
+        logs.get(3).setSiteCategory(null);
+        logs.get(5).setBytes(null);
+    }
+
+    public void testAllBreakdownsInOnePass() {
+        StatisticsAggregator aggregator = StatisticsAggregator.aggregate(logs, EnumSet.allOf(StatisticsAggregator.Breakdown.class));
+
+        assertStatisticsEquals(reference(logs), aggregator.total());
+
+        Map<String, List<NetflowLog>> byDepartment = logs.stream()
+                .collect(Collectors.groupingBy(NetflowLog::getDepartment));
+        assertEquals(byDepartment.keySet(), aggregator.byDepartment().keySet());
+        byDepartment.forEach((dept, group) ->
+                assertStatisticsEquals(reference(group), aggregator.byDepartment().get(dept)));
+
+        Map<String, List<NetflowLog>> byCategory = logs.stream()
+                .filter(log -> log.getSiteCategory() != null)
+                .collect(Collectors.groupingBy(NetflowLog::getSiteCategory));
+        assertEquals(byCategory.keySet(), aggregator.byCategory().keySet());
+        byCategory.forEach((category, group) ->
+                assertStatisticsEquals(reference(group), aggregator.byCategory().get(category)));
+
+        Map<LocalDate, List<NetflowLog>> byDay = logs.stream()
+                .collect(Collectors.groupingBy(log -> log.getEventTime().toLocalDate()));
+        assertEquals(byDay.keySet(), aggregator.byDay().keySet());
+        byDay.forEach((date, group) ->
+                assertStatisticsEquals(reference(group), aggregator.byDay().get(date)));
+    }
+
+    public void testDisabledBreakdownIsRejected() {
+        StatisticsAggregator aggregator = StatisticsAggregator.aggregate(logs, EnumSet.of(StatisticsAggregator.Breakdown.DAY));
+        try {
+            aggregator.byDepartment();
+            fail("未启用的分组维度应抛出异常");
+        } catch (IllegalStateException expected) {
+            // ok
+        }
+    }
+
+    public void testRollupCubeAnswersFromPreAggregates() {
+        AccessStatisticsService service = new AccessStatisticsService();
+        RollupCube cube = service.createCube();
+        cube.addAll(logs);
+
+        assertStatisticsEquals(service.calculateStatistics(logs), service.calculateStatistics(cube));
+        assertEquals(service.calculateHourlyTrend(logs), service.calculateHourlyTrend(cube));
+        Map<String, AccessStatistics> byDepartment = service.calculateByDepartment(cube);
+        service.calculateByDepartment(logs).forEach((dept, stats) -> assertStatisticsEquals(stats, byDepartment.get(dept)));
+        Map<String, AccessStatistics> byCategory = service.calculateByCategory(cube);
+        service.calculateByCategory(logs).forEach((category, stats) -> assertStatisticsEquals(stats, byCategory.get(category)));
+        Map<LocalDate, AccessStatistics> byDay = service.calculateDailyTrend(cube);
+        service.calculateDailyTrend(logs).forEach((date, stats) -> assertStatisticsEquals(stats, byDay.get(date)));
+
+        // 切片查询：部门 × 分类 × 时间范围
+        LocalDateTime from = LocalDate.of(2025, 12, 2).atTime(9, 0);
+        LocalDateTime to = from.plusDays(2);
+        String dept = logs.get(0).getDepartment();
+        List<NetflowLog> slice = logs.stream()
+                .filter(log -> dept.equals(log.getDepartment()) && "技术".equals(log.getSiteCategory()))
+                .filter(log -> !log.getEventTime().isBefore(from) && log.getEventTime().isBefore(to))
+                .collect(Collectors.toList());
+        AccessStatistics expected = reference(slice);
+        AccessStatistics actual = cube.query(dept, "技术", from, to);
+        assertEquals(expected.getPv(), actual.getPv());
+        assertEquals(expected.getTotalBytes(), actual.getTotalBytes());
+        assertTrue(Math.abs(expected.getUv() - actual.getUv()) <= Math.max(2, expected.getUv() * 0.1));
+        assertEquals(expected.getPv().longValue(), cube.hourlySeries(dept, "技术", from, to).values().stream()
+                .mapToLong(AccessStatistics::getPv).sum());
+    }
+
+    /**
+     * 逐项流式统计，作为对照
+     */
+    private static AccessStatistics reference(List<NetflowLog> logs) {
+        AccessStatistics stats = new AccessStatistics();
+        stats.setPv((long) logs.size());
+        stats.setUv((long) logs.stream().map(NetflowLog::getUserId).collect(Collectors.toSet()).size());
+        stats.setTotalBytes(logs.stream().mapToLong(log -> log.getBytes() != null ? log.getBytes() : 0).sum());
+        stats.setActiveUsers(stats.getUv());
+        stats.setDepartmentStats(logs.stream()
+                .collect(Collectors.groupingBy(NetflowLog::getDepartment, Collectors.counting())));
+        stats.setCategoryStats(logs.stream()
+                .filter(log -> log.getSiteCategory() != null)
+                .collect(Collectors.groupingBy(NetflowLog::getSiteCategory, Collectors.counting())));
+        return stats;
+    }
+
+    private static void assertStatisticsEquals(AccessStatistics expected, AccessStatistics actual) {
+        assertEquals(expected.getPv(), actual.getPv());
+        assertEquals(expected.getUv(), actual.getUv());
+        assertEquals(expected.getTotalBytes(), actual.getTotalBytes());
+        assertEquals(expected.getActiveUsers(), actual.getActiveUsers());
+        assertEquals(expected.getDepartmentStats(), actual.getDepartmentStats());
+        assertEquals(expected.getCategoryStats(), actual.getCategoryStats());
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.userprofile.aggregate;
+
+import junit.framework.TestCase;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.generator.MockDataGenerator;
+import org.example.userprofile.service.AccessStatisticsService;
+import org.example.userprofile.sketch.SpaceSaving;
+import org.example.userprofile.store.NetflowLogStore;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 堆选 Top N 与全量排序（计数降序、键升序）的一致性，以及 Space-Saving 误差保证
+ */
+public class TopNSelectorTest extends TestCase {
+
+    private static final LocalDateTime START = LocalDate.of(2025, 12, 1).atStartOfDay();
+
+    public void testMatchesFullSortIncludingTies() {
+        AccessStatisticsService service = new AccessStatisticsService();
+        // 日志条数较少时计数并列很多，可覆盖并列顺序
+        for (int logCount : new int[]{1, 20, 50, 200, 3000}) {
+            List<NetflowLog> logs = MockDataGenerator.generateLogs(START, START.plusDays(3), logCount);
+            NetflowLogStore store = NetflowLogStore.of(logs);
+            for (int n : new int[]{1, 3, 10, 1000}) {
+                List<Map.Entry<String, Long>> users = reference(logs.stream()
+                        .collect(Collectors.groupingBy(NetflowLog::getUserId, Collectors.counting())), n);
+                List<Map.Entry<String, Long>> domains = reference(logs.stream()
+                        .filter(log -> log.getDomain() != null)
+                        .collect(Collectors.groupingBy(NetflowLog::getDomain, Collectors.counting())), n);
+                assertEquals(users, service.getTopNUsers(logs, n));
+                assertEquals(users, service.getTopNUsers(store, n));
+                assertEquals(domains, service.getTopNDomains(logs, n));
+                assertEquals(domains, service.getTopNDomains(store, n));
+            }
+        }
+    }
+
+    public void testTiesOrderedByKey() {
+        List<NetflowLog> logs = new ArrayList<>();
+        for (int i = 0; i < 13; i++) {
+            NetflowLog log = new NetflowLog();
+            log.setUserId("U" + (i * 7 % 13));
+            log.setDomain("site" + i + ".example.com");
+            logs.add(log);
+        }
+        AccessStatisticsService service = new AccessStatisticsService();
+        assertEquals(reference(logs.stream().collect(Collectors.groupingBy(NetflowLog::getUserId,
+                Collectors.counting())), 13), service.getTopNUsers(logs, 13));
+        assertEquals(reference(logs.stream().collect(Collectors.groupingBy(NetflowLog::getDomain,
+                Collectors.counting())), 13), service.getTopNDomains(logs, 13));
+    }
+
+    public void testSpaceSavingErrorBound() {
+        SpaceSaving sketch = new SpaceSaving(50);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            // 偏斜分布：少数键占大部分流量
+            String key = "K" + (random.nextInt(4) == 0 ? random.nextInt(5000) : random.nextInt(20));
+            sketch.add(key);
+            exact.merge(key, 1L, Long::sum);
+        }
+        long bound = sketch.getTotal() / sketch.getCapacity();
+        assertTrue(sketch.maxError() <= bound);
+        for (SpaceSaving.HeavyHitter item : sketch.snapshot()) {
+            long actual = exact.get(item.getKey());
+            assertTrue(item.getCount() >= actual);
+            assertTrue(item.getGuaranteedCount() <= actual);
+            assertTrue(item.getCount() - actual <= bound);
+        }
+        Set<String> tracked = new HashSet<>();
+        sketch.snapshot().forEach(item -> tracked.add(item.getKey()));
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            if (entry.getValue() > bound) {
+                assertTrue(tracked.contains(entry.getKey()));
+            }
+        }
+    }
+
+    private static List<Map.Entry<String, Long>> reference(Map<String, Long> counts, int n) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(n)
+                .collect(Collectors.toList());
+    }
+}
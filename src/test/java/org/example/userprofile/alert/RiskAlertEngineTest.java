@@ -0,0 +1,132 @@
+package org.example.userprofile.alert;
+
+import junit.framework.TestCase;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.generator.MockDataGenerator;
+import org.example.userprofile.profile.UserProfileAccumulator;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 流式风险告警与按前缀批量计算风险等级的一致性测试
+ */
+public class RiskAlertEngineTest extends TestCase {
+
+    private static final LocalDateTime START = LocalDate.of(2025, 12, 1).atStartOfDay();
+
+    private List<NetflowLog> logs;
+
+    @Override
+    protected void setUp() {
+        logs = new ArrayList<>();
+        for (int user = 0; user < 40; user++) {
+            logs.addAll(MockDataGenerator.generateLogsForUser("E" + user, "研发部", START, START.plusDays(3), 150));
+        }
+        logs.sort(NetflowLog::compareEventTime);
+    }
+
+    public void testAlertsMatchBatchRiskLevels() {
+        List<RiskAlert> alerts = new ArrayList<>();
+        RiskAlertEngine engine = new RiskAlertEngine(8, Duration.ofDays(7), 10, alerts::add);
+        engine.processAll(logs);
+
+        // 逐条回放每个用户的前缀，批量规则的风险等级首次升高处即应告警
+        List<String> expected = new ArrayList<>();
+        Map<String, UserProfileAccumulator> accumulators = new HashMap<>();
+        Map<String, Integer> alerted = new HashMap<>();
+        for (NetflowLog log : logs) {
+            UserProfileAccumulator accumulator = accumulators.computeIfAbsent(log.getUserId(), k -> new UserProfileAccumulator());
+            accumulator.add(log);
+            if (accumulator.getPv() < 10) {
+                continue;
+            }
+            int level = accumulator.toProfile("测试").getRiskLevel();
+            if (level > alerted.getOrDefault(log.getUserId(), 0)) {
+                alerted.put(log.getUserId(), level);
+                expected.add(log.getUserId() + ":" + level + "@" + accumulator.getPv());
+            }
+        }
+        List<String> actual = new ArrayList<>();
+        for (RiskAlert alert : alerts) {
+            actual.add(alert.getUserId() + ":" + alert.getRiskLevel() + "@" + alert.getPv());
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+        assertEquals(alerts.size(), engine.getAlertCount());
+        alerted.forEach((user, level) -> assertEquals((int) level, engine.getRiskLevel(user)));
+    }
+
+    public void testConcurrentProcessingMatchesSequential() throws Exception {
+        Set<String> sequential = new HashSet<>();
+        new RiskAlertEngine(4, Duration.ofDays(7), 10, alert -> sequential.add(key(alert))).processAll(logs);
+
+        // 同一用户的日志交给同一线程，保证用户内顺序
+        Set<String> concurrent = ConcurrentHashMap.newKeySet();
+        RiskAlertEngine engine = new RiskAlertEngine(4, Duration.ofDays(7), 10, alert -> concurrent.add(key(alert)));
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int part = t;
+            Thread thread = new Thread(() -> {
+                for (NetflowLog log : logs) {
+                    if (Math.floorMod(log.getUserId().hashCode(), 4) == part) {
+                        engine.process(log);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(sequential, concurrent);
+        assertEquals(logs.size(), engine.getEventCount());
+    }
+
+    public void testIdleUsersAreEvicted() {
+        RiskAlertEngine engine = new RiskAlertEngine(2, Duration.ofHours(1), 10, alert -> { });
+        engine.processAll(logs);
+        long last = logs.get(logs.size() - 1).getEventEpochSecond();
+        // 3天内用户持续有日志，处理中只淘汰空闲超过1小时的用户
+        assertTrue(engine.getUserCount() > 0);
+
+        int remaining = engine.getUserCount();
+        assertEquals(remaining, engine.evictIdle(last + 3601));
+        assertEquals(0, engine.getUserCount());
+        assertEquals(0, engine.getRiskLevel("E0"));
+    }
+
+    public void testOutOfOrderIdleUsersAreEvictedDuringProcessing() {
+        RiskAlertEngine engine = new RiskAlertEngine(1, Duration.ofHours(1), 10, alert -> { });
+        NetflowLog template = logs.get(0);
+        long start = template.getEventEpochSecond();
+        // 分片数取整为 2，A、C、E、G 的 hashCode 同为奇数，落在同一分片
+        engine.process(copyAt(template, "C", start));
+        engine.process(copyAt(template, "E", start));
+        engine.process(copyAt(template, "A", start + 1800));
+        // 查询不改变顺序；即使空闲用户排在仍活跃的 A 之后，轮转检查也会淘汰
+        engine.getRiskLevel("C");
+        for (int i = 0; i < 10; i++) {
+            engine.process(copyAt(template, "G", start + 3700 + i));
+        }
+        assertEquals(2, engine.getEvictedCount());
+        assertEquals(2, engine.getUserCount());
+    }
+
+    private static NetflowLog copyAt(NetflowLog template, String userId, long epochSecond) {
+        NetflowLog log = new NetflowLog();
+        log.setEventEpochSecond(epochSecond, 0);
+        log.setUserId(userId);
+        log.setDepartment(template.getDepartment());
+        log.setBytes(template.getBytes());
+        return log;
+    }
+
+    private static String key(RiskAlert alert) {
+        return alert.getUserId() + ":" + alert.getRiskLevel() + "@" + alert.getPv();
+    }
+}
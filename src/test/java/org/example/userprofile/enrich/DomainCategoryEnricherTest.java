@@ -0,0 +1,105 @@
+package org.example.userprofile.enrich;
+
+import junit.framework.TestCase;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.entity.UserProfile;
+import org.example.userprofile.service.UserProfileService;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 网站分类维表富化测试
+ */
+public class DomainCategoryEnricherTest extends TestCase {
+
+    private Path file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = Files.createTempFile("site_category_dim", ".tsv");
+        write("id\tdomain\tcategory\tsub_category\tis_work_site",
+                "1\tzhihu.com\t社交\t问答\t0",
+                "2\tqq.com\t新闻\t\t0",
+                "3\twork.weixin.qq.com\t办公\tIM\t1",
+                "4\tGitHub.com.\t技术\t代码托管\t");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    public void testLongestSuffixMatch() throws IOException {
+        SiteCategoryIndex index = SiteCategoryIndex.load(file);
+        assertEquals(4, index.size());
+        assertEquals("社交", index.lookup("zhihu.com").getCategory());
+        assertEquals("社交", index.lookup("sub.zhihu.com").getCategory());
+        assertEquals("办公", index.lookup("a.work.weixin.qq.com").getCategory());
+        assertEquals("新闻", index.lookup("mail.qq.com").getCategory());
+        assertEquals("技术", index.lookup("API.github.com.").getCategory());
+        assertTrue(index.lookup("github.com").isWorkSite());
+        assertNull(index.lookup("xzhihu.com"));
+        assertNull(index.lookup("com"));
+        assertNull(index.lookup(""));
+    }
+
+    public void testEnrichAndHotReload() throws IOException {
+        try (DomainCategoryEnricher enricher = DomainCategoryEnricher.fromFile(file)) {
+            NetflowLog log = log("news.qq.com", null);
+            assertTrue(enricher.enrich(log));
+            assertEquals("新闻", log.getSiteCategory());
+            assertEquals(Boolean.FALSE, log.getWorkSite());
+
+            // 已有分类时保留原分类，只补充 is_work_site
+            NetflowLog categorized = log("www.zhihu.com", "其他");
+            assertTrue(enricher.enrich(categorized));
+            assertEquals("其他", categorized.getSiteCategory());
+
+            NetflowLog unknown = log("example.org", null);
+            assertFalse(enricher.enrich(unknown));
+            assertFalse(enricher.enrich(unknown));  // 命中未命中缓存
+            assertNull(unknown.getWorkSite());
+
+            assertFalse(enricher.reloadIfModified(file));
+            write("domain,category,is_work_site", "example.org,技术,1");
+            Files.setLastModifiedTime(file, java.nio.file.attribute.FileTime.fromMillis(System.currentTimeMillis() + 5000));
+            assertTrue(enricher.reloadIfModified(file));
+            assertTrue(enricher.enrich(unknown));
+            assertEquals(Boolean.TRUE, unknown.getWorkSite());
+            assertNull(enricher.lookup("news.qq.com"));
+        }
+    }
+
+    public void testNonWorkRatioUsesWorkSiteFlag() throws IOException {
+        try (DomainCategoryEnricher enricher = DomainCategoryEnricher.fromFile(file)) {
+            // 新闻不在回退规则的四个分类中，维表标记为非工作网站后计入非工作占比
+            List<NetflowLog> logs = new ArrayList<>(Arrays.asList(
+                    log("news.qq.com", null), log("github.com", null), log("bilibili.com", "娱乐"), log("a.b", "技术")));
+            logs.forEach(enricher::enrich);
+            UserProfile profile = new UserProfileService().calculateUserProfile(logs, "测试");
+            assertEquals(0.5f, profile.getNonWorkRatio());
+        }
+    }
+
+    private void write(String... lines) throws IOException {
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    private static NetflowLog log(String domain, String category) {
+        NetflowLog log = new NetflowLog();
+        log.setEventTime(LocalDateTime.of(2025, 12, 1, 10, 0));
+        log.setUserId("E1");
+        log.setDepartment("研发部");
+        log.setDomain(domain);
+        log.setSiteCategory(category);
+        log.setBytes(100L);
+        return log;
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.userprofile.generator;
+
+import junit.framework.TestCase;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.io.JsonWriter;
+import org.example.userprofile.io.LogExporter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 并行生成器的确定性与分布测试
+ */
+public class ParallelLogGeneratorTest extends TestCase {
+
+    private static final LocalDateTime START = LocalDate.of(2025, 12, 1).atStartOfDay();
+    private static final int TOTAL = 3 * ParallelLogGenerator.CHUNK_SIZE + 123;
+
+    public void testSameSeedIsIdenticalAtAnyThreadCount() throws IOException {
+        String single = generate(42, 1);
+        assertEquals(single, generate(42, 4));
+        assertFalse(single.equals(generate(43, 4)));
+    }
+
+    public void testOrderedAndWorkHourWeighted() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            ParallelLogGenerator generator = new ParallelLogGenerator(7, START, START.plusDays(7), 500);
+            List<NetflowLog> logs = generator.generateLogs(TOTAL, executor);
+            assertEquals(TOTAL, logs.size());
+            int workHour = 0;
+            for (int i = 0; i < logs.size(); i++) {
+                NetflowLog log = logs.get(i);
+                if (i > 0) {
+                    assertTrue(logs.get(i - 1).compareEventTime(log) <= 0);
+                }
+                assertFalse(log.getEventTime().isBefore(START));
+                assertTrue(log.getEventTime().isBefore(START.plusDays(7)));
+                assertTrue(generator.getEmployees().containsKey(log.getUserId()));
+                if (log.getEventHour() >= 8 && log.getEventHour() < 18) {
+                    workHour++;
+                }
+            }
+            // 工作时间占比：0.85 × (1 - (14/24)^10) + (0.15 + 0.85 × (14/24)^10) × 10/24 ≈ 0.91
+            double ratio = (double) workHour / TOTAL;
+            assertTrue("work hour ratio " + ratio, ratio > 0.89 && ratio < 0.93);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testSyntheticDomainCardinality() {
+        ParallelLogGenerator generator = new ParallelLogGenerator(7, START, START.plusDays(1), 50, 200);
+        List<NetflowLog> logs = generator.generateLogs(TOTAL, ForkJoinPool.commonPool());
+        Set<String> domains = new HashSet<>();
+        for (NetflowLog log : logs) {
+            assertTrue(log.getDomain(), log.getDomain().matches("site\\d+\\.example\\.com"));
+            assertTrue(log.getUrl().startsWith("https://" + log.getDomain() + "/"));
+            domains.add(log.getDomain());
+        }
+        assertEquals(200, domains.size());
+    }
+
+    private static String generate(long seed, int threads) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            ParallelLogGenerator generator = new ParallelLogGenerator(seed, START, START.plusDays(3), 300);
+            StringWriter out = new StringWriter();
+            LogExporter.writeNdjson(new JsonWriter(out), generator.generateLogs(TOTAL, executor));
+            return out.toString();
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.userprofile.generator;
+
+import junit.framework.TestCase;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.store.NetflowLogStore;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.stream.Collectors;
+
+/**
+ * 泊松日志流测试
+ */
+public class PoissonLogSourceTest extends TestCase {
+
+    private static final LocalDateTime START = LocalDate.of(2025, 12, 1).atStartOfDay();
+
+    public void testOrderedWorkHourWeightedArrivals() {
+        PoissonLogSource source = new PoissonLogSource(3, START, START.plusDays(7), 500, 200);
+        NetflowLogStore store = new NetflowLogStore();
+        NetflowLog previous = null;
+        int workHour = 0;
+        NetflowLog log;
+        while ((log = source.read()) != null) {
+            if (previous != null) {
+                assertTrue(previous.compareEventTime(log) <= 0);
+            }
+            if (log.getEventHour() >= 8 && log.getEventHour() < 18) {
+                workHour++;
+            }
+            store.add(log);
+            previous = log;
+        }
+        assertNull(source.read());
+        assertTrue(store.isSortedByTime());
+        // 期望 7 × 24 × 500 = 84000 条，标准差约 290
+        assertTrue("count " + store.size(), Math.abs(store.size() - 84000) < 1500);
+        assertEquals(store.size(), source.getEmittedCount());
+        double ratio = (double) workHour / store.size();
+        assertTrue("work hour ratio " + ratio, ratio > 0.89 && ratio < 0.93);
+        assertFalse(previous.getEventTime().isBefore(START.plusDays(6)));
+    }
+
+    public void testUnboundedStreamIsReproducible() {
+        PoissonLogSource first = new PoissonLogSource(9, START, null, 3600, 50);
+        PoissonLogSource second = new PoissonLogSource(9, START, null, 3600, 50);
+        assertEquals(first.stream().limit(100_000).map(NetflowLog::toString).collect(Collectors.toList()),
+                second.stream().limit(100_000).map(NetflowLog::toString).collect(Collectors.toList()));
+        assertTrue(first.hasNext());
+        assertEquals(100_001, first.getEmittedCount());
+    }
+}
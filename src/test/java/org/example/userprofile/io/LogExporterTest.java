@@ -0,0 +1,70 @@
+package org.example.userprofile.io;
+
+import junit.framework.TestCase;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.generator.MockDataGenerator;
+import org.example.userprofile.sketch.DailyReservoirSampler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 流式导出与采样测试
+ */
+public class LogExporterTest extends TestCase {
+
+    private List<NetflowLog> logs;
+
+    @Override
+    protected void setUp() {
+        LocalDateTime start = LocalDate.of(2025, 12, 1).atStartOfDay();
+        logs = MockDataGenerator.generateLogs(start, start.plusDays(4).minusSeconds(1), 2000);
+        logs.get(0).setUserAgent("带\"引号\"\\反斜杠\n换行\u0001控制符");
+        logs.get(1).setUrl(null);
+    }
+
+    public void testGzipNdjsonRoundTripWithEscaping() throws IOException {
+        Path file = Files.createTempFile("export", ".ndjson.gz");
+        try {
+            try (JsonWriter out = JsonWriter.open(file)) {
+                assertEquals(logs.size(), LogExporter.writeNdjson(out, logs));
+            }
+            List<NetflowLog> read = new ArrayList<>();
+            try (NetflowLogReader reader = NetflowLogReader.open(file)) {
+                reader.forEach(read::add);
+            }
+            assertEquals(logs.size(), read.size());
+            for (int i = 0; i < logs.size(); i++) {
+                assertEquals(logs.get(i).getEventTime().withNano(0), read.get(i).getEventTime());
+                assertEquals(logs.get(i).getUserAgent(), read.get(i).getUserAgent());
+                assertEquals(logs.get(i).getUrl(), read.get(i).getUrl());
+                assertEquals(logs.get(i).getBytes(), read.get(i).getBytes());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    public void testSamplerSpreadsSamplesAcrossDays() {
+        DailyReservoirSampler sampler = new DailyReservoirSampler(100, new Random(7));
+        logs.forEach(sampler::add);
+        assertEquals(logs.size(), sampler.getSeenCount());
+        assertEquals(4, sampler.getDayCount());
+
+        List<NetflowLog> sample = sampler.sample(100);
+        assertEquals(100, sample.size());
+        Map<Long, Integer> perDay = new HashMap<>();
+        for (int i = 0; i < sample.size(); i++) {
+            perDay.merge(sample.get(i).getEventEpochDay(), 1, Integer::sum);
+            if (i > 0) {
+                assertTrue(sample.get(i - 1).compareEventTime(sample.get(i)) <= 0);
+            }
+        }
+        assertEquals(Arrays.asList(25, 25, 25, 25), new ArrayList<>(perDay.values()));
+        assertEquals(100, new HashSet<>(sample).size());
+    }
+}
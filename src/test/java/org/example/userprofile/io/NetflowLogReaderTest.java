@@ -0,0 +1,185 @@
+package org.example.userprofile.io;
+
+import junit.framework.TestCase;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.generator.MockDataGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 流式日志读取测试
+ */
+public class NetflowLogReaderTest extends TestCase {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private Path dir;
+    private List<NetflowLog> logs;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory("reader-test");
+        LocalDateTime start = LocalDate.of(2025, 12, 1).atStartOfDay();
+        logs = MockDataGenerator.generateLogs(start, start.plusDays(2), 2000);
+        logs.get(0).setUserAgent("带\"引号\"与,逗号\\的UA");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    public void testReadsExportToJsonArray() throws IOException {
+        Path file = dir.resolve("logs.json");
+        Files.write(file, MockDataGenerator.exportToJson(logs.subList(1, logs.size())).getBytes(StandardCharsets.UTF_8));
+        assertLogsEqual(logs.subList(1, logs.size()), readAll(file));
+    }
+
+    public void testReadsNdjson() throws IOException {
+        Path file = dir.resolve("logs.ndjson");
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            writeNdjson(writer);
+        }
+        assertLogsEqual(logs, readAll(file));
+    }
+
+    public void testReadsGzipNdjson() throws IOException {
+        Path file = dir.resolve("logs.ndjson.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file));
+             Writer writer = new java.io.OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            writeNdjson(writer);
+        }
+        assertLogsEqual(logs, readAll(file));
+    }
+
+    public void testReadsCsvWithHeader() throws IOException {
+        Path file = dir.resolve("logs.csv");
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            writer.write("event_time,user_id,department,src_ip,dst_ip,domain,url,method,bytes,user_agent,site_category\r\n");
+            for (NetflowLog log : logs) {
+                writer.write(log.getEventTime().format(FORMATTER) + "," + log.getUserId() + "," + log.getDepartment()
+                        + "," + log.getSrcIp() + "," + log.getDstIp() + "," + log.getDomain() + "," + log.getUrl()
+                        + "," + log.getMethod() + "," + log.getBytes()
+                        + ",\"" + log.getUserAgent().replace("\"", "\"\"") + "\"," + log.getSiteCategory() + "\r\n");
+            }
+        }
+        assertLogsEqual(logs, readAll(file));
+    }
+
+    public void testMalformedRecordReportsPosition() throws IOException {
+        Path file = dir.resolve("bad.ndjson");
+        String content = "{\"timestamp\":\"2025-12-01 08:00:00\",\"user_id\":\"E1\",\"bytes\":12}\n"
+                + "{\"timestamp\":\"2025-12-01 08:00:01\",\"user_id\":\"E2\",\"bytes\":abc}\n";
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        try (NetflowLogReader reader = NetflowLogReader.open(file)) {
+            assertEquals("E1", reader.read().getUserId());
+            reader.read();
+            fail("应抛出解析异常");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("第 2 条"));
+        }
+    }
+
+    public void testReadsExportSampleEnvelope() throws IOException {
+        Path file = dir.resolve("mock_data.json");
+        List<NetflowLog> sample = logs.subList(1, 51);
+        LogExporter.exportSample(file, sample, java.util.Collections.emptyMap(), sample.size());
+        List<NetflowLog> actual = readAll(file);
+        assertEquals(sample.size(), actual.size());
+        List<NetflowLog> expected = new ArrayList<>(sample);
+        expected.sort(NetflowLog::compareEventTime);
+        actual.sort(NetflowLog::compareEventTime);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getEventTime(), actual.get(i).getEventTime());
+            assertEquals(expected.get(i).getBytes(), actual.get(i).getBytes());
+        }
+    }
+
+    public void testRejectsOverflowAndTimeSuffix() throws IOException {
+        assertParseFails("{\"bytes\":99999999999999999999}\n");
+        assertParseFails("{\"timestamp\":\"2025-12-01 08:00:00Z\"}\n");
+        assertParseFails("{\"timestamp\":\"2025-12-01 08:00:0\"}\n");
+        assertParseFails("{\"timestamp\":\"2025-12-01 08:00:00.\"}\n");
+    }
+
+    public void testRejectsMissingTimeAndBrokenSurrogates() throws IOException {
+        assertParseFails("{\"user_id\":\"E1\",\"bytes\":12}\n");
+        assertParseFails("{\"timestamp\":null,\"user_id\":\"E1\"}\n");
+        assertParseFails("{\"timestamp\":\"2025-12-01 08:00:00\",\"url\":\"\\ud83d\\u0041\"}\n");
+        assertParseFails("{\"timestamp\":\"2025-12-01 08:00:00\",\"url\":\"\\ude00\"}\n");
+        Path file = dir.resolve("bad.csv");
+        Files.write(file, "user_id,bytes\nE1,12\n".getBytes(StandardCharsets.UTF_8));
+        try (NetflowLogReader reader = NetflowLogReader.open(file)) {
+            reader.read();
+            fail("应抛出解析异常");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("缺少事件时间"));
+        }
+    }
+
+    private void assertParseFails(String content) throws IOException {
+        Path file = dir.resolve("bad.ndjson");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        try (NetflowLogReader reader = NetflowLogReader.open(file)) {
+            reader.read();
+            fail("应抛出解析异常: " + content);
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("第 1 条"));
+        }
+    }
+
+    private void writeNdjson(Writer writer) throws IOException {
+        for (NetflowLog log : logs) {
+            writer.write("{\"timestamp\":\"" + log.getEventTime().format(FORMATTER) + "\",\"src_ip\":\"" + log.getSrcIp()
+                    + "\",\"user_id\":\"" + log.getUserId() + "\",\"department\":\"" + log.getDepartment()
+                    + "\",\"dst_ip\":\"" + log.getDstIp() + "\",\"domain\":\"" + log.getDomain()
+                    + "\",\"url\":\"" + log.getUrl() + "\",\"method\":\"" + log.getMethod()
+                    + "\",\"bytes\":" + log.getBytes() + ",\"user_agent\":\""
+                    + log.getUserAgent().replace("\\", "\\\\").replace("\"", "\\\"")
+                    + "\",\"site_category\":\"" + log.getSiteCategory() + "\",\"extra\":null}\n");
+        }
+    }
+
+    private static List<NetflowLog> readAll(Path file) throws IOException {
+        List<NetflowLog> result = new ArrayList<>();
+        try (NetflowLogReader reader = NetflowLogReader.open(file)) {
+            reader.forEachChunk(128, result::addAll);
+        }
+        return result;
+    }
+
+    private static void assertLogsEqual(List<NetflowLog> expected, List<NetflowLog> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            NetflowLog e = expected.get(i);
+            NetflowLog a = actual.get(i);
+            assertEquals(e.getEventTime(), a.getEventTime());
+            assertEquals(e.getUserId(), a.getUserId());
+            assertEquals(e.getDepartment(), a.getDepartment());
+            assertEquals(e.getSrcIp(), a.getSrcIp());
+            assertEquals(e.getDstIp(), a.getDstIp());
+            assertEquals(e.getDomain(), a.getDomain());
+            assertEquals(e.getUrl(), a.getUrl());
+            assertEquals(e.getMethod(), a.getMethod());
+            assertEquals(e.getBytes(), a.getBytes());
+            assertEquals(e.getUserAgent(), a.getUserAgent());
+            assertEquals(e.getSiteCategory(), a.getSiteCategory());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.userprofile.io;
+
+import junit.framework.TestCase;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.generator.MockDataGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 日志段读写测试
+ */
+public class SegmentReaderTest extends TestCase {
+
+    private Path dir;
+    private LocalDateTime start;
+    private List<NetflowLog> logs;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory("segment-test");
+        start = LocalDate.of(2025, 12, 1).atStartOfDay();
+        logs = MockDataGenerator.generateLogs(start, start.plusDays(3), 3000);
+        logs.get(0).setBytes(null);
+        logs.get(0).setUrl(null);
+        logs.get(1).setWorkSite(true);
+        logs.get(2).setWorkSite(false);
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    public void testRoundTripAndRangeSkipsSegments() throws IOException {
+        Path file = dir.resolve("logs.seg");
+        // 分两次打开追加，验证重新打开后接着写
+        try (SegmentWriter writer = new SegmentWriter(file, 500)) {
+            for (NetflowLog log : logs.subList(0, 1200)) {
+                writer.append(log);
+            }
+        }
+        try (SegmentWriter writer = new SegmentWriter(file, 500)) {
+            for (NetflowLog log : logs.subList(1200, logs.size())) {
+                writer.append(log);
+            }
+        }
+        assertLogsEqual(logs, readAll(SegmentReader.open(file)));
+
+        LocalDateTime from = start.plusDays(1);
+        LocalDateTime to = start.plusDays(2).minusSeconds(1);
+        List<NetflowLog> expected = new ArrayList<>();
+        for (NetflowLog log : logs) {
+            if (!log.getEventTime().isBefore(from) && !log.getEventTime().isAfter(to)) {
+                expected.add(log);
+            }
+        }
+        try (SegmentReader reader = SegmentReader.open(file, from, to)) {
+            assertEquals(7, reader.getSegmentCount());
+            assertTrue(reader.getSkippedSegmentCount() >= 3);
+            assertLogsEqual(expected, readAll(reader));
+        }
+    }
+
+    public void testTornTailIsIgnoredAndTruncated() throws IOException {
+        Path file = dir.resolve("torn.seg");
+        SegmentWriter.write(file, logs.subList(0, 100));
+        long validSize = Files.size(file);
+        // 模拟写入中途退出：追加半个段
+        Files.write(file, new byte[]{0x31, 0x53, 0x46, 0x4E, 0x10, 0, 0, 0, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        assertLogsEqual(logs.subList(0, 100), readAll(SegmentReader.open(file)));
+        SegmentWriter.write(file, logs.subList(100, 200));
+        assertTrue(Files.size(file) > validSize);
+        assertLogsEqual(logs.subList(0, 200), readAll(SegmentReader.open(file)));
+    }
+
+    private static List<NetflowLog> readAll(SegmentReader reader) throws IOException {
+        List<NetflowLog> result = new ArrayList<>();
+        try (reader) {
+            reader.forEach(result::add);
+        }
+        return result;
+    }
+
+    private static void assertLogsEqual(List<NetflowLog> expected, List<NetflowLog> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            NetflowLog e = expected.get(i);
+            NetflowLog a = actual.get(i);
+            assertEquals(e.getEventTime(), a.getEventTime());
+            assertEquals(e.getUserId(), a.getUserId());
+            assertEquals(e.getDepartment(), a.getDepartment());
+            assertEquals(e.getSrcIp(), a.getSrcIp());
+            assertEquals(e.getDstIp(), a.getDstIp());
+            assertEquals(e.getDomain(), a.getDomain());
+            assertEquals(e.getUrl(), a.getUrl());
+            assertEquals(e.getMethod(), a.getMethod());
+            assertEquals(e.getBytes(), a.getBytes());
+            assertEquals(e.getUserAgent(), a.getUserAgent());
+            assertEquals(e.getSiteCategory(), a.getSiteCategory());
+            assertEquals(e.getWorkSite(), a.getWorkSite());
+        }
+    }
+}
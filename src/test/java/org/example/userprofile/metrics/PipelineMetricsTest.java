@@ -0,0 +1,88 @@
+package org.example.userprofile.metrics;
+
+import junit.framework.TestCase;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * 流水线指标测试
+ */
+public class PipelineMetricsTest extends TestCase {
+
+    public void testTimingsHistogramAndMBean() throws Exception {
+        PipelineMetrics metrics = new PipelineMetrics(true, true);
+        try {
+            for (int i = 0; i < 3; i++) {
+                try (PipelineMetrics.Timing timing = metrics.time("aggregate")) {
+                    long[] buffer = new long[1 << 16];
+                    timing.rows(buffer.length);
+                }
+            }
+            StageMetrics stage = metrics.stage("aggregate");
+            assertEquals(3, stage.getInvocations());
+            assertEquals(3 << 16, stage.getRows());
+            assertTrue(stage.getAllocatedBytes() >= 3L * 8 * (1 << 16));
+            assertTrue(stage.getRowsPerSecond() > 0);
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("org.example.userprofile:type=Stage,name=\"aggregate\"");
+            assertEquals(3L, server.getAttribute(name, "Invocations"));
+            assertTrue(metrics.summaryJson().startsWith("{\"stages\":[{\"name\":\"aggregate\",\"invocations\":3,"));
+        } finally {
+            metrics.unregister();
+        }
+    }
+
+    public void testAllocationIncludesWorkerThreads() throws Exception {
+        PipelineMetrics metrics = new PipelineMetrics(true, false);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            long[][] sink = new long[4][];
+            try (PipelineMetrics.Timing timing = metrics.time("profiles")) {
+                pool.submit(() -> IntStream.range(0, sink.length).parallel()
+                        .forEach(i -> sink[i] = new long[1 << 20])).get();
+                timing.rows(sink.length);
+            }
+            // 分配发生在工作线程上，调用线程几乎不分配
+            StageMetrics stage = metrics.stage("profiles");
+            assertTrue(stage.getAllocatedBytes() >= 4L * 8 * (1 << 20));
+            Map<String, Long> byThread = stage.getThreadAllocatedBytes();
+            assertEquals(stage.getAllocatedBytes(), byThread.values().stream().mapToLong(Long::longValue).sum());
+            long workers = byThread.entrySet().stream().filter(entry -> entry.getKey().contains("worker"))
+                    .mapToLong(Map.Entry::getValue).sum();
+            assertTrue(byThread.toString(), workers >= 2L * 8 * (1 << 20));
+            assertTrue(metrics.summaryJson().contains("\"thread_allocated_bytes\":{\""));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testDisabledByDefault() {
+        assertFalse(PipelineMetrics.fromSystemProperties().isEnabled());
+    }
+
+    public void testHistogramPercentilesWithinOneEighth() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000, histogram.getMax());
+        assertEquals(50_000, histogram.percentile(0.5), 50_000 / 8.0);
+        assertEquals(99_000, histogram.percentile(0.99), 99_000 / 8.0);
+    }
+
+    public void testDisabledRecordsNothing() {
+        PipelineMetrics metrics = new PipelineMetrics(false, false);
+        try (PipelineMetrics.Timing timing = metrics.time("export")) {
+            timing.rows(10);
+        }
+        assertTrue(metrics.getStages().isEmpty());
+        assertEquals("{\"stages\":[]}", metrics.summaryJson());
+    }
+}
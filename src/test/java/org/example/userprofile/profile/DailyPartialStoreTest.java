@@ -0,0 +1,156 @@
+package org.example.userprofile.profile;
+
+import junit.framework.TestCase;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.entity.UserProfile;
+import org.example.userprofile.generator.MockDataGenerator;
+import org.example.userprofile.time.EventTimes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 按天部分聚合合并与整窗口扫描的一致性测试
+ */
+public class DailyPartialStoreTest extends TestCase {
+
+    private static final LocalDate START = LocalDate.of(2025, 12, 1);
+
+    private Path directory;
+    private List<NetflowLog> logs;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("daily-partials");
+        logs = new ArrayList<>();
+        for (int user = 0; user < 30; user++) {
+            logs.addAll(MockDataGenerator.generateLogsForUser("E" + user, "研发部",
+                    START.atStartOfDay(), START.plusDays(10).atStartOfDay(), 20 + user * 3));
+        }
+        logs.get(5).setSiteCategory(null);
+        logs.get(8).setBytes(null);
+        logs.sort(NetflowLog::compareEventTime);
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    public void testWindowMergeMatchesFullScan() throws IOException {
+        DailyPartialStore partials = new DailyPartialStore(directory);
+        // 先写入前 9 天，再像每日任务一样只处理最后一天
+        LocalDate lastDay = START.plusDays(9);
+        List<NetflowLog> earlier = logs.stream()
+                .filter(log -> log.getEventTime().toLocalDate().isBefore(lastDay)).collect(Collectors.toList());
+        List<NetflowLog> latest = logs.stream()
+                .filter(log -> !log.getEventTime().toLocalDate().isBefore(lastDay)).collect(Collectors.toList());
+        assertEquals(9, partials.writePendingDays(earlier).size());
+        assertEquals(List.of(lastDay), partials.pendingDays(START, lastDay));
+        partials.writeDay(lastDay, latest);
+        assertTrue(partials.pendingDays(START, lastDay).isEmpty());
+
+        for (int days : new int[]{1, 7, 10}) {
+            LocalDate from = lastDay.minusDays(days - 1);
+            UserProfileAggregator expected = new UserProfileAggregator();
+            logs.stream().filter(log -> !log.getEventTime().toLocalDate().isBefore(from)).forEach(expected::add);
+            UserProfileAggregator merged = partials.mergeWindow(from, lastDay);
+
+            assertEquals(expected.getUserCount(), merged.getUserCount());
+            assertEquals(expected.getLogCount(), merged.getLogCount());
+            for (String userId : expected.getAccumulators().keySet()) {
+                assertProfileEquals(expected.getProfile(userId, "测试"), merged.getProfile(userId, "测试"));
+            }
+        }
+    }
+
+    public void testMissingDaysAreSkipped() throws IOException {
+        DailyPartialStore partials = new DailyPartialStore(directory);
+        partials.writePendingDays(logs);
+        assertNull(partials.readDay(START.minusDays(1)));
+        assertEquals(List.of(START.minusDays(2), START.minusDays(1)),
+                partials.missingDays(START.minusDays(2), START));
+        assertEquals(partials.readDay(START).getLogCount(), partials.mergeWindow(START.minusDays(2), START).getLogCount());
+    }
+
+    public void testCompleteDaysAreNotOverwritten() throws IOException {
+        DailyPartialStore partials = new DailyPartialStore(directory);
+        List<NetflowLog> firstDay = logsOn(START);
+        assertEquals(Collections.singleton(START), partials.writePendingDays(firstDay));
+        assertTrue(partials.isComplete(START));
+
+        // 迟到的部分批次不会覆盖已完成的一天，只写入新的日期
+        List<NetflowLog> late = new ArrayList<>(firstDay.subList(0, 3));
+        late.addAll(logsOn(START.plusDays(1)));
+        assertEquals(Collections.singleton(START.plusDays(1)), partials.writePendingDays(late));
+        assertEquals(firstDay.size(), partials.readDay(START).getLogCount());
+
+        // 显式重新导入按整天重写，混入其他日期的日志被拒绝
+        partials.writeDay(START, firstDay.subList(0, 10));
+        assertEquals(10, partials.readDay(START).getLogCount());
+        try {
+            partials.writeDay(START, late);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertEquals(10, partials.readDay(START).getLogCount());
+        }
+    }
+
+    public void testDayWrittenBeforeItEndsIsRewritten() throws IOException {
+        List<NetflowLog> firstDay = logsOn(START);
+        long noon = EventTimes.toEpochSecond(START.atTime(12, 0));
+        List<NetflowLog> morning = firstDay.stream()
+                .filter(log -> log.getEventEpochSecond() < noon).collect(Collectors.toList());
+
+        // 当天中午的运行只看到上午的日志，写入的分片未完成
+        DailyPartialStore midday = new DailyPartialStore(directory, clockAt(noon));
+        assertFalse(midday.isClosed(START));
+        assertEquals(Collections.singleton(START), midday.writePendingDays(morning));
+        assertFalse(midday.isComplete(START));
+        assertEquals(List.of(START), midday.pendingDays(START, START));
+
+        // 次日的运行重写当天，之后不再改动
+        DailyPartialStore nextDay = new DailyPartialStore(directory,
+                clockAt(EventTimes.toEpochSecond(START.plusDays(1).atTime(1, 0))));
+        assertEquals(List.of(START), nextDay.pendingDays(START, START));
+        assertEquals(Collections.singleton(START), nextDay.writePendingDays(firstDay));
+        assertTrue(nextDay.isComplete(START));
+        assertEquals(firstDay.size(), nextDay.readDay(START).getLogCount());
+        assertTrue(nextDay.writePendingDays(morning).isEmpty());
+        assertEquals(firstDay.size(), nextDay.readDay(START).getLogCount());
+    }
+
+    private List<NetflowLog> logsOn(LocalDate day) {
+        return logs.stream().filter(log -> log.getEventTime().toLocalDate().equals(day)).collect(Collectors.toList());
+    }
+
+    private static Clock clockAt(long epochSecond) {
+        return Clock.fixed(Instant.ofEpochSecond(epochSecond), ZoneOffset.UTC);
+    }
+
+    private static void assertProfileEquals(UserProfile expected, UserProfile actual) {
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getDepartment(), actual.getDepartment());
+        assertEquals(expected.getActiveDays(), actual.getActiveDays());
+        assertEquals(expected.getAvgDailyPv(), actual.getAvgDailyPv());
+        assertEquals(expected.getPeakTimeSlot(), actual.getPeakTimeSlot());
+        assertEquals(expected.getTopSiteCategory(), actual.getTopSiteCategory());
+        assertEquals(expected.getTopDomain(), actual.getTopDomain());
+        assertEquals(expected.getNonWorkRatio(), actual.getNonWorkRatio());
+        assertEquals(expected.getTotalBytes(), actual.getTotalBytes());
+        assertEquals(expected.getAvgDailyBytes(), actual.getAvgDailyBytes());
+        assertEquals(expected.getRiskLevel(), actual.getRiskLevel());
+    }
+}
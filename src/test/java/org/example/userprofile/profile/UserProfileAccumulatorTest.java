@@ -0,0 +1,137 @@
+package org.example.userprofile.profile;
+
+import junit.framework.TestCase;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.entity.UserProfile;
+import org.example.userprofile.generator.MockDataGenerator;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 单遍画像累加器与原多遍实现的一致性测试
+ */
+public class UserProfileAccumulatorTest extends TestCase {
+
+    private static final LocalDateTime START = LocalDate.of(2025, 12, 1).atStartOfDay();
+
+    public void testMatchesMultiPassImplementation() {
+        // 日志条数较少时高峰时段/分类/域名经常出现并列，可覆盖并列取值逻辑
+        for (int logCount = 1; logCount <= 60; logCount++) {
+            List<NetflowLog> logs = MockDataGenerator.generateLogsForUser(
+                    "E" + logCount, "研发部", START, START.plusDays(7), logCount);
+            assertProfileEquals(reference(logs), accumulate(logs));
+        }
+    }
+
+    public void testMergeEqualsSequentialAccumulation() {
+        for (int logCount = 2; logCount <= 60; logCount++) {
+            List<NetflowLog> logs = MockDataGenerator.generateLogsForUser(
+                    "E" + logCount, "研发部", START, START.plusDays(90), logCount);
+            for (int split = 0; split <= logCount; split += 7) {
+                UserProfileAccumulator left = new UserProfileAccumulator();
+                UserProfileAccumulator right = new UserProfileAccumulator();
+                logs.subList(0, split).forEach(left::add);
+                logs.subList(split, logCount).forEach(right::add);
+                left.merge(right);
+                assertProfileEquals(accumulate(logs), left.toProfile("测试"));
+            }
+        }
+    }
+
+    public void testAggregatorKeepsOneAccumulatorPerUser() {
+        List<NetflowLog> logs = MockDataGenerator.generateLogs(START, START.plusDays(7), 3000);
+        UserProfileAggregator first = new UserProfileAggregator();
+        UserProfileAggregator second = new UserProfileAggregator();
+        logs.subList(0, 1000).forEach(first::add);
+        logs.subList(1000, logs.size()).forEach(second::add);
+        first.merge(second);
+
+        Map<String, List<NetflowLog>> byUser = new HashMap<>();
+        for (NetflowLog log : logs) {
+            byUser.computeIfAbsent(log.getUserId(), k -> new ArrayList<>()).add(log);
+        }
+        assertEquals(byUser.size(), first.getUserCount());
+        assertEquals(logs.size(), first.getLogCount());
+        for (Map.Entry<String, List<NetflowLog>> entry : byUser.entrySet()) {
+            assertProfileEquals(accumulate(entry.getValue()), first.getProfile(entry.getKey(), "测试"));
+        }
+    }
+
+    public void testNullFieldsFallBackToUnknown() {
+        List<NetflowLog> logs = MockDataGenerator.generateLogsForUser("E1", "研发部", START, START.plusDays(2), 5);
+        for (NetflowLog log : logs) {
+            log.setSiteCategory(null);
+            log.setDomain(null);
+            log.setBytes(null);
+        }
+        UserProfile profile = accumulate(logs);
+        assertEquals("未知", profile.getTopSiteCategory());
+        assertEquals("未知", profile.getTopDomain());
+        assertEquals(Long.valueOf(0), profile.getTotalBytes());
+        assertProfileEquals(reference(logs), profile);
+    }
+
+    private static UserProfile accumulate(List<NetflowLog> logs) {
+        UserProfileAccumulator accumulator = new UserProfileAccumulator();
+        for (NetflowLog log : logs) {
+            accumulator.add(log);
+        }
+        return accumulator.toProfile("测试");
+    }
+
+    /**
+     * 原多遍实现，作为对照
+     */
+    private static UserProfile reference(List<NetflowLog> logs) {
+        UserProfile profile = new UserProfile();
+        Set<LocalDate> activeDates = new HashSet<>();
+        Map<Integer, Integer> hourCount = new HashMap<>();
+        Map<String, Integer> categoryCount = new HashMap<>();
+        Map<String, Integer> domainCount = new HashMap<>();
+        long nonWork = 0;
+        long night = 0;
+        long totalBytes = 0;
+        for (NetflowLog log : logs) {
+            activeDates.add(log.getEventTime().toLocalDate());
+            int hour = log.getEventTime().getHour();
+            hourCount.put(hour, hourCount.getOrDefault(hour, 0) + 1);
+            String category = log.getSiteCategory() != null ? log.getSiteCategory() : "未知";
+            categoryCount.put(category, categoryCount.getOrDefault(category, 0) + 1);
+            String domain = log.getDomain() != null ? log.getDomain() : "未知";
+            domainCount.put(domain, domainCount.getOrDefault(domain, 0) + 1);
+            if (UserProfileAccumulator.isNonWorkCategory(log.getSiteCategory())) {
+                nonWork++;
+            }
+            if (hour >= 22 || hour < 6) {
+                night++;
+            }
+            totalBytes += log.getBytes() != null ? log.getBytes() : 0;
+        }
+        int peakHour = hourCount.entrySet().stream().max(Map.Entry.comparingByValue()).map(Map.Entry::getKey).orElse(9);
+
+        profile.setActiveDays(activeDates.size());
+        profile.setAvgDailyPv(logs.size() / Math.max(activeDates.size(), 1));
+        profile.setPeakTimeSlot(String.format("%02d:00-%02d:00", peakHour, peakHour + 1));
+        profile.setTopSiteCategory(categoryCount.entrySet().stream().max(Map.Entry.comparingByValue()).map(Map.Entry::getKey).orElse("未知"));
+        profile.setTopDomain(domainCount.entrySet().stream().max(Map.Entry.comparingByValue()).map(Map.Entry::getKey).orElse("未知"));
+        profile.setNonWorkRatio((float) nonWork / logs.size());
+        profile.setTotalBytes(totalBytes);
+        profile.setAvgDailyBytes(totalBytes / Math.max(activeDates.size(), 1));
+        profile.setRiskLevel(UserProfileAccumulator.riskLevel(logs.size(), night, profile.getNonWorkRatio(), totalBytes));
+        return profile;
+    }
+
+    private static void assertProfileEquals(UserProfile expected, UserProfile actual) {
+        assertEquals(expected.getActiveDays(), actual.getActiveDays());
+        assertEquals(expected.getAvgDailyPv(), actual.getAvgDailyPv());
+        assertEquals(expected.getPeakTimeSlot(), actual.getPeakTimeSlot());
+        assertEquals(expected.getTopSiteCategory(), actual.getTopSiteCategory());
+        assertEquals(expected.getTopDomain(), actual.getTopDomain());
+        assertEquals(expected.getNonWorkRatio(), actual.getNonWorkRatio());
+        assertEquals(expected.getTotalBytes(), actual.getTotalBytes());
+        assertEquals(expected.getAvgDailyBytes(), actual.getAvgDailyBytes());
+        assertEquals(expected.getRiskLevel(), actual.getRiskLevel());
+    }
+}
@@ -0,0 +1,76 @@
+package org.example.userprofile.service;
+
+import junit.framework.TestCase;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.entity.UserProfile;
+import org.example.userprofile.generator.MockDataGenerator;
+import org.example.userprofile.store.NetflowLogStore;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * 并行批量画像与顺序计算的一致性测试
+ */
+public class UserProfileServiceTest extends TestCase {
+
+    private final UserProfileService service = new UserProfileService();
+    private Map<String, List<NetflowLog>> userLogs;
+    private NetflowLogStore store;
+
+    @Override
+    protected void setUp() {
+        LocalDateTime start = LocalDate.of(2025, 12, 1).atStartOfDay();
+        List<NetflowLog> logs = new ArrayList<>(MockDataGenerator.generateLogs(start, start.plusDays(7), 20000));
+        // 加入一个重度用户，检验按日志量切分
+        logs.addAll(MockDataGenerator.generateLogsForUser("E9999999", "研发部", start, start.plusDays(7), 5000));
+        userLogs = logs.stream().collect(Collectors.groupingBy(NetflowLog::getUserId));
+        store = NetflowLogStore.of(logs);
+    }
+
+    public void testForkJoinPoolMatchesSequential() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertSameProfiles(service.calculateBatchProfiles(userLogs, Collections.emptyMap()),
+                    service.calculateBatchProfiles(userLogs, Collections.emptyMap(), pool));
+            assertSameProfiles(service.calculateBatchProfiles(store, Collections.emptyMap()),
+                    service.calculateBatchProfiles(store, Collections.emptyMap(), pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testPlainExecutorMatchesSequential() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            assertSameProfiles(service.calculateBatchProfiles(userLogs, Collections.emptyMap()),
+                    service.calculateBatchProfiles(userLogs, Collections.emptyMap(), executor));
+            assertSameProfiles(service.calculateBatchProfiles(store, Collections.emptyMap()),
+                    service.calculateBatchProfiles(store, Collections.emptyMap(), executor, 3));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertSameProfiles(Map<String, UserProfile> expected, Map<String, UserProfile> actual) {
+        // 迭代顺序也须一致
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+        for (String userId : expected.keySet()) {
+            UserProfile e = expected.get(userId);
+            UserProfile a = actual.get(userId);
+            assertEquals(e.getActiveDays(), a.getActiveDays());
+            assertEquals(e.getAvgDailyPv(), a.getAvgDailyPv());
+            assertEquals(e.getPeakTimeSlot(), a.getPeakTimeSlot());
+            assertEquals(e.getTopSiteCategory(), a.getTopSiteCategory());
+            assertEquals(e.getTopDomain(), a.getTopDomain());
+            assertEquals(e.getNonWorkRatio(), a.getNonWorkRatio());
+            assertEquals(e.getTotalBytes(), a.getTotalBytes());
+            assertEquals(e.getRiskLevel(), a.getRiskLevel());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.example.userprofile.shard;
+
+import junit.framework.TestCase;
+import org.example.userprofile.aggregate.StatisticsAggregator;
+import org.example.userprofile.aggregate.TopNSelector;
+import org.example.userprofile.dto.AccessStatistics;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.entity.UserProfile;
+import org.example.userprofile.generator.MockDataGenerator;
+import org.example.userprofile.profile.UserProfileAccumulator;
+import org.example.userprofile.profile.UserProfileAggregator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 分片聚合经序列化、合并后与单进程全量聚合的一致性测试
+ */
+public class ShardAggregationTest extends TestCase {
+
+    private static final LocalDateTime START = LocalDate.of(2025, 12, 1).atStartOfDay();
+    private static final int SHARDS = 3;
+
+    private List<NetflowLog> logs;
+
+    @Override
+    protected void setUp() {
+        logs = MockDataGenerator.generateLogs(START, START.plusDays(7), 5000, 42L);
+        logs.get(3).setSiteCategory(null);
+        logs.get(7).setBytes(null);
+        logs.get(9).setUserId(null);
+    }
+
+    public void testExactMergeMatchesSingleProcess() throws IOException {
+        ShardCoordinator coordinator = new ShardCoordinator();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            ShardWorker worker = new ShardWorker(shard, SHARDS, 0, 20, true);
+            logs.forEach(worker::add);
+            coordinator.add(roundTrip(worker.toPartial()));
+            assertEquals(shard + 1 < SHARDS, !coordinator.isComplete());
+        }
+        assertTrue(coordinator.missingShards().isEmpty());
+        assertEquals(logs.size() * (SHARDS - 1), coordinator.getSkippedCount());
+
+        StatisticsAggregator expected = StatisticsAggregator.aggregate(logs,
+                EnumSet.allOf(StatisticsAggregator.Breakdown.class));
+        assertStatisticsEquals(expected.total(), coordinator.total());
+        assertGroupsEqual(expected.byDepartment(), coordinator.byDepartment());
+        assertGroupsEqual(expected.byCategory(), coordinator.byCategory());
+        assertGroupsEqual(expected.byDay(), coordinator.byDay());
+
+        assertEquals(topN(logs, NetflowLog::getUserId, 20), coordinator.topUsers(20));
+        assertEquals(topN(logs, NetflowLog::getDomain, 15), coordinator.topDomains(15));
+        try {
+            coordinator.topUsers(21);
+            fail();
+        } catch (IllegalArgumentException expectedFailure) {
+            // 超过分片保留的个数
+        }
+
+        UserProfileAggregator profiles = new UserProfileAggregator();
+        logs.forEach(profiles::add);
+        Map<String, UserProfileAccumulator> merged = coordinator.getProfileAggregator().getAccumulators();
+        assertEquals(profiles.getAccumulators().keySet(), merged.keySet());
+        for (Map.Entry<String, UserProfileAccumulator> entry : profiles.getAccumulators().entrySet()) {
+            UserProfile expectedProfile = entry.getValue().toProfile("员工", START);
+            UserProfile actualProfile = merged.get(entry.getKey()).toProfile("员工", START);
+            assertEquals(expectedProfile.toString(), actualProfile.toString());
+            assertEquals(expectedProfile.getPeakTimeSlot(), actualProfile.getPeakTimeSlot());
+            assertEquals(expectedProfile.getTopDomain(), actualProfile.getTopDomain());
+            assertEquals(expectedProfile.getTotalBytes(), actualProfile.getTotalBytes());
+        }
+    }
+
+    public void testSketchMergeMatchesSingleProcess() throws IOException {
+        List<ShardPartial> partials = new ArrayList<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            ShardWorker worker = new ShardWorker(shard, SHARDS, 12, 10, false);
+            logs.forEach(worker::add);
+            partials.add(roundTrip(worker.toPartial()));
+        }
+        ShardCoordinator coordinator = ShardCoordinator.merge(partials);
+
+        // 草图按寄存器取最大合并，与单进程草图完全相同
+        StatisticsAggregator expected = StatisticsAggregator.aggregate(logs,
+                EnumSet.allOf(StatisticsAggregator.Breakdown.class), 12);
+        assertStatisticsEquals(expected.total(), coordinator.total());
+        assertGroupsEqual(expected.byDepartment(), coordinator.byDepartment());
+        assertGroupsEqual(expected.byDay(), coordinator.byDay());
+        assertEquals(0, coordinator.getProfileAggregator().getUserCount());
+
+        // 返回的统计是副本，调用方修改不影响协调器状态
+        coordinator.total().merge(expected.total()).setPv(-1L);
+        coordinator.byDepartment().values().forEach(stats -> stats.getUvSketch().merge(expected.total().getUvSketch()));
+        assertStatisticsEquals(expected.total(), coordinator.total());
+        assertGroupsEqual(expected.byDepartment(), coordinator.byDepartment());
+
+        try {
+            coordinator.add(partials.get(0));
+            fail();
+        } catch (IllegalArgumentException expectedFailure) {
+            // 重复的分片
+        }
+    }
+
+    private static ShardPartial roundTrip(ShardPartial partial) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        partial.writeTo(bytes);
+        return ShardPartial.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    private static <K> void assertGroupsEqual(Map<K, AccessStatistics> expected, Map<K, AccessStatistics> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<K, AccessStatistics> entry : expected.entrySet()) {
+            assertStatisticsEquals(entry.getValue(), actual.get(entry.getKey()));
+        }
+    }
+
+    private static void assertStatisticsEquals(AccessStatistics expected, AccessStatistics actual) {
+        assertEquals(expected.getPv(), actual.getPv());
+        assertEquals(expected.getUv(), actual.getUv());
+        assertEquals(expected.getTotalBytes(), actual.getTotalBytes());
+        assertEquals(expected.getActiveUsers(), actual.getActiveUsers());
+        assertEquals(expected.getDepartmentStats(), actual.getDepartmentStats());
+        assertEquals(expected.getCategoryStats(), actual.getCategoryStats());
+    }
+
+    /**
+     * 参照实现：全量计数后按计数降序、键升序排序（忽略 null 键）
+     */
+    private static List<Map.Entry<String, Long>> topN(List<NetflowLog> logs,
+                                                       java.util.function.Function<NetflowLog, String> key, int n) {
+        Map<String, Long> counts = logs.stream().filter(log -> key.apply(log) != null)
+                .collect(Collectors.groupingBy(key, Collectors.counting()));
+        return counts.entrySet().stream().sorted(TopNSelector.RANK).limit(n).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,178 @@
+package org.example.userprofile.sink;
+
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.generator.MockDataGenerator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ClickHouse 批量写入测试：本地 HTTP 服务模拟 ClickHouse，解码请求体校验 RowBinary 编码
+ */
+public class ClickHouseSinkTest extends TestCase {
+
+    private HttpServer server;
+    private URI endpoint;
+    private final List<byte[]> bodies = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> queries = Collections.synchronizedList(new ArrayList<>());
+    // 返回 503 的请求的查询串
+    private final List<String> failedQueries = Collections.synchronizedList(new ArrayList<>());
+    // 前若干个请求返回 503
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+    @Override
+    protected void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                byte[] body = exchange.getRequestBody().readAllBytes();
+                release.await(10, TimeUnit.SECONDS);
+                int status = 200;
+                String query = URLDecoder.decode(exchange.getRequestURI().getRawQuery(), StandardCharsets.UTF_8);
+                if (failuresLeft.getAndDecrement() > 0) {
+                    status = 503;
+                    failedQueries.add(query);
+                } else {
+                    bodies.add(body);
+                    queries.add(query);
+                }
+                exchange.sendResponseHeaders(status, -1);
+            } catch (InterruptedException e) {
+                exchange.sendResponseHeaders(500, -1);
+            } finally {
+                concurrent.decrementAndGet();
+                exchange.close();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        endpoint = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/?user=default");
+    }
+
+    @Override
+    protected void tearDown() {
+        server.stop(0);
+    }
+
+    public void testBatchesAreRetriedAndDecodable() throws IOException {
+        LocalDateTime start = LocalDate.of(2025, 12, 1).atStartOfDay();
+        List<NetflowLog> logs = MockDataGenerator.generateLogs(start, start.plusDays(1), 2500);
+        logs.get(7).setSiteCategory(null);
+        failuresLeft.set(1);
+
+        ClickHouseSink<NetflowLog> sink = new ClickHouseSink<>(endpoint, ClickHouseTable.ODS_NETFLOW_LOG,
+                1000, ClickHouseSink.DEFAULT_BATCH_BYTES, Duration.ofMinutes(1), 2, 3, Duration.ofMillis(10));
+        sink.addAll(logs);
+        sink.close();
+
+        assertEquals(logs.size(), sink.getSentRows());
+        assertEquals(3, sink.getSentBatches());
+        assertEquals(1, sink.getRetryCount());
+        assertEquals(0, sink.getFailedBatches());
+        Set<String> tokens = new HashSet<>();
+        for (String query : queries) {
+            assertTrue(query, query.startsWith("user=default&query=INSERT INTO user_profile.ods_netflow_log (event_time, user_id"));
+            assertTrue(query, query.contains("FORMAT RowBinary&insert_deduplication_token="));
+            tokens.add(dedupToken(query));
+        }
+        // 各批 token 不同，重试沿用失败请求的 token
+        assertEquals(3, tokens.size());
+        assertEquals(1, failedQueries.size());
+        assertTrue(tokens.contains(dedupToken(failedQueries.get(0))));
+
+        // 批次可能乱序到达，按事件时间与用户还原后逐行比较
+        List<String> decoded = new ArrayList<>();
+        for (byte[] body : bodies) {
+            ByteBuffer in = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+            while (in.hasRemaining()) {
+                StringBuilder row = new StringBuilder().append(Integer.toUnsignedLong(in.getInt()));
+                for (int column = 1; column < 11; column++) {
+                    row.append('|').append(column == 8 ? Long.toString(in.getLong()) : readString(in));
+                }
+                decoded.add(row.toString());
+            }
+        }
+        List<String> expected = new ArrayList<>();
+        for (NetflowLog log : logs) {
+            expected.add(log.getEventEpochSecond() + "|" + log.getUserId() + "|" + log.getDepartment() + "|"
+                    + log.getSrcIp() + "|" + log.getDstIp() + "|" + log.getDomain() + "|" + log.getUrl() + "|"
+                    + log.getMethod() + "|" + log.getBytes() + "|" + log.getUserAgent() + "|"
+                    + (log.getSiteCategory() != null ? log.getSiteCategory() : ""));
+        }
+        Collections.sort(decoded);
+        Collections.sort(expected);
+        assertEquals(expected, decoded);
+    }
+
+    public void testInFlightLimitAndTimedFlush() throws Exception {
+        LocalDateTime start = LocalDate.of(2025, 12, 1).atStartOfDay();
+        List<NetflowLog> logs = MockDataGenerator.generateLogs(start, start.plusDays(1), 50);
+        release = new CountDownLatch(1);
+
+        ClickHouseSink<NetflowLog> sink = new ClickHouseSink<>(endpoint, ClickHouseTable.ODS_NETFLOW_LOG,
+                10, ClickHouseSink.DEFAULT_BATCH_BYTES, Duration.ofMillis(50), 2, 0, Duration.ofMillis(10));
+        Thread producer = new Thread(() -> {
+            try {
+                sink.addAll(logs.subList(0, 45));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        producer.start();
+        // 服务端挂起时，两个批次在途后生产者被反压阻塞
+        producer.join(300);
+        assertTrue(producer.isAlive());
+        release.countDown();
+        producer.join();
+
+        // 不满一批的剩余行由定时刷新发送
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sink.getSentRows() < 45 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(45, sink.getSentRows());
+        assertTrue(maxConcurrent.get() <= 2);
+        sink.close();
+    }
+
+    private static String dedupToken(String query) {
+        return query.substring(query.indexOf("&insert_deduplication_token=") + "&insert_deduplication_token=".length());
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.userprofile.sketch;
+
+import junit.framework.TestCase;
+import org.example.userprofile.dto.AccessStatistics;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.generator.MockDataGenerator;
+import org.example.userprofile.service.AccessStatisticsService;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HyperLogLog 误差、合并与序列化测试
+ */
+public class HyperLogLogTest extends TestCase {
+
+    public void testEstimateWithinErrorBound() {
+        for (int n : new int[]{10, 1000, 100000}) {
+            HyperLogLog sketch = HyperLogLog.withRelativeError(0.01);
+            for (int i = 0; i < n; i++) {
+                sketch.add("U" + i);
+                sketch.add("U" + i);  // 重复元素不影响基数
+            }
+            double error = Math.abs(sketch.estimate() - n) / (double) n;
+            assertTrue("n=" + n + " error=" + error, error <= sketch.getRelativeError() * 4);
+        }
+    }
+
+    public void testMergeEqualsUnion() {
+        HyperLogLog left = new HyperLogLog(12);
+        HyperLogLog right = new HyperLogLog(12);
+        HyperLogLog union = new HyperLogLog(12);
+        for (int i = 0; i < 20000; i++) {
+            (i % 3 == 0 ? left : right).add("U" + (i % 15000));
+            union.add("U" + (i % 15000));
+        }
+        left.merge(right);
+        assertEquals(union.estimate(), left.estimate());
+
+        HyperLogLog restored = HyperLogLog.fromBytes(left.toBytes());
+        assertEquals(left.estimate(), restored.estimate());
+        assertEquals(12, restored.getPrecision());
+
+        try {
+            left.merge(new HyperLogLog(10));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testApproximateServiceMergesDailySketches() {
+        LocalDateTime start = LocalDate.of(2025, 12, 1).atStartOfDay();
+        List<NetflowLog> logs = MockDataGenerator.generateLogs(start, start.plusDays(7), 5000);
+        AccessStatisticsService exact = new AccessStatisticsService();
+        AccessStatisticsService approximate = new AccessStatisticsService(0.01);
+
+        long exactUv = exact.calculateStatistics(logs).getUv();
+        Map<LocalDate, AccessStatistics> daily = approximate.calculateDailyTrend(logs);
+        long mergedUv = approximate.mergeUv(daily.values());
+        assertEquals(approximate.calculateStatistics(logs).getUv().longValue(), mergedUv);
+        assertTrue(Math.abs(mergedUv - exactUv) <= Math.max(2, exactUv * 0.05));
+
+        try {
+            exact.mergeUv(exact.calculateDailyTrend(logs).values());
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
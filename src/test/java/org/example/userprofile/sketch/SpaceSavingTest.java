@@ -0,0 +1,68 @@
+package org.example.userprofile.sketch;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Space-Saving 单个统计与合并后的误差保证测试
+ */
+public class SpaceSavingTest extends TestCase {
+
+    public void testMergedCountsBoundTrueCounts() {
+        Random random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            SpaceSaving left = new SpaceSaving(20);
+            SpaceSaving right = new SpaceSaving(20);
+            Map<String, Long> exact = new HashMap<>();
+            // 两个分片的键分布不同，一侧的热点在另一侧多半已被替换出去
+            for (int i = 0; i < 20000; i++) {
+                boolean toLeft = random.nextBoolean();
+                int rank = (int) Math.floor(Math.pow(random.nextDouble(), 3) * 500);
+                String key = "K" + (toLeft ? rank : (rank + 37) % 500);
+                (toLeft ? left : right).add(key);
+                exact.merge(key, 1L, Long::sum);
+            }
+            long leftError = left.maxError();
+            long rightError = right.maxError();
+            left.merge(right);
+            assertMatchesExact(left, exact, leftError + rightError);
+        }
+    }
+
+    public void testKeyEvictedOnOneSide() {
+        SpaceSaving left = new SpaceSaving(2);
+        SpaceSaving right = new SpaceSaving(2);
+        left.add("a", 5);
+        left.add("b", 1);
+        // 右侧的 a 被 c 替换出去
+        right.add("a", 3);
+        right.add("b", 4);
+        right.add("c", 4);
+        Map<String, Long> exact = Map.of("a", 8L, "b", 5L, "c", 4L);
+        long bound = left.maxError() + right.maxError();
+        left.merge(right);
+        assertMatchesExact(left, exact, bound);
+        assertEquals(17, left.getTotal());
+        assertEquals(2, left.snapshot().size());
+    }
+
+    private static void assertMatchesExact(SpaceSaving sketch, Map<String, Long> exact, long bound) {
+        long total = exact.values().stream().mapToLong(Long::longValue).sum();
+        assertEquals(total, sketch.getTotal());
+        for (SpaceSaving.HeavyHitter item : sketch.snapshot()) {
+            long count = exact.getOrDefault(item.getKey(), 0L);
+            assertTrue(item.getKey(), item.getCount() >= count);
+            assertTrue(item.getKey(), item.getGuaranteedCount() <= count);
+            assertTrue(item.getKey(), item.getCount() - count <= bound);
+        }
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            assertTrue(entry.getKey(), sketch.estimate(entry.getKey()) >= entry.getValue());
+            if (entry.getValue() > bound) {
+                assertTrue(entry.getKey(), sketch.estimate(entry.getKey()) - entry.getValue() <= bound);
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.example.userprofile.store;
+
+import junit.framework.TestCase;
+import org.example.userprofile.aggregate.SymbolCounter;
+import org.example.userprofile.dto.AccessStatistics;
+import org.example.userprofile.entity.NetflowLog;
+import org.example.userprofile.entity.UserProfile;
+import org.example.userprofile.generator.MockDataGenerator;
+import org.example.userprofile.service.AccessStatisticsService;
+import org.example.userprofile.service.UserProfileService;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * 列式存储与List实现的一致性测试
+ */
+public class NetflowLogStoreTest extends TestCase {
+
+    private List<NetflowLog> logs;
+    private NetflowLogStore store;
+
+    @Override
+    protected void setUp() {
+        LocalDateTime start = LocalDate.of(2025, 12, 1).atStartOfDay();
+        logs = MockDataGenerator.generateLogs(start, start.plusDays(7), 5000);
+        // -1 是合法流量值，不能与空值混淆
+        logs.get(1).setBytes(-1L);
+        logs.get(2).setBytes(null);
+        store = NetflowLogStore.of(logs);
+    }
+
+    public void testRowViewRoundTrip() {
+        assertEquals(logs.size(), store.size());
+        for (int i = 0; i < logs.size(); i++) {
+            NetflowLog expected = logs.get(i);
+            NetflowLog actual = store.get(i);
+            assertEquals(expected.getEventTime(), actual.getEventTime());
+            assertEquals(expected.getUserId(), actual.getUserId());
+            assertEquals(expected.getDomain(), actual.getDomain());
+            assertEquals(expected.getUrl(), actual.getUrl());
+            assertEquals(expected.getBytes(), actual.getBytes());
+            assertEquals(expected.getSiteCategory(), actual.getSiteCategory());
+        }
+    }
+
+    public void testStatisticsMatchListImplementation() {
+        AccessStatisticsService service = new AccessStatisticsService();
+        assertStatisticsEquals(service.calculateStatistics(logs), service.calculateStatistics(store));
+
+        Map<String, AccessStatistics> expectedDept = service.calculateByDepartment(logs);
+        Map<String, AccessStatistics> actualDept = service.calculateByDepartment(store);
+        assertEquals(expectedDept.keySet(), actualDept.keySet());
+        for (String dept : expectedDept.keySet()) {
+            assertStatisticsEquals(expectedDept.get(dept), actualDept.get(dept));
+        }
+
+        Map<LocalDate, AccessStatistics> expectedDaily = service.calculateDailyTrend(logs);
+        Map<LocalDate, AccessStatistics> actualDaily = service.calculateDailyTrend(store);
+        assertEquals(expectedDaily.keySet(), actualDaily.keySet());
+        for (LocalDate date : expectedDaily.keySet()) {
+            assertStatisticsEquals(expectedDaily.get(date), actualDaily.get(date));
+        }
+
+        assertEquals(service.calculateHourlyTrend(logs), service.calculateHourlyTrend(store));
+        assertEquals(service.getTopNDomains(logs, 10), service.getTopNDomains(store, 10));
+    }
+
+    public void testTimeRangeUsesPartitionIndex() {
+        AccessStatisticsService service = new AccessStatisticsService();
+        List<NetflowLog> shuffled = new ArrayList<>(logs);
+        Collections.shuffle(shuffled, new Random(1));
+        NetflowLogStore unsorted = NetflowLogStore.of(shuffled);
+        assertTrue(store.isSortedByTime());
+        assertFalse(unsorted.isSortedByTime());
+        assertEquals(7, store.timeIndex().getPartitionCount());
+
+        LocalDateTime first = logs.get(0).getEventTime();
+        LocalDateTime[][] ranges = {
+                {first, first},
+                {logs.get(100).getEventTime(), logs.get(900).getEventTime()},
+                {first.plusHours(30), first.plusHours(31)},
+                {first.minusDays(3), first.plusDays(30)},
+                {first.plusDays(20), first.plusDays(21)},
+                {first.plusHours(5), first.plusHours(1)},
+        };
+        for (LocalDateTime[] range : ranges) {
+            List<NetflowLog> filtered = logs.stream()
+                    .filter(log -> !log.getEventTime().isBefore(range[0]))
+                    .filter(log -> !log.getEventTime().isAfter(range[1]))
+                    .collect(Collectors.toList());
+            AccessStatistics expected = service.calculateStatistics(filtered);
+            assertStatisticsEquals(expected, service.calculateStatisticsByTimeRange(logs, range[0], range[1]));
+            assertStatisticsEquals(expected, service.calculateStatisticsByTimeRange(logs, range[0], range[1], true));
+            assertStatisticsEquals(expected, service.calculateStatisticsByTimeRange(shuffled, range[0], range[1]));
+            assertStatisticsEquals(expected, service.calculateStatisticsByTimeRange(store, range[0], range[1]));
+            assertStatisticsEquals(expected, service.calculateStatisticsByTimeRange(unsorted, range[0], range[1]));
+        }
+    }
+
+    public void testConcurrentDictionaryAssignsStableCodes() throws Exception {
+        StringDictionary dictionary = new StringDictionary();
+        int threads = 4;
+        int[][] codes = new int[threads][2000];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int[] out = codes[t];
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < out.length; i++) {
+                    out[i] = dictionary.encode("D" + (i % 500));
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(500, dictionary.size());
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < codes[t].length; i++) {
+                assertEquals(codes[0][i], codes[t][i]);
+                assertEquals("D" + (i % 500), dictionary.decode(codes[t][i]));
+            }
+        }
+
+        // 日志上的字段按全局符号表编码，相同取值共享同一实例
+        NetflowLog first = logs.get(0);
+        NetflowLog copy = new NetflowLog();
+        copy.setDepartment(new String(first.getDepartment()));
+        assertEquals(first.getDepartmentId(), copy.getDepartmentId());
+        assertSame(first.getDepartment(), copy.getDepartment());
+    }
+
+    public void testCappedDictionaryFallsBackToRawValues() {
+        StringDictionary dictionary = new StringDictionary(2);
+        assertEquals(0, dictionary.encode("a.com"));
+        assertEquals(1, dictionary.encode("b.com"));
+        assertEquals(StringDictionary.OVERFLOW_CODE, dictionary.encode("c.com"));
+        assertEquals(1, dictionary.encode("b.com"));
+        assertEquals(2, dictionary.size());
+        String raw = new String("c.com");
+        assertSame(raw, dictionary.intern(raw));
+
+        // 已满后出现的值按原始字符串计数，与有编码的值一起排序
+        SymbolCounter counter = new SymbolCounter(dictionary);
+        String[] values = {"a.com", "c.com", "d.com", "c.com", "b.com", "c.com", "d.com", null};
+        for (String value : values) {
+            counter.add(dictionary.encode(value), value);
+        }
+        assertEquals("[c.com=3, d.com=2, a.com=1]", counter.top(3).toString());
+        assertEquals(Map.of("a.com", 1L, "b.com", 1L, "c.com", 3L, "d.com", 2L), counter.toMap());
+    }
+
+    public void testProfilesMatchListImplementation() {
+        UserProfileService service = new UserProfileService();
+        Map<String, List<NetflowLog>> userLogs = logs.stream()
+                .collect(Collectors.groupingBy(NetflowLog::getUserId));
+
+        Map<String, UserProfile> expected = service.calculateBatchProfiles(userLogs, Collections.emptyMap());
+        Map<String, UserProfile> actual = service.calculateBatchProfiles(store, Collections.emptyMap());
+        assertEquals(expected.keySet(), actual.keySet());
+        for (String userId : expected.keySet()) {
+            assertProfileEquals(expected.get(userId), actual.get(userId));
+        }
+    }
+
+    static void assertStatisticsEquals(AccessStatistics expected, AccessStatistics actual) {
+        assertEquals(expected.getPv(), actual.getPv());
+        assertEquals(expected.getUv(), actual.getUv());
+        assertEquals(expected.getTotalBytes(), actual.getTotalBytes());
+        assertEquals(expected.getActiveUsers(), actual.getActiveUsers());
+        assertEquals(expected.getDepartmentStats(), actual.getDepartmentStats());
+        assertEquals(expected.getCategoryStats(), actual.getCategoryStats());
+    }
+
+    static void assertProfileEquals(UserProfile expected, UserProfile actual) {
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getDepartment(), actual.getDepartment());
+        assertEquals(expected.getActiveDays(), actual.getActiveDays());
+        assertEquals(expected.getAvgDailyPv(), actual.getAvgDailyPv());
+        assertEquals(expected.getPeakTimeSlot(), actual.getPeakTimeSlot());
+        assertEquals(expected.getTopSiteCategory(), actual.getTopSiteCategory());
+        assertEquals(expected.getTopDomain(), actual.getTopDomain());
+        assertEquals(expected.getNonWorkRatio(), actual.getNonWorkRatio());
+        assertEquals(expected.getTotalBytes(), actual.getTotalBytes());
+        assertEquals(expected.getAvgDailyBytes(), actual.getAvgDailyBytes());
+        assertEquals(expected.getRiskLevel(), actual.getRiskLevel());
+    }
+}
@@ -0,0 +1,132 @@
+package org.example.userprofile.store;
+
+import junit.framework.TestCase;
+import org.example.userprofile.entity.UserProfile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 画像存储与按 lastUpdateTime 取新的参照实现一致性测试（含重启恢复、合并、预写日志残缺）
+ */
+public class ProfileStoreTest extends TestCase {
+
+    private static final LocalDateTime BASE = LocalDate.of(2025, 12, 1).atStartOfDay();
+
+    private Path directory;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("profile-store");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    public void testKeepsNewestVersionAcrossRunsAndRestarts() throws IOException {
+        Random random = new Random(42);
+        TreeMap<String, UserProfile> expected = new TreeMap<>();
+        ProfileStore store = ProfileStore.open(directory, 50, 3);
+        for (int i = 0; i < 2000; i++) {
+            UserProfile profile = profile("E" + random.nextInt(300), random.nextInt(20), i);
+            if (i % 97 == 0) {
+                profile.setLastUpdateTime(null);
+                profile.setTopDomain(null);
+            }
+            store.upsert(profile);
+            UserProfile current = expected.get(profile.getUserId());
+            // 版本相同时后写入的生效
+            if (current == null || version(profile).compareTo(version(current)) >= 0) {
+                expected.put(profile.getUserId(), profile);
+            }
+        }
+        assertContents(expected, store);
+
+        store.close();
+        store = ProfileStore.open(directory, 50, 3);
+        assertContents(expected, store);
+
+        store.compact();
+        assertEquals(1, store.getRunCount());
+        assertContents(expected, store);
+        store.close();
+    }
+
+    public void testTornWalTailIsTruncated() throws IOException {
+        ProfileStore store = ProfileStore.open(directory);
+        for (int i = 0; i < 10; i++) {
+            store.upsert(profile("E" + i, 1, i));
+        }
+        store.close();
+        Path wal;
+        try (Stream<Path> files = Files.list(directory)) {
+            wal = files.filter(file -> file.toString().endsWith(".wal")).findFirst().orElseThrow();
+        }
+        long validLength = Files.size(wal);
+        Files.write(wal, new byte[]{0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        store = ProfileStore.open(directory);
+        assertEquals(validLength, Files.size(wal));
+        assertEquals(10, store.scan(null, null).size());
+        assertEquals(Integer.valueOf(9), store.get("E9").getAvgDailyPv());
+        assertNull(store.get("E10"));
+        store.close();
+    }
+
+    private static void assertContents(TreeMap<String, UserProfile> expected, ProfileStore store) {
+        for (UserProfile profile : expected.values()) {
+            assertProfileEquals(profile, store.get(profile.getUserId()));
+        }
+        assertNull(store.get("X"));
+
+        List<UserProfile> all = store.scan(null, null);
+        assertEquals(new ArrayList<>(expected.keySet()),
+                all.stream().map(UserProfile::getUserId).collect(Collectors.toList()));
+        List<UserProfile> range = store.scan("E10", "E20");
+        assertEquals(new ArrayList<>(expected.subMap("E10", "E20").keySet()),
+                range.stream().map(UserProfile::getUserId).collect(Collectors.toList()));
+        for (UserProfile profile : range) {
+            assertProfileEquals(expected.get(profile.getUserId()), profile);
+        }
+    }
+
+    private static void assertProfileEquals(UserProfile expected, UserProfile actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getUserName(), actual.getUserName());
+        assertEquals(expected.getAvgDailyPv(), actual.getAvgDailyPv());
+        assertEquals(expected.getTopDomain(), actual.getTopDomain());
+        assertEquals(expected.getNonWorkRatio(), actual.getNonWorkRatio());
+        assertEquals(expected.getTotalBytes(), actual.getTotalBytes());
+        assertEquals(expected.getRiskLevel(), actual.getRiskLevel());
+        assertEquals(expected.getLastUpdateTime(), actual.getLastUpdateTime());
+    }
+
+    private static LocalDateTime version(UserProfile profile) {
+        return profile.getLastUpdateTime() != null ? profile.getLastUpdateTime() : LocalDateTime.MIN;
+    }
+
+    private static UserProfile profile(String userId, int hours, int value) {
+        UserProfile profile = new UserProfile(userId, "员工" + userId, "研发部");
+        profile.setAvgDailyPv(value);
+        profile.setTopDomain("github.com");
+        profile.setNonWorkRatio(value / 2000f);
+        profile.setTotalBytes(value * 1024L);
+        profile.setRiskLevel(value % 3);
+        profile.setLastUpdateTime(BASE.plusHours(hours).plusNanos(value % 2));
+        return profile;
+    }
+}
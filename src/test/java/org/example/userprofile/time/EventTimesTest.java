@@ -0,0 +1,81 @@
+package org.example.userprofile.time;
+
+import junit.framework.TestCase;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * 事件时间换算与 java.time 的一致性测试，覆盖整数路径、时区规则路径和夏令时切换日
+ */
+public class EventTimesTest extends TestCase {
+
+    public void testDefaultZoneRoundTrip() {
+        ZoneId zone = EventTimes.zone();
+        long from = LocalDate.of(2025, 1, 1).atStartOfDay(zone).toEpochSecond();
+        for (long second = from; second < from + 400 * EventTimes.SECONDS_PER_DAY; second += 997) {
+            LocalDateTime local = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), zone);
+            assertEquals(local.getHour(), EventTimes.hourOf(second));
+            assertEquals(local.toLocalDate().toEpochDay(), EventTimes.epochDayOf(second));
+            assertEquals(local, EventTimes.toLocalDateTime(second, 0));
+            assertEquals(second, EventTimes.toEpochSecond(local));
+            assertEquals(second, EventTimes.toEpochSecond(local.getYear(), local.getMonthValue(),
+                    local.getDayOfMonth(), local.getHour(), local.getMinute(), local.getSecond()));
+        }
+    }
+
+    public void testZoneWithHistoricalTransitions() {
+        // Asia/Shanghai 1986-1991 年实行夏令时，最后一次变更在 1991-09-15
+        ZoneId zone = ZoneId.of("Asia/Shanghai");
+        assertFalse(zone.getRules().isFixedOffset());
+        assertMatchesZoneRules(new ZoneConversion(zone), LocalDateTime.of(1991, 4, 13, 0, 0), 3);
+        assertMatchesZoneRules(new ZoneConversion(zone), LocalDateTime.of(1991, 9, 14, 0, 0), 3);
+        assertMatchesZoneRules(new ZoneConversion(zone), LocalDateTime.of(2025, 12, 1, 0, 0), 1);
+    }
+
+    public void testDaylightSavingTransitionDays() {
+        ZoneConversion newYork = new ZoneConversion(ZoneId.of("America/New_York"));
+        assertMatchesZoneRules(newYork, LocalDateTime.of(2025, 3, 8, 12, 0), 1);
+        assertMatchesZoneRules(newYork, LocalDateTime.of(2025, 11, 1, 12, 0), 1);
+        ZoneConversion london = new ZoneConversion(ZoneId.of("Europe/London"));
+        assertMatchesZoneRules(london, LocalDateTime.of(2025, 3, 29, 12, 0), 1);
+        assertMatchesZoneRules(london, LocalDateTime.of(2025, 10, 25, 12, 0), 1);
+
+        // 切换日只有 23 或 25 小时
+        ZoneId zone = newYork.zone();
+        long springDay = LocalDate.of(2025, 3, 9).atStartOfDay(zone).toEpochSecond();
+        long nextDay = LocalDate.of(2025, 3, 10).atStartOfDay(zone).toEpochSecond();
+        assertEquals(23 * EventTimes.SECONDS_PER_HOUR, nextDay - springDay);
+        assertEquals(springDay, newYork.epochSecond(LocalDate.of(2025, 3, 9).atStartOfDay()
+                .toEpochSecond(ZoneOffset.UTC)));
+    }
+
+    /**
+     * 从 start 起逐分钟比较 days 天内的换算结果
+     */
+    private static void assertMatchesZoneRules(ZoneConversion conversion, LocalDateTime start, int days) {
+        ZoneId zone = conversion.zone();
+        long from = start.atZone(zone).toEpochSecond();
+        long to = from + days * EventTimes.SECONDS_PER_DAY;
+        for (long second = from; second < to; second += 60) {
+            ZonedDateTime expected = Instant.ofEpochSecond(second).atZone(zone);
+            long localSecond = conversion.localSecond(second);
+            assertEquals(expected.toLocalDateTime(), conversion.toLocalDateTime(second, 0));
+            assertEquals(expected.toLocalDateTime().toEpochSecond(ZoneOffset.UTC), localSecond);
+            assertEquals(expected.getHour(), (int) (Math.floorMod(localSecond, EventTimes.SECONDS_PER_DAY)
+                    / EventTimes.SECONDS_PER_HOUR));
+            assertEquals(expected.toLocalDate().toEpochDay(), Math.floorDiv(localSecond, EventTimes.SECONDS_PER_DAY));
+            // 重叠时段的本地时间取较早的偏移，与 atZone 一致
+            assertEquals(expected.toLocalDateTime().atZone(zone).toEpochSecond(), conversion.epochSecond(localSecond));
+        }
+        // 本地时间逐分钟换算，包括空隙中不存在的时间
+        LocalDateTime end = start.plusDays(days);
+        for (LocalDateTime local = start; local.isBefore(end); local = local.plusMinutes(1)) {
+            assertEquals(local.atZone(zone).toEpochSecond(), conversion.epochSecond(local.toEpochSecond(ZoneOffset.UTC)));
+        }
+    }
+}